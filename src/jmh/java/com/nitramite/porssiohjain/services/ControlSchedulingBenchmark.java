@@ -0,0 +1,168 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.ControlEntity;
+import com.nitramite.porssiohjain.entity.NordpoolEntity;
+import com.nitramite.porssiohjain.entity.enums.ControlMode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planning work of one {@link ControlSchedulerService#generatePlannedForTomorrow()} run for
+ * 10 000 controls over two days of 15 minute prices, without the database writes. Compares
+ * {@link CheapestHoursOptimizer} with the per day {@code BigDecimal} sort it replaced and
+ * measures the fingerprint every control is checked against. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ControlSchedulingBenchmark {
+
+    private static final int CONTROLS = 10_000;
+    private static final int UNITS = 2 * 24 * 60 / CheapestHoursOptimizer.UNIT_MINUTES;
+    private static final long START_MINUTE = 29_000_000L;
+
+    private final CheapestHoursOptimizer optimizer = new CheapestHoursOptimizer(UNITS);
+    private Instant startOfDay;
+    private List<NordpoolEntity> nordpoolPrices;
+    private ControlEntity[] controls;
+    private BigDecimal[][] combinedPrices;
+    private CheapestHoursOptimizer.Constraints[] constraints;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        startOfDay = Instant.parse("2026-06-09T00:00:00Z");
+        nordpoolPrices = new ArrayList<>(UNITS);
+        BigDecimal[] marketPrices = new BigDecimal[UNITS];
+        for (int i = 0; i < UNITS; i++) {
+            double daily = 8 + 6 * Math.sin(i * Math.PI / 48);
+            marketPrices[i] = BigDecimal.valueOf(daily + random.nextGaussian() * 3).setScale(3, RoundingMode.HALF_UP);
+            NordpoolEntity price = new NordpoolEntity();
+            price.setDeliveryStart(startOfDay.plus(15L * i, ChronoUnit.MINUTES));
+            price.setDeliveryEnd(startOfDay.plus(15L * (i + 1), ChronoUnit.MINUTES));
+            price.setMarketIndexName("FI");
+            price.setPriceFi(marketPrices[i]);
+            nordpoolPrices.add(price);
+        }
+
+        controls = new ControlEntity[CONTROLS];
+        combinedPrices = new BigDecimal[CONTROLS][];
+        constraints = new CheapestHoursOptimizer.Constraints[CONTROLS];
+        for (int c = 0; c < CONTROLS; c++) {
+            ControlEntity control = new ControlEntity();
+            control.setId((long) c);
+            control.setMode(ControlMode.CHEAPEST_HOURS);
+            control.setTimezone("Europe/Helsinki");
+            control.setTaxPercent(BigDecimal.valueOf(random.nextBoolean() ? 25.5 : 0));
+            control.setMinPriceSnt(BigDecimal.valueOf(random.nextInt(3)));
+            control.setMaxPriceSnt(BigDecimal.valueOf(15 + random.nextInt(20)));
+            control.setDailyOnMinutes(60 + 15 * random.nextInt(40));
+            control.setAlwaysOnBelowMinPrice(random.nextBoolean());
+            if (c % 4 == 0) {
+                control.setMinRunMinutes(30 + 15 * random.nextInt(4));
+                control.setMaxOffGapMinutes(180 + 15 * random.nextInt(16));
+                control.setRollingDailyWindow(c % 8 == 0);
+            }
+            controls[c] = control;
+            constraints[c] = new CheapestHoursOptimizer.Constraints(
+                    control.getMinRunMinutes() != null ? control.getMinRunMinutes() : 0,
+                    control.getMaxOffGapMinutes() != null ? control.getMaxOffGapMinutes() : 0,
+                    control.isRollingDailyWindow());
+
+            BigDecimal multiplier = BigDecimal.ONE.add(control.getTaxPercent().movePointLeft(2));
+            BigDecimal transfer = BigDecimal.valueOf(random.nextInt(60), 1);
+            combinedPrices[c] = new BigDecimal[UNITS];
+            for (int i = 0; i < UNITS; i++) {
+                combinedPrices[c][i] = marketPrices[i].multiply(multiplier).add(transfer).setScale(4, RoundingMode.HALF_UP);
+            }
+        }
+    }
+
+    @Benchmark
+    public void optimizer(Blackhole blackhole) {
+        for (int c = 0; c < CONTROLS; c++) {
+            ControlEntity control = controls[c];
+            BigDecimal[] prices = combinedPrices[c];
+            long[] keys = ControlSchedulerService.priceKeys(prices, control.getMinPriceSnt(), control.getMaxPriceSnt());
+            optimizer.clear();
+            for (int i = 0; i < UNITS; i++) {
+                optimizer.add(keys[i], day(i), START_MINUTE + (long) i * CheapestHoursOptimizer.UNIT_MINUTES);
+            }
+            blackhole.consume(optimizer.optimize(keys[UNITS], keys[UNITS + 1], control.isAlwaysOnBelowMinPrice(),
+                    control.getDailyOnMinutes(), constraints[c]));
+        }
+    }
+
+    /**
+     * Same plans as {@link #optimizer} for the unconstrained controls, done the way the scheduler
+     * did before: filter and sort the {@code BigDecimal} prices of each day.
+     */
+    @Benchmark
+    public void legacyDailySort(Blackhole blackhole) {
+        for (int c = 0; c < CONTROLS; c++) {
+            ControlEntity control = controls[c];
+            BigDecimal[] prices = combinedPrices[c];
+            Map<Integer, List<Integer>> unitsByDay = new HashMap<>();
+            for (int i = 0; i < UNITS; i++) {
+                unitsByDay.computeIfAbsent(day(i), ignored -> new ArrayList<>()).add(i);
+            }
+            List<Integer> on = new ArrayList<>();
+            for (List<Integer> dailyUnits : unitsByDay.values()) {
+                int accumulated = 0;
+                Set<Integer> alwaysOn = new HashSet<>();
+                if (control.isAlwaysOnBelowMinPrice()) {
+                    dailyUnits.stream()
+                            .filter(i -> prices[i].compareTo(control.getMinPriceSnt()) <= 0)
+                            .sorted(Comparator.comparing(i -> prices[i]))
+                            .forEach(alwaysOn::add);
+                    on.addAll(alwaysOn);
+                    accumulated += alwaysOn.size() * CheapestHoursOptimizer.UNIT_MINUTES;
+                }
+                List<Integer> eligible = dailyUnits.stream()
+                        .filter(i -> !alwaysOn.contains(i))
+                        .filter(i -> prices[i].compareTo(control.getMaxPriceSnt()) <= 0)
+                        .sorted(Comparator.comparing(i -> prices[i]))
+                        .toList();
+                for (int i : eligible) {
+                    if (accumulated >= control.getDailyOnMinutes()) {
+                        break;
+                    }
+                    on.add(i);
+                    accumulated += CheapestHoursOptimizer.UNIT_MINUTES;
+                }
+            }
+            blackhole.consume(on);
+        }
+    }
+
+    @Benchmark
+    public void fingerprint(Blackhole blackhole) {
+        Instant endOfDay = startOfDay.plus(2, ChronoUnit.DAYS);
+        for (ControlEntity control : controls) {
+            blackhole.consume(ControlSchedulerService.fingerprint(control, nordpoolPrices, startOfDay, endOfDay));
+        }
+    }
+
+    private static int day(int unit) {
+        return unit * CheapestHoursOptimizer.UNIT_MINUTES / (24 * 60);
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.NordpoolEntity;
+import com.nitramite.porssiohjain.entity.PowerLimitHistoryEntity;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost part of {@code PowerLimitService.getDailyUsageCostForMonth} for a month of per minute
+ * usage rows and 15 minute prices. Compares {@link UsageCostCalculator} with the per row price
+ * scan it replaced. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UsageCostCalculatorBenchmark {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Helsinki");
+    private static final BigDecimal TAX_PERCENT = new BigDecimal("25.5");
+
+    private final UsageCostCalculator.Tariff tariff = UsageCostCalculator.Tariff.of(TAX_PERCENT, null, null);
+    private List<NordpoolEntity> prices;
+    private List<PowerLimitHistoryEntity> usage;
+
+    @Setup
+    public void setUp() {
+        Instant start = LocalDate.of(2026, 3, 1).atStartOfDay(ZONE).toInstant();
+        Instant end = LocalDate.of(2026, 4, 1).atStartOfDay(ZONE).toInstant();
+        Random random = new Random(42);
+        prices = new ArrayList<>();
+        for (Instant slot = start; slot.isBefore(end); slot = slot.plus(15, ChronoUnit.MINUTES)) {
+            NordpoolEntity price = new NordpoolEntity();
+            price.setMarketIndexName("FI");
+            price.setDeliveryStart(slot);
+            price.setDeliveryEnd(slot.plus(15, ChronoUnit.MINUTES));
+            price.setPriceFi(BigDecimal.valueOf(random.nextInt(4_000_000) - 500_000, 4));
+            prices.add(price);
+        }
+        usage = new ArrayList<>();
+        for (Instant minute = start; minute.isBefore(end); minute = minute.plus(1, ChronoUnit.MINUTES)) {
+            PowerLimitHistoryEntity row = new PowerLimitHistoryEntity();
+            row.setCreatedAt(minute);
+            row.setKilowatts(BigDecimal.valueOf(random.nextInt(5000), 3));
+            usage.add(row);
+        }
+    }
+
+    @Benchmark
+    public void calculator(Blackhole blackhole) {
+        blackhole.consume(UsageCostCalculator.dailyCosts(usage, prices, tariff, ZONE));
+    }
+
+    /**
+     * The previous implementation: a linear scan of the price list for every usage row.
+     */
+    @Benchmark
+    public void perRowPriceScan(Blackhole blackhole) {
+        BigDecimal taxMultiplier = BigDecimal.ONE.add(TAX_PERCENT.divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_UP));
+        Map<LocalDate, BigDecimal[]> totals = new TreeMap<>();
+        for (PowerLimitHistoryEntity row : usage) {
+            Instant usageTime = row.getCreatedAt();
+            BigDecimal priceMwh = prices.stream()
+                    .filter(p -> !usageTime.isBefore(p.getDeliveryStart()) && usageTime.isBefore(p.getDeliveryEnd()))
+                    .map(NordpoolEntity::getPriceFi)
+                    .findFirst()
+                    .orElse(BigDecimal.ZERO);
+            BigDecimal cost = row.getKilowatts()
+                    .multiply(priceMwh.divide(BigDecimal.valueOf(1000), 10, RoundingMode.HALF_UP))
+                    .multiply(taxMultiplier);
+            BigDecimal[] day = totals.computeIfAbsent(usageTime.atZone(ZONE).toLocalDate(),
+                    ignored -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            day[0] = day[0].add(row.getKilowatts());
+            day[1] = day[1].add(cost);
+        }
+        blackhole.consume(totals);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single threaded encrypt and decrypt of a typical API token through {@link CryptoConverter},
+ * next to the previous converter that took a strong {@link SecureRandom} and a new
+ * {@link Cipher} on every call. The decrypt cache is disabled except in {@link #cachedDecrypt()}.
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CryptoConverterBenchmark {
+
+    private static final String KEY = "benchmark-key-0123456789abcdef";
+    private static final String PLAIN = "eyJhbGciOiJIUzI1NiJ9.c2hlbGx5LWNsb3VkLWF1dGgta2V5.Zm9vYmFy";
+
+    private CryptoConverter pooled;
+    private CryptoConverter cached;
+    private SecretKeySpec legacyKey;
+    private String legacyCipherText;
+    private String pooledCipherText;
+
+    @Setup
+    public void setUp() throws Exception {
+        pooled = new CryptoConverter(KEY, 1, "", 0, 0);
+        cached = new CryptoConverter(KEY, 1, "", 0, 16);
+        legacyKey = new SecretKeySpec(Arrays.copyOf(KEY.getBytes(StandardCharsets.UTF_8), 32), "AES");
+        legacyCipherText = legacyEncrypt();
+        pooledCipherText = cached.convertToDatabaseColumn(PLAIN);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        byte[] iv = SecureRandom.getInstanceStrong().generateSeed(12);
+        Cipher encryptCipher = Cipher.getInstance("AES/GCM/NoPadding");
+        encryptCipher.init(Cipher.ENCRYPT_MODE, legacyKey, new GCMParameterSpec(128, iv));
+        byte[] encrypted = encryptCipher.doFinal(PLAIN.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.allocate(iv.length + encrypted.length);
+        buffer.put(iv);
+        buffer.put(encrypted);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    @Benchmark
+    public String pooledEncrypt() {
+        return pooled.convertToDatabaseColumn(PLAIN);
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(legacyCipherText));
+        byte[] iv = new byte[12];
+        buffer.get(iv);
+        byte[] encrypted = new byte[buffer.remaining()];
+        buffer.get(encrypted);
+        Cipher decryptCipher = Cipher.getInstance("AES/GCM/NoPadding");
+        decryptCipher.init(Cipher.DECRYPT_MODE, legacyKey, new GCMParameterSpec(128, iv));
+        return new String(decryptCipher.doFinal(encrypted), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String pooledDecrypt() {
+        return pooled.convertToEntityAttribute(pooledCipherText);
+    }
+
+    @Benchmark
+    public String cachedDecrypt() {
+        return cached.convertToEntityAttribute(pooledCipherText);
+    }
+
+}
@@ -11,8 +11,8 @@
 
 package com.nitramite.porssiohjain.auth;
 
-import com.nitramite.porssiohjain.entity.AccountEntity;
 import com.nitramite.porssiohjain.services.AuthService;
+import com.nitramite.porssiohjain.services.models.AuthenticatedToken;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
@@ -58,9 +58,9 @@ public class AuthInterceptor implements HandlerInterceptor {
         }
 
         try {
-            AccountEntity account = authService.authenticate(token);
-            authContext.setAccount(account.getId(), account.isDemo());
-            if (account.isDemo() && isWriteRequest(request) && !isDemoWriteAllowed(request)) {
+            AuthenticatedToken authenticated = authService.authenticateToken(token);
+            authContext.setAccount(authenticated.accountId(), authenticated.demo());
+            if (authenticated.demo() && isWriteRequest(request) && !isDemoWriteAllowed(request)) {
                 response.setStatus(HttpServletResponse.SC_FORBIDDEN);
                 response.setContentType(MediaType.TEXT_PLAIN_VALUE);
                 response.getWriter().write(DEMO_WRITE_BLOCKED_MESSAGE);
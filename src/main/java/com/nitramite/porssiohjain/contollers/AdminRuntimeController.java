@@ -0,0 +1,94 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.contollers;
+
+import com.nitramite.porssiohjain.auth.AuthContext;
+import com.nitramite.porssiohjain.auth.RequireAuth;
+import com.nitramite.porssiohjain.mqtt.MqttInboundDispatcher;
+import com.nitramite.porssiohjain.services.AcCommandDispatchService;
+import com.nitramite.porssiohjain.services.AdminAuthorizationService;
+import com.nitramite.porssiohjain.services.AuthTokenCache;
+import com.nitramite.porssiohjain.services.ControlLongPollService;
+import com.nitramite.porssiohjain.services.PowerReadingIngestService;
+import com.nitramite.porssiohjain.services.RelayStateService;
+import com.nitramite.porssiohjain.services.models.AuthTokenCacheStatsResponse;
+import com.nitramite.porssiohjain.services.models.ControlLongPollStatsResponse;
+import com.nitramite.porssiohjain.services.models.HeatPumpDispatchStatsResponse;
+import com.nitramite.porssiohjain.services.models.MqttInboundStatsResponse;
+import com.nitramite.porssiohjain.services.models.PowerIngestStatsResponse;
+import com.nitramite.porssiohjain.services.models.RelayPublishStatsResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/admin/runtime")
+@RequireAuth
+@RequiredArgsConstructor
+public class AdminRuntimeController {
+
+    private final AuthContext authContext;
+    private final AdminAuthorizationService adminAuthorizationService;
+    private final RelayStateService relayStateService;
+    private final PowerReadingIngestService powerReadingIngestService;
+    private final ObjectProvider<MqttInboundDispatcher> mqttInboundDispatcher;
+    private final AcCommandDispatchService acCommandDispatchService;
+    private final ControlLongPollService controlLongPollService;
+    private final AuthTokenCache authTokenCache;
+
+    @GetMapping("/relay-publishing")
+    public RelayPublishStatsResponse getRelayPublishingStats() throws IOException {
+        adminAuthorizationService.requireAdmin(authContext.getAccountId());
+        return relayStateService.getStats();
+    }
+
+    @GetMapping("/power-ingest")
+    public PowerIngestStatsResponse getPowerIngestStats() throws IOException {
+        adminAuthorizationService.requireAdmin(authContext.getAccountId());
+        return powerReadingIngestService.getStats();
+    }
+
+    @GetMapping("/mqtt-inbound")
+    public MqttInboundStatsResponse getMqttInboundStats() throws IOException {
+        adminAuthorizationService.requireAdmin(authContext.getAccountId());
+        MqttInboundDispatcher dispatcher = mqttInboundDispatcher.getIfAvailable();
+        if (dispatcher == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "MQTT is disabled");
+        }
+        return dispatcher.getStats();
+    }
+
+    @GetMapping("/heat-pump-dispatch")
+    public HeatPumpDispatchStatsResponse getHeatPumpDispatchStats() throws IOException {
+        adminAuthorizationService.requireAdmin(authContext.getAccountId());
+        return acCommandDispatchService.getStats();
+    }
+
+    @GetMapping("/control-long-poll")
+    public ControlLongPollStatsResponse getControlLongPollStats() throws IOException {
+        adminAuthorizationService.requireAdmin(authContext.getAccountId());
+        return controlLongPollService.getStats();
+    }
+
+    @GetMapping("/auth-token-cache")
+    public AuthTokenCacheStatsResponse getAuthTokenCacheStats() throws IOException {
+        adminAuthorizationService.requireAdmin(authContext.getAccountId());
+        return authTokenCache.getStats();
+    }
+
+}
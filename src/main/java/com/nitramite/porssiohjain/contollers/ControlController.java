@@ -15,12 +15,16 @@ import com.nitramite.porssiohjain.auth.AuthContext;
 import com.nitramite.porssiohjain.auth.RequireAuth;
 import com.nitramite.porssiohjain.entity.ControlDeviceEntity;
 import com.nitramite.porssiohjain.entity.ControlEntity;
+import com.nitramite.porssiohjain.services.ControlLongPollService;
 import com.nitramite.porssiohjain.services.ControlService;
 import com.nitramite.porssiohjain.services.models.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -32,22 +36,49 @@ import java.util.Map;
 public class ControlController {
 
     private final ControlService controlService;
+    private final ControlLongPollService controlLongPollService;
     private final AuthContext authContext;
 
     @GetMapping("/{deviceUuid}")
     public ResponseEntity<Map<Integer, Integer>> controlsForDevice(
-            @PathVariable String deviceUuid
+            @PathVariable String deviceUuid,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
+        DevicePollResponse<Map<Integer, Integer>> response = controlService.getControlsForDevice(deviceUuid, ifNoneMatch);
+        if (response.notModified()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(response.etag()).build();
+        }
         return ResponseEntity.ok()
+                .eTag(response.etag())
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(controlService.getControlsForDevice(deviceUuid));
+                .body(response.body());
+    }
+
+    /**
+     * Same answer as {@link #controlsForDevice}, but a request whose ETag still matches
+     * waits until the channel map changes or the timeout passes (304).
+     */
+    @GetMapping("/{deviceUuid}/wait")
+    public DeferredResult<ResponseEntity<Map<Integer, Integer>>> waitForControls(
+            @PathVariable String deviceUuid,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestParam(required = false) Integer timeoutSeconds
+    ) {
+        return controlLongPollService.await(deviceUuid, ifNoneMatch, timeoutSeconds);
     }
 
     @GetMapping("/{deviceUuid}/timetable")
-    public TimeTableListResponse timeTableForDevice(
-            @PathVariable String deviceUuid
+    public ResponseEntity<TimeTableListResponse> timeTableForDevice(
+            @PathVariable String deviceUuid,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
-        return controlService.getTimetableForDevice(deviceUuid);
+        DevicePollResponse<TimeTableListResponse> response = controlService.getTimetableForDevice(deviceUuid, ifNoneMatch);
+        if (response.notModified()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(response.etag()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(response.etag())
+                .body(response.body());
     }
 
     @RequireAuth
@@ -95,6 +95,23 @@ public class ControlsController {
         return controlService.getControl(accountId, controlId);
     }
 
+    @PutMapping("/{controlId}/schedule-constraints")
+    public ControlResponse updateScheduleConstraints(
+            @PathVariable Long controlId,
+            @RequestBody UpdateScheduleConstraintsRequest request
+    ) {
+        Long accountId = authContext.getAccountId();
+        controlService.updateScheduleConstraints(
+                accountId,
+                controlId,
+                request.getMinRunMinutes(),
+                request.getMaxOffGapMinutes(),
+                request.getRollingDailyWindow()
+        );
+        controlSchedulerService.generateForControl(controlId);
+        return controlService.getControl(accountId, controlId);
+    }
+
     @GetMapping("/{controlId}/chart")
     public ControlChartResponse getControlChart(
             @PathVariable Long controlId
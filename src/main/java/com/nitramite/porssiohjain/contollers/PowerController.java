@@ -11,7 +11,7 @@
 
 package com.nitramite.porssiohjain.contollers;
 
-import com.nitramite.porssiohjain.services.PowerLimitService;
+import com.nitramite.porssiohjain.services.PowerReadingIngestService;
 import com.nitramite.porssiohjain.services.models.CurrentKwRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
@@ -21,14 +21,14 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class PowerController {
 
-    private final PowerLimitService powerLimitService;
+    private final PowerReadingIngestService powerReadingIngestService;
 
     @PostMapping("/{deviceUuid}")
     public void updateCurrentKw(
             @PathVariable String deviceUuid,
             @RequestBody CurrentKwRequest request
     ) {
-        powerLimitService.updateCurrentKw(
+        powerReadingIngestService.accept(
                 deviceUuid, request
         );
     }
@@ -27,6 +27,8 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @RestController
@@ -67,9 +69,14 @@ public class ProductionSourcesController {
     @GetMapping("/{sourceId}/history")
     public List<ProductionHistoryResponse> getHistory(
             @PathVariable Long sourceId,
-            @RequestParam(defaultValue = "24") int hours
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(defaultValue = "15") int resolution
     ) {
-        return productionSourceService.getProductionHistory(authContext.getAccountId(), sourceId, hours);
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(hours, ChronoUnit.HOURS);
+        return productionSourceService.getProductionHistory(authContext.getAccountId(), sourceId, start, end, resolution);
     }
 
     @PutMapping("/{sourceId}")
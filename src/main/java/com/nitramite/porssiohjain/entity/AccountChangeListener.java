@@ -0,0 +1,72 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.entity;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts changes per account so that authenticated tokens cached against an older
+ * version (blocked flag, demo flag, deletion) are validated again. Like
+ * {@link ControlInputChangeListener} the version moves on flush and again after the
+ * transaction completes.
+ */
+public class AccountChangeListener {
+
+    private static final AtomicLong CHANGES = new AtomicLong();
+    private static final Map<Long, Long> ACCOUNT_VERSIONS = new ConcurrentHashMap<>();
+
+    public static long version(Long accountId) {
+        return accountId == null ? 0L : ACCOUNT_VERSIONS.getOrDefault(accountId, 0L);
+    }
+
+    /**
+     * Number of account changes seen so far, for callers that do not yet know which
+     * account they are about to load.
+     */
+    public static long changes() {
+        return CHANGES.get();
+    }
+
+    public static void changed(Long accountId) {
+        if (accountId == null) {
+            return;
+        }
+        bump(accountId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bump(accountId);
+                }
+            });
+        }
+    }
+
+    @PostUpdate
+    @PostRemove
+    void onChange(AccountEntity account) {
+        changed(account.getId());
+    }
+
+    private static void bump(Long accountId) {
+        ACCOUNT_VERSIONS.merge(accountId, 1L, Long::sum);
+        CHANGES.incrementAndGet();
+    }
+
+}
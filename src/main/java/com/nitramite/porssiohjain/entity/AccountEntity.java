@@ -21,6 +21,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "account")
+@EntityListeners(AccountChangeListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
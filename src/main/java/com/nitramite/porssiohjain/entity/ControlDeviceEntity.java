@@ -17,6 +17,7 @@ import lombok.*;
 import java.math.BigDecimal;
 
 @Entity
+@EntityListeners(ControlInputChangeListener.class)
 @Table(name = "control_device",
         uniqueConstraints = @UniqueConstraint(
                 columnNames = {"control_id", "device_id", "device_channel"}
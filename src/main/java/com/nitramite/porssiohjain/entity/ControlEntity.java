@@ -20,6 +20,7 @@ import java.time.Instant;
 import java.util.Set;
 
 @Entity
+@EntityListeners(ControlInputChangeListener.class)
 @Table(name = "control")
 @Getter
 @Setter
@@ -64,6 +65,15 @@ public class ControlEntity {
     @Column(name = "always_on_below_min_price", nullable = false)
     private boolean alwaysOnBelowMinPrice;
 
+    @Column(name = "min_run_minutes")
+    private Integer minRunMinutes;
+
+    @Column(name = "max_off_gap_minutes")
+    private Integer maxOffGapMinutes;
+
+    @Column(name = "rolling_daily_window", nullable = false)
+    private boolean rollingDailyWindow;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "energy_contract_id")
     private ElectricityContractEntity energyContract;
@@ -76,6 +86,9 @@ public class ControlEntity {
     @JoinColumn(name = "site_id", nullable = false)
     private SiteEntity site;
 
+    @Column(name = "schedule_fingerprint", length = 64, insertable = false, updatable = false)
+    private String scheduleFingerprint;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
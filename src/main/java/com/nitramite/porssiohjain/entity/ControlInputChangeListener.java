@@ -0,0 +1,85 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.entity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts changes to entities that feed device control evaluation, per device for the
+ * device and its rule mappings and globally for shared controls and rules. Poll results
+ * cached against an older version are evaluated again. The version moves both when the
+ * change is flushed and after the transaction completes, so a result computed from the
+ * old rows in between is not kept either.
+ */
+public class ControlInputChangeListener {
+
+    private static final AtomicLong GLOBAL_VERSION = new AtomicLong();
+    private static final Map<Long, Long> DEVICE_VERSIONS = new ConcurrentHashMap<>();
+
+    public static long version(Long deviceId) {
+        long deviceVersion = deviceId == null ? 0L : DEVICE_VERSIONS.getOrDefault(deviceId, 0L);
+        return GLOBAL_VERSION.get() + deviceVersion;
+    }
+
+    public static void changed(Long deviceId) {
+        bump(deviceId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bump(deviceId);
+                }
+            });
+        }
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void onChange(Object entity) {
+        changed(deviceId(entity));
+    }
+
+    private static void bump(Long deviceId) {
+        if (deviceId == null) {
+            GLOBAL_VERSION.incrementAndGet();
+        } else {
+            DEVICE_VERSIONS.merge(deviceId, 1L, Long::sum);
+        }
+    }
+
+    private static Long deviceId(Object entity) {
+        DeviceEntity device = null;
+        if (entity instanceof DeviceEntity d) {
+            device = d;
+        } else if (entity instanceof ControlDeviceEntity cd) {
+            device = cd.getDevice();
+        } else if (entity instanceof PowerLimitDeviceEntity pld) {
+            device = pld.getDevice();
+        } else if (entity instanceof ProductionSourceDeviceEntity psd) {
+            device = psd.getDevice();
+        } else if (entity instanceof WeatherControlDeviceEntity wcd) {
+            device = wcd.getDevice();
+        }
+        return device == null ? null : device.getId();
+    }
+
+}
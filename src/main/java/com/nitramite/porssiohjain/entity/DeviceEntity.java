@@ -26,6 +26,7 @@ import java.util.Base64;
 import java.util.UUID;
 
 @Entity
+@EntityListeners(ControlInputChangeListener.class)
 @Table(name = "device")
 @Getter
 @Setter
@@ -0,0 +1,50 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(
+        name = "device_relay_state",
+        uniqueConstraints = @UniqueConstraint(
+                columnNames = {"device_id", "device_channel"}
+        )
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DeviceRelayStateEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "device_id", nullable = false)
+    private DeviceEntity device;
+
+    @Column(name = "device_channel", nullable = false)
+    private Integer deviceChannel;
+
+    @Column(name = "relay_on", nullable = false)
+    private boolean relayOn;
+
+    @Column(name = "published_at", nullable = false)
+    private Instant publishedAt;
+}
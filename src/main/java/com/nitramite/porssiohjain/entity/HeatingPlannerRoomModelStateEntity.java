@@ -0,0 +1,82 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Recursive least squares state of a room's cooling model. Coefficients and covariance
+ * are updated one cooling interval at a time, the last folded measurement is the cursor
+ * for the next update.
+ */
+@Entity
+@Table(name = "heating_planner_room_model_state", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_heating_planner_room_model_state_room", columnNames = {"room_id"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HeatingPlannerRoomModelStateEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @OneToOne(optional = false)
+    @JoinColumn(name = "room_id", nullable = false)
+    private HeatingPlannerRoomEntity room;
+
+    @Column(name = "sensor_device_id", nullable = false)
+    private Long sensorDeviceId;
+
+    @Column(name = "measurement_key", nullable = false, length = 128)
+    private String measurementKey;
+
+    @Column(name = "outdoor_coefficient", nullable = false)
+    private double outdoorCoefficient;
+
+    @Column(name = "wind_coefficient", nullable = false)
+    private double windCoefficient;
+
+    @Column(name = "covariance_outdoor", nullable = false)
+    private double covarianceOutdoor;
+
+    @Column(name = "covariance_cross", nullable = false)
+    private double covarianceCross;
+
+    @Column(name = "covariance_wind", nullable = false)
+    private double covarianceWind;
+
+    @Column(name = "weight_sum", nullable = false)
+    private double weightSum;
+
+    @Column(name = "mean_squared_error", nullable = false)
+    private double meanSquaredError;
+
+    @Column(name = "sample_count", nullable = false)
+    private int sampleCount;
+
+    @Column(name = "last_measured_at")
+    private Instant lastMeasuredAt;
+
+    @Column(name = "last_value", precision = 10, scale = 3)
+    private BigDecimal lastValue;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -19,6 +19,7 @@ import lombok.*;
 import java.time.Instant;
 
 @Entity
+@EntityListeners(ControlInputChangeListener.class)
 @Table(name = "load_shedding_link",
         uniqueConstraints = @UniqueConstraint(
                 columnNames = {"account_id", "source_node_id", "target_node_id", "trigger_state", "target_action"}
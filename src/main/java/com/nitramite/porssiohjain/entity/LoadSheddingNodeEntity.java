@@ -17,6 +17,7 @@ import lombok.*;
 import java.time.Instant;
 
 @Entity
+@EntityListeners(ControlInputChangeListener.class)
 @Table(name = "load_shedding_node",
         uniqueConstraints = @UniqueConstraint(
                 columnNames = {"account_id", "device_id", "device_channel"}
@@ -19,7 +19,9 @@ import java.time.Instant;
 
 @Data
 @Entity
-@Table(name = "nordpool")
+@Table(name = "nordpool", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_nordpool_market_delivery", columnNames = {"market_index_name", "delivery_start", "delivery_end"})
+})
 public class NordpoolEntity {
 
     @Id
@@ -15,6 +15,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
+@EntityListeners(ControlInputChangeListener.class)
 @Table(
         name = "power_limit_device",
         uniqueConstraints = @UniqueConstraint(
@@ -0,0 +1,55 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Entity
+@Table(
+        name = "power_limit_history_rollup",
+        uniqueConstraints = @UniqueConstraint(
+                columnNames = {"power_limit_id", "resolution_minutes", "bucket_start"}
+        ),
+        indexes = @Index(name = "idx_plhr_bucket_start", columnList = "bucket_start")
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PowerLimitHistoryRollupEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "power_limit_id", nullable = false)
+    private PowerLimitEntity powerLimit;
+
+    @Column(name = "resolution_minutes", nullable = false)
+    private Integer resolutionMinutes;
+
+    @Column(name = "bucket_start", nullable = false)
+    private Instant bucketStart;
+
+    @Column(name = "kilowatts", nullable = false, precision = 14, scale = 2)
+    private BigDecimal kilowatts;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -18,7 +18,9 @@ import java.math.BigDecimal;
 import java.time.Instant;
 
 @Entity
-@Table(name = "price_prediction")
+@Table(name = "price_prediction", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_price_prediction_timestamp", columnNames = {"timestamp"})
+})
 @Getter
 @Setter
 @Builder
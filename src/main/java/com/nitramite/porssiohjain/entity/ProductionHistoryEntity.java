@@ -21,7 +21,7 @@ import java.time.Instant;
 @Table(
         name = "production_history",
         indexes = {
-                @Index(name = "idx_ph_production_source", columnList = "production_source_id"),
+                @Index(name = "idx_ph_production_source_created_at", columnList = "production_source_id, created_at"),
                 @Index(name = "idx_ph_created_at", columnList = "created_at")
         }
 )
@@ -20,6 +20,7 @@ import java.math.BigDecimal;
 import java.time.Instant;
 
 @Entity
+@EntityListeners(ControlInputChangeListener.class)
 @Table(
         name = "production_source_device",
         uniqueConstraints = @UniqueConstraint(
@@ -20,6 +20,7 @@ import lombok.*;
 import java.math.BigDecimal;
 
 @Entity
+@EntityListeners(ControlInputChangeListener.class)
 @Table(name = "weather_control_device",
         uniqueConstraints = @UniqueConstraint(
                 columnNames = {"weather_control_id", "device_id", "device_channel"}
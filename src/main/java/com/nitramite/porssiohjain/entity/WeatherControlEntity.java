@@ -18,6 +18,7 @@ import java.time.Instant;
 import java.util.Set;
 
 @Entity
+@EntityListeners(ControlInputChangeListener.class)
 @Table(name = "weather_control")
 @Getter
 @Setter
@@ -14,7 +14,10 @@ package com.nitramite.porssiohjain.entity.repository;
 import com.nitramite.porssiohjain.entity.ControlDeviceEntity;
 import com.nitramite.porssiohjain.entity.DeviceEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ControlDeviceRepository extends JpaRepository<ControlDeviceEntity, Long> {
@@ -23,4 +26,14 @@ public interface ControlDeviceRepository extends JpaRepository<ControlDeviceEnti
 
     List<ControlDeviceEntity> findByDevice(DeviceEntity device);
 
+    @Query("""
+            select cd
+            from ControlDeviceEntity cd
+            join fetch cd.control c
+            join fetch c.account
+            where cd.device.id in :deviceIds
+            order by cd.id asc
+            """)
+    List<ControlDeviceEntity> findWithControlByDeviceIdIn(@Param("deviceIds") Collection<Long> deviceIds);
+
 }
\ No newline at end of file
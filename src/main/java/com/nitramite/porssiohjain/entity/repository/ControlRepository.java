@@ -13,7 +13,9 @@ package com.nitramite.porssiohjain.entity.repository;
 
 import com.nitramite.porssiohjain.entity.AccountEntity;
 import com.nitramite.porssiohjain.entity.ControlEntity;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -30,4 +32,8 @@ public interface ControlRepository extends JpaRepository<ControlEntity, Long> {
 
     long countByAccountId(Long accountId);
 
+    @EntityGraph(attributePaths = {"account", "transferContract"})
+    @Query("SELECT c FROM ControlEntity c")
+    List<ControlEntity> findAllForScheduling();
+
 }
@@ -24,6 +24,7 @@ import org.springframework.stereotype.Repository;
 
 import jakarta.transaction.Transactional;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -50,6 +51,10 @@ public interface ControlTableRepository extends JpaRepository<ControlTableEntity
             Long controlId, Status status, Instant startTime
     );
 
+    Optional<ControlTableEntity> findFirstByControlIdAndStatusAndStartTimeAfterOrderByStartTimeAsc(
+            Long controlId, Status status, Instant startTime
+    );
+
     List<ControlTableEntity> findByControlIdAndStatusAndStartTimeGreaterThanEqualOrderByStartTimeAsc(
             Long controlId, Status status, Instant startTime
     );
@@ -88,6 +93,23 @@ public interface ControlTableRepository extends JpaRepository<ControlTableEntity
             @Param("time") Instant time
     );
 
+    @Query("""
+            select ct
+            from ControlTableEntity ct
+            where ct.control.id in :controlIds
+              and ct.status = :status
+              and ct.startTime > :after
+              and ct.startTime <= :time
+              and ct.endTime >= :time
+            order by ct.startTime asc
+            """)
+    List<ControlTableEntity> findActiveAtForControls(
+            @Param("controlIds") Collection<Long> controlIds,
+            @Param("status") Status status,
+            @Param("after") Instant after,
+            @Param("time") Instant time
+    );
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("""
             select ct
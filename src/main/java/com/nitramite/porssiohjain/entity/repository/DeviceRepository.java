@@ -15,10 +15,12 @@ import com.nitramite.porssiohjain.entity.AccountEntity;
 import com.nitramite.porssiohjain.entity.DeviceEntity;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -71,4 +73,20 @@ public interface DeviceRepository extends JpaRepository<DeviceEntity, Long> {
 
     List<DeviceEntity> findByMqttOnlineTrue();
 
+    @EntityGraph(attributePaths = "account")
+    List<DeviceEntity> findWithAccountByMqttOnlineTrue();
+
+    @Modifying
+    @Query("""
+            update DeviceEntity d
+            set d.lastCommunication = :now,
+                d.apiOnline = true,
+                d.updatedAt = :now
+            where d.id in :deviceIds
+            """)
+    int markApiHeartbeat(
+            @Param("deviceIds") Collection<Long> deviceIds,
+            @Param("now") Instant now
+    );
+
 }
@@ -0,0 +1,48 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.entity.repository;
+
+import com.nitramite.porssiohjain.entity.HeatingPlannerRoomModelStateEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface HeatingPlannerRoomModelStateRepository extends JpaRepository<HeatingPlannerRoomModelStateEntity, Long> {
+
+    /**
+     * Creates the empty state of a room unless it already exists, so concurrent first runs
+     * for the same room do not both insert it.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+                INSERT INTO heating_planner_room_model_state
+                    (room_id, sensor_device_id, measurement_key, covariance_outdoor, covariance_wind, updated_at)
+                VALUES (:roomId, :sensorDeviceId, :measurementKey, :initialCovariance, :initialCovariance, :updatedAt)
+                ON CONFLICT (room_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(
+            @Param("roomId") Long roomId,
+            @Param("sensorDeviceId") Long sensorDeviceId,
+            @Param("measurementKey") String measurementKey,
+            @Param("initialCovariance") double initialCovariance,
+            @Param("updatedAt") Instant updatedAt
+    );
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<HeatingPlannerRoomModelStateEntity> findWithLockByRoomId(Long roomId);
+}
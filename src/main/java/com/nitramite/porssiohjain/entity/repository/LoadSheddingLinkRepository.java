@@ -13,8 +13,10 @@ package com.nitramite.porssiohjain.entity.repository;
 
 import com.nitramite.porssiohjain.entity.LoadSheddingLinkEntity;
 import com.nitramite.porssiohjain.entity.LoadSheddingNodeEntity;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +24,9 @@ public interface LoadSheddingLinkRepository extends JpaRepository<LoadSheddingLi
 
     List<LoadSheddingLinkEntity> findByAccountIdOrderByIdAsc(Long accountId);
 
+    @EntityGraph(attributePaths = {"account", "sourceNode", "targetNode"})
+    List<LoadSheddingLinkEntity> findByAccountIdInOrderByIdAsc(Collection<Long> accountIds);
+
     Optional<LoadSheddingLinkEntity> findByIdAndAccountId(Long id, Long accountId);
 
     List<LoadSheddingLinkEntity> findBySourceNode(LoadSheddingNodeEntity sourceNode);
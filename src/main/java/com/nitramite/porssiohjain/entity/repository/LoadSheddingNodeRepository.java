@@ -13,8 +13,10 @@ package com.nitramite.porssiohjain.entity.repository;
 
 import com.nitramite.porssiohjain.entity.DeviceEntity;
 import com.nitramite.porssiohjain.entity.LoadSheddingNodeEntity;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +24,9 @@ public interface LoadSheddingNodeRepository extends JpaRepository<LoadSheddingNo
 
     List<LoadSheddingNodeEntity> findByAccountIdOrderByIdAsc(Long accountId);
 
+    @EntityGraph(attributePaths = {"account", "device"})
+    List<LoadSheddingNodeEntity> findWithDeviceByAccountIdInOrderByIdAsc(Collection<Long> accountIds);
+
     Optional<LoadSheddingNodeEntity> findByIdAndAccountId(Long id, Long accountId);
 
     Optional<LoadSheddingNodeEntity> findByAccountIdAndDeviceIdAndDeviceChannel(Long accountId, Long deviceId, Integer deviceChannel);
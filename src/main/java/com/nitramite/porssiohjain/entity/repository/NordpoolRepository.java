@@ -35,6 +35,11 @@ public interface NordpoolRepository extends JpaRepository<NordpoolEntity, Long>
             Instant deliveryEnd
     );
 
+    List<NordpoolEntity> findByMarketIndexNameAndDeliveryStartGreaterThanEqualOrderByDeliveryStartAsc(
+            String marketIndexName,
+            Instant deliveryStart
+    );
+
     boolean existsByMarketIndexNameAndDeliveryStartBetween(String marketIndexName, Instant start, Instant end);
 
     void deleteByDeliveryStartBefore(Instant cutoff);
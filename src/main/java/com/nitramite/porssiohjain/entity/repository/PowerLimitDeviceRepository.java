@@ -15,7 +15,9 @@ import com.nitramite.porssiohjain.entity.DeviceEntity;
 import com.nitramite.porssiohjain.entity.PowerLimitDeviceEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface PowerLimitDeviceRepository extends JpaRepository<PowerLimitDeviceEntity, Long> {
@@ -29,4 +31,14 @@ public interface PowerLimitDeviceRepository extends JpaRepository<PowerLimitDevi
 
     List<PowerLimitDeviceEntity> findByDevice(DeviceEntity device);
 
+    @Query("""
+            select d
+            from PowerLimitDeviceEntity d
+            join fetch d.powerLimit pl
+            join fetch pl.account
+            where d.device.id in :deviceIds
+            order by d.id asc
+            """)
+    List<PowerLimitDeviceEntity> findWithPowerLimitByDeviceIdIn(@Param("deviceIds") Collection<Long> deviceIds);
+
 }
\ No newline at end of file
@@ -11,29 +11,29 @@
 
 package com.nitramite.porssiohjain.entity.repository;
 
-import com.nitramite.porssiohjain.entity.PowerLimitEntity;
 import com.nitramite.porssiohjain.entity.PowerLimitHistoryEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 public interface PowerLimitHistoryRepository extends JpaRepository<PowerLimitHistoryEntity, Long> {
 
     @Query("""
                 SELECT h
                 FROM PowerLimitHistoryEntity h
-                WHERE h.powerLimit = :powerLimit
+                WHERE h.powerLimit.id IN :powerLimitIds
                   AND h.createdAt >= :from
                   AND h.createdAt < :to
                 ORDER BY h.createdAt DESC
             """)
-    Optional<PowerLimitHistoryEntity> findForMinute(
-            @Param("powerLimit") PowerLimitEntity powerLimit,
+    List<PowerLimitHistoryEntity> findForMinutes(
+            @Param("powerLimitIds") Collection<Long> powerLimitIds,
             @Param("from") Instant from,
             @Param("to") Instant to
     );
@@ -57,6 +57,7 @@ public interface PowerLimitHistoryRepository extends JpaRepository<PowerLimitHis
                   AND h.powerLimit.account.id = :accountId
                   AND h.createdAt >= :start
                   AND h.createdAt < :end
+                ORDER BY h.createdAt ASC
             """)
     List<PowerLimitHistoryEntity> findByPowerLimitAndCreatedAtBetween(
             @Param("accountId") Long accountId,
@@ -65,6 +66,20 @@ public interface PowerLimitHistoryRepository extends JpaRepository<PowerLimitHis
             @Param("end") Instant end
     );
 
+    @Query("""
+                SELECT h.powerLimit.id AS powerLimitId, SUM(h.kilowatts) AS kilowatts
+                FROM PowerLimitHistoryEntity h
+                WHERE h.powerLimit.id IN :powerLimitIds
+                  AND h.createdAt >= :start
+                  AND h.createdAt < :end
+                GROUP BY h.powerLimit.id
+            """)
+    List<PowerLimitIntervalSum> sumByPowerLimitIdsAndCreatedAtBetween(
+            @Param("powerLimitIds") Collection<Long> powerLimitIds,
+            @Param("start") Instant start,
+            @Param("end") Instant end
+    );
+
     @Modifying
     @Query("""
                 DELETE FROM PowerLimitHistoryEntity h
@@ -72,4 +87,12 @@ public interface PowerLimitHistoryRepository extends JpaRepository<PowerLimitHis
             """)
     int deleteOlderThan(@Param("cutoff") Instant cutoff);
 
+    interface PowerLimitIntervalSum {
+
+        Long getPowerLimitId();
+
+        BigDecimal getKilowatts();
+
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.entity.repository;
+
+import com.nitramite.porssiohjain.entity.PowerLimitHistoryRollupEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface PowerLimitHistoryRollupRepository extends JpaRepository<PowerLimitHistoryRollupEntity, Long> {
+
+    /**
+     * Adds to a bucket, creating it when missing, in one statement so concurrent writers of
+     * a new bucket can not both try to insert it.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+                INSERT INTO power_limit_history_rollup (power_limit_id, resolution_minutes, bucket_start, kilowatts, updated_at)
+                VALUES (:powerLimitId, :resolutionMinutes, :bucketStart, :kilowatts, :updatedAt)
+                ON CONFLICT (power_limit_id, resolution_minutes, bucket_start)
+                DO UPDATE SET kilowatts = power_limit_history_rollup.kilowatts + EXCLUDED.kilowatts,
+                              updated_at = EXCLUDED.updated_at
+            """, nativeQuery = true)
+    int upsertKilowatts(
+            @Param("powerLimitId") Long powerLimitId,
+            @Param("resolutionMinutes") int resolutionMinutes,
+            @Param("bucketStart") Instant bucketStart,
+            @Param("kilowatts") BigDecimal kilowatts,
+            @Param("updatedAt") Instant updatedAt
+    );
+
+    @Query("""
+                SELECT r
+                FROM PowerLimitHistoryRollupEntity r
+                WHERE r.powerLimit.id = :powerLimitId
+                  AND r.resolutionMinutes = :resolutionMinutes
+                  AND r.bucketStart >= :start
+                  AND r.bucketStart < :end
+                ORDER BY r.bucketStart ASC
+            """)
+    List<PowerLimitHistoryRollupEntity> findBuckets(
+            @Param("powerLimitId") Long powerLimitId,
+            @Param("resolutionMinutes") int resolutionMinutes,
+            @Param("start") Instant start,
+            @Param("end") Instant end
+    );
+
+    @Query("""
+                SELECT r.powerLimit.id AS powerLimitId, SUM(r.kilowatts) AS kilowatts
+                FROM PowerLimitHistoryRollupEntity r
+                WHERE r.powerLimit.id IN :powerLimitIds
+                  AND r.resolutionMinutes = :resolutionMinutes
+                  AND r.bucketStart >= :start
+                  AND r.bucketStart < :end
+                GROUP BY r.powerLimit.id
+            """)
+    List<PowerLimitHistoryRepository.PowerLimitIntervalSum> sumByPowerLimitIdsAndBucketStartBetween(
+            @Param("powerLimitIds") Collection<Long> powerLimitIds,
+            @Param("resolutionMinutes") int resolutionMinutes,
+            @Param("start") Instant start,
+            @Param("end") Instant end
+    );
+
+    @Modifying
+    @Query("""
+                DELETE FROM PowerLimitHistoryRollupEntity r
+                WHERE r.powerLimit.id = :powerLimitId
+            """)
+    int deleteByPowerLimitId(@Param("powerLimitId") Long powerLimitId);
+
+    @Modifying
+    @Query("""
+                DELETE FROM PowerLimitHistoryRollupEntity r
+                WHERE r.bucketStart < :cutoff
+            """)
+    int deleteOlderThan(@Param("cutoff") Instant cutoff);
+
+}
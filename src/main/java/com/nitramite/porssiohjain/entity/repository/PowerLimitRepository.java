@@ -12,8 +12,10 @@
 package com.nitramite.porssiohjain.entity.repository;
 
 import com.nitramite.porssiohjain.entity.PowerLimitEntity;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -28,4 +30,9 @@ public interface PowerLimitRepository extends JpaRepository<PowerLimitEntity, Lo
 
     Optional<PowerLimitEntity> findByUuid(UUID uuid);
 
+    @EntityGraph(attributePaths = "account")
+    List<PowerLimitEntity> findByUuidIn(Collection<UUID> uuids);
+
+    boolean existsByUuid(UUID uuid);
+
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ package com.nitramite.porssiohjain.entity.repository;
 import com.nitramite.porssiohjain.entity.PowerplantElementEntity;
 import com.nitramite.porssiohjain.entity.PowerplantRuleEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -26,6 +27,15 @@ public interface PowerplantRuleRepository extends JpaRepository<PowerplantRuleEn
 
     List<PowerplantRuleEntity> findByEnabledTrueOrderByIdAsc();
 
+    @Query("""
+            SELECT r FROM PowerplantRuleEntity r
+            JOIN FETCH r.sourceElement s
+            LEFT JOIN FETCH s.device
+            WHERE r.enabled = true
+            ORDER BY r.id
+            """)
+    List<PowerplantRuleEntity> findEnabledWithSource();
+
     List<PowerplantRuleEntity> findBySourceElement(PowerplantElementEntity sourceElement);
 
     List<PowerplantRuleEntity> findByTargetElement(PowerplantElementEntity targetElement);
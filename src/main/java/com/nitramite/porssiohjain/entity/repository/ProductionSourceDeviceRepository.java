@@ -14,8 +14,11 @@ package com.nitramite.porssiohjain.entity.repository;
 import com.nitramite.porssiohjain.entity.DeviceEntity;
 import com.nitramite.porssiohjain.entity.ProductionSourceDeviceEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -29,4 +32,13 @@ public interface ProductionSourceDeviceRepository extends JpaRepository<Producti
 
     List<ProductionSourceDeviceEntity> findByDevice(DeviceEntity device);
 
+    @Query("""
+            select psd
+            from ProductionSourceDeviceEntity psd
+            join fetch psd.productionSource
+            where psd.device.id in :deviceIds
+            order by psd.id asc
+            """)
+    List<ProductionSourceDeviceEntity> findWithProductionSourceByDeviceIdIn(@Param("deviceIds") Collection<Long> deviceIds);
+
 }
\ No newline at end of file
@@ -14,8 +14,11 @@ package com.nitramite.porssiohjain.entity.repository;
 import com.nitramite.porssiohjain.entity.SiteEntity;
 import com.nitramite.porssiohjain.entity.SiteWeatherEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -37,6 +40,40 @@ public interface SiteWeatherRepository extends JpaRepository<SiteWeatherEntity,
             Instant forecastTime
     );
 
+    @Query("""
+            select sw
+            from SiteWeatherEntity sw
+            where sw.site.id in :siteIds
+              and sw.forecastTime = (
+                  select max(latest.forecastTime)
+                  from SiteWeatherEntity latest
+                  where latest.site = sw.site
+                    and latest.forecastTime <= :time
+              )
+            order by sw.id asc
+            """)
+    List<SiteWeatherEntity> findLatestAtOrBeforeForSites(
+            @Param("siteIds") Collection<Long> siteIds,
+            @Param("time") Instant time
+    );
+
+    @Query("""
+            select sw
+            from SiteWeatherEntity sw
+            where sw.site.id in :siteIds
+              and sw.forecastTime = (
+                  select min(earliest.forecastTime)
+                  from SiteWeatherEntity earliest
+                  where earliest.site = sw.site
+                    and earliest.forecastTime >= :time
+              )
+            order by sw.id asc
+            """)
+    List<SiteWeatherEntity> findEarliestAtOrAfterForSites(
+            @Param("siteIds") Collection<Long> siteIds,
+            @Param("time") Instant time
+    );
+
     boolean existsBySiteAndForecastTimeBetween(SiteEntity site, Instant start, Instant end);
 
     long deleteByForecastTimeBefore(Instant cutoff);
@@ -14,7 +14,10 @@ package com.nitramite.porssiohjain.entity.repository;
 import com.nitramite.porssiohjain.entity.DeviceEntity;
 import com.nitramite.porssiohjain.entity.WeatherControlDeviceEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface WeatherControlDeviceRepository extends JpaRepository<WeatherControlDeviceEntity, Long> {
@@ -25,4 +28,14 @@ public interface WeatherControlDeviceRepository extends JpaRepository<WeatherCon
 
     List<WeatherControlDeviceEntity> findByDevice(DeviceEntity device);
 
+    @Query("""
+            select wcd
+            from WeatherControlDeviceEntity wcd
+            join fetch wcd.weatherControl wc
+            left join fetch wc.site
+            where wcd.device.id in :deviceIds
+            order by wcd.id asc
+            """)
+    List<WeatherControlDeviceEntity> findWithSiteByDeviceIdIn(@Param("deviceIds") Collection<Long> deviceIds);
+
 }
@@ -0,0 +1,36 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.entity.repository;
+
+import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementLatestEntity;
+import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface ZigbeeDeviceMeasurementLatestRepository extends JpaRepository<ZigbeeDeviceMeasurementLatestEntity, Long> {
+
+    Optional<ZigbeeDeviceMeasurementLatestEntity> findByDeviceIdAndMeasurementTypeAndMeasurementKey(
+            Long deviceId,
+            ZigbeeMeasurementType measurementType,
+            String measurementKey
+    );
+
+    @EntityGraph(attributePaths = "device")
+    List<ZigbeeDeviceMeasurementLatestEntity> findByAccountIdAndMeasuredAtGreaterThanEqualOrderByMeasuredAtDescIdDesc(
+            Long accountId,
+            Instant measuredAfter
+    );
+}
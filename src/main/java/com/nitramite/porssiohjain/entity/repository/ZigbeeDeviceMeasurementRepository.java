@@ -15,24 +15,21 @@ import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementEntity;
 import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.List;
-import java.util.Optional;
 
+/**
+ * History rows live in daily {@code measured_at} partitions, every query bounds
+ * {@code measuredAt} so Postgres only scans the partitions it needs.
+ */
 public interface ZigbeeDeviceMeasurementRepository extends JpaRepository<ZigbeeDeviceMeasurementEntity, Long> {
 
-    Optional<ZigbeeDeviceMeasurementEntity> findFirstByDeviceIdAndMeasurementTypeAndMeasurementKeyOrderByMeasuredAtDescIdDesc(
-            Long deviceId,
-            ZigbeeMeasurementType measurementType,
-            String measurementKey
-    );
-
-    List<ZigbeeDeviceMeasurementEntity> findTop1000ByDeviceIdAndMeasurementTypeAndMeasurementKeyAndMeasuredAtBetweenOrderByMeasuredAtAscIdAsc(
-            Long deviceId, ZigbeeMeasurementType measurementType, String measurementKey, Instant from, Instant to);
+    List<ZigbeeDeviceMeasurementEntity> findByDeviceIdAndMeasurementTypeAndMeasurementKeyAndMeasuredAtAfterAndMeasuredAtLessThanEqualOrderByMeasuredAtAscIdAsc(
+            Long deviceId, ZigbeeMeasurementType measurementType, String measurementKey, Instant after, Instant to);
 
     @EntityGraph(attributePaths = "device")
     List<ZigbeeDeviceMeasurementEntity> findTop500ByAccountIdAndMeasuredAtAfterOrderByMeasuredAtDescIdDesc(
@@ -40,34 +37,55 @@ public interface ZigbeeDeviceMeasurementRepository extends JpaRepository<ZigbeeD
             Instant measuredAfter
     );
 
-    @EntityGraph(attributePaths = "device")
-    @Query("""
-            select m from ZigbeeDeviceMeasurementEntity m
-            where m.account.id = :accountId
-              and m.measuredAt >= :measuredAfter
-              and not exists (
-                  select newer.id from ZigbeeDeviceMeasurementEntity newer
-                  where newer.account.id = m.account.id
-                    and newer.zigbeeIeee = m.zigbeeIeee
-                    and newer.measurementType = m.measurementType
-                    and newer.measurementKey = m.measurementKey
-                    and (newer.measuredAt > m.measuredAt
-                         or (newer.measuredAt = m.measuredAt and newer.id > m.id))
-              )
-            order by m.measuredAt desc, m.id desc
-            """)
-    List<ZigbeeDeviceMeasurementEntity> findLatestDistinctMeasurements(Long accountId, Instant measuredAfter);
-
-    @EntityGraph(attributePaths = "device")
-    List<ZigbeeDeviceMeasurementEntity> findTop500ByAccountIdAndZigbeeIeeeAndMeasurementTypeAndMeasurementKeyOrderByMeasuredAtDescIdDesc(
-            Long accountId,
-            String zigbeeIeee,
-            ZigbeeMeasurementType measurementType,
-            String measurementKey
+    /**
+     * Lowest and highest value of every {@code bucketSeconds} wide bucket after {@code measuredAfter},
+     * newest first, so the history of a busy sensor stays bounded to two rows per bucket.
+     */
+    @Query(value = """
+            SELECT measured_at_millis AS measuredAtMillis,
+                   received_at_millis AS receivedAtMillis,
+                   "value" AS value,
+                   total_count AS totalCount
+            FROM (
+                SELECT (extract(epoch FROM measured_at) * 1000)::bigint AS measured_at_millis,
+                       (extract(epoch FROM received_at) * 1000)::bigint AS received_at_millis,
+                       "value",
+                       row_number() OVER (PARTITION BY bucket ORDER BY "value", measured_at, id) AS low_rank,
+                       row_number() OVER (PARTITION BY bucket ORDER BY "value" DESC, measured_at, id) AS high_rank,
+                       count(*) OVER () AS total_count
+                FROM (
+                    SELECT id, measured_at, received_at, "value",
+                           floor(extract(epoch FROM measured_at) / :bucketSeconds) AS bucket
+                    FROM zigbee_device_measurement
+                    WHERE account_id = :accountId
+                      AND zigbee_ieee = :zigbeeIeee
+                      AND measurement_type = :measurementType
+                      AND measurement_key = :measurementKey
+                      AND measured_at > :measuredAfter
+                ) bucketed
+            ) ranked
+            WHERE low_rank = 1 OR high_rank = 1
+            ORDER BY measured_at_millis DESC
+            """, nativeQuery = true)
+    List<HistoryPoint> findHistoryExtremes(
+            @Param("accountId") Long accountId,
+            @Param("zigbeeIeee") String zigbeeIeee,
+            @Param("measurementType") String measurementType,
+            @Param("measurementKey") String measurementKey,
+            @Param("measuredAfter") Instant measuredAfter,
+            @Param("bucketSeconds") long bucketSeconds
     );
 
-    @Modifying
-    @Transactional
-    @Query("delete from ZigbeeDeviceMeasurementEntity m where m.measuredAt < :cutoff")
-    int deleteOlderThan(Instant cutoff);
+    interface HistoryPoint {
+        long getMeasuredAtMillis();
+
+        long getReceivedAtMillis();
+
+        BigDecimal getValue();
+
+        /**
+         * Number of raw rows in the whole range, repeated on every point.
+         */
+        long getTotalCount();
+    }
 }
@@ -13,6 +13,7 @@ package com.nitramite.porssiohjain.entity.repository;
 
 import com.nitramite.porssiohjain.entity.ZigbeeGatewayDeviceEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -20,6 +21,15 @@ import java.util.UUID;
 
 public interface ZigbeeGatewayDeviceRepository extends JpaRepository<ZigbeeGatewayDeviceEntity, Long> {
     Optional<ZigbeeGatewayDeviceEntity> findByGatewayIdAndZigbeeIeee(UUID gatewayId, String zigbeeIeee);
+
+    @Query("""
+            select l from ZigbeeGatewayDeviceEntity l
+            join fetch l.account
+            join fetch l.device
+            where l.gatewayId = :gatewayId
+            """)
+    List<ZigbeeGatewayDeviceEntity> findByGatewayIdWithDevice(UUID gatewayId);
+
     Optional<ZigbeeGatewayDeviceEntity> findByDeviceId(Long deviceId);
     List<ZigbeeGatewayDeviceEntity> findByGatewayIdAndAccountId(UUID gatewayId, Long accountId);
 }
@@ -0,0 +1,227 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.mqtt;
+
+import com.nitramite.porssiohjain.services.models.MqttInboundStatsResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves inbound MQTT handling off the Paho callback thread. Messages are queued per
+ * device and each device queue is drained in order on a virtual thread, at most
+ * {@code mqtt.inbound.max-concurrency} devices at a time. An availability message that
+ * is still waiting is replaced by a newer one for the same device. When
+ * {@code mqtt.inbound.max-queued} messages are waiting the callback thread blocks,
+ * which pushes back on the broker instead of dropping messages.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "mqtt.enabled", havingValue = "true")
+public class MqttInboundDispatcher {
+
+    private static final String FACTORY_TOPIC_PREFIX = "factory/bootstrap/";
+
+    private final MqttListener mqttListener;
+    private final Executor executor;
+    private final int maxQueued;
+    private final Semaphore queuePermits;
+    private final Semaphore workerPermits;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedMessages = new AtomicInteger();
+    private final AtomicLong processedMessages = new AtomicLong();
+    private final AtomicLong coalescedMessages = new AtomicLong();
+    private final AtomicLong failedMessages = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    @Autowired
+    public MqttInboundDispatcher(
+            MqttListener mqttListener,
+            @Value("${mqtt.inbound.max-queued:10000}") int maxQueued,
+            @Value("${mqtt.inbound.max-concurrency:16}") int maxConcurrency
+    ) {
+        this(mqttListener, Executors.newVirtualThreadPerTaskExecutor(), maxQueued, maxConcurrency);
+    }
+
+    MqttInboundDispatcher(MqttListener mqttListener, Executor executor, int maxQueued, int maxConcurrency) {
+        this.mqttListener = mqttListener;
+        this.executor = executor;
+        this.maxQueued = maxQueued;
+        this.queuePermits = new Semaphore(maxQueued);
+        this.workerPermits = new Semaphore(maxConcurrency);
+    }
+
+    @ServiceActivator(inputChannel = "mqttInputChannel")
+    public void dispatch(Message<?> message) {
+        Object topicHeader = message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC);
+        if (topicHeader == null) {
+            mqttListener.handleMessage(message);
+            return;
+        }
+        String topic = topicHeader.toString();
+        String key = laneKey(topic);
+        boolean availability = isAvailabilityTopic(topic);
+        try {
+            queuePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for MQTT inbound queue space, handling '{}' inline", topic);
+            mqttListener.handleMessage(message);
+            return;
+        }
+        while (true) {
+            Lane lane = lanes.computeIfAbsent(key, Lane::new);
+            boolean startDrain;
+            synchronized (lane) {
+                if (lane.retired) {
+                    continue;
+                }
+                if (availability && lane.pendingAvailability != null) {
+                    lane.pendingAvailability.message = message;
+                    coalescedMessages.incrementAndGet();
+                    queuePermits.release();
+                    return;
+                }
+                Queued queued = new Queued(message, Instant.now());
+                lane.messages.addLast(queued);
+                if (availability) {
+                    lane.pendingAvailability = queued;
+                }
+                queuedMessages.incrementAndGet();
+                startDrain = !lane.draining;
+                lane.draining = true;
+            }
+            if (startDrain) {
+                executor.execute(() -> drain(lane));
+            }
+            return;
+        }
+    }
+
+    public MqttInboundStatsResponse getStats() {
+        return MqttInboundStatsResponse.builder()
+                .queuedMessages(queuedMessages.get())
+                .maxQueuedMessages(maxQueued)
+                .activeDevices(lanes.size())
+                .processedMessages(processedMessages.get())
+                .coalescedMessages(coalescedMessages.get())
+                .failedMessages(failedMessages.get())
+                .lastLagMillis(lastLagMillis.get())
+                .maxLagMillis(maxLagMillis.get())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+            if (!executorService.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("MQTT inbound dispatcher stopped with {} messages still queued", queuedMessages.get());
+            }
+        }
+    }
+
+    private void drain(Lane lane) {
+        while (true) {
+            Queued queued;
+            synchronized (lane) {
+                queued = lane.messages.pollFirst();
+                if (queued == null) {
+                    lane.draining = false;
+                    lane.retired = true;
+                    lanes.remove(lane.key, lane);
+                    return;
+                }
+                if (lane.pendingAvailability == queued) {
+                    lane.pendingAvailability = null;
+                }
+            }
+            queuedMessages.decrementAndGet();
+            queuePermits.release();
+            process(queued);
+        }
+    }
+
+    private void process(Queued queued) {
+        long lag = Duration.between(queued.enqueuedAt, Instant.now()).toMillis();
+        lastLagMillis.set(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        workerPermits.acquireUninterruptibly();
+        try {
+            mqttListener.handleMessage(queued.message);
+            processedMessages.incrementAndGet();
+        } catch (RuntimeException e) {
+            failedMessages.incrementAndGet();
+            log.error("Failed to handle MQTT message on topic '{}'", queued.message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC), e);
+        } finally {
+            workerPermits.release();
+        }
+    }
+
+    static String laneKey(String topic) {
+        if (topic.startsWith(FACTORY_TOPIC_PREFIX)) {
+            int end = topic.indexOf('/', FACTORY_TOPIC_PREFIX.length());
+            return end < 0 ? topic : topic.substring(0, end);
+        }
+        int slash = topic.indexOf('/');
+        String head = slash < 0 ? topic : topic.substring(0, slash);
+        int dot = head.lastIndexOf('.');
+        return dot < 0 ? head : head.substring(0, dot);
+    }
+
+    static boolean isAvailabilityTopic(String topic) {
+        return topic.endsWith("/online")
+                || topic.endsWith(".online")
+                || topic.endsWith("/connected")
+                || topic.endsWith(".connected");
+    }
+
+    private static final class Lane {
+        private final String key;
+        private final Deque<Queued> messages = new ArrayDeque<>();
+        private Queued pendingAvailability;
+        private boolean draining;
+        private boolean retired;
+
+        private Lane(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Queued {
+        private volatile Message<?> message;
+        private final Instant enqueuedAt;
+
+        private Queued(Message<?> message, Instant enqueuedAt) {
+            this.message = message;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+}
@@ -12,13 +12,14 @@
 package com.nitramite.porssiohjain.mqtt;
 
 import com.nitramite.porssiohjain.entity.repository.DeviceRepository;
+import com.nitramite.porssiohjain.services.DeviceHeartbeatRegistry;
 import com.nitramite.porssiohjain.services.DeviceOfflineNotificationService;
 import com.nitramite.porssiohjain.services.FactoryProvisioningService;
+import com.nitramite.porssiohjain.services.RelayStateService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.integration.mqtt.support.MqttHeaders;
-import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.stereotype.Service;
 import org.springframework.messaging.Message;
 
@@ -37,8 +38,12 @@ public class MqttListener {
     private final DeviceRepository deviceRepository;
     private final FactoryProvisioningService factoryProvisioningService;
     private final DeviceOfflineNotificationService deviceOfflineNotificationService;
+    private final RelayStateService relayStateService;
+    private final DeviceHeartbeatRegistry deviceHeartbeatRegistry;
 
-    @ServiceActivator(inputChannel = "mqttInputChannel")
+    /**
+     * Called by {@link MqttInboundDispatcher}, in order for each device.
+     */
     public void handleMessage(Message<?> message) {
         Object topicHeader = message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC);
         if (topicHeader == null) {
@@ -65,6 +70,13 @@ public class MqttListener {
                         boolean wasApiOnline = device.isApiOnline();
                         boolean wasMqttOnline = device.isMqttOnline();
                         Instant now = Instant.now();
+                        deviceHeartbeatRegistry.record(device.getUuid(), now);
+                        if (wasMqttOnline == online) {
+                            if (online) {
+                                relayStateService.requestResync(device.getUuid());
+                            }
+                            return;
+                        }
                         device.setMqttOnline(online);
                         device.setLastCommunication(now);
                         deviceRepository.save(device);
@@ -77,6 +89,9 @@ public class MqttListener {
                                 online,
                                 wasApiOnline
                         );
+                        if (online) {
+                            relayStateService.requestResync(device.getUuid());
+                        }
                         if (retained) {
                             return;
                         }
@@ -0,0 +1,37 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.scheduled;
+
+import com.nitramite.porssiohjain.services.CryptoKeyRotationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rewrites stored secrets under the current key. Legacy values without a version prefix are
+ * rewritten to the versioned format that older releases cannot read, so this only runs when
+ * {@code app.crypto.re-encrypt-enabled} is set, once rolling back is no longer needed.
+ */
+@Component
+@Profile("!test")
+@ConditionalOnProperty(name = "app.crypto.re-encrypt-enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class CryptoKeyRotationScheduler {
+    private final CryptoKeyRotationService cryptoKeyRotationService;
+
+    @Scheduled(initialDelayString = "${app.crypto.re-encrypt-initial-delay:2m}", fixedDelayString = "${app.crypto.re-encrypt-interval:6h}")
+    public void reEncryptWithCurrentKey() {
+        cryptoKeyRotationService.reEncryptAll();
+    }
+}
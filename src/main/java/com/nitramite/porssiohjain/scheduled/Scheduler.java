@@ -13,7 +13,6 @@ package com.nitramite.porssiohjain.scheduled;
 
 import com.nitramite.porssiohjain.mqtt.MqttReconnectService;
 import com.nitramite.porssiohjain.entity.repository.ControlTableRepository;
-import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementRepository;
 import com.nitramite.porssiohjain.services.*;
 import com.nitramite.porssiohjain.services.fingrid.FingridDataService;
 import com.nitramite.porssiohjain.services.models.NordpoolResponse;
@@ -56,10 +55,10 @@ public class Scheduler {
     private final WindNotificationService windNotificationService;
     private final HeatPumpOnlineCheckService heatPumpOnlineCheckService;
     private final MqttRelayTestService mqttRelayTestService;
-    private final PowerplantService powerplantService;
+    private final PowerplantRuleTrigger powerplantRuleTrigger;
     private final ZigbeeGatewayConnectivityService zigbeeGatewayConnectivityService;
     private final ControlTableRepository controlTableRepository;
-    private final ZigbeeDeviceMeasurementRepository zigbeeDeviceMeasurementRepository;
+    private final ZigbeeMeasurementPartitionService zigbeeMeasurementPartitionService;
 
     private boolean firstRun = true;
 
@@ -86,10 +85,10 @@ public class Scheduler {
             WindNotificationService windNotificationService,
             HeatPumpOnlineCheckService heatPumpOnlineCheckService,
             MqttRelayTestService mqttRelayTestService,
-            PowerplantService powerplantService,
+            PowerplantRuleTrigger powerplantRuleTrigger,
             ZigbeeGatewayConnectivityService zigbeeGatewayConnectivityService,
             ControlTableRepository controlTableRepository,
-            ZigbeeDeviceMeasurementRepository zigbeeDeviceMeasurementRepository
+            ZigbeeMeasurementPartitionService zigbeeMeasurementPartitionService
     ) {
         this.nordpoolDataPortalService = nordpoolDataPortalService;
         this.controlSchedulerService = controlSchedulerService;
@@ -112,10 +111,10 @@ public class Scheduler {
         this.windNotificationService = windNotificationService;
         this.heatPumpOnlineCheckService = heatPumpOnlineCheckService;
         this.mqttRelayTestService = mqttRelayTestService;
-        this.powerplantService = powerplantService;
+        this.powerplantRuleTrigger = powerplantRuleTrigger;
         this.zigbeeGatewayConnectivityService = zigbeeGatewayConnectivityService;
         this.controlTableRepository = controlTableRepository;
-        this.zigbeeDeviceMeasurementRepository = zigbeeDeviceMeasurementRepository;
+        this.zigbeeMeasurementPartitionService = zigbeeMeasurementPartitionService;
 
         if (!nordpoolDataPortalService.hasDataForToday()) {
             nordpoolDataPortalService.fetchData(Day.TODAY);
@@ -245,10 +244,10 @@ public class Scheduler {
         pricePredictionDataService.deleteOldData();
         siteWeatherService.deleteOldSiteWeatherData();
         authService.deleteExpiredTokens();
-        int deletedMeasurements = zigbeeDeviceMeasurementRepository.deleteOlderThan(
+        int droppedPartitions = zigbeeMeasurementPartitionService.dropPartitionsOlderThan(
                 ZonedDateTime.now(ZoneId.of("Europe/Helsinki")).minusMonths(1).toInstant()
         );
-        log.info("Deleted {} old Zigbee measurement rows", deletedMeasurements);
+        log.info("Dropped {} old Zigbee measurement partitions", droppedPartitions);
     }
 
     @Scheduled(cron = "0 20 12 * * MON", zone = "Europe/Helsinki")
@@ -287,9 +286,9 @@ public class Scheduler {
         mqttRelayTestService.runDueTests();
     }
 
-    @Scheduled(fixedDelayString = "${powerplant.rule-evaluation-interval:1m}")
+    @Scheduled(fixedDelayString = "${powerplant.rule-sweep-interval:${powerplant.rule-evaluation-interval:10m}}")
     public void powerplantRules() {
-        int commands = powerplantService.evaluateEnabledRules();
+        int commands = powerplantRuleTrigger.evaluateAll();
         if (commands > 0) {
             log.info("Powerplant rules sent {} command(s)", commands);
         }
@@ -0,0 +1,33 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.scheduled;
+
+import com.nitramite.porssiohjain.services.toshiba.ToshibaAmqpConnectionManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+@Component
+@Profile("!test")
+@RequiredArgsConstructor
+public class ToshibaAmqpConnectionScheduler {
+    private final ToshibaAmqpConnectionManager toshibaAmqpConnectionManager;
+
+    @Scheduled(fixedDelayString = "1m")
+    public void evictIdleToshibaAmqpLinks() {
+        toshibaAmqpConnectionManager.evictIdle(Instant.now());
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.scheduled;
+
+import com.nitramite.porssiohjain.services.ZigbeeMeasurementPartitionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+@Slf4j
+@Component
+@Profile("!test")
+@RequiredArgsConstructor
+public class ZigbeeMeasurementPartitionScheduler {
+    private final ZigbeeMeasurementPartitionService zigbeeMeasurementPartitionService;
+
+    @Scheduled(initialDelayString = "${zigbee.measurement.partition.initial-delay:1m}", fixedDelayString = "${zigbee.measurement.partition.interval:6h}")
+    public void createUpcomingPartitions() {
+        int created = zigbeeMeasurementPartitionService.createUpcomingPartitions(Instant.now());
+        if (created > 0) {
+            log.info("Created {} upcoming Zigbee measurement partitions", created);
+        }
+    }
+}
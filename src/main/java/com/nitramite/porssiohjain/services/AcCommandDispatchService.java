@@ -9,22 +9,66 @@
  * See LICENSE for details.
  */
 
+
 package com.nitramite.porssiohjain.services;
 
+import com.nitramite.porssiohjain.entity.AccountEntity;
 import com.nitramite.porssiohjain.entity.DeviceAcDataEntity;
+import com.nitramite.porssiohjain.entity.DeviceEntity;
 import com.nitramite.porssiohjain.entity.enums.AcType;
-import lombok.RequiredArgsConstructor;
+import com.nitramite.porssiohjain.entity.repository.DeviceAcDataRepository;
+import com.nitramite.porssiohjain.services.models.HeatPumpDispatchStatsResponse;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class AcCommandDispatchService {
 
     private final List<AcCommandDispatcher> dispatchers;
+    private final DeviceAcDataRepository deviceAcDataRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<AcType, VendorLimit> vendorLimits = new EnumMap<>(AcType.class);
+    private final int accountCommandsPerMinute;
+    private final Map<Long, AccountTokenBucket> accountBuckets = new ConcurrentHashMap<>();
+    private final Map<Long, AcCommandRequest> deferredByAcDataId = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong sentCommands = new AtomicLong();
+    private final AtomicLong deferredCommands = new AtomicLong();
+    private final AtomicLong skippedCommands = new AtomicLong();
+    private final AtomicLong failedCommands = new AtomicLong();
+    private final AtomicReference<DispatchSummary> lastSummary = new AtomicReference<>(DispatchSummary.EMPTY);
+
+    @Autowired
+    public AcCommandDispatchService(
+            List<AcCommandDispatcher> dispatchers,
+            DeviceAcDataRepository deviceAcDataRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${heatpump.dispatch.toshiba.max-concurrency:4}") int toshibaMaxConcurrency,
+            @Value("${heatpump.dispatch.toshiba.timeout:45s}") Duration toshibaTimeout,
+            @Value("${heatpump.dispatch.mitsubishi.max-concurrency:2}") int mitsubishiMaxConcurrency,
+            @Value("${heatpump.dispatch.mitsubishi.timeout:30s}") Duration mitsubishiTimeout,
+            @Value("${heatpump.dispatch.account-commands-per-minute:4}") int accountCommandsPerMinute
+    ) {
+        this.dispatchers = dispatchers;
+        this.deviceAcDataRepository = deviceAcDataRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.vendorLimits.put(AcType.TOSHIBA, new VendorLimit(new Semaphore(toshibaMaxConcurrency), toshibaTimeout));
+        this.vendorLimits.put(AcType.MITSUBISHI, new VendorLimit(new Semaphore(mitsubishiMaxConcurrency), mitsubishiTimeout));
+        this.accountCommandsPerMinute = accountCommandsPerMinute;
+    }
 
     public void dispatchHexState(DeviceAcDataEntity acData, String hexState) {
         AcType acType = acData.getAcType();
@@ -41,4 +85,207 @@ public class AcCommandDispatchService {
                 );
     }
 
+    /**
+     * Sends commands of many heat pumps concurrently on virtual threads, limited per
+     * vendor and rate limited per account. A slow or failing vendor call only affects
+     * its own command. Commands over the account rate are deferred until the account
+     * has budget again instead of being dropped. Blocks until every command that is not
+     * deferred is sent, skipped or failed.
+     */
+    public DispatchSummary dispatchAll(List<AcCommandRequest> requests) {
+        Instant now = Instant.now();
+        List<Future<DispatchResult>> futures = new ArrayList<>(requests.size());
+        int deferred = 0;
+        int skipped = 0;
+        for (AcCommandRequest request : requests) {
+            // A newer command for the same heat pump supersedes one still waiting for budget
+            deferredByAcDataId.remove(request.acDataId());
+            Optional<AcCommandDispatcher> dispatcher = dispatchers.stream()
+                    .filter(candidate -> candidate.supports(request.acType()))
+                    .findFirst();
+            if (dispatcher.isEmpty() || !vendorLimits.containsKey(request.acType())) {
+                log.warn("No AC command dispatcher configured for deviceId={} acType={}", request.deviceId(), request.acType());
+                skipped++;
+                continue;
+            }
+            VendorLimit limit = vendorLimits.get(request.acType());
+            Duration wait = request.accountId() == null ? Duration.ZERO : accountBuckets
+                    .computeIfAbsent(request.accountId(), ignored -> new AccountTokenBucket(accountCommandsPerMinute, now))
+                    .reserve(now);
+            if (!wait.isZero()) {
+                log.info("Deferring AC command for deviceId={} by {} because account {} exceeded {} commands per minute",
+                        request.deviceId(), wait, request.accountId(), accountCommandsPerMinute);
+                deferredByAcDataId.put(request.acDataId(), request);
+                executor.submit(() -> dispatchDeferred(dispatcher.get(), request, limit, wait));
+                deferred++;
+                continue;
+            }
+            futures.add(executor.submit(() -> dispatchLimited(dispatcher.get(), request, limit)));
+        }
+
+        int sent = 0;
+        int failed = 0;
+        long totalLatencyMillis = 0;
+        long maxLatencyMillis = 0;
+        for (Future<DispatchResult> future : futures) {
+            DispatchResult result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while dispatching AC commands", e);
+            } catch (ExecutionException e) {
+                result = new DispatchResult(false, 0L);
+            }
+            if (result.sent()) {
+                sent++;
+            } else {
+                failed++;
+            }
+            totalLatencyMillis += result.latencyMillis();
+            maxLatencyMillis = Math.max(maxLatencyMillis, result.latencyMillis());
+        }
+
+        DispatchSummary summary = new DispatchSummary(
+                sent, deferred, skipped, failed,
+                futures.isEmpty() ? 0L : totalLatencyMillis / futures.size(),
+                maxLatencyMillis
+        );
+        sentCommands.addAndGet(sent);
+        deferredCommands.addAndGet(deferred);
+        skippedCommands.addAndGet(skipped);
+        failedCommands.addAndGet(failed);
+        lastSummary.set(summary);
+        return summary;
+    }
+
+    public HeatPumpDispatchStatsResponse getStats() {
+        DispatchSummary last = lastSummary.get();
+        return HeatPumpDispatchStatsResponse.builder()
+                .sentCommands(sentCommands.get())
+                .deferredCommands(deferredCommands.get())
+                .skippedCommands(skippedCommands.get())
+                .failedCommands(failedCommands.get())
+                .lastSent(last.sent())
+                .lastDeferred(last.deferred())
+                .lastSkipped(last.skipped())
+                .lastFailed(last.failed())
+                .lastAverageLatencyMillis(last.averageLatencyMillis())
+                .lastMaxLatencyMillis(last.maxLatencyMillis())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void dispatchDeferred(AcCommandDispatcher dispatcher, AcCommandRequest request, VendorLimit limit,
+                                  Duration wait) throws InterruptedException {
+        Thread.sleep(wait.toMillis());
+        if (!deferredByAcDataId.remove(request.acDataId(), request)) {
+            return;
+        }
+        DispatchResult result = dispatchLimited(dispatcher, request, limit);
+        (result.sent() ? sentCommands : failedCommands).incrementAndGet();
+    }
+
+    private DispatchResult dispatchLimited(AcCommandDispatcher dispatcher, AcCommandRequest request, VendorLimit limit)
+            throws InterruptedException {
+        limit.permits().acquire();
+        long started = System.nanoTime();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        Future<?> call = executor.submit(() -> dispatchInOwnTransaction(dispatcher, request, abandoned));
+        try {
+            call.get(limit.timeout().toMillis(), TimeUnit.MILLISECONDS);
+            return new DispatchResult(true, elapsedMillis(started));
+        } catch (TimeoutException e) {
+            abandoned.set(true);
+            call.cancel(true);
+            log.error("AC command for deviceId={} acType={} timed out after {}", request.deviceId(), request.acType(), limit.timeout());
+            return new DispatchResult(false, elapsedMillis(started));
+        } catch (ExecutionException e) {
+            log.error("AC command for deviceId={} acType={} failed", request.deviceId(), request.acType(), e.getCause());
+            return new DispatchResult(false, elapsedMillis(started));
+        } finally {
+            limit.permits().release();
+        }
+    }
+
+    /**
+     * Entities are never shared with the worker thread. The AC data is reloaded in a
+     * transaction of its own, so dispatchers can update it like on the request path. A
+     * call that outlives its timeout is rolled back, the next control tick resends it.
+     */
+    private void dispatchInOwnTransaction(AcCommandDispatcher dispatcher, AcCommandRequest request,
+                                          AtomicBoolean abandoned) {
+        transactionTemplate.executeWithoutResult(status -> {
+            DeviceAcDataEntity acData = deviceAcDataRepository.findById(request.acDataId())
+                    .orElseThrow(() -> new IllegalStateException("Device AC data " + request.acDataId() + " was removed"));
+            dispatcher.dispatchHexState(acData, request.hexState());
+            if (abandoned.get()) {
+                log.warn("Discarding late AC command result for deviceId={} after timeout", request.deviceId());
+                status.setRollbackOnly();
+            }
+        });
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    }
+
+    /**
+     * Immutable command handed to the dispatch workers. Build it with {@link #of} on the
+     * thread that owns the AC data entity.
+     */
+    public record AcCommandRequest(Long acDataId, Long deviceId, Long accountId, AcType acType, String hexState) {
+
+        public static AcCommandRequest of(DeviceAcDataEntity acData, String hexState) {
+            DeviceEntity device = acData.getDevice();
+            AccountEntity account = device == null ? null : device.getAccount();
+            return new AcCommandRequest(acData.getId(), device == null ? null : device.getId(),
+                    account == null ? null : account.getId(), acData.getAcType(), hexState);
+        }
+    }
+
+    public record DispatchSummary(int sent, int deferred, int skipped, int failed, long averageLatencyMillis,
+                                  long maxLatencyMillis) {
+        public static final DispatchSummary EMPTY = new DispatchSummary(0, 0, 0, 0, 0L, 0L);
+    }
+
+    private record DispatchResult(boolean sent, long latencyMillis) {
+    }
+
+    private record VendorLimit(Semaphore permits, Duration timeout) {
+    }
+
+    private static final class AccountTokenBucket {
+        private final int capacity;
+        private double tokens;
+        private Instant refilledAt;
+
+        private AccountTokenBucket(int capacity, Instant now) {
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.refilledAt = now;
+        }
+
+        /**
+         * Takes a token, going into debt when none is left. Returns how long the caller
+         * has to wait until the debt is paid off by the refill.
+         */
+        private synchronized Duration reserve(Instant now) {
+            double minutes = Duration.between(refilledAt, now).toMillis() / 60_000d;
+            if (minutes > 0) {
+                tokens = Math.min(capacity, tokens + minutes * capacity);
+                refilledAt = now;
+            }
+            tokens--;
+            if (tokens >= 0) {
+                return Duration.ZERO;
+            }
+            return Duration.ofMillis((long) Math.ceil(-tokens * 60_000d / capacity));
+        }
+    }
+
 }
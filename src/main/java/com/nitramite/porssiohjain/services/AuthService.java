@@ -17,6 +17,7 @@ import com.nitramite.porssiohjain.entity.TokenEntity;
 import com.nitramite.porssiohjain.entity.repository.AccountRepository;
 import com.nitramite.porssiohjain.entity.repository.RefreshTokenRepository;
 import com.nitramite.porssiohjain.entity.repository.TokenRepository;
+import com.nitramite.porssiohjain.services.models.AuthenticatedToken;
 import com.nitramite.porssiohjain.services.models.LoginResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -41,6 +42,7 @@ public class AuthService {
     private final RefreshTokenRepository refreshTokenRepository;
     private final RateLimitService rateLimitService;
     private final PasswordEncoder passwordEncoder;
+    private final AuthTokenCache authTokenCache;
     private final SecureRandom secureRandom = new SecureRandom();
 
     @Value("${app.auth.refresh-token-lifetime-days:7}")
@@ -85,6 +87,7 @@ public class AuthService {
 
         assertNotBlocked(refreshToken.getAccount());
         refreshToken.setRevokedAt(now);
+        authTokenCache.invalidateAccount(refreshToken.getAccount().getId());
         return createTokenPair(refreshToken.getAccount());
     }
 
@@ -94,7 +97,10 @@ public class AuthService {
             return;
         }
         refreshTokenRepository.findByTokenHashWithAccount(hashToken(refreshTokenValue))
-                .ifPresent(token -> token.setRevokedAt(Instant.now()));
+                .ifPresent(token -> {
+                    token.setRevokedAt(Instant.now());
+                    authTokenCache.invalidateAccount(token.getAccount().getId());
+                });
     }
 
     private LoginResponse createTokenPair(AccountEntity account) {
@@ -143,6 +149,31 @@ public class AuthService {
         return token.getAccount();
     }
 
+    /**
+     * Token check for API requests, answered from {@link AuthTokenCache} when possible.
+     */
+    public AuthenticatedToken authenticateToken(String tokenValue) {
+        Instant now = Instant.now();
+        AuthenticatedToken cached = authTokenCache.get(tokenValue, now).orElse(null);
+        if (cached != null) {
+            return cached;
+        }
+
+        long accountChanges = authTokenCache.accountChanges();
+        TokenEntity token = tokenRepository.findByTokenWithAccount(tokenValue)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid token"));
+        AccountEntity account = token.getAccount();
+
+        if (token.getExpiresAt().isBefore(now)) {
+            throw new IllegalArgumentException("Token expired");
+        }
+        assertNotBlocked(account);
+
+        AuthenticatedToken authenticated = new AuthenticatedToken(account.getId(), account.isDemo(), token.getExpiresAt());
+        authTokenCache.put(tokenValue, authenticated, accountChanges, now);
+        return authenticated;
+    }
+
     @Transactional(readOnly = true)
     public AccountEntity getAccount(Long accountId) {
         return accountRepository.findById(accountId)
@@ -153,6 +184,7 @@ public class AuthService {
     public void deleteExpiredTokens() {
         tokenRepository.deleteAllExpiredTokens(Instant.now());
         refreshTokenRepository.deleteAllExpiredTokens(Instant.now());
+        authTokenCache.evictExpired(Instant.now());
     }
 
     private String randomToken() {
@@ -0,0 +1,142 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.AccountChangeListener;
+import com.nitramite.porssiohjain.services.models.AuthTokenCacheStatsResponse;
+import com.nitramite.porssiohjain.services.models.AuthenticatedToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process cache of validated API tokens so that authenticated requests do
+ * not need a token and account lookup each. Entries live for the TTL at most, never
+ * past the token expiry, and are dropped when the account changes (see
+ * {@link AccountChangeListener}) or its tokens are rotated or revoked.
+ */
+@Service
+public class AuthTokenCache {
+
+    private record Entry(AuthenticatedToken token, long accountVersion, Instant validUntil) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final int maxEntries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public AuthTokenCache(
+            @Value("${app.auth.token-cache.ttl:60s}") Duration ttl,
+            @Value("${app.auth.token-cache.max-entries:10000}") int maxEntries
+    ) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+    }
+
+    public Optional<AuthenticatedToken> get(String tokenValue, Instant now) {
+        Entry entry = entries.get(tokenValue);
+        if (entry != null
+                && now.isBefore(entry.validUntil())
+                && entry.accountVersion() == AccountChangeListener.version(entry.token().accountId())) {
+            hits.incrementAndGet();
+            return Optional.of(entry.token());
+        }
+        if (entry != null) {
+            entries.remove(tokenValue, entry);
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Value to pass to {@link #put}, read before the token is loaded so that a result
+     * loaded while any account was changing is not cached.
+     */
+    public long accountChanges() {
+        return AccountChangeListener.changes();
+    }
+
+    public void put(String tokenValue, AuthenticatedToken token, long accountChanges, Instant now) {
+        if (maxEntries <= 0 || ttl.isZero() || ttl.isNegative()) {
+            return;
+        }
+        long accountVersion = AccountChangeListener.version(token.accountId());
+        if (AccountChangeListener.changes() != accountChanges) {
+            return;
+        }
+        Instant validUntil = now.plus(ttl);
+        if (token.expiresAt() != null && token.expiresAt().isBefore(validUntil)) {
+            validUntil = token.expiresAt();
+        }
+        if (!now.isBefore(validUntil)) {
+            return;
+        }
+        if (entries.size() >= maxEntries && !entries.containsKey(tokenValue)) {
+            evictExpired(now);
+            Iterator<String> iterator = entries.keySet().iterator();
+            while (entries.size() >= maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        entries.put(tokenValue, new Entry(token, accountVersion, validUntil));
+    }
+
+    public void invalidateAccount(Long accountId) {
+        if (accountId == null) {
+            return;
+        }
+        entries.values().removeIf(entry -> {
+            boolean matches = accountId.equals(entry.token().accountId());
+            if (matches) {
+                invalidations.incrementAndGet();
+            }
+            return matches;
+        });
+    }
+
+    public void evictExpired(Instant now) {
+        entries.values().removeIf(entry -> {
+            boolean expired = !now.isBefore(entry.validUntil());
+            if (expired) {
+                evictions.incrementAndGet();
+            }
+            return expired;
+        });
+    }
+
+    public AuthTokenCacheStatsResponse getStats() {
+        return AuthTokenCacheStatsResponse.builder()
+                .size(entries.size())
+                .maxEntries(maxEntries)
+                .hits(hits.get())
+                .misses(misses.get())
+                .evictions(evictions.get())
+                .invalidations(invalidations.get())
+                .build();
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.services.models.CurrentKwRequest;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Meter readings of one power limit folded in arrival order. Only the first reading needs
+ * the stored meter total, every later one is turned into its minute delta right away, so
+ * applying the fold gives the same state as applying the readings one by one.
+ */
+@Getter
+public final class BufferedPowerReadings {
+
+    private final UUID powerLimitUuid;
+    private int readingCount;
+    private BigDecimal currentKw;
+    private BigDecimal peakKw;
+    private BigDecimal firstTotalKwh;
+    private Instant firstMinute;
+    private BigDecimal lastTotalKwh;
+    private Instant lastMeasuredAt;
+    private final Map<Instant, BigDecimal> laterMinuteKwh = new LinkedHashMap<>();
+
+    public BufferedPowerReadings(UUID powerLimitUuid) {
+        this.powerLimitUuid = powerLimitUuid;
+    }
+
+    public static BufferedPowerReadings of(UUID powerLimitUuid, CurrentKwRequest request) {
+        BufferedPowerReadings readings = new BufferedPowerReadings(powerLimitUuid);
+        readings.add(request);
+        return readings;
+    }
+
+    public void add(CurrentKwRequest request) {
+        BigDecimal kw = BigDecimal.valueOf(request.getCurrentKw());
+        BigDecimal totalKwh = BigDecimal.valueOf(request.getTotalKwh());
+        Instant measuredAt = Instant.ofEpochMilli(request.getMeasuredAt());
+        Instant minute = measuredAt.truncatedTo(ChronoUnit.MINUTES);
+
+        if (readingCount == 0) {
+            firstTotalKwh = totalKwh;
+            firstMinute = minute;
+        } else if (totalKwh.compareTo(lastTotalKwh) >= 0) {
+            laterMinuteKwh.remove(minute);
+            laterMinuteKwh.put(minute, totalKwh.subtract(lastTotalKwh));
+        }
+        currentKw = kw;
+        if (peakKw == null || kw.compareTo(peakKw) > 0) {
+            peakKw = kw;
+        }
+        lastTotalKwh = totalKwh;
+        lastMeasuredAt = measuredAt;
+        readingCount++;
+    }
+
+    /**
+     * Minute rows to write, each holding the delta of the last reading in that minute.
+     *
+     * @param storedTotalKwh meter total stored before these readings, null for a new meter
+     */
+    public Map<Instant, BigDecimal> minuteKwh(BigDecimal storedTotalKwh) {
+        Map<Instant, BigDecimal> minutes = new LinkedHashMap<>();
+        if (storedTotalKwh == null) {
+            minutes.put(firstMinute, BigDecimal.ZERO);
+        } else if (firstTotalKwh.compareTo(storedTotalKwh) >= 0) {
+            minutes.put(firstMinute, firstTotalKwh.subtract(storedTotalKwh));
+        }
+        laterMinuteKwh.forEach((minute, kwh) -> {
+            minutes.remove(minute);
+            minutes.put(minute, kwh);
+        });
+        return minutes;
+    }
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import java.util.Arrays;
+
+/**
+ * Cheapest hours planner working on 15 minute units held in primitive arrays. Prices are
+ * given as comparable {@code long} keys, so a planner instance can be reused for any
+ * number of controls without allocating per unit.
+ * <p>
+ * Without constraints the result is exactly the daily greedy plan: units at or below the
+ * min price first when requested, then the cheapest units at or below the max price until
+ * the daily on minutes are reached. Ties go to the unit that was added first. The
+ * constraints only ever turn more units on: the rolling window makes every 24 hours hold
+ * the daily on minutes, the off gap and min run limits then ignore the max price.
+ */
+final class CheapestHoursOptimizer {
+
+    static final int UNIT_MINUTES = 15;
+    private static final int DAY_MINUTES = 24 * 60;
+
+    record Constraints(int minRunMinutes, int maxOffGapMinutes, boolean rollingDailyWindow) {
+        static final Constraints NONE = new Constraints(0, 0, false);
+
+        boolean isNone() {
+            return minRunMinutes <= 0 && maxOffGapMinutes <= 0 && !rollingDailyWindow;
+        }
+    }
+
+    private long[] keys;
+    private int[] days;
+    private long[] startMinutes;
+    private boolean[] on;
+    private boolean[] alwaysOn;
+    private int[] order;
+    private int[] timeOrder;
+    private int[] scratch;
+    private int size;
+
+    CheapestHoursOptimizer(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param key         price key, a smaller key is cheaper
+     * @param day         day group of the unit, the daily on minutes apply per group
+     * @param startMinute unit start in epoch minutes
+     */
+    void add(long key, int day, long startMinute) {
+        if (size == keys.length) {
+            allocate(size * 2);
+        }
+        keys[size] = key;
+        days[size] = day;
+        startMinutes[size] = startMinute;
+        size++;
+    }
+
+    /**
+     * Plans the added units. The returned array is owned by the optimizer and only valid
+     * for indexes below {@link #size()} until the next call.
+     */
+    boolean[] optimize(long minKey, long maxKey, boolean alwaysOnBelowMin, int dailyOnMinutes, Constraints constraints) {
+        Arrays.fill(on, 0, size, false);
+        Arrays.fill(alwaysOn, 0, size, false);
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        sort(order, true);
+
+        int groupStart = 0;
+        while (groupStart < size) {
+            int day = days[order[groupStart]];
+            int groupEnd = groupStart;
+            while (groupEnd < size && days[order[groupEnd]] == day) {
+                groupEnd++;
+            }
+            planDay(groupStart, groupEnd, minKey, maxKey, alwaysOnBelowMin, dailyOnMinutes);
+            groupStart = groupEnd;
+        }
+
+        if (constraints != null && !constraints.isNone() && size > 0) {
+            for (int i = 0; i < size; i++) {
+                timeOrder[i] = i;
+            }
+            sort(timeOrder, false);
+            if (constraints.rollingDailyWindow()) {
+                applyRollingWindow(maxKey, dailyOnMinutes);
+            }
+            if (constraints.maxOffGapMinutes() > 0) {
+                applyMaxOffGap(constraints.maxOffGapMinutes());
+            }
+            if (constraints.minRunMinutes() > UNIT_MINUTES) {
+                applyMinRun(constraints.minRunMinutes());
+            }
+        }
+        return on;
+    }
+
+    private void planDay(int from, int to, long minKey, long maxKey, boolean alwaysOnBelowMin, int dailyOnMinutes) {
+        int accumulated = 0;
+        if (alwaysOnBelowMin) {
+            for (int i = from; i < to; i++) {
+                int unit = order[i];
+                if (keys[unit] <= minKey) {
+                    on[unit] = true;
+                    alwaysOn[unit] = true;
+                    accumulated += UNIT_MINUTES;
+                }
+            }
+        }
+        for (int i = from; i < to && dailyOnMinutes - accumulated >= UNIT_MINUTES; i++) {
+            int unit = order[i];
+            if (!alwaysOn[unit] && keys[unit] <= maxKey) {
+                on[unit] = true;
+                accumulated += UNIT_MINUTES;
+            }
+        }
+    }
+
+    private void applyRollingWindow(long maxKey, int dailyOnMinutes) {
+        long lastEnd = startMinutes[timeOrder[size - 1]] + UNIT_MINUTES;
+        for (int first = 0; first < size; first++) {
+            long windowStart = startMinutes[timeOrder[first]];
+            long windowEnd = windowStart + DAY_MINUTES;
+            if (windowEnd > lastEnd) {
+                return;
+            }
+            int onMinutes = 0;
+            int last = first;
+            while (last < size && startMinutes[timeOrder[last]] < windowEnd) {
+                if (on[timeOrder[last]]) {
+                    onMinutes += UNIT_MINUTES;
+                }
+                last++;
+            }
+            while (dailyOnMinutes - onMinutes >= UNIT_MINUTES) {
+                int cheapest = cheapestOff(first, last, maxKey);
+                if (cheapest < 0) {
+                    break;
+                }
+                on[cheapest] = true;
+                onMinutes += UNIT_MINUTES;
+            }
+        }
+    }
+
+    private void applyMaxOffGap(int maxOffGapMinutes) {
+        long offSince = startMinutes[timeOrder[0]];
+        int runStart = 0;
+        int position = 0;
+        while (position <= size) {
+            boolean atEnd = position == size;
+            long offUntil = atEnd
+                    ? startMinutes[timeOrder[size - 1]] + UNIT_MINUTES
+                    : startMinutes[timeOrder[position]];
+            if (atEnd || on[timeOrder[position]]) {
+                if (offUntil - offSince > maxOffGapMinutes) {
+                    int cheapest = -1;
+                    for (int i = runStart; i < position; i++) {
+                        int unit = timeOrder[i];
+                        if (startMinutes[unit] - offSince > maxOffGapMinutes) {
+                            break;
+                        }
+                        if (cheapest < 0 || keys[unit] < keys[cheapest]) {
+                            cheapest = unit;
+                        }
+                    }
+                    if (cheapest >= 0) {
+                        on[cheapest] = true;
+                        position = runStart;
+                        while (timeOrder[position] != cheapest) {
+                            position++;
+                        }
+                        offSince = startMinutes[cheapest] + UNIT_MINUTES;
+                        runStart = position + 1;
+                        position++;
+                        continue;
+                    }
+                }
+                if (atEnd) {
+                    return;
+                }
+                offSince = startMinutes[timeOrder[position]] + UNIT_MINUTES;
+                runStart = position + 1;
+            }
+            position++;
+        }
+    }
+
+    private void applyMinRun(int minRunMinutes) {
+        int position = 0;
+        while (position < size) {
+            if (!on[timeOrder[position]]) {
+                position++;
+                continue;
+            }
+            int first = position;
+            int last = position;
+            while (last + 1 < size && on[timeOrder[last + 1]] && contiguous(last, last + 1)) {
+                last++;
+            }
+            while ((last - first + 1) * UNIT_MINUTES < minRunMinutes) {
+                boolean canLeft = first > 0 && !on[timeOrder[first - 1]] && contiguous(first - 1, first);
+                boolean canRight = last + 1 < size && !on[timeOrder[last + 1]] && contiguous(last, last + 1);
+                if (!canLeft && !canRight) {
+                    break;
+                }
+                if (canRight && (!canLeft || keys[timeOrder[last + 1]] < keys[timeOrder[first - 1]])) {
+                    last++;
+                    on[timeOrder[last]] = true;
+                } else {
+                    first--;
+                    on[timeOrder[first]] = true;
+                }
+                while (last + 1 < size && on[timeOrder[last + 1]] && contiguous(last, last + 1)) {
+                    last++;
+                }
+                while (first > 0 && on[timeOrder[first - 1]] && contiguous(first - 1, first)) {
+                    first--;
+                }
+            }
+            position = last + 1;
+        }
+    }
+
+    private int cheapestOff(int from, int to, long maxKey) {
+        int cheapest = -1;
+        for (int i = from; i < to; i++) {
+            int unit = timeOrder[i];
+            if (!on[unit] && keys[unit] <= maxKey && (cheapest < 0 || keys[unit] < keys[cheapest])) {
+                cheapest = unit;
+            }
+        }
+        return cheapest;
+    }
+
+    private boolean contiguous(int earlier, int later) {
+        return startMinutes[timeOrder[earlier]] + UNIT_MINUTES == startMinutes[timeOrder[later]];
+    }
+
+    /**
+     * Stable bottom-up merge sort of unit indexes, either by day and price key or by start.
+     */
+    private void sort(int[] indexes, boolean byDayAndKey) {
+        int[] source = indexes;
+        int[] target = scratch;
+        for (int width = 1; width < size; width *= 2) {
+            for (int left = 0; left < size; left += 2 * width) {
+                int middle = Math.min(left + width, size);
+                int right = Math.min(left + 2 * width, size);
+                int i = left;
+                int j = middle;
+                int k = left;
+                while (i < middle && j < right) {
+                    if (compare(source[j], source[i], byDayAndKey) < 0) {
+                        target[k++] = source[j++];
+                    } else {
+                        target[k++] = source[i++];
+                    }
+                }
+                while (i < middle) {
+                    target[k++] = source[i++];
+                }
+                while (j < right) {
+                    target[k++] = source[j++];
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != indexes) {
+            System.arraycopy(source, 0, indexes, 0, size);
+        }
+    }
+
+    private int compare(int a, int b, boolean byDayAndKey) {
+        if (!byDayAndKey) {
+            return Long.compare(startMinutes[a], startMinutes[b]);
+        }
+        int byDay = Integer.compare(days[a], days[b]);
+        return byDay != 0 ? byDay : Long.compare(keys[a], keys[b]);
+    }
+
+    private void allocate(int capacity) {
+        keys = keys == null ? new long[capacity] : Arrays.copyOf(keys, capacity);
+        days = days == null ? new int[capacity] : Arrays.copyOf(days, capacity);
+        startMinutes = startMinutes == null ? new long[capacity] : Arrays.copyOf(startMinutes, capacity);
+        on = new boolean[capacity];
+        alwaysOn = new boolean[capacity];
+        order = new int[capacity];
+        timeOrder = new int[capacity];
+        scratch = new int[capacity];
+    }
+
+}
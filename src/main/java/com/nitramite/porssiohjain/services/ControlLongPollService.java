@@ -0,0 +1,201 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.services.models.ControlLongPollStatsResponse;
+import com.nitramite.porssiohjain.services.models.DevicePollResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long poll variant of the device control poll. A request whose ETag still matches is
+ * parked as a {@link DeferredResult}, holding no thread, and completes as soon as the
+ * device's channel map changes or with 304 when the wait times out. Parked devices are
+ * checked against {@link DevicePollStateCache} on every sweep and only evaluated again
+ * once their cached ETag is no longer valid.
+ */
+@Slf4j
+@Service
+public class ControlLongPollService {
+
+    private record Waiter(String etag, DeferredResult<ResponseEntity<Map<Integer, Integer>>> result) {
+    }
+
+    private final ControlService controlService;
+    private final DevicePollStateCache devicePollStateCache;
+    private final Duration defaultTimeout;
+    private final Duration maxTimeout;
+    private final int maxWaiters;
+    private final Semaphore evaluations;
+    private final Map<UUID, Waiter> waiters = new ConcurrentHashMap<>();
+    private final Set<UUID> evaluating = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong changedResponses = new AtomicLong();
+    private final AtomicLong timedOutResponses = new AtomicLong();
+    private final AtomicLong reevaluations = new AtomicLong();
+
+    @Autowired
+    public ControlLongPollService(
+            ControlService controlService,
+            DevicePollStateCache devicePollStateCache,
+            @Value("${control.long-poll.default-timeout:55s}") Duration defaultTimeout,
+            @Value("${control.long-poll.max-timeout:120s}") Duration maxTimeout,
+            @Value("${control.long-poll.max-waiters:50000}") int maxWaiters,
+            @Value("${control.long-poll.max-concurrent-evaluations:16}") int maxConcurrentEvaluations
+    ) {
+        this.controlService = controlService;
+        this.devicePollStateCache = devicePollStateCache;
+        this.defaultTimeout = defaultTimeout;
+        this.maxTimeout = maxTimeout;
+        this.maxWaiters = maxWaiters;
+        this.evaluations = new Semaphore(maxConcurrentEvaluations);
+    }
+
+    /**
+     * Answers right away when {@code ifNoneMatch} is missing or stale, otherwise parks the
+     * request. A newer wait from the same device releases the older one with 304.
+     */
+    public DeferredResult<ResponseEntity<Map<Integer, Integer>>> await(
+            String deviceUuid,
+            String ifNoneMatch,
+            Integer timeoutSeconds
+    ) {
+        UUID uuid = UUID.fromString(deviceUuid);
+        DevicePollResponse<Map<Integer, Integer>> current = controlService.getControlsForDevice(deviceUuid, ifNoneMatch);
+        Duration timeout = timeoutSeconds == null || timeoutSeconds <= 0
+                ? defaultTimeout
+                : Duration.ofSeconds(Math.min(timeoutSeconds, maxTimeout.toSeconds()));
+        DeferredResult<ResponseEntity<Map<Integer, Integer>>> result = new DeferredResult<>(timeout.toMillis());
+        if (!current.notModified()) {
+            result.setResult(toResponse(current));
+            return result;
+        }
+        if (waiters.size() >= maxWaiters) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many waiting devices");
+        }
+
+        Waiter waiter = new Waiter(current.etag(), result);
+        result.onTimeout(() -> {
+            timedOutResponses.incrementAndGet();
+            result.setResult(notModified(waiter.etag()));
+        });
+        result.onCompletion(() -> waiters.remove(uuid, waiter));
+        Waiter previous = waiters.put(uuid, waiter);
+        if (previous != null) {
+            previous.result().setResult(notModified(previous.etag()));
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates parked devices whose cached ETag has expired or was invalidated and
+     * completes the ones whose channel map changed.
+     */
+    public void checkWaiters() {
+        Instant now = Instant.now();
+        for (Map.Entry<UUID, Waiter> entry : waiters.entrySet()) {
+            UUID deviceUuid = entry.getKey();
+            Waiter waiter = entry.getValue();
+            if (devicePollStateCache.matching(DevicePollStateCache.Kind.CONTROLS, deviceUuid, waiter.etag(), now).isPresent()) {
+                continue;
+            }
+            if (!evaluating.add(deviceUuid)) {
+                continue;
+            }
+            if (!evaluations.tryAcquire()) {
+                evaluating.remove(deviceUuid);
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        reevaluate(deviceUuid, waiter);
+                    } finally {
+                        evaluations.release();
+                        evaluating.remove(deviceUuid);
+                    }
+                });
+            } catch (RuntimeException e) {
+                evaluations.release();
+                evaluating.remove(deviceUuid);
+                throw e;
+            }
+        }
+    }
+
+    private void reevaluate(UUID deviceUuid, Waiter waiter) {
+        if (waiter.result().isSetOrExpired()) {
+            return;
+        }
+        reevaluations.incrementAndGet();
+        try {
+            DevicePollResponse<Map<Integer, Integer>> current =
+                    controlService.getControlsForDevice(deviceUuid.toString(), waiter.etag());
+            if (!current.notModified() && waiter.result().setResult(toResponse(current))) {
+                changedResponses.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to evaluate controls for waiting device {}", deviceUuid, e);
+            waiter.result().setErrorResult(e);
+        }
+    }
+
+    public ControlLongPollStatsResponse getStats() {
+        return ControlLongPollStatsResponse.builder()
+                .waitingDevices(waiters.size())
+                .changedResponses(changedResponses.get())
+                .timedOutResponses(timedOutResponses.get())
+                .reevaluations(reevaluations.get())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        waiters.values().forEach(waiter -> waiter.result().setResult(notModified(waiter.etag())));
+        executor.shutdownNow();
+    }
+
+    private static ResponseEntity<Map<Integer, Integer>> toResponse(DevicePollResponse<Map<Integer, Integer>> response) {
+        if (response.notModified()) {
+            return notModified(response.etag());
+        }
+        return ResponseEntity.ok()
+                .eTag(response.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response.body());
+    }
+
+    private static ResponseEntity<Map<Integer, Integer>> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+}
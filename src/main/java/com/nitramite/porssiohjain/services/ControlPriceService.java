@@ -14,8 +14,8 @@ package com.nitramite.porssiohjain.services;
 import com.nitramite.porssiohjain.entity.ControlEntity;
 import com.nitramite.porssiohjain.entity.ElectricityContractEntity;
 import com.nitramite.porssiohjain.entity.NordpoolEntity;
-import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
 import com.nitramite.porssiohjain.services.nordpool.NordpoolMarket;
+import com.nitramite.porssiohjain.services.nordpool.NordpoolPriceCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -28,12 +28,11 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class ControlPriceService {
 
-    private final NordpoolRepository nordpoolRepository;
+    private final NordpoolPriceCache nordpoolPriceCache;
 
     public Optional<BigDecimal> getCurrentCombinedPrice(ControlEntity control, Instant now) {
-        return nordpoolRepository.findFirstByMarketIndexNameAndDeliveryStartLessThanEqualAndDeliveryEndGreaterThan(
+        return nordpoolPriceCache.findPriceAt(
                         NordpoolMarket.normalize(control.getAccount().getMarketIndexName()),
-                        now,
                         now
                 )
                 .map(currentPrice -> getCombinedPrice(control, currentPrice));
@@ -0,0 +1,123 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Rule mappings, active control table rows, power limit interval sums and weather
+ * for a set of devices, loaded up front with set based queries so that the whole
+ * MQTT fleet can be evaluated in memory.
+ */
+final class ControlRuleSnapshot implements ControlRuleSource {
+
+    private final Map<Long, List<PowerLimitDeviceEntity>> powerLimitDevicesByDeviceId;
+    private final Map<Long, BigDecimal> intervalSumsByPowerLimitId;
+    private final Map<Long, List<ProductionSourceDeviceEntity>> productionSourceDevicesByDeviceId;
+    private final Map<Long, List<WeatherControlDeviceEntity>> weatherControlDevicesByDeviceId;
+    private final Map<Long, List<ControlDeviceEntity>> controlDevicesByDeviceId;
+    private final Map<Long, ControlTableEntity> activeControlTablesByControlId;
+    private final Map<Long, SiteWeatherEntity> weatherBySiteId;
+    private final Map<Long, List<LoadSheddingNodeEntity>> loadSheddingNodesByAccountId;
+    private final Map<Long, List<LoadSheddingLinkEntity>> loadSheddingLinksByAccountId;
+
+    ControlRuleSnapshot(
+            List<PowerLimitDeviceEntity> powerLimitDevices,
+            Map<Long, BigDecimal> intervalSumsByPowerLimitId,
+            List<ProductionSourceDeviceEntity> productionSourceDevices,
+            List<WeatherControlDeviceEntity> weatherControlDevices,
+            List<ControlDeviceEntity> controlDevices,
+            List<ControlTableEntity> activeControlTables,
+            Map<Long, SiteWeatherEntity> weatherBySiteId,
+            List<LoadSheddingNodeEntity> loadSheddingNodes,
+            List<LoadSheddingLinkEntity> loadSheddingLinks
+    ) {
+        this.powerLimitDevicesByDeviceId = groupBy(powerLimitDevices, pld -> pld.getDevice().getId());
+        this.intervalSumsByPowerLimitId = intervalSumsByPowerLimitId;
+        this.productionSourceDevicesByDeviceId = groupBy(productionSourceDevices, psd -> psd.getDevice().getId());
+        this.weatherControlDevicesByDeviceId = groupBy(weatherControlDevices, wcd -> wcd.getDevice().getId());
+        this.controlDevicesByDeviceId = groupBy(controlDevices, cd -> cd.getDevice().getId());
+        this.activeControlTablesByControlId = new HashMap<>();
+        for (ControlTableEntity controlTable : activeControlTables) {
+            this.activeControlTablesByControlId.putIfAbsent(controlTable.getControl().getId(), controlTable);
+        }
+        this.weatherBySiteId = weatherBySiteId;
+        this.loadSheddingNodesByAccountId = groupBy(loadSheddingNodes, node -> node.getAccount().getId());
+        this.loadSheddingLinksByAccountId = groupBy(loadSheddingLinks, link -> link.getAccount().getId());
+    }
+
+    @Override
+    public List<PowerLimitDeviceEntity> powerLimitDevices(DeviceEntity device) {
+        return powerLimitDevicesByDeviceId.getOrDefault(device.getId(), List.of());
+    }
+
+    @Override
+    public List<PowerLimitDeviceEntity> powerLimitDevices(DeviceEntity device, int deviceChannel) {
+        return powerLimitDevices(device).stream()
+                .filter(pld -> pld.getDeviceChannel() == deviceChannel)
+                .toList();
+    }
+
+    @Override
+    public Optional<BigDecimal> currentIntervalSum(PowerLimitEntity powerLimit) {
+        return Optional.ofNullable(intervalSumsByPowerLimitId.get(powerLimit.getId()));
+    }
+
+    @Override
+    public List<ProductionSourceDeviceEntity> productionSourceDevices(DeviceEntity device) {
+        return productionSourceDevicesByDeviceId.getOrDefault(device.getId(), List.of());
+    }
+
+    @Override
+    public List<WeatherControlDeviceEntity> weatherControlDevices(DeviceEntity device) {
+        return weatherControlDevicesByDeviceId.getOrDefault(device.getId(), List.of());
+    }
+
+    @Override
+    public List<ControlDeviceEntity> controlDevices(DeviceEntity device) {
+        return controlDevicesByDeviceId.getOrDefault(device.getId(), List.of());
+    }
+
+    @Override
+    public Optional<ControlTableEntity> activeControlTable(ControlEntity control, Instant nowUtc) {
+        return Optional.ofNullable(activeControlTablesByControlId.get(control.getId()));
+    }
+
+    @Override
+    public Optional<SiteWeatherEntity> currentWeather(SiteEntity site, Instant now) {
+        return Optional.ofNullable(weatherBySiteId.get(site.getId()));
+    }
+
+    @Override
+    public List<LoadSheddingNodeEntity> loadSheddingNodes(Long accountId) {
+        return loadSheddingNodesByAccountId.getOrDefault(accountId, List.of());
+    }
+
+    @Override
+    public List<LoadSheddingLinkEntity> loadSheddingLinks(Long accountId) {
+        return loadSheddingLinksByAccountId.getOrDefault(accountId, List.of());
+    }
+
+    private static <T> Map<Long, List<T>> groupBy(List<T> values, Function<T, Long> key) {
+        Map<Long, List<T>> grouped = new HashMap<>();
+        for (T value : values) {
+            grouped.computeIfAbsent(key.apply(value), ignored -> new ArrayList<>()).add(value);
+        }
+        return grouped;
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Inputs consumed by the device channel evaluation in {@link ControlService}.
+ * Implemented once on top of the repositories (single device lookups) and once
+ * as a preloaded {@link ControlRuleSnapshot} for evaluating the whole fleet.
+ */
+interface ControlRuleSource {
+
+    List<PowerLimitDeviceEntity> powerLimitDevices(DeviceEntity device);
+
+    List<PowerLimitDeviceEntity> powerLimitDevices(DeviceEntity device, int deviceChannel);
+
+    Optional<BigDecimal> currentIntervalSum(PowerLimitEntity powerLimit);
+
+    List<ProductionSourceDeviceEntity> productionSourceDevices(DeviceEntity device);
+
+    List<WeatherControlDeviceEntity> weatherControlDevices(DeviceEntity device);
+
+    List<ControlDeviceEntity> controlDevices(DeviceEntity device);
+
+    Optional<ControlTableEntity> activeControlTable(ControlEntity control, Instant nowUtc);
+
+    Optional<SiteWeatherEntity> currentWeather(SiteEntity site, Instant now);
+
+    List<LoadSheddingNodeEntity> loadSheddingNodes(Long accountId);
+
+    List<LoadSheddingLinkEntity> loadSheddingLinks(Long accountId);
+
+}
@@ -19,10 +19,10 @@ import com.nitramite.porssiohjain.entity.NordpoolEntity;
 import com.nitramite.porssiohjain.entity.enums.Status;
 import com.nitramite.porssiohjain.entity.repository.ControlRepository;
 import com.nitramite.porssiohjain.entity.repository.ControlTableRepository;
-import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
 import com.nitramite.porssiohjain.services.models.ControlSavingsResponse;
 import com.nitramite.porssiohjain.services.models.ControlSavingsSummaryResponse;
 import com.nitramite.porssiohjain.services.nordpool.NordpoolMarket;
+import com.nitramite.porssiohjain.services.nordpool.NordpoolPriceCache;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -53,7 +53,7 @@ public class ControlSavingsService {
 
     private final ControlRepository controlRepository;
     private final ControlTableRepository controlTableRepository;
-    private final NordpoolRepository nordpoolRepository;
+    private final NordpoolPriceCache nordpoolPriceCache;
     private final Map<SavingsCacheKey, SavingsCacheEntry> savingsCache = new ConcurrentHashMap<>();
 
     @Transactional
@@ -166,7 +166,7 @@ public class ControlSavingsService {
                         from,
                         to
                 );
-        List<NordpoolEntity> prices = nordpoolRepository.findPricesBetween(
+        List<NordpoolEntity> prices = nordpoolPriceCache.findPricesBetween(
                 NordpoolMarket.normalize(control.getAccount().getMarketIndexName()),
                 from,
                 to
@@ -22,12 +22,25 @@ import com.nitramite.porssiohjain.services.nordpool.NordpoolMarket;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -35,11 +48,20 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ControlSchedulerService {
 
+    private static final int BATCH_SIZE = 500;
+    private static final ThreadLocal<CheapestHoursOptimizer> OPTIMIZER =
+            ThreadLocal.withInitial(() -> new CheapestHoursOptimizer(256));
+
     private final NordpoolRepository nordpoolRepository;
     private final ControlRepository controlRepository;
     private final ControlTableRepository controlTableRepository;
     private final SystemLogService systemLogService;
     private final ControlPriceService controlPriceService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${control.scheduler.parallelism:4}")
+    private int parallelism = 4;
 
     public List<ControlTableResponse> findByControlId(
             Long controlId
@@ -75,115 +97,265 @@ public class ControlSchedulerService {
                 .orElseThrow(() -> new IllegalArgumentException("Control not found: " + controlId));
         Instant startOfDay = Instant.now().truncatedTo(ChronoUnit.DAYS);
         Instant endOfDay = startOfDay.plus(2, ChronoUnit.DAYS);
-        generateInternal(List.of(control), startOfDay, endOfDay);
+        List<NordpoolEntity> prices = nordpoolRepository.findByMarketIndexNameAndDeliveryStartBetween(
+                NordpoolMarket.normalize(control.getAccount().getMarketIndexName()),
+                startOfDay,
+                endOfDay
+        );
+        writeSchedule(control, startOfDay, endOfDay, planSlots(control, prices), fingerprint(control, prices, startOfDay, endOfDay));
     }
 
-    @Transactional
+    /**
+     * Regenerates the schedules of all controls. Prices are loaded once per market and
+     * controls are planned on {@code control.scheduler.parallelism} threads, each one
+     * written in its own short transaction. Controls whose prices and settings did not
+     * change since the last run keep their rows.
+     */
     public void generatePlannedForTomorrow() {
         Instant startOfDay = Instant.now().truncatedTo(ChronoUnit.DAYS);
         Instant endOfDay = startOfDay.plus(2, ChronoUnit.DAYS);
-        List<ControlEntity> controls = controlRepository.findAll();
+        Map<String, List<ControlEntity>> controlsByMarket = controlRepository.findAllForScheduling().stream()
+                .collect(Collectors.groupingBy(control -> NordpoolMarket.normalize(control.getAccount().getMarketIndexName())));
         log.info("generatePlannedForTomorrow for time {} - {}", startOfDay, endOfDay.toString());
-        generateInternal(controls, startOfDay, endOfDay);
+
+        AtomicInteger generated = new AtomicInteger();
+        AtomicInteger unchanged = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            controlsByMarket.forEach((market, controls) -> {
+                List<NordpoolEntity> prices = nordpoolRepository.findByMarketIndexNameAndDeliveryStartBetween(
+                        market, startOfDay, endOfDay
+                );
+                for (ControlEntity control : controls) {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            String fingerprint = fingerprint(control, prices, startOfDay, endOfDay);
+                            if (fingerprint.equals(control.getScheduleFingerprint())) {
+                                unchanged.incrementAndGet();
+                                return;
+                            }
+                            List<PlannedSlot> slots = planSlots(control, prices);
+                            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                                    writeSchedule(control, startOfDay, endOfDay, slots, fingerprint)
+                            );
+                            generated.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                            log.error("Failed to generate schedule for control {}", control.getId(), e);
+                        }
+                    }));
+                }
+            });
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating control schedules", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Control schedule generation failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        log.info("generatePlannedForTomorrow finished: markets={}, generated={}, unchanged={}, failed={}",
+                controlsByMarket.size(), generated.get(), unchanged.get(), failed.get());
         systemLogService.log("Scheduled run of function 'generatePlannedForTomorrow' completed.");
     }
 
-    private void generateInternal(
-            List<ControlEntity> controls,
+    private void writeSchedule(
+            ControlEntity control,
             Instant startTime,
-            Instant endTime
+            Instant endTime,
+            List<PlannedSlot> slots,
+            String fingerprint
     ) {
-        for (ControlEntity control : controls) {
-            List<NordpoolEntity> prices = nordpoolRepository.findByMarketIndexNameAndDeliveryStartBetween(
-                    NordpoolMarket.normalize(control.getAccount().getMarketIndexName()),
-                    startTime,
-                    endTime
-            );
-            ControlMode controlMode = control.getMode();
-
-            controlTableRepository.deleteByControlAndStartTimeBetween(control, startTime, endTime);
-            controlTableRepository.flush();
-
-            if (controlMode.equals(ControlMode.BELOW_MAX_PRICE)) {
-                for (NordpoolEntity priceEntry : prices) {
-                    BigDecimal combinedPrice = controlPriceService.getCombinedPrice(control, priceEntry);
-                    if (combinedPrice.compareTo(control.getMaxPriceSnt()) <= 0) {
-                        ControlTableEntity entry = ControlTableEntity.builder()
-                                .control(control)
-                                .startTime(priceEntry.getDeliveryStart())
-                                .endTime(priceEntry.getDeliveryEnd())
-                                .priceSnt(combinedPrice)
-                                .status(Status.FINAL)
-                                .build();
-                        controlTableRepository.save(entry);
-                    }
-                }
-            } else if (controlMode.equals(ControlMode.CHEAPEST_HOURS)) {
-                Integer dailyOnMinutes = control.getDailyOnMinutes();
-                BigDecimal maxPriceSnt = control.getMaxPriceSnt();
-                BigDecimal minPriceSnt = control.getMinPriceSnt();
-                ZoneId controlZone = ZoneId.of(control.getTimezone());
-                boolean alwaysOnBelowMinPrice = control.isAlwaysOnBelowMinPrice();
-                Map<Instant, BigDecimal> combinedPriceByPeriod = new HashMap<>();
-                for (NordpoolEntity p : prices) {
-                    BigDecimal combinedPrice = controlPriceService.getCombinedPrice(control, p);
-                    combinedPriceByPeriod.put(p.getDeliveryStart(), combinedPrice);
+        jdbcTemplate.update(
+                "DELETE FROM control_table WHERE control_id = ? AND start_time BETWEEN ? AND ?",
+                control.getId(), toOffsetDateTime(startTime), toOffsetDateTime(endTime)
+        );
+        OffsetDateTime now = toOffsetDateTime(Instant.now());
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO control_table (control_id, start_time, end_time, price_snt, status, created_at, updated_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?)
+                """, slots, BATCH_SIZE, (ps, slot) -> {
+            ps.setLong(1, control.getId());
+            ps.setObject(2, toOffsetDateTime(slot.startTime()));
+            ps.setObject(3, toOffsetDateTime(slot.endTime()));
+            ps.setBigDecimal(4, slot.priceSnt());
+            ps.setString(5, Status.FINAL.name());
+            ps.setObject(6, now);
+            ps.setObject(7, now);
+        });
+        jdbcTemplate.update("UPDATE control SET schedule_fingerprint = ? WHERE id = ?", fingerprint, control.getId());
+        ControlInputChangeListener.changed(null);
+    }
+
+    private List<PlannedSlot> planSlots(ControlEntity control, List<NordpoolEntity> prices) {
+        List<PlannedSlot> slots = new ArrayList<>();
+        ControlMode controlMode = control.getMode();
+
+        if (controlMode.equals(ControlMode.BELOW_MAX_PRICE)) {
+            for (NordpoolEntity priceEntry : prices) {
+                BigDecimal combinedPrice = controlPriceService.getCombinedPrice(control, priceEntry);
+                if (combinedPrice.compareTo(control.getMaxPriceSnt()) <= 0) {
+                    slots.add(new PlannedSlot(priceEntry.getDeliveryStart(), priceEntry.getDeliveryEnd(), combinedPrice));
                 }
-                Map<LocalDate, List<NordpoolEntity>> pricesByDay = prices.stream().collect(Collectors.groupingBy(p -> p.getDeliveryStart().atZone(controlZone).toLocalDate()));
-                for (Map.Entry<LocalDate, List<NordpoolEntity>> dayEntry : pricesByDay.entrySet()) {
-                    List<NordpoolEntity> dailyPrices = dayEntry.getValue();
-                    int accumulatedMinutes = 0;
-                    List<NordpoolEntity> alwaysOnPeriods = Collections.emptyList();
-                    if (alwaysOnBelowMinPrice) {
-                        alwaysOnPeriods = dailyPrices.stream()
-                                .filter(p -> combinedPriceByPeriod.get(p.getDeliveryStart()).compareTo(minPriceSnt) <= 0)
-                                .sorted(Comparator.comparing(p -> combinedPriceByPeriod.get(p.getDeliveryStart())))
-                                .toList();
-                        for (NordpoolEntity priceEntry : alwaysOnPeriods) {
-                            BigDecimal combinedPrice = combinedPriceByPeriod.get(priceEntry.getDeliveryStart());
-                            int periodMinutes = (int) Duration.between(priceEntry.getDeliveryStart(), priceEntry.getDeliveryEnd()).toMinutes();
-                            int minutesToUse = (periodMinutes / 15) * 15;
-                            if (minutesToUse <= 0) continue;
-                            Instant end = priceEntry.getDeliveryStart().plus(Duration.ofMinutes(minutesToUse));
-                            controlTableRepository.save(ControlTableEntity.builder().control(control).startTime(priceEntry.getDeliveryStart()).endTime(end).priceSnt(combinedPrice).status(Status.FINAL).build());
-                            accumulatedMinutes += minutesToUse;
-                        }
-                    }
-                    if (accumulatedMinutes >= dailyOnMinutes) continue;
-                    Set<NordpoolEntity> alwaysOnSet = new HashSet<>(alwaysOnPeriods);
-                    List<NordpoolEntity> eligiblePrices = dailyPrices.stream()
-                            .filter(p -> !alwaysOnSet.contains(p))
-                            .filter(p -> combinedPriceByPeriod.get(p.getDeliveryStart()).compareTo(maxPriceSnt) <= 0)
-                            .sorted(Comparator.comparing(p -> combinedPriceByPeriod.get(p.getDeliveryStart())))
-                            .toList();
-                    for (NordpoolEntity priceEntry : eligiblePrices) {
-                        if (accumulatedMinutes >= dailyOnMinutes) break;
-                        BigDecimal combinedPrice = combinedPriceByPeriod.get(priceEntry.getDeliveryStart());
-                        int periodMinutes = (int) Duration.between(priceEntry.getDeliveryStart(), priceEntry.getDeliveryEnd()).toMinutes();
-                        int minutesLeft = dailyOnMinutes - accumulatedMinutes;
-                        int minutesToUse = Math.min(periodMinutes, minutesLeft);
-                        minutesToUse = (minutesToUse / 15) * 15;
-                        if (minutesToUse <= 0) continue;
-                        Instant end = priceEntry.getDeliveryStart().plus(Duration.ofMinutes(minutesToUse));
-                        controlTableRepository.save(ControlTableEntity.builder().control(control).startTime(priceEntry.getDeliveryStart()).endTime(end).priceSnt(combinedPrice).status(Status.FINAL).build());
-                        accumulatedMinutes += minutesToUse;
-                    }
+            }
+        } else if (controlMode.equals(ControlMode.CHEAPEST_HOURS)) {
+            planCheapestHours(control, prices, slots);
+        } else if (controlMode.equals(ControlMode.MANUAL)) {
+            for (NordpoolEntity priceEntry : prices) {
+                BigDecimal priceSnt = controlPriceService.getCombinedPrice(control, priceEntry);
+                slots.add(new PlannedSlot(priceEntry.getDeliveryStart(), priceEntry.getDeliveryEnd(), priceSnt));
+            }
+        }
+        return slots;
+    }
+
+    private void planCheapestHours(ControlEntity control, List<NordpoolEntity> prices, List<PlannedSlot> slots) {
+        int dailyOnMinutes = control.getDailyOnMinutes();
+        ZoneId controlZone = ZoneId.of(control.getTimezone());
+        BigDecimal[] combinedPrices = new BigDecimal[prices.size()];
+        for (int i = 0; i < combinedPrices.length; i++) {
+            combinedPrices[i] = controlPriceService.getCombinedPrice(control, prices.get(i));
+        }
+        long[] keys = priceKeys(combinedPrices, control.getMinPriceSnt(), control.getMaxPriceSnt());
+
+        CheapestHoursOptimizer optimizer = OPTIMIZER.get();
+        optimizer.clear();
+        for (int i = 0; i < combinedPrices.length; i++) {
+            NordpoolEntity price = prices.get(i);
+            int units = (int) Duration.between(price.getDeliveryStart(), price.getDeliveryEnd()).toMinutes()
+                    / CheapestHoursOptimizer.UNIT_MINUTES;
+            int day = (int) price.getDeliveryStart().atZone(controlZone).toLocalDate().toEpochDay();
+            long startMinute = price.getDeliveryStart().getEpochSecond() / 60;
+            for (int unit = 0; unit < units; unit++) {
+                optimizer.add(keys[i], day, startMinute + (long) unit * CheapestHoursOptimizer.UNIT_MINUTES);
+            }
+        }
+        boolean[] on = optimizer.optimize(
+                keys[combinedPrices.length],
+                keys[combinedPrices.length + 1],
+                control.isAlwaysOnBelowMinPrice(),
+                dailyOnMinutes,
+                new CheapestHoursOptimizer.Constraints(
+                        control.getMinRunMinutes() != null ? control.getMinRunMinutes() : 0,
+                        control.getMaxOffGapMinutes() != null ? control.getMaxOffGapMinutes() : 0,
+                        control.isRollingDailyWindow()
+                )
+        );
+
+        int unitIndex = 0;
+        for (int i = 0; i < combinedPrices.length; i++) {
+            NordpoolEntity price = prices.get(i);
+            int units = (int) Duration.between(price.getDeliveryStart(), price.getDeliveryEnd()).toMinutes()
+                    / CheapestHoursOptimizer.UNIT_MINUTES;
+            int runStart = -1;
+            for (int unit = 0; unit <= units; unit++) {
+                boolean unitOn = unit < units && on[unitIndex + unit];
+                if (unitOn && runStart < 0) {
+                    runStart = unit;
+                } else if (!unitOn && runStart >= 0) {
+                    Instant start = price.getDeliveryStart().plus(Duration.ofMinutes((long) runStart * CheapestHoursOptimizer.UNIT_MINUTES));
+                    Instant end = price.getDeliveryStart().plus(Duration.ofMinutes((long) unit * CheapestHoursOptimizer.UNIT_MINUTES));
+                    slots.add(new PlannedSlot(start, end, combinedPrices[i]));
+                    runStart = -1;
                 }
-            } else if (controlMode.equals(ControlMode.MANUAL)) {
-                for (NordpoolEntity priceEntry : prices) {
-                    BigDecimal priceSnt = controlPriceService.getCombinedPrice(control, priceEntry);
-                    ControlTableEntity entry = ControlTableEntity.builder()
-                            .control(control)
-                            .startTime(priceEntry.getDeliveryStart())
-                            .endTime(priceEntry.getDeliveryEnd())
-                            .priceSnt(priceSnt)
-                            .status(Status.FINAL)
-                            .build();
-                    controlTableRepository.save(entry);
+            }
+            unitIndex += units;
+        }
+    }
+
+    /**
+     * Order preserving {@code long} keys for the combined prices followed by the min and
+     * max price. Values are scaled to their largest scale, or ranked when that overflows.
+     * A missing min or max price matches no period.
+     */
+    static long[] priceKeys(BigDecimal[] prices, BigDecimal minPrice, BigDecimal maxPrice) {
+        BigDecimal[] values = Arrays.copyOf(prices, prices.length + 2);
+        values[prices.length] = minPrice;
+        values[prices.length + 1] = maxPrice;
+        int scale = 0;
+        for (BigDecimal value : values) {
+            if (value != null) {
+                scale = Math.max(scale, value.scale());
+            }
+        }
+        long[] keys = new long[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                keys[i] = values[i] == null
+                        ? Long.MIN_VALUE
+                        : values[i].setScale(scale, RoundingMode.UNNECESSARY).longValueExact();
+            }
+            return keys;
+        } catch (ArithmeticException e) {
+            BigDecimal[] sorted = Arrays.stream(values).filter(Objects::nonNull).toArray(BigDecimal[]::new);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (BigDecimal value : sorted) {
+                if (distinct == 0 || sorted[distinct - 1].compareTo(value) != 0) {
+                    sorted[distinct++] = value;
                 }
             }
+            BigDecimal[] ranks = Arrays.copyOf(sorted, distinct);
+            for (int i = 0; i < values.length; i++) {
+                keys[i] = values[i] == null ? Long.MIN_VALUE : Arrays.binarySearch(ranks, values[i]);
+            }
+            return keys;
+        }
+    }
 
+    /**
+     * Hash of everything {@link #planSlots} reads, used to skip controls whose schedule
+     * would come out the same.
+     */
+    static String fingerprint(ControlEntity control, List<NordpoolEntity> prices, Instant startTime, Instant endTime) {
+        StringBuilder input = new StringBuilder()
+                .append(startTime).append('|').append(endTime)
+                .append('|').append(control.getMode())
+                .append('|').append(plain(control.getMaxPriceSnt()))
+                .append('|').append(plain(control.getMinPriceSnt()))
+                .append('|').append(control.getDailyOnMinutes())
+                .append('|').append(plain(control.getTaxPercent()))
+                .append('|').append(control.getTimezone())
+                .append('|').append(control.isAlwaysOnBelowMinPrice())
+                .append('|').append(control.getMinRunMinutes())
+                .append('|').append(control.getMaxOffGapMinutes())
+                .append('|').append(control.isRollingDailyWindow());
+        ElectricityContractEntity transferContract = control.getTransferContract();
+        if (transferContract != null) {
+            input.append("|transfer:")
+                    .append(plain(transferContract.getStaticPrice())).append(',')
+                    .append(plain(transferContract.getDayPrice())).append(',')
+                    .append(plain(transferContract.getNightPrice())).append(',')
+                    .append(plain(transferContract.getTaxAmount()));
+        }
+        for (NordpoolEntity price : prices) {
+            input.append('|').append(price.getDeliveryStart())
+                    .append(',').append(price.getDeliveryEnd())
+                    .append(',').append(plain(price.getPriceFi()));
         }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(input.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String plain(BigDecimal value) {
+        return value == null ? "null" : value.stripTrailingZeros().toPlainString();
+    }
+
+    private static OffsetDateTime toOffsetDateTime(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+
+    private record PlannedSlot(Instant startTime, Instant endTime, BigDecimal priceSnt) {
     }
 
 }
@@ -20,10 +20,12 @@ import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -62,6 +64,13 @@ public class ControlService {
     private final ThermostatCurveService thermostatCurveService;
     private final ControlPriceService controlPriceService;
     private final DemoAccountGuard demoAccountGuard;
+    private final RelayStateService relayStateService;
+    private final DeviceHeartbeatRegistry deviceHeartbeatRegistry;
+    private final DevicePollStateCache devicePollStateCache;
+    private final ControlRuleSource repositoryRuleSource = new RepositoryControlRuleSource();
+
+    @Value("${app.control.mqtt-batch-evaluation:true}")
+    private boolean mqttBatchEvaluation = true;
 
     public ControlEntity createControl(
             Long accountId, String name, String timezone,
@@ -139,6 +148,21 @@ public class ControlService {
         }
     }
 
+    public ControlEntity updateScheduleConstraints(
+            Long accountId, Long controlId, Integer minRunMinutes, Integer maxOffGapMinutes, Boolean rollingDailyWindow
+    ) {
+        demoAccountGuard.assertWritable(accountId);
+        if ((minRunMinutes != null && minRunMinutes < 0) || (maxOffGapMinutes != null && maxOffGapMinutes < 0)) {
+            throw new IllegalArgumentException("Schedule constraint minutes cannot be negative");
+        }
+        ControlEntity control = controlRepository.findByIdAndAccountId(controlId, accountId)
+                .orElseThrow(() -> new EntityNotFoundException("Control not found with id: " + controlId));
+        control.setMinRunMinutes(minRunMinutes);
+        control.setMaxOffGapMinutes(maxOffGapMinutes);
+        control.setRollingDailyWindow(Boolean.TRUE.equals(rollingDailyWindow));
+        return controlRepository.save(control);
+    }
+
     public void deleteControl(
             Long accountId, Long controlId
     ) {
@@ -185,6 +209,9 @@ public class ControlService {
                 .mode(entity.getMode())
                 .manualOn(entity.isManualOn())
                 .alwaysOnBelowMinPrice(entity.isAlwaysOnBelowMinPrice())
+                .minRunMinutes(entity.getMinRunMinutes())
+                .maxOffGapMinutes(entity.getMaxOffGapMinutes())
+                .rollingDailyWindow(entity.isRollingDailyWindow())
                 .createdAt(entity.getCreatedAt())
                 .updatedAt(entity.getUpdatedAt())
                 .shared(false)
@@ -201,6 +228,9 @@ public class ControlService {
                 .mode(entity.getMode())
                 .manualOn(entity.isManualOn())
                 .alwaysOnBelowMinPrice(entity.isAlwaysOnBelowMinPrice())
+                .minRunMinutes(entity.getMinRunMinutes())
+                .maxOffGapMinutes(entity.getMaxOffGapMinutes())
+                .rollingDailyWindow(entity.isRollingDailyWindow())
                 .createdAt(entity.getCreatedAt())
                 .updatedAt(entity.getUpdatedAt())
                 .shared(true)
@@ -226,6 +256,9 @@ public class ControlService {
                     .mode(entity.getMode())
                     .manualOn(entity.isManualOn())
                     .alwaysOnBelowMinPrice(entity.isAlwaysOnBelowMinPrice())
+                    .minRunMinutes(entity.getMinRunMinutes())
+                    .maxOffGapMinutes(entity.getMaxOffGapMinutes())
+                    .rollingDailyWindow(entity.isRollingDailyWindow())
                     .energyContractId(entity.getEnergyContract() != null ? entity.getEnergyContract().getId() : null)
                     .energyContractName(entity.getEnergyContract() != null ? entity.getEnergyContract().getName() : null)
                     .transferContractId(entity.getTransferContract() != null ? entity.getTransferContract().getId() : null)
@@ -256,6 +289,9 @@ public class ControlService {
                     .mode(entity.getMode())
                     .manualOn(entity.isManualOn())
                     .alwaysOnBelowMinPrice(entity.isAlwaysOnBelowMinPrice())
+                    .minRunMinutes(entity.getMinRunMinutes())
+                    .maxOffGapMinutes(entity.getMaxOffGapMinutes())
+                    .rollingDailyWindow(entity.isRollingDailyWindow())
                     .energyContractId(entity.getEnergyContract() != null ? entity.getEnergyContract().getId() : null)
                     .energyContractName(entity.getEnergyContract() != null ? entity.getEnergyContract().getName() : null)
                     .transferContractId(entity.getTransferContract() != null ? entity.getTransferContract().getId() : null)
@@ -688,37 +724,227 @@ public class ControlService {
             boolean updateHeartbeat,
             boolean sendActivationNotifications
     ) {
+        Instant nowUtc = Instant.now(); // current UTC time
+        DeviceEntity device = findPolledDevice(deviceUuid, updateHeartbeat, nowUtc);
+        return evaluateControls(repositoryRuleSource, device, nowUtc, sendActivationNotifications, new HashMap<>());
+    }
+
+    /**
+     * Conditional variant of {@link #getControlsForDevice(String)}. When {@code ifNoneMatch}
+     * holds the ETag of the last answer and no input of the device changed since, only the
+     * heartbeat is recorded and the body is left out.
+     */
+    public DevicePollResponse<Map<Integer, Integer>> getControlsForDevice(
+            String deviceUuid,
+            String ifNoneMatch
+    ) {
+        UUID uuid = UUID.fromString(deviceUuid);
+        Instant nowUtc = Instant.now();
+        Optional<String> cachedEtag = devicePollStateCache.matching(
+                DevicePollStateCache.Kind.CONTROLS, uuid, ifNoneMatch, nowUtc);
+        if (cachedEtag.isPresent()) {
+            deviceHeartbeatRegistry.record(uuid, nowUtc);
+            return new DevicePollResponse<>(cachedEtag.get(), null);
+        }
+
+        DeviceEntity device = findPolledDevice(deviceUuid, true, nowUtc);
+        long inputVersion = devicePollStateCache.inputVersion(device.getId());
+        TrackingControlRuleSource rules = new TrackingControlRuleSource(repositoryRuleSource);
+        Map<Integer, Integer> controls = evaluateControls(rules, device, nowUtc, true, new HashMap<>());
+        String etag = devicePollStateCache.store(
+                DevicePollStateCache.Kind.CONTROLS,
+                uuid,
+                device.getId(),
+                inputVersion,
+                new TreeMap<>(controls).toString(),
+                nowUtc,
+                rules.readLiveInputs(),
+                nextScheduleChange(rules, nowUtc)
+        );
+        return new DevicePollResponse<>(etag, DevicePollStateCache.matches(ifNoneMatch, etag) ? null : controls);
+    }
+
+    private DeviceEntity findPolledDevice(String deviceUuid, boolean updateHeartbeat, Instant nowUtc) {
         DeviceEntity device = deviceRepository.findByUuid(UUID.fromString(deviceUuid))
                 .orElseThrow(() -> new EntityNotFoundException("Device not found: " + deviceUuid));
-
-        Instant nowUtc = Instant.now(); // current UTC time
         if (updateHeartbeat) {
-            boolean wasApiOnline = device.isApiOnline();
-            boolean wasMqttOnline = device.isMqttOnline();
-            device.setLastCommunication(nowUtc);
-            device.setApiOnline(true);
-            deviceRepository.save(device);
-            deviceOfflineNotificationService.sendIfDeviceCameOnline(
-                    device,
-                    wasApiOnline,
-                    wasMqttOnline,
-                    "API",
-                    nowUtc
+            deviceHeartbeatRegistry.record(device.getUuid(), nowUtc);
+            if (!device.isApiOnline()) {
+                boolean wasMqttOnline = device.isMqttOnline();
+                device.setLastCommunication(nowUtc);
+                device.setApiOnline(true);
+                deviceRepository.save(device);
+                deviceOfflineNotificationService.sendIfDeviceCameOnline(
+                        device,
+                        false,
+                        wasMqttOnline,
+                        "API",
+                        nowUtc
+                );
+            }
+        }
+        return device;
+    }
+
+    /**
+     * Earliest time a scheduled control read by the evaluation turns on or off, counting
+     * the lookback after which an active row is no longer picked up.
+     */
+    private Instant nextScheduleChange(TrackingControlRuleSource rules, Instant nowUtc) {
+        Instant next = null;
+        for (Map.Entry<Long, Optional<ControlTableEntity>> entry : rules.activeControlTables().entrySet()) {
+            Optional<Instant> change = entry.getValue()
+                    .map(row -> earliest(row.getEndTime(), row.getStartTime().plusSeconds(CONTROL_LOOKBACK_SECONDS)))
+                    .or(() -> controlTableRepository
+                            .findFirstByControlIdAndStatusAndStartTimeAfterOrderByStartTimeAsc(entry.getKey(), Status.FINAL, nowUtc)
+                            .map(ControlTableEntity::getStartTime));
+            if (change.isPresent()) {
+                next = earliest(next, change.get());
+            }
+        }
+        return next;
+    }
+
+    private static Instant earliest(Instant first, Instant second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null || first.isBefore(second) ? first : second;
+    }
+
+    /**
+     * Evaluates channel states for several devices at once. Rule mappings, active control
+     * table rows, power limit sums and weather are loaded with a handful of set based
+     * queries instead of per device lookups, results match {@link #getControlsSnapshotForDevice}.
+     *
+     * @param devices to evaluate
+     * @return channel status map per device uuid
+     */
+    public Map<UUID, Map<Integer, Integer>> getControlsSnapshotForDevices(
+            Collection<DeviceEntity> devices
+    ) {
+        return evaluateControlsForDevices(devices, Instant.now(), false);
+    }
+
+    private Map<UUID, Map<Integer, Integer>> evaluateControlsForDevices(
+            Collection<DeviceEntity> devices,
+            Instant nowUtc,
+            boolean sendActivationNotifications
+    ) {
+        Map<UUID, Map<Integer, Integer>> controlsByDevice = new LinkedHashMap<>();
+        if (devices.isEmpty()) {
+            return controlsByDevice;
+        }
+        ControlRuleSnapshot snapshot = loadControlRuleSnapshot(devices, nowUtc);
+        Map<Long, Map<Integer, Integer>> baseStatesByDeviceId = new HashMap<>();
+        for (DeviceEntity device : devices) {
+            controlsByDevice.put(
+                    device.getUuid(),
+                    evaluateControls(snapshot, device, nowUtc, sendActivationNotifications, baseStatesByDeviceId)
             );
         }
+        return controlsByDevice;
+    }
 
+    private Map<Integer, Integer> evaluateControls(
+            ControlRuleSource rules,
+            DeviceEntity device,
+            Instant nowUtc,
+            boolean sendActivationNotifications,
+            Map<Long, Map<Integer, Integer>> baseStatesByDeviceId
+    ) {
         Map<Integer, Integer> channelMap = new HashMap<>();
         if (!device.isEnabled()) {
             return channelMap;
         }
 
-        channelMap.putAll(getBaseControlsForDevice(device, nowUtc, sendActivationNotifications));
-        applyLoadSheddingOverrides(device, nowUtc, channelMap, sendActivationNotifications);
-        enforcePowerLimitPriority(device, channelMap);
+        channelMap.putAll(baseStatesByDeviceId.computeIfAbsent(
+                device.getId(),
+                ignored -> getBaseControlsForDevice(rules, device, nowUtc, sendActivationNotifications)
+        ));
+        applyLoadSheddingOverrides(rules, device, nowUtc, channelMap, sendActivationNotifications, baseStatesByDeviceId);
+        enforcePowerLimitPriority(rules, device, channelMap);
 
         return channelMap;
     }
 
+    private ControlRuleSnapshot loadControlRuleSnapshot(
+            Collection<DeviceEntity> devices,
+            Instant nowUtc
+    ) {
+        Set<Long> accountIds = new HashSet<>();
+        Set<Long> deviceIds = new HashSet<>();
+        for (DeviceEntity device : devices) {
+            deviceIds.add(device.getId());
+            if (device.isEnabled() && device.getDeviceType() == DeviceType.STANDARD && device.getAccount() != null) {
+                accountIds.add(device.getAccount().getId());
+            }
+        }
+
+        List<LoadSheddingNodeEntity> nodes = accountIds.isEmpty()
+                ? List.of()
+                : loadSheddingNodeRepository.findWithDeviceByAccountIdInOrderByIdAsc(accountIds);
+        List<LoadSheddingLinkEntity> links = nodes.isEmpty()
+                ? List.of()
+                : loadSheddingLinkRepository.findByAccountIdInOrderByIdAsc(accountIds);
+        for (LoadSheddingNodeEntity node : nodes) {
+            deviceIds.add(node.getDevice().getId());
+        }
+
+        List<PowerLimitDeviceEntity> powerLimitDevices = powerLimitDeviceRepository.findWithPowerLimitByDeviceIdIn(deviceIds);
+        Map<Long, PowerLimitEntity> enabledLimits = new HashMap<>();
+        for (PowerLimitDeviceEntity pld : powerLimitDevices) {
+            if (pld.getPowerLimit().isEnabled()) {
+                enabledLimits.putIfAbsent(pld.getPowerLimit().getId(), pld.getPowerLimit());
+            }
+        }
+        Map<Long, BigDecimal> intervalSums = enabledLimits.isEmpty()
+                ? Map.of()
+                : powerLimitService.getCurrentIntervalSums(enabledLimits.values());
+
+        List<ControlDeviceEntity> controlDevices = controlDeviceRepository.findWithControlByDeviceIdIn(deviceIds);
+        Set<Long> scheduledControlIds = new HashSet<>();
+        for (ControlDeviceEntity cd : controlDevices) {
+            ControlMode mode = cd.getControl().getMode();
+            if (mode == ControlMode.CHEAPEST_HOURS || mode == ControlMode.BELOW_MAX_PRICE) {
+                scheduledControlIds.add(cd.getControl().getId());
+            }
+        }
+        List<ControlTableEntity> activeControlTables = scheduledControlIds.isEmpty()
+                ? List.of()
+                : controlTableRepository.findActiveAtForControls(
+                scheduledControlIds, Status.FINAL, nowUtc.minusSeconds(CONTROL_LOOKBACK_SECONDS), nowUtc);
+
+        List<WeatherControlDeviceEntity> weatherControlDevices = weatherControlDeviceRepository.findWithSiteByDeviceIdIn(deviceIds);
+        Set<Long> siteIds = new HashSet<>();
+        for (WeatherControlDeviceEntity rule : weatherControlDevices) {
+            if (rule.getWeatherControl() != null && rule.getWeatherControl().getSite() != null) {
+                siteIds.add(rule.getWeatherControl().getSite().getId());
+            }
+        }
+        Map<Long, SiteWeatherEntity> weatherBySiteId = new HashMap<>();
+        if (!siteIds.isEmpty()) {
+            siteWeatherRepository.findLatestAtOrBeforeForSites(siteIds, nowUtc)
+                    .forEach(weather -> weatherBySiteId.putIfAbsent(weather.getSite().getId(), weather));
+            if (weatherBySiteId.size() < siteIds.size()) {
+                siteWeatherRepository.findEarliestAtOrAfterForSites(siteIds, nowUtc)
+                        .forEach(weather -> weatherBySiteId.putIfAbsent(weather.getSite().getId(), weather));
+            }
+        }
+
+        return new ControlRuleSnapshot(
+                powerLimitDevices,
+                intervalSums,
+                productionSourceDeviceRepository.findWithProductionSourceByDeviceIdIn(deviceIds),
+                weatherControlDevices,
+                controlDevices,
+                activeControlTables,
+                weatherBySiteId,
+                nodes,
+                links
+        );
+    }
+
     private DeviceThermostatDebugResponse buildThermostatDebugResponse(
             ControlThermostatEntity rule,
             Instant now,
@@ -794,64 +1020,53 @@ public class ControlService {
     }
 
     private Map<Integer, Integer> getBaseControlsForDevice(
+            ControlRuleSource rules,
             DeviceEntity device,
             Instant nowUtc,
             boolean sendActivationNotifications
     ) {
         Map<Integer, Integer> channelMap = new HashMap<>();
 
-        List<PowerLimitDeviceEntity> powerLimitDevices = powerLimitDeviceRepository.findByDevice(device);
+        List<PowerLimitDeviceEntity> powerLimitDevices = rules.powerLimitDevices(device);
         for (PowerLimitDeviceEntity pld : powerLimitDevices) {
             int channel = pld.getDeviceChannel();
-            if (isPowerLimitActiveForDeviceChannel(device, channel)) {
+            if (isPowerLimitActiveForDeviceChannel(rules, device, channel)) {
                 channelMap.put(channel, 0);
             }
         }
 
-        Map<Integer, Integer> priorityWeatherOverrides = getWeatherOverrides(device, nowUtc, true);
+        Map<Integer, Integer> priorityWeatherOverrides = getWeatherOverrides(rules, device, nowUtc, true);
         for (Map.Entry<Integer, Integer> entry : priorityWeatherOverrides.entrySet()) {
             channelMap.putIfAbsent(entry.getKey(), entry.getValue());
         }
 
-        List<ProductionSourceDeviceEntity> prodDevices = productionSourceDeviceRepository.findByDevice(device);
+        List<ProductionSourceDeviceEntity> prodDevices = rules.productionSourceDevices(device);
         for (ProductionSourceDeviceEntity psd : prodDevices) {
             int channel = psd.getDeviceChannel();
             if (channelMap.containsKey(channel)) continue;
-            Integer productionOverride = getProductionOverride(device, channel);
+            Integer productionOverride = getProductionOverride(prodDevices, channel);
             if (productionOverride != null) {
                 channelMap.put(channel, productionOverride);
             }
         }
 
-        Map<Integer, Integer> weatherOverrides = getWeatherOverrides(device, nowUtc, false);
+        Map<Integer, Integer> weatherOverrides = getWeatherOverrides(rules, device, nowUtc, false);
         for (Map.Entry<Integer, Integer> entry : weatherOverrides.entrySet()) {
             channelMap.putIfAbsent(entry.getKey(), entry.getValue());
         }
 
-        List<ControlDeviceEntity> controlDevices = controlDeviceRepository.findByDevice(device);
+        List<ControlDeviceEntity> controlDevices = rules.controlDevices(device);
         for (ControlDeviceEntity cd : controlDevices) {
             int channel = cd.getDeviceChannel();
             if (channelMap.containsKey(channel)) continue;
 
             ControlEntity control = cd.getControl();
-            ZoneId controlZone = ZoneId.of(control.getTimezone());
             ControlMode mode = control.getMode();
 
             if (mode.equals(ControlMode.MANUAL)) {
                 channelMap.put(cd.getDeviceChannel(), control.isManualOn() ? 1 : 0);
             } else if (mode.equals(ControlMode.CHEAPEST_HOURS) || mode.equals(ControlMode.BELOW_MAX_PRICE)) {
-                ZonedDateTime nowInControlZone = nowUtc.atZone(controlZone);
-
-                Optional<ControlTableEntity> activeControlTable = controlTableRepository
-                        .findByControlIdAndStatusAndStartTimeAfterOrderByStartTimeAsc(
-                                control.getId(), Status.FINAL, nowUtc.minusSeconds(CONTROL_LOOKBACK_SECONDS))
-                        .stream()
-                        .filter(ct -> {
-                            ZonedDateTime start = ct.getStartTime().atZone(controlZone);
-                            ZonedDateTime end = ct.getEndTime().atZone(controlZone);
-                            return !nowInControlZone.isBefore(start) && !nowInControlZone.isAfter(end);
-                        })
-                        .findFirst();
+                Optional<ControlTableEntity> activeControlTable = rules.activeControlTable(control, nowUtc);
 
                 boolean active = activeControlTable.isPresent();
                 if (sendActivationNotifications) {
@@ -947,33 +1162,34 @@ public class ControlService {
     }
 
     private void applyLoadSheddingOverrides(
+            ControlRuleSource rules,
             DeviceEntity targetDevice,
             Instant nowUtc,
             Map<Integer, Integer> channelMap,
-            boolean sendActivationNotifications
+            boolean sendActivationNotifications,
+            Map<Long, Map<Integer, Integer>> baseStatesByDeviceId
     ) {
         if (targetDevice.getDeviceType() != DeviceType.STANDARD) {
             return;
         }
 
         Long accountId = targetDevice.getAccount().getId();
-        List<LoadSheddingNodeEntity> nodes = loadSheddingNodeRepository.findByAccountIdOrderByIdAsc(accountId);
+        List<LoadSheddingNodeEntity> nodes = rules.loadSheddingNodes(accountId);
         if (nodes.isEmpty()) {
             return;
         }
 
-        List<LoadSheddingLinkEntity> links = loadSheddingLinkRepository.findByAccountIdOrderByIdAsc(accountId);
+        List<LoadSheddingLinkEntity> links = rules.loadSheddingLinks(accountId);
         if (links.isEmpty()) {
             return;
         }
 
-        Map<Long, Map<Integer, Integer>> baseStatesByDeviceId = new HashMap<>();
         Map<Long, Integer> stateByNodeId = new HashMap<>();
 
         for (LoadSheddingNodeEntity node : nodes) {
             Map<Integer, Integer> deviceBaseStates = baseStatesByDeviceId.computeIfAbsent(
                     node.getDevice().getId(),
-                    ignored -> getBaseControlsForDevice(node.getDevice(), nowUtc, sendActivationNotifications)
+                    ignored -> getBaseControlsForDevice(rules, node.getDevice(), nowUtc, sendActivationNotifications)
             );
             stateByNodeId.put(node.getId(), deviceBaseStates.getOrDefault(node.getDeviceChannel(), 0));
         }
@@ -1033,12 +1249,13 @@ public class ControlService {
     }
 
     private void enforcePowerLimitPriority(
+            ControlRuleSource rules,
             DeviceEntity device,
             Map<Integer, Integer> channelMap
     ) {
-        for (PowerLimitDeviceEntity pld : powerLimitDeviceRepository.findByDevice(device)) {
+        for (PowerLimitDeviceEntity pld : rules.powerLimitDevices(device)) {
             int channel = pld.getDeviceChannel();
-            if (isPowerLimitActiveForDeviceChannel(device, channel)) {
+            if (isPowerLimitActiveForDeviceChannel(rules, device, channel)) {
                 channelMap.put(channel, 0);
             }
         }
@@ -1046,10 +1263,9 @@ public class ControlService {
 
 
     private boolean isPowerLimitActiveForDeviceChannel(
-            DeviceEntity device, int deviceChannel
+            ControlRuleSource rules, DeviceEntity device, int deviceChannel
     ) {
-        List<PowerLimitDeviceEntity> mappings = powerLimitDeviceRepository
-                .findByDeviceAndDeviceChannel(device, deviceChannel);
+        List<PowerLimitDeviceEntity> mappings = rules.powerLimitDevices(device, deviceChannel);
         if (mappings.isEmpty()) {
             return false;
         }
@@ -1058,11 +1274,7 @@ public class ControlService {
             if (!limit.isEnabled()) {
                 continue;
             }
-            Optional<BigDecimal> intervalSum =
-                    powerLimitService.getCurrentIntervalSum(
-                            limit.getAccount().getId(),
-                            limit.getId()
-                    );
+            Optional<BigDecimal> intervalSum = rules.currentIntervalSum(limit);
             if (intervalSum.isPresent() && intervalSum.get().compareTo(limit.getLimitKw()) > 0) {
                 return true;
             }
@@ -1072,9 +1284,8 @@ public class ControlService {
 
 
     private Integer getProductionOverride(
-            DeviceEntity device, int channel
+            List<ProductionSourceDeviceEntity> rules, int channel
     ) {
-        List<ProductionSourceDeviceEntity> rules = productionSourceDeviceRepository.findAllByDevice(device);
         for (ProductionSourceDeviceEntity r : rules) {
             if (!r.getDeviceChannel().equals(channel)) continue;
             BigDecimal currentKw = r.getProductionSource().getCurrentKw();
@@ -1090,17 +1301,17 @@ public class ControlService {
     }
 
     private Map<Integer, Integer> getWeatherOverrides(
+            ControlRuleSource rules,
             DeviceEntity device,
             Instant now,
             boolean priorityRule
     ) {
         Map<Integer, Integer> overrides = new HashMap<>();
-        List<WeatherControlDeviceEntity> rules = weatherControlDeviceRepository.findByDevice(device);
-        for (WeatherControlDeviceEntity rule : rules) {
+        for (WeatherControlDeviceEntity rule : rules.weatherControlDevices(device)) {
             if (rule.isPriorityRule() != priorityRule) {
                 continue;
             }
-            Integer weatherOverride = getWeatherOverride(rule, now);
+            Integer weatherOverride = getWeatherOverride(rules, rule, now);
             if (weatherOverride != null) {
                 overrides.putIfAbsent(rule.getDeviceChannel(), weatherOverride);
             }
@@ -1109,6 +1320,7 @@ public class ControlService {
     }
 
     private Integer getWeatherOverride(
+            ControlRuleSource rules,
             WeatherControlDeviceEntity rule,
             Instant now
     ) {
@@ -1116,6 +1328,7 @@ public class ControlService {
             return null;
         }
         Optional<BigDecimal> metricValue = getCurrentWeatherMetricValue(
+                rules,
                 rule.getWeatherControl().getSite(),
                 rule.getWeatherMetric(),
                 now
@@ -1127,15 +1340,12 @@ public class ControlService {
     }
 
     private Optional<BigDecimal> getCurrentWeatherMetricValue(
+            ControlRuleSource rules,
             SiteEntity site,
             WeatherMetricType metricType,
             Instant now
     ) {
-        Optional<SiteWeatherEntity> weather = siteWeatherRepository
-                .findFirstBySiteAndForecastTimeLessThanEqualOrderByForecastTimeDesc(site, now)
-                .or(() -> siteWeatherRepository.findFirstBySiteAndForecastTimeGreaterThanEqualOrderByForecastTimeAsc(site, now));
-
-        return weather.map(entity -> switch (metricType) {
+        return rules.currentWeather(site, now).map(entity -> switch (metricType) {
             case TEMPERATURE -> entity.getTemperature();
             case HUMIDITY -> entity.getHumidity();
         });
@@ -1164,9 +1374,62 @@ public class ControlService {
                 .orElseThrow(() -> new EntityNotFoundException("Device not found: " + deviceUuid));
 
         Instant nowUtc = Instant.now();
-        device.setLastCommunication(nowUtc);
-        deviceRepository.save(device);
+        deviceHeartbeatRegistry.record(device.getUuid(), nowUtc);
+        return buildTimetable(device, nowUtc);
+    }
+
+    /**
+     * Conditional variant of {@link #getTimetableForDevice(String)}, see
+     * {@link #getControlsForDevice(String, String)}.
+     */
+    public DevicePollResponse<TimeTableListResponse> getTimetableForDevice(
+            String deviceUuid,
+            String ifNoneMatch
+    ) {
+        UUID uuid = UUID.fromString(deviceUuid);
+        Instant nowUtc = Instant.now();
+        Optional<String> cachedEtag = devicePollStateCache.matching(
+                DevicePollStateCache.Kind.TIMETABLE, uuid, ifNoneMatch, nowUtc);
+        if (cachedEtag.isPresent()) {
+            deviceHeartbeatRegistry.record(uuid, nowUtc);
+            return new DevicePollResponse<>(cachedEtag.get(), null);
+        }
+
+        DeviceEntity device = deviceRepository.findByUuid(uuid)
+                .orElseThrow(() -> new EntityNotFoundException("Device not found: " + deviceUuid));
+        deviceHeartbeatRegistry.record(device.getUuid(), nowUtc);
+        long inputVersion = devicePollStateCache.inputVersion(device.getId());
+        TimeTableListResponse timetable = buildTimetable(device, nowUtc);
+        String etag = devicePollStateCache.store(
+                DevicePollStateCache.Kind.TIMETABLE,
+                uuid,
+                device.getId(),
+                inputVersion,
+                timetable.toString(),
+                nowUtc,
+                false,
+                timetableWindowChange(timetable)
+        );
+        return new DevicePollResponse<>(etag, DevicePollStateCache.matches(ifNoneMatch, etag) ? null : timetable);
+    }
+
+    /**
+     * When the earliest listed row start leaves the half hour lookback of the timetable.
+     */
+    private static Instant timetableWindowChange(TimeTableListResponse timetable) {
+        Instant next = null;
+        for (TimeTableResponse entry : timetable.getSchedule()) {
+            if (entry.getAction() == 1) {
+                Instant leavesWindow = OffsetDateTime.parse(entry.getTime(), DateTimeFormatter.ISO_OFFSET_DATE_TIME)
+                        .toInstant()
+                        .plusSeconds(30 * 60);
+                next = earliest(next, leavesWindow);
+            }
+        }
+        return next;
+    }
 
+    private TimeTableListResponse buildTimetable(DeviceEntity device, Instant nowUtc) {
         List<ControlDeviceEntity> controlDevices = controlDeviceRepository.findByDevice(device);
         List<TimeTableResponse> schedule = new ArrayList<>();
 
@@ -1226,31 +1489,120 @@ public class ControlService {
     }
 
     public void mqttDeviceControls() {
-        List<DeviceEntity> mqttDevices = deviceRepository.findByMqttOnlineTrue();
+        Instant nowUtc = Instant.now();
+        List<DeviceEntity> mqttDevices;
+        Map<UUID, Map<Integer, Integer>> controlsByDevice;
+        if (mqttBatchEvaluation) {
+            mqttDevices = deviceRepository.findWithAccountByMqttOnlineTrue();
+            if (mqttDevices.isEmpty()) {
+                return;
+            }
+            // MQTT online devices never trigger "came online" notifications, so the heartbeat is a single update
+            deviceRepository.markApiHeartbeat(mqttDevices.stream().map(DeviceEntity::getId).toList(), nowUtc);
+            controlsByDevice = evaluateControlsForDevices(mqttDevices, nowUtc, true);
+        } else {
+            mqttDevices = deviceRepository.findByMqttOnlineTrue();
+            controlsByDevice = new LinkedHashMap<>();
+            for (DeviceEntity device : mqttDevices) {
+                controlsByDevice.put(device.getUuid(), getControlsForDevice(device.getUuid().toString()));
+            }
+        }
+
         List<MqttControlCommand> commands = new ArrayList<>();
         for (DeviceEntity device : mqttDevices) {
             String uuid = device.getUuid().toString();
-            Map<Integer, Integer> controls = getControlsForDevice(uuid);
+            Map<Integer, Integer> controls = controlsByDevice.getOrDefault(device.getUuid(), Map.of());
             for (Map.Entry<Integer, Integer> entry : controls.entrySet()) {
                 Integer channel = entry.getKey();
                 boolean on = entry.getValue() != null && entry.getValue() == 1;
-                commands.add(new MqttControlCommand(uuid, channel, on, device.getDevicePlatform()));
+                commands.add(new MqttControlCommand(device, uuid, channel, on, device.getDevicePlatform()));
             }
         }
+        List<RelayStateService.PublishedRelayState> published = new ArrayList<>();
         commands.stream()
                 .sorted(Comparator
                         .comparing(MqttControlCommand::on)
                         .thenComparing(MqttControlCommand::uuid)
                         .thenComparing(MqttControlCommand::channel))
-                .forEach(command -> mqttService.switchControl(
-                        command.uuid(),
-                        command.channel(),
-                        command.on(),
-                        command.platform()
-                ));
+                .filter(command -> relayStateService.shouldPublish(
+                        command.device().getUuid(), command.channel(), command.on(), nowUtc))
+                .forEach(command -> {
+                    mqttService.switchControl(
+                            command.uuid(),
+                            command.channel(),
+                            command.on(),
+                            command.platform()
+                    );
+                    published.add(new RelayStateService.PublishedRelayState(
+                            command.device(), command.channel(), command.on()));
+                });
+        relayStateService.recordPublished(published, nowUtc);
     }
 
-    private record MqttControlCommand(String uuid, Integer channel, boolean on, DevicePlatform platform) {
+    private record MqttControlCommand(
+            DeviceEntity device, String uuid, Integer channel, boolean on, DevicePlatform platform
+    ) {
+    }
+
+    private class RepositoryControlRuleSource implements ControlRuleSource {
+
+        @Override
+        public List<PowerLimitDeviceEntity> powerLimitDevices(DeviceEntity device) {
+            return powerLimitDeviceRepository.findByDevice(device);
+        }
+
+        @Override
+        public List<PowerLimitDeviceEntity> powerLimitDevices(DeviceEntity device, int deviceChannel) {
+            return powerLimitDeviceRepository.findByDeviceAndDeviceChannel(device, deviceChannel);
+        }
+
+        @Override
+        public Optional<BigDecimal> currentIntervalSum(PowerLimitEntity powerLimit) {
+            return powerLimitService.getCurrentIntervalSum(powerLimit.getAccount().getId(), powerLimit.getId());
+        }
+
+        @Override
+        public List<ProductionSourceDeviceEntity> productionSourceDevices(DeviceEntity device) {
+            return productionSourceDeviceRepository.findByDevice(device);
+        }
+
+        @Override
+        public List<WeatherControlDeviceEntity> weatherControlDevices(DeviceEntity device) {
+            return weatherControlDeviceRepository.findByDevice(device);
+        }
+
+        @Override
+        public List<ControlDeviceEntity> controlDevices(DeviceEntity device) {
+            return controlDeviceRepository.findByDevice(device);
+        }
+
+        @Override
+        public Optional<ControlTableEntity> activeControlTable(ControlEntity control, Instant nowUtc) {
+            return controlTableRepository
+                    .findByControlIdAndStatusAndStartTimeAfterOrderByStartTimeAsc(
+                            control.getId(), Status.FINAL, nowUtc.minusSeconds(CONTROL_LOOKBACK_SECONDS))
+                    .stream()
+                    .filter(ct -> !nowUtc.isBefore(ct.getStartTime()) && !nowUtc.isAfter(ct.getEndTime()))
+                    .findFirst();
+        }
+
+        @Override
+        public Optional<SiteWeatherEntity> currentWeather(SiteEntity site, Instant now) {
+            return siteWeatherRepository
+                    .findFirstBySiteAndForecastTimeLessThanEqualOrderByForecastTimeDesc(site, now)
+                    .or(() -> siteWeatherRepository.findFirstBySiteAndForecastTimeGreaterThanEqualOrderByForecastTimeAsc(site, now));
+        }
+
+        @Override
+        public List<LoadSheddingNodeEntity> loadSheddingNodes(Long accountId) {
+            return loadSheddingNodeRepository.findByAccountIdOrderByIdAsc(accountId);
+        }
+
+        @Override
+        public List<LoadSheddingLinkEntity> loadSheddingLinks(Long accountId) {
+            return loadSheddingLinkRepository.findByAccountIdOrderByIdAsc(accountId);
+        }
+
     }
 
     public void sendDebugMqttRelayCommand(Long accountId, Long deviceId, int channel, boolean on) {
@@ -1272,6 +1624,8 @@ public class ControlService {
         }
 
         mqttService.switchControl(device.getUuid().toString(), channel, on, device.getDevicePlatform());
+        // the control loop restores the scheduled state on its next round
+        relayStateService.requestResync(device.getUuid());
     }
 
 }
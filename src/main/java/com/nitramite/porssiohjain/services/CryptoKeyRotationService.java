@@ -0,0 +1,133 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.utils.CryptoConverter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Re-encrypts {@link CryptoConverter} columns that are not yet under the current key,
+ * in small batches keyed by id so that rows stay writable while a rotation runs. An
+ * update only applies when the row still holds the value that was read.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CryptoKeyRotationService {
+
+    private record EncryptedColumn(String table, String column) {
+    }
+
+    private record PendingValue(long id, String oldValue, String newValue) {
+    }
+
+    private static final List<EncryptedColumn> COLUMNS = List.of(
+            new EncryptedColumn("device", "mqtt_password"),
+            new EncryptedColumn("production_source", "app_secret"),
+            new EncryptedColumn("production_source", "password"),
+            new EncryptedColumn("device_ac_data", "ac_password")
+    );
+    private static final int BATCH_SIZE = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CryptoConverter cryptoConverter;
+
+    /**
+     * @return number of values re-encrypted
+     */
+    public int reEncryptAll() {
+        int rotated = 0;
+        for (EncryptedColumn column : COLUMNS) {
+            rotated += reEncrypt(column);
+        }
+        if (rotated > 0) {
+            log.info("Re-encrypted {} values with the current crypto key", rotated);
+        }
+        return rotated;
+    }
+
+    private int reEncrypt(EncryptedColumn column) {
+        String selectSql = "SELECT id, " + column.column() + " FROM " + column.table()
+                + " WHERE id > ? AND " + column.column() + " IS NOT NULL AND " + column.column() + " NOT LIKE ?"
+                + " ORDER BY id LIMIT ?";
+        String updateSql = "UPDATE " + column.table() + " SET " + column.column() + " = ?"
+                + " WHERE id = ? AND " + column.column() + " = ?";
+        String currentPattern = cryptoConverter.currentHeader() + "%";
+
+        int rotated = 0;
+        long lastId = 0L;
+        while (true) {
+            List<PendingValue> batch = new ArrayList<>();
+            List<Long> ids = new ArrayList<>();
+            jdbcTemplate.query(selectSql, (RowCallbackHandler) rs -> {
+                long id = rs.getLong(1);
+                ids.add(id);
+                String oldValue = rs.getString(2);
+                PendingValue pendingValue = reEncrypt(column, id, oldValue);
+                if (pendingValue != null) {
+                    batch.add(pendingValue);
+                }
+            }, lastId, currentPattern, BATCH_SIZE);
+            if (ids.isEmpty()) {
+                return rotated;
+            }
+            lastId = ids.getLast();
+
+            if (!batch.isEmpty()) {
+                rotated += update(column, updateSql, batch);
+            }
+            if (ids.size() < BATCH_SIZE) {
+                return rotated;
+            }
+        }
+    }
+
+    private int update(EncryptedColumn column, String updateSql, List<PendingValue> batch) {
+        try {
+            int[][] counts = jdbcTemplate.batchUpdate(updateSql, batch, batch.size(), (ps, value) -> {
+                ps.setString(1, value.newValue());
+                ps.setLong(2, value.id());
+                ps.setString(3, value.oldValue());
+            });
+            int updated = 0;
+            for (int[] batchCounts : counts) {
+                for (int count : batchCounts) {
+                    updated += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+                }
+            }
+            return updated;
+        } catch (DataAccessException e) {
+            log.warn("Failed to re-encrypt {} values in {}.{}", batch.size(), column.table(), column.column(), e);
+            return 0;
+        }
+    }
+
+    private PendingValue reEncrypt(EncryptedColumn column, long id, String oldValue) {
+        try {
+            String plain = cryptoConverter.convertToEntityAttribute(oldValue);
+            return new PendingValue(id, oldValue, cryptoConverter.convertToDatabaseColumn(plain));
+        } catch (IllegalStateException e) {
+            log.warn("Cannot decrypt {}.{} of row {}, leaving it as is", column.table(), column.column(), id);
+            return null;
+        }
+    }
+
+}
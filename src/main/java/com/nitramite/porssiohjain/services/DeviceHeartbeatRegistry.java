@@ -0,0 +1,118 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.DeviceEntity;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In memory last seen time per device. Polls and gateway reports only record here and
+ * {@link #flush()} writes the newest value per device to {@code device.last_communication}
+ * in one batch, so a steady stream of heartbeats costs one UPDATE per device per flush
+ * instead of one per request. Online and offline transitions are still saved right away.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceHeartbeatRegistry {
+
+    private static final String UPDATE_SQL = """
+            UPDATE device SET last_communication = ?
+            WHERE uuid = ? AND (last_communication IS NULL OR last_communication < ?)
+            """;
+    private static final int BATCH_SIZE = 500;
+    private static final Duration RETENTION = Duration.ofDays(1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<UUID, Long> lastSeen = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+
+    public void record(UUID deviceUuid, Instant seenAt) {
+        long millis = seenAt.toEpochMilli();
+        lastSeen.merge(deviceUuid, millis, Math::max);
+        pending.merge(deviceUuid, millis, Math::max);
+    }
+
+    /**
+     * Newest of the stored and the not yet flushed last communication time.
+     */
+    public Instant lastCommunication(DeviceEntity device) {
+        Instant stored = device.getLastCommunication();
+        Long seen = device.getUuid() == null ? null : lastSeen.get(device.getUuid());
+        if (seen == null) {
+            return stored;
+        }
+        Instant recorded = Instant.ofEpochMilli(seen);
+        return stored == null || recorded.isAfter(stored) ? recorded : stored;
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes pending heartbeats. A failed batch goes back to the pending map and is
+     * retried on the next flush.
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            List<Map.Entry<UUID, Long>> drained = new ArrayList<>();
+            for (UUID deviceUuid : pending.keySet()) {
+                Long millis = pending.remove(deviceUuid);
+                if (millis != null) {
+                    drained.add(Map.entry(deviceUuid, millis));
+                }
+            }
+            int written = 0;
+            for (int from = 0; from < drained.size(); from += BATCH_SIZE) {
+                List<Map.Entry<UUID, Long>> batch = drained.subList(from, Math.min(from + BATCH_SIZE, drained.size()));
+                try {
+                    jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(), (ps, entry) -> {
+                        var seenAt = Instant.ofEpochMilli(entry.getValue()).atOffset(ZoneOffset.UTC);
+                        ps.setObject(1, seenAt);
+                        ps.setObject(2, entry.getKey());
+                        ps.setObject(3, seenAt);
+                    });
+                    written += batch.size();
+                } catch (DataAccessException e) {
+                    log.warn("Failed to write {} device heartbeats, retrying on next flush", batch.size(), e);
+                    batch.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), Math::max));
+                }
+            }
+            long cutoff = Instant.now().minus(RETENTION).toEpochMilli();
+            lastSeen.entrySet().removeIf(entry -> entry.getValue() < cutoff && !pending.containsKey(entry.getKey()));
+            return written;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.ControlInputChangeListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ETags of the last control and timetable answer per device. An ETag stays valid while
+ * the device's inputs keep their version (see {@link ControlInputChangeListener}) and
+ * until the next schedule boundary, so matching polls are answered without evaluating.
+ * Devices with power limit, production, weather or load shedding rules depend on live
+ * values and are only trusted for the dynamic TTL.
+ */
+@Service
+public class DevicePollStateCache {
+
+    public enum Kind {
+        CONTROLS,
+        TIMETABLE
+    }
+
+    private record Entry(Long deviceId, String etag, long inputVersion, Instant validUntil) {
+    }
+
+    private final Map<Kind, Map<UUID, Entry>> entries = new EnumMap<>(Kind.class);
+    private final Duration maxTtl;
+    private final Duration dynamicTtl;
+
+    @Autowired
+    public DevicePollStateCache(
+            @Value("${control.poll-cache.max-ttl:15m}") Duration maxTtl,
+            @Value("${control.poll-cache.dynamic-ttl:30s}") Duration dynamicTtl
+    ) {
+        this.maxTtl = maxTtl;
+        this.dynamicTtl = dynamicTtl;
+        for (Kind kind : Kind.values()) {
+            entries.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * @return the cached ETag when it is still valid and listed in {@code ifNoneMatch}
+     */
+    public Optional<String> matching(Kind kind, UUID deviceUuid, String ifNoneMatch, Instant now) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return Optional.empty();
+        }
+        Entry entry = entries.get(kind).get(deviceUuid);
+        if (entry == null
+                || !now.isBefore(entry.validUntil())
+                || entry.inputVersion() != ControlInputChangeListener.version(entry.deviceId())
+                || !matches(ifNoneMatch, entry.etag())) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.etag());
+    }
+
+    /**
+     * Version to pass to {@link #store}, read before evaluating so that a change made
+     * during the evaluation invalidates the stored ETag.
+     */
+    public long inputVersion(Long deviceId) {
+        return ControlInputChangeListener.version(deviceId);
+    }
+
+    /**
+     * @param nextChange when the answer changes by time alone, null if not known
+     * @return the ETag of {@code canonicalBody}
+     */
+    public String store(
+            Kind kind,
+            UUID deviceUuid,
+            Long deviceId,
+            long inputVersion,
+            String canonicalBody,
+            Instant now,
+            boolean dynamic,
+            Instant nextChange
+    ) {
+        Instant validUntil = now.plus(dynamic ? dynamicTtl : maxTtl);
+        if (nextChange != null && nextChange.isBefore(validUntil)) {
+            validUntil = nextChange;
+        }
+        String etag = etag(canonicalBody);
+        entries.get(kind).put(deviceUuid, new Entry(deviceId, etag, inputVersion, validUntil));
+        return etag;
+    }
+
+    static String etag(String canonicalBody) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonicalBody.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
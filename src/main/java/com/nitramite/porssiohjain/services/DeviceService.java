@@ -62,6 +62,7 @@ public class DeviceService {
     private final MqttProfileService mqttProfileService;
     private final DemoAccountGuard demoAccountGuard;
     private final DeviceOfflineNotificationService deviceOfflineNotificationService;
+    private final DeviceHeartbeatRegistry deviceHeartbeatRegistry;
     private final SystemLogService systemLogService;
 
     @Transactional
@@ -446,6 +447,7 @@ public class DeviceService {
             if (isApiDeviceOffline(device, now)) {
                 boolean wasApiOnline = device.isApiOnline();
                 boolean wasMqttOnline = device.isMqttOnline();
+                device.setLastCommunication(deviceHeartbeatRegistry.lastCommunication(device));
                 device.setApiOnline(false);
                 deviceRepository.save(device);
                 deviceOfflineNotificationService.sendIfDeviceWentOffline(
@@ -460,8 +462,13 @@ public class DeviceService {
         Instant mqttThreshold = now.minusSeconds(MQTT_OFFLINE_SECONDS);
         List<DeviceEntity> mqttDevices = deviceRepository.findWithAccountByMqttOnlineTrueAndLastCommunicationBefore(mqttThreshold);
         for (DeviceEntity device : mqttDevices) {
+            Instant lastCommunication = deviceHeartbeatRegistry.lastCommunication(device);
+            if (lastCommunication != null && !lastCommunication.isBefore(mqttThreshold)) {
+                continue;
+            }
             boolean wasApiOnline = device.isApiOnline();
             boolean wasMqttOnline = device.isMqttOnline();
+            device.setLastCommunication(lastCommunication);
             device.setMqttOnline(false);
             deviceRepository.save(device);
             deviceOfflineNotificationService.sendIfDeviceWentOffline(
@@ -475,7 +482,7 @@ public class DeviceService {
     }
 
     private boolean isApiDeviceOffline(DeviceEntity device, Instant now) {
-        Instant lastCommunication = device.getLastCommunication();
+        Instant lastCommunication = deviceHeartbeatRegistry.lastCommunication(device);
         if (lastCommunication == null) {
             return true;
         }
@@ -37,6 +37,7 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -73,8 +74,26 @@ public class HeatPumpControlService {
                 .sorted(Comparator.comparing(ControlHeatPumpEntity::getId))
                 .forEach(rule -> addIfMatched(commandsByDeviceId, evaluateControlRule(rule, now)));
 
-        commandsByDeviceId.values().forEach(this::dispatchCandidate);
-        log.info("Heat pump scheduler evaluated {} device command(s)", commandsByDeviceId.size());
+        List<AcCommandDispatchService.AcCommandRequest> requests = commandsByDeviceId.values().stream()
+                .map(this::prepareCommand)
+                .flatMap(Optional::stream)
+                .toList();
+        if (requests.isEmpty()) {
+            log.info("Heat pump scheduler evaluated {} device command(s), none to send", commandsByDeviceId.size());
+            return;
+        }
+        AcCommandDispatchService.DispatchSummary summary = acCommandDispatchService.dispatchAll(requests);
+        log.info(
+                "Heat pump scheduler evaluated {} device command(s): sent={}, deferred={}, skipped={}, failed={}, unchanged={}, avgLatencyMs={}, maxLatencyMs={}",
+                commandsByDeviceId.size(),
+                summary.sent(),
+                summary.deferred(),
+                summary.skipped(),
+                summary.failed(),
+                commandsByDeviceId.size() - requests.size(),
+                summary.averageLatencyMillis(),
+                summary.maxLatencyMillis()
+        );
     }
 
     private void addIfMatched(
@@ -195,14 +214,14 @@ public class HeatPumpControlService {
         ));
     }
 
-    private void dispatchCandidate(HeatPumpCommandCandidate candidate) {
+    private Optional<AcCommandDispatchService.AcCommandRequest> prepareCommand(HeatPumpCommandCandidate candidate) {
         DeviceEntity device = candidate.device();
         DeviceAcDataEntity acData = deviceAcDataRepository.findByDevice(device)
                 .orElse(null);
 
         if (acData == null) {
             log.warn("Skipping heat pump command for deviceId={} because device AC data was not found", device.getId());
-            return;
+            return Optional.empty();
         }
 
         if (candidate.stateHex().equalsIgnoreCase(nullSafe(acData.getLastSentStateHex()))) {
@@ -212,7 +231,7 @@ public class HeatPumpControlService {
                     candidate.ruleType(),
                     candidate.ruleId()
             );
-            return;
+            return Optional.empty();
         }
 
         log.info(
@@ -223,7 +242,7 @@ public class HeatPumpControlService {
                 candidate.ruleId(),
                 candidate.reason()
         );
-        acCommandDispatchService.dispatchHexState(acData, candidate.stateHex());
+        return Optional.of(AcCommandDispatchService.AcCommandRequest.of(acData, candidate.stateHex()));
     }
 
     private Optional<BigDecimal> getCurrentWeatherMetricValue(
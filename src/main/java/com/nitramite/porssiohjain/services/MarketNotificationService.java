@@ -18,10 +18,10 @@ import com.nitramite.porssiohjain.entity.enums.ComparisonType;
 import com.nitramite.porssiohjain.entity.enums.MarketNotificationMetric;
 import com.nitramite.porssiohjain.entity.repository.AccountRepository;
 import com.nitramite.porssiohjain.entity.repository.MarketNotificationRepository;
-import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
 import com.nitramite.porssiohjain.services.models.MarketNotificationRequest;
 import com.nitramite.porssiohjain.services.models.MarketNotificationResponse;
 import com.nitramite.porssiohjain.services.nordpool.NordpoolMarket;
+import com.nitramite.porssiohjain.services.nordpool.NordpoolPriceCache;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -46,7 +46,7 @@ public class MarketNotificationService {
 
     private final MarketNotificationRepository marketNotificationRepository;
     private final AccountRepository accountRepository;
-    private final NordpoolRepository nordpoolRepository;
+    private final NordpoolPriceCache nordpoolPriceCache;
     private final EmailService emailService;
     private final PushNotificationService pushNotificationService;
     private final PushNotificationTokenService pushNotificationTokenService;
@@ -152,9 +152,8 @@ public class MarketNotificationService {
 
     private BigDecimal resolveObservedPrice(MarketNotificationEntity notification, Instant now, ZoneId zone) {
         if (notification.getMetric() == MarketNotificationMetric.CURRENT_PRICE) {
-            return nordpoolRepository.findFirstByMarketIndexNameAndDeliveryStartLessThanEqualAndDeliveryEndGreaterThan(
+            return nordpoolPriceCache.findPriceAt(
                             NordpoolMarket.normalize(notification.getAccount().getMarketIndexName()),
-                            now,
                             now
                     )
                     .map(price -> toPriceWithTax(price.getPriceFi()))
@@ -164,7 +163,7 @@ public class MarketNotificationService {
         LocalDate today = LocalDate.now(zone);
         Instant start = today.atStartOfDay(zone).toInstant();
         Instant end = today.plusDays(1).atStartOfDay(zone).toInstant();
-        List<NordpoolEntity> prices = nordpoolRepository.findPricesBetween(
+        List<NordpoolEntity> prices = nordpoolPriceCache.findPricesBetween(
                 NordpoolMarket.normalize(notification.getAccount().getMarketIndexName()),
                 start,
                 end
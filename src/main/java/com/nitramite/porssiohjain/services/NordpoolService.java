@@ -15,6 +15,7 @@ import com.nitramite.porssiohjain.entity.ControlEntity;
 import com.nitramite.porssiohjain.entity.NordpoolEntity;
 import com.nitramite.porssiohjain.entity.repository.*;
 import com.nitramite.porssiohjain.services.nordpool.NordpoolMarket;
+import com.nitramite.porssiohjain.services.nordpool.NordpoolPriceCache;
 import com.nitramite.porssiohjain.services.models.NordpoolPriceResponse;
 import com.nitramite.porssiohjain.services.models.TodayPriceChartPointResponse;
 import com.nitramite.porssiohjain.services.models.TodayPriceChartResponse;
@@ -36,7 +37,7 @@ import java.util.*;
 public class NordpoolService {
 
     private static final int TODAY_CHART_RESOLUTION_MINUTES = 15;
-    private final NordpoolRepository nordpoolRepository;
+    private final NordpoolPriceCache nordpoolPriceCache;
     private final ControlRepository controlRepository;
     private final AccountRepository accountRepository;
 
@@ -51,7 +52,7 @@ public class NordpoolService {
         Instant end = endDate != null ? endDate : start.plus(2, ChronoUnit.DAYS).minusNanos(1);
 
         String marketIndexName = NordpoolMarket.normalize(control.getAccount().getMarketIndexName());
-        List<NordpoolEntity> prices = nordpoolRepository.findPricesBetween(marketIndexName, start, end);
+        List<NordpoolEntity> prices = nordpoolPriceCache.findPricesBetween(marketIndexName, start, end);
 
         BigDecimal taxMultiplier = BigDecimal.ONE.add(control.getTaxPercent().divide(BigDecimal.valueOf(100), RoundingMode.HALF_UP));
 
@@ -76,7 +77,7 @@ public class NordpoolService {
         ZonedDateTime startOfDay = today.atStartOfDay(zone);
         ZonedDateTime endOfDay = today.plusDays(1).atStartOfDay(zone);
 
-        List<NordpoolEntity> prices = nordpoolRepository.findPricesBetween(
+        List<NordpoolEntity> prices = nordpoolPriceCache.findPricesBetween(
                 pricingContext.marketIndexName(), startOfDay.toInstant(), endOfDay.toInstant()
         );
 
@@ -126,7 +127,7 @@ public class NordpoolService {
         Instant start = startOfDay.toInstant();
         Instant end = endOfDay.toInstant();
 
-        List<NordpoolEntity> prices = nordpoolRepository.findPricesBetween(pricingContext.marketIndexName(), start, end);
+        List<NordpoolEntity> prices = nordpoolPriceCache.findPricesBetween(pricingContext.marketIndexName(), start, end);
         Map<Instant, BigDecimal> pointsByTimestamp = new LinkedHashMap<>();
 
         for (NordpoolEntity priceEntry : prices) {
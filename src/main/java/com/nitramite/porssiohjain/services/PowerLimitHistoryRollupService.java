@@ -0,0 +1,243 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.PowerLimitEntity;
+import com.nitramite.porssiohjain.entity.PowerLimitHistoryEntity;
+import com.nitramite.porssiohjain.entity.PowerLimitHistoryRollupEntity;
+import com.nitramite.porssiohjain.entity.repository.PowerLimitHistoryRepository;
+import com.nitramite.porssiohjain.entity.repository.PowerLimitHistoryRollupRepository;
+import com.nitramite.porssiohjain.utils.Utils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Maintains quarter hour, hourly and daily sums of power limit history as minute rows are
+ * written, so interval sums and history charts read a handful of buckets instead of every
+ * minute. Buckets are aligned to the power limit's local time like {@link Utils#toInterval}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PowerLimitHistoryRollupService {
+
+    public static final int QUARTER_HOUR = 15;
+    public static final int HOUR = 60;
+    public static final int DAY = 1440;
+
+    private static final int[] RESOLUTIONS = {QUARTER_HOUR, HOUR, DAY};
+    private static final int KILOWATT_SCALE = 2;
+
+    private final PowerLimitHistoryRollupRepository rollupRepository;
+    private final PowerLimitHistoryRepository powerLimitHistoryRepository;
+
+    /**
+     * Applies a written minute row to its buckets.
+     *
+     * @param previousKwh value the minute row had before, or null when it was created
+     */
+    @Transactional
+    public void recordMinute(PowerLimitEntity powerLimit, Instant minuteStart, BigDecimal previousKwh, BigDecimal kwh) {
+        BigDecimal previous = previousKwh != null ? scaled(previousKwh) : BigDecimal.ZERO;
+        BigDecimal delta = scaled(kwh).subtract(previous);
+        if (previousKwh != null && delta.signum() == 0) {
+            return;
+        }
+        ZoneId zone = ZoneId.of(powerLimit.getTimezone());
+        Instant now = Instant.now();
+        for (int resolution : RESOLUTIONS) {
+            rollupRepository.upsertKilowatts(
+                    powerLimit.getId(), resolution, bucketStart(minuteStart, zone, resolution), delta, now);
+        }
+    }
+
+    /**
+     * Sum of the limit interval containing {@code now}, empty when nothing was recorded in it.
+     */
+    @Transactional(readOnly = true)
+    public Optional<BigDecimal> getCurrentIntervalSum(PowerLimitEntity powerLimit, Instant now) {
+        return Optional.ofNullable(getCurrentIntervalSums(List.of(powerLimit), now).get(powerLimit.getId()));
+    }
+
+    /**
+     * Current interval sums for several power limits, one aggregate query per distinct
+     * interval start and length. Limits without history in the interval are absent.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, BigDecimal> getCurrentIntervalSums(Collection<PowerLimitEntity> powerLimits, Instant now) {
+        Map<Instant, Map<Integer, List<Long>>> limitIdsByInterval = new HashMap<>();
+        for (PowerLimitEntity powerLimit : powerLimits) {
+            int intervalMinutes = powerLimit.getLimitIntervalMinutes();
+            Instant intervalStart = Utils.toInterval(now, ZoneId.of(powerLimit.getTimezone()), intervalMinutes);
+            limitIdsByInterval
+                    .computeIfAbsent(intervalStart, ignored -> new HashMap<>())
+                    .computeIfAbsent(intervalMinutes, ignored -> new ArrayList<>())
+                    .add(powerLimit.getId());
+        }
+
+        Map<Long, BigDecimal> sums = new HashMap<>();
+        limitIdsByInterval.forEach((intervalStart, byLength) -> byLength.forEach((intervalMinutes, limitIds) -> {
+            Instant intervalEnd = intervalStart.plus(Math.min(intervalMinutes, HOUR), ChronoUnit.MINUTES);
+            OptionalInt resolution = resolutionFor(intervalMinutes);
+            List<PowerLimitHistoryRepository.PowerLimitIntervalSum> intervalSums = resolution.isPresent()
+                    ? rollupRepository.sumByPowerLimitIdsAndBucketStartBetween(
+                    limitIds, resolution.getAsInt(), intervalStart, intervalEnd)
+                    : powerLimitHistoryRepository.sumByPowerLimitIdsAndCreatedAtBetween(limitIds, intervalStart, intervalEnd);
+            for (PowerLimitHistoryRepository.PowerLimitIntervalSum sum : intervalSums) {
+                sums.put(sum.getPowerLimitId(), sum.getKilowatts());
+            }
+        }));
+        return sums;
+    }
+
+    /**
+     * Sums per interval of history in [{@code start}, {@code end}), or empty when the interval
+     * length is not covered by the rollups or the range is shorter than one bucket. Whole
+     * buckets are read from the rollups, the partial edges from the minute rows.
+     */
+    @Transactional(readOnly = true)
+    public Optional<SortedMap<Instant, BigDecimal>> getIntervalSums(
+            Long powerLimitId, ZoneId zone, int intervalMinutes, Instant start, Instant end
+    ) {
+        OptionalInt resolution = historyResolutionFor(intervalMinutes);
+        if (resolution.isEmpty()) {
+            return Optional.empty();
+        }
+        int rollupMinutes = resolution.getAsInt();
+        Instant alignedStart = bucketStart(start, zone, rollupMinutes);
+        if (alignedStart.isBefore(start)) {
+            alignedStart = nextBucketStart(alignedStart, zone, rollupMinutes);
+        }
+        Instant alignedEnd = bucketStart(end, zone, rollupMinutes);
+        if (!alignedStart.isBefore(alignedEnd)) {
+            return Optional.empty();
+        }
+
+        SortedMap<Instant, BigDecimal> sums = new TreeMap<>();
+        for (PowerLimitHistoryRollupEntity bucket : rollupRepository.findBuckets(
+                powerLimitId, rollupMinutes, alignedStart, alignedEnd)) {
+            sums.merge(intervalKey(bucket.getBucketStart(), zone, intervalMinutes, rollupMinutes),
+                    bucket.getKilowatts(), BigDecimal::add);
+        }
+        addMinuteRows(sums, powerLimitId, zone, intervalMinutes, rollupMinutes, start, alignedStart);
+        addMinuteRows(sums, powerLimitId, zone, intervalMinutes, rollupMinutes, alignedEnd, end);
+        return Optional.of(sums);
+    }
+
+    private void addMinuteRows(SortedMap<Instant, BigDecimal> sums, Long powerLimitId, ZoneId zone,
+                               int intervalMinutes, int rollupMinutes, Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        for (PowerLimitHistoryEntity history : powerLimitHistoryRepository.findForMinutes(List.of(powerLimitId), from, to)) {
+            sums.merge(intervalKey(history.getCreatedAt(), zone, intervalMinutes, rollupMinutes),
+                    history.getKilowatts(), BigDecimal::add);
+        }
+    }
+
+    private static Instant intervalKey(Instant instant, ZoneId zone, int intervalMinutes, int rollupMinutes) {
+        return rollupMinutes == QUARTER_HOUR
+                ? Utils.toInterval(instant, zone, intervalMinutes)
+                : bucketStart(instant, zone, rollupMinutes);
+    }
+
+    private static Instant nextBucketStart(Instant bucketStart, ZoneId zone, int resolutionMinutes) {
+        if (resolutionMinutes == DAY) {
+            return bucketStart.atZone(zone).toLocalDate().plusDays(1).atStartOfDay(zone).toInstant();
+        }
+        return bucketStart.plus(resolutionMinutes, ChronoUnit.MINUTES);
+    }
+
+    /**
+     * Recomputes the buckets of a power limit from its minute rows, needed when the
+     * timezone and with it the local bucket alignment changes.
+     */
+    @Transactional
+    public void rebuild(PowerLimitEntity powerLimit) {
+        ZoneId zone = ZoneId.of(powerLimit.getTimezone());
+        Map<Integer, Map<Instant, BigDecimal>> sumsByResolution = new HashMap<>();
+        for (PowerLimitHistoryEntity history : powerLimitHistoryRepository.findAllByPowerLimitAndAccount(
+                powerLimit.getAccount().getId(), powerLimit.getId())) {
+            for (int resolution : RESOLUTIONS) {
+                sumsByResolution
+                        .computeIfAbsent(resolution, ignored -> new HashMap<>())
+                        .merge(bucketStart(history.getCreatedAt(), zone, resolution), scaled(history.getKilowatts()), BigDecimal::add);
+            }
+        }
+
+        rollupRepository.deleteByPowerLimitId(powerLimit.getId());
+        Instant now = Instant.now();
+        List<PowerLimitHistoryRollupEntity> buckets = new ArrayList<>();
+        sumsByResolution.forEach((resolution, sums) -> sums.forEach((bucketStart, kilowatts) ->
+                buckets.add(PowerLimitHistoryRollupEntity.builder()
+                        .powerLimit(powerLimit)
+                        .resolutionMinutes(resolution)
+                        .bucketStart(bucketStart)
+                        .kilowatts(kilowatts)
+                        .updatedAt(now)
+                        .build())));
+        rollupRepository.saveAll(buckets);
+        log.info("Rebuilt {} history rollup buckets for power limit {}", buckets.size(), powerLimit.getId());
+    }
+
+    @Transactional
+    public int deleteOlderThan(Instant cutoff) {
+        return rollupRepository.deleteOlderThan(cutoff);
+    }
+
+    static Instant bucketStart(Instant instant, ZoneId zone, int resolutionMinutes) {
+        if (resolutionMinutes == DAY) {
+            return instant.atZone(zone).toLocalDate().atStartOfDay(zone).toInstant();
+        }
+        return Utils.toInterval(instant, zone, resolutionMinutes);
+    }
+
+    /**
+     * Rollup the current limit interval is summed from. {@link Utils#toInterval} buckets
+     * intervals of an hour or more by the hour, shorter ones must be whole quarters.
+     */
+    static OptionalInt resolutionFor(int intervalMinutes) {
+        if (intervalMinutes >= HOUR) {
+            return OptionalInt.of(HOUR);
+        }
+        if (intervalMinutes % QUARTER_HOUR == 0) {
+            return OptionalInt.of(QUARTER_HOUR);
+        }
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Rollup a history chart interval can be composed from. Daily charts read daily buckets,
+     * sub-hour intervals that are whole quarters are merged from quarter hour buckets.
+     */
+    static OptionalInt historyResolutionFor(int intervalMinutes) {
+        if (intervalMinutes >= DAY) {
+            return OptionalInt.of(DAY);
+        }
+        return resolutionFor(intervalMinutes);
+    }
+
+    private static BigDecimal scaled(BigDecimal kilowatts) {
+        return kilowatts.setScale(KILOWATT_SCALE, RoundingMode.HALF_UP);
+    }
+
+}
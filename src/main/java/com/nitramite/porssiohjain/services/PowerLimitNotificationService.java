@@ -13,14 +13,11 @@ package com.nitramite.porssiohjain.services;
 
 import com.nitramite.porssiohjain.entity.AccountEntity;
 import com.nitramite.porssiohjain.entity.PowerLimitEntity;
-import com.nitramite.porssiohjain.entity.PowerLimitHistoryEntity;
 import com.nitramite.porssiohjain.entity.PowerLimitNotificationEntity;
 import com.nitramite.porssiohjain.entity.repository.AccountRepository;
-import com.nitramite.porssiohjain.entity.repository.PowerLimitHistoryRepository;
 import com.nitramite.porssiohjain.entity.repository.PowerLimitNotificationRepository;
 import com.nitramite.porssiohjain.entity.repository.PowerLimitRepository;
 import com.nitramite.porssiohjain.services.models.PowerLimitNotificationResponse;
-import com.nitramite.porssiohjain.utils.Utils;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -29,7 +26,6 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.*;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Locale;
 
@@ -41,7 +37,7 @@ public class PowerLimitNotificationService {
 
     private final PowerLimitNotificationRepository powerLimitNotificationRepository;
     private final PowerLimitRepository powerLimitRepository;
-    private final PowerLimitHistoryRepository powerLimitHistoryRepository;
+    private final PowerLimitHistoryRollupService powerLimitHistoryRollupService;
     private final AccountRepository accountRepository;
     private final EmailService emailService;
     private final PushNotificationService pushNotificationService;
@@ -146,7 +142,8 @@ public class PowerLimitNotificationService {
             return;
         }
 
-        BigDecimal intervalSum = getCurrentIntervalSum(powerLimit, now, zone);
+        BigDecimal intervalSum = powerLimitHistoryRollupService.getCurrentIntervalSum(powerLimit, now)
+                .orElse(BigDecimal.ZERO);
         if (intervalSum.compareTo(notification.getTriggerKw()) < 0) {
             return;
         }
@@ -161,22 +158,6 @@ public class PowerLimitNotificationService {
         }
     }
 
-    private BigDecimal getCurrentIntervalSum(PowerLimitEntity powerLimit, Instant now, ZoneId zone) {
-        int intervalMinutes = powerLimit.getLimitIntervalMinutes();
-        Instant intervalStart = Utils.toInterval(now, zone, intervalMinutes);
-        Instant intervalEnd = intervalStart.plus(intervalMinutes, ChronoUnit.MINUTES);
-        return powerLimitHistoryRepository
-                .findByPowerLimitAndCreatedAtBetween(
-                        powerLimit.getAccount().getId(),
-                        powerLimit.getId(),
-                        intervalStart,
-                        intervalEnd
-                )
-                .stream()
-                .map(PowerLimitHistoryEntity::getKilowatts)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-
     private boolean isInsideActiveWindow(LocalTime now, LocalTime from, LocalTime to) {
         if (from.equals(to)) {
             return true;
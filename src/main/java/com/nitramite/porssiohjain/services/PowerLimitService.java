@@ -16,15 +16,19 @@ import com.nitramite.porssiohjain.entity.enums.DeviceType;
 import com.nitramite.porssiohjain.entity.repository.*;
 import com.nitramite.porssiohjain.services.models.*;
 import com.nitramite.porssiohjain.services.nordpool.NordpoolMarket;
+import com.nitramite.porssiohjain.services.nordpool.NordpoolPriceCache;
 import com.nitramite.porssiohjain.utils.Utils;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.sql.Timestamp;
 import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
@@ -36,6 +40,9 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class PowerLimitService {
 
+    private static final BigDecimal DEFAULT_TAX_PERCENT = BigDecimal.valueOf(25.5);
+    private static final int MAX_CACHED_USAGE_MONTHS = 10_000;
+
     private final PowerLimitRepository powerLimitRepository;
     private final PowerLimitDeviceRepository powerLimitDeviceRepository;
     private final DeviceRepository deviceRepository;
@@ -46,10 +53,16 @@ public class PowerLimitService {
     private final PushNotificationTokenService pushNotificationTokenService;
     private final SiteRepository siteRepository;
     private final ElectricityContractRepository electricityContractRepository;
-    private final NordpoolRepository nordpoolRepository;
+    private final NordpoolPriceCache nordpoolPriceCache;
     private final AccountLimitService accountLimitService;
     private final DemoAccountGuard demoAccountGuard;
+    private final ControlRepository controlRepository;
+    private final PowerLimitHistoryRollupService powerLimitHistoryRollupService;
+    private final TimeSeriesDownsampler timeSeriesDownsampler;
+    private final JdbcTemplate jdbcTemplate;
     private final Map<Long, Instant> lastNotificationSent = new ConcurrentHashMap<>();
+    private final Map<UsageCostCacheKey, FinishedUsageCosts> finishedUsageCosts =
+            Collections.synchronizedMap(lruCache(MAX_CACHED_USAGE_MONTHS));
 
     @Transactional
     public PowerLimitResponse createLimit(Long accountId, String name, Double limitKw, boolean enabled) {
@@ -110,6 +123,7 @@ public class PowerLimitService {
                 ? null
                 : siteRepository.findByIdAndAccountId(siteId, accountId)
                 .orElseThrow(() -> new EntityNotFoundException("Site not found or does not belong to account"));
+        boolean timezoneChanged = !Objects.equals(entity.getTimezone(), timezone);
         entity.setName(name);
         entity.setLimitKw(limitKw);
         entity.setLimitIntervalMinutes(limitIntervalMinutes);
@@ -120,6 +134,9 @@ public class PowerLimitService {
         entity.setEnergyContract(e);
         entity.setTransferContract(t);
         powerLimitRepository.save(entity);
+        if (timezoneChanged) {
+            powerLimitHistoryRollupService.rebuild(entity);
+        }
         mapToResponse(entity);
     }
 
@@ -232,68 +249,108 @@ public class PowerLimitService {
 
     @Transactional
     public void updateCurrentKw(String uuid, CurrentKwRequest request) {
-        PowerLimitEntity entity = powerLimitRepository.findByUuid(UUID.fromString(uuid))
-                .orElseThrow(() -> new IllegalArgumentException(
-                        "Power limit not found for uuid: " + uuid
-                ));
-        BigDecimal kw = BigDecimal.valueOf(request.getCurrentKw());
-        BigDecimal totalKwh = BigDecimal.valueOf(request.getTotalKwh());
-        Instant measuredAt = Instant.ofEpochMilli(request.getMeasuredAt());
-        entity.setCurrentKw(kw);
-        if (entity.getPeakKw() == null || kw.compareTo(entity.getPeakKw()) > 0) {
-            entity.setPeakKw(kw);
-        }
-        BigDecimal deltaKwh = BigDecimal.ZERO;
-        if (entity.getLastTotalKwh() != null) {
-            if (totalKwh.compareTo(entity.getLastTotalKwh()) >= 0) {
-                deltaKwh = totalKwh.subtract(entity.getLastTotalKwh());
-            } else {
-                entity.setLastTotalKwh(totalKwh);
-                entity.setLastMeasuredAt(measuredAt);
-                return;
+        UUID powerLimitUuid = UUID.fromString(uuid);
+        Set<UUID> missing = applyBufferedReadings(List.of(BufferedPowerReadings.of(powerLimitUuid, request)));
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Power limit not found for uuid: " + uuid);
+        }
+    }
+
+    /**
+     * Applies folded meter readings of several power limits in one transaction: existing
+     * minute rows are loaded with a single query and new ones are inserted as a JDBC batch.
+     *
+     * @return uuids without a power limit, their readings are dropped
+     */
+    @Transactional
+    public Set<UUID> applyBufferedReadings(Collection<BufferedPowerReadings> readings) {
+        if (readings.isEmpty()) {
+            return Set.of();
+        }
+        Map<UUID, PowerLimitEntity> powerLimitsByUuid = powerLimitRepository
+                .findByUuidIn(readings.stream().map(BufferedPowerReadings::getPowerLimitUuid).toList())
+                .stream()
+                .collect(Collectors.toMap(PowerLimitEntity::getUuid, pl -> pl));
+
+        Set<UUID> missing = new HashSet<>();
+        Map<PowerLimitEntity, Map<Instant, BigDecimal>> minutesByPowerLimit = new LinkedHashMap<>();
+        for (BufferedPowerReadings buffered : readings) {
+            PowerLimitEntity entity = powerLimitsByUuid.get(buffered.getPowerLimitUuid());
+            if (entity == null) {
+                missing.add(buffered.getPowerLimitUuid());
+                continue;
+            }
+            Map<Instant, BigDecimal> minutes = buffered.minuteKwh(entity.getLastTotalKwh());
+            entity.setCurrentKw(buffered.getCurrentKw());
+            if (entity.getPeakKw() == null || buffered.getPeakKw().compareTo(entity.getPeakKw()) > 0) {
+                entity.setPeakKw(buffered.getPeakKw());
+            }
+            entity.setLastTotalKwh(buffered.getLastTotalKwh());
+            entity.setLastMeasuredAt(buffered.getLastMeasuredAt());
+            if (!minutes.isEmpty()) {
+                minutesByPowerLimit.put(entity, minutes);
             }
         }
-        entity.setLastTotalKwh(totalKwh);
-        entity.setLastMeasuredAt(measuredAt);
-        Instant minuteStart = measuredAt.truncatedTo(ChronoUnit.MINUTES);
-        Instant minuteEnd = minuteStart.plus(1, ChronoUnit.MINUTES);
-        BigDecimal finalDeltaKwh = deltaKwh;
-        PowerLimitHistoryEntity history = powerLimitHistoryRepository
-                .findForMinute(entity, minuteStart, minuteEnd)
-                .orElseGet(() -> {
-                    PowerLimitHistoryEntity h = PowerLimitHistoryEntity.builder()
-                            .account(entity.getAccount())
-                            .powerLimit(entity)
-                            .kilowatts(finalDeltaKwh)
-                            .createdAt(minuteStart)
-                            .build();
-                    entity.getHistory().add(h);
-                    return h;
+        if (minutesByPowerLimit.isEmpty()) {
+            return missing;
+        }
+
+        Instant from = minutesByPowerLimit.values().stream()
+                .flatMap(minutes -> minutes.keySet().stream())
+                .min(Comparator.naturalOrder())
+                .orElseThrow();
+        Instant to = minutesByPowerLimit.values().stream()
+                .flatMap(minutes -> minutes.keySet().stream())
+                .max(Comparator.naturalOrder())
+                .orElseThrow()
+                .plus(1, ChronoUnit.MINUTES);
+        Map<Long, Map<Instant, PowerLimitHistoryEntity>> existingRows = new HashMap<>();
+        for (PowerLimitHistoryEntity row : powerLimitHistoryRepository.findForMinutes(
+                minutesByPowerLimit.keySet().stream().map(PowerLimitEntity::getId).toList(), from, to)) {
+            existingRows.computeIfAbsent(row.getPowerLimit().getId(), ignored -> new HashMap<>())
+                    .putIfAbsent(row.getCreatedAt().truncatedTo(ChronoUnit.MINUTES), row);
+        }
+
+        List<Object[]> inserts = new ArrayList<>();
+        Set<UsageCostCacheKey> changedFinishedMonths = new HashSet<>();
+        Instant now = Instant.now();
+        minutesByPowerLimit.forEach((entity, minutes) -> minutes.forEach((minuteStart, kwh) -> {
+            ZoneId zone = ZoneId.of(entity.getTimezone());
+            LocalDate day = minuteStart.atZone(zone).toLocalDate();
+            if (day.isBefore(LocalDate.now(zone))) {
+                changedFinishedMonths.add(new UsageCostCacheKey(entity.getId(), YearMonth.from(day)));
+            }
+            PowerLimitHistoryEntity existing = existingRows.getOrDefault(entity.getId(), Map.of()).get(minuteStart);
+            BigDecimal previousKwh = existing != null ? existing.getKilowatts() : null;
+            if (existing != null) {
+                existing.setKilowatts(kwh);
+            } else {
+                inserts.add(new Object[]{
+                        entity.getAccount().getId(), entity.getId(), kwh,
+                        Timestamp.from(minuteStart), Timestamp.from(now)
                 });
-        history.setKilowatts(finalDeltaKwh);
-        history.setCreatedAt(minuteStart);
-        if (entity.isNotifyEnabled()) {
-            checkAndSendNotification(entity);
+            }
+            powerLimitHistoryRollupService.recordMinute(entity, minuteStart, previousKwh, kwh);
+        }));
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO power_limit_history (account_id, power_limit_id, kilowatts, created_at, updated_at)
+                    VALUES (?, ?, ?, ?, ?)
+                    """, inserts);
         }
+        evictFinishedUsageCosts(changedFinishedMonths);
+
+        minutesByPowerLimit.keySet().stream()
+                .filter(PowerLimitEntity::isNotifyEnabled)
+                .forEach(this::checkAndSendNotification);
+        return missing;
     }
 
     private void checkAndSendNotification(PowerLimitEntity entity) {
-        ZoneId zone = ZoneId.of(entity.getTimezone());
-        int intervalMinutes = entity.getLimitIntervalMinutes();
         Instant now = Instant.now();
-        Instant intervalStart = Utils.toInterval(now, zone, intervalMinutes);
-        Instant intervalEnd = intervalStart.plus(intervalMinutes, ChronoUnit.MINUTES);
-        List<PowerLimitHistoryEntity> values = powerLimitHistoryRepository
-                .findByPowerLimitAndCreatedAtBetween(
-                        entity.getAccount().getId(),
-                        entity.getId(),
-                        intervalStart,
-                        intervalEnd
-                );
-        if (values.isEmpty()) return;
-        BigDecimal sum = values.stream()
-                .map(PowerLimitHistoryEntity::getKilowatts)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Optional<BigDecimal> intervalSum = powerLimitHistoryRollupService.getCurrentIntervalSum(entity, now);
+        if (intervalSum.isEmpty()) return;
+        BigDecimal sum = intervalSum.get();
         boolean currentlyOver = sum.compareTo(entity.getLimitKw()) > 0;
         Instant lastSent = lastNotificationSent.get(entity.getId());
         boolean canSend = lastSent == null || Duration.between(lastSent, now).toHours() >= 24;
@@ -390,6 +447,10 @@ public class PowerLimitService {
         if (deleted > 0) {
             log.info("Deleted {} power limit history rows older than {}", deleted, cutoff);
         }
+        int deletedBuckets = powerLimitHistoryRollupService.deleteOlderThan(cutoff);
+        if (deletedBuckets > 0) {
+            log.info("Deleted {} power limit history rollup buckets older than {}", deletedBuckets, cutoff);
+        }
     }
 
     @Transactional(readOnly = true)
@@ -423,11 +484,22 @@ public class PowerLimitService {
         int intervalMinutes = intervalMinutesOverride != null
                 ? intervalMinutesOverride
                 : powerLimitEntity.getLimitIntervalMinutes();
+        Optional<SortedMap<Instant, BigDecimal>> rollupSums = powerLimitHistoryRollupService
+                .getIntervalSums(powerLimitId, zone, intervalMinutes, start, end);
+        if (rollupSums.isPresent()) {
+            return downsampleHistory(rollupSums.get().entrySet().stream()
+                    .map(entry -> PowerLimitHistoryResponse.builder()
+                            .accountId(accountId)
+                            .kilowatts(entry.getValue())
+                            .createdAt(entry.getKey())
+                            .build())
+                    .toList());
+        }
         Map<Instant, List<PowerLimitHistoryEntity>> grouped =
                 powerLimitHistoryRepository.findByPowerLimitAndCreatedAtBetween(accountId, powerLimitId, start, end)
                         .stream()
                         .collect(Collectors.groupingBy(h -> Utils.toInterval(h.getCreatedAt(), zone, intervalMinutes)));
-        return grouped.entrySet().stream()
+        return downsampleHistory(grouped.entrySet().stream()
                 .map(entry -> {
                     Instant bucketStart = entry.getKey();
                     List<PowerLimitHistoryEntity> values = entry.getValue();
@@ -442,7 +514,15 @@ public class PowerLimitService {
                             .build();
                 })
                 .sorted(Comparator.comparing(PowerLimitHistoryResponse::getCreatedAt))
-                .toList();
+                .toList());
+    }
+
+    private List<PowerLimitHistoryResponse> downsampleHistory(List<PowerLimitHistoryResponse> history) {
+        return timeSeriesDownsampler.downsample(
+                history,
+                h -> h.getCreatedAt().toEpochMilli(),
+                h -> h.getKilowatts().doubleValue()
+        );
     }
 
     @Transactional(readOnly = true)
@@ -456,21 +536,18 @@ public class PowerLimitService {
                 .orElseThrow(() -> new IllegalArgumentException(
                         "Power limit not found for account " + accountId + " and id " + powerLimitId
                 ));
-        ZoneId zone = ZoneId.of(powerLimitEntity.getTimezone());
-        int intervalMinutes = powerLimitEntity.getLimitIntervalMinutes();
-        Instant now = Instant.now();
-        Instant intervalStart = Utils.toInterval(now, zone, intervalMinutes);
-        Instant intervalEnd = intervalStart.plus(intervalMinutes, ChronoUnit.MINUTES);
-        List<PowerLimitHistoryEntity> values = powerLimitHistoryRepository.findByPowerLimitAndCreatedAtBetween(
-                accountId, powerLimitId, intervalStart, intervalEnd
-        );
-        if (values.isEmpty()) {
-            return Optional.empty();
-        }
-        BigDecimal sum = values.stream()
-                .map(PowerLimitHistoryEntity::getKilowatts)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        return Optional.of(sum);
+        return powerLimitHistoryRollupService.getCurrentIntervalSum(powerLimitEntity, Instant.now());
+    }
+
+    /**
+     * Current interval sums for several power limits. Limits without history in the
+     * interval are absent.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, BigDecimal> getCurrentIntervalSums(
+            Collection<PowerLimitEntity> powerLimits
+    ) {
+        return powerLimitHistoryRollupService.getCurrentIntervalSums(powerLimits, Instant.now());
     }
 
     @Transactional(readOnly = true)
@@ -489,56 +566,135 @@ public class PowerLimitService {
         ZoneId zone = ZoneId.of(powerLimitEntity.getTimezone());
         ZonedDateTime nowZoned = ZonedDateTime.now(zone);
         YearMonth currentMonth = YearMonth.from(nowZoned);
-        ZonedDateTime startOfMonthZoned = yearMonth.atDay(1).atStartOfDay(zone);
+        if (yearMonth.isAfter(currentMonth)) {
+            return List.of();
+        }
         ZonedDateTime endZoned = yearMonth.equals(currentMonth)
                 ? nowZoned
                 : yearMonth.plusMonths(1).atDay(1).atStartOfDay(zone);
-        Instant start = startOfMonthZoned.toInstant();
+        LocalDate finishedUntil = yearMonth.equals(currentMonth)
+                ? nowZoned.toLocalDate()
+                : yearMonth.plusMonths(1).atDay(1);
+        String market = NordpoolMarket.normalize(account.getMarketIndexName());
+        UsageCostCalculator.Tariff tariff = resolveUsageTariff(accountId, powerLimitEntity);
+
+        long priceVersion = nordpoolPriceCache.priceVersion(market);
+
+        UsageCostCacheKey cacheKey = new UsageCostCacheKey(powerLimitId, yearMonth);
+        FinishedUsageCosts cached = finishedUsageCosts.get(cacheKey);
+        if (cached == null || !cached.matches(tariff, market, priceVersion, zone)) {
+            cached = new FinishedUsageCosts(tariff, market, priceVersion, zone, yearMonth.atDay(1), List.of());
+        }
+
+        Instant start = cached.finishedUntil().atStartOfDay(zone).toInstant();
         Instant end = endZoned.toInstant();
+        List<DailyUsageCostResponse> computed = List.of();
+        Set<LocalDate> daysWithMissingPrices = Set.of();
+        if (start.isBefore(end)) {
+            List<PowerLimitHistoryEntity> usageList = powerLimitHistoryRepository
+                    .findByPowerLimitAndCreatedAtBetween(accountId, powerLimitId, start, end);
+            List<NordpoolEntity> priceList = nordpoolPriceCache.findPricesBetween(market, start, end);
+            UsageCostCalculator.Result result = UsageCostCalculator.dailyCosts(usageList, priceList, tariff, zone);
+            computed = result.days();
+            daysWithMissingPrices = result.daysWithMissingPrices();
+        }
 
-        List<PowerLimitHistoryEntity> usageList = powerLimitHistoryRepository
-                .findByPowerLimitAndCreatedAtBetween(accountId, powerLimitId, start, end);
+        List<DailyUsageCostResponse> days = new ArrayList<>(cached.days());
+        days.addAll(computed);
+        cacheFinishedUsageCosts(cacheKey, cached, computed, daysWithMissingPrices, finishedUntil);
+        return days.stream()
+                .map(day -> new DailyUsageCostResponse(day.getDate(), day.getTotalUsageKwh(), day.getTotalCostEur()))
+                .toList();
+    }
 
-        List<NordpoolEntity> priceList = nordpoolRepository.findPricesBetween(
-                NordpoolMarket.normalize(account.getMarketIndexName()),
-                start,
-                end
-        );
+    private UsageCostCalculator.Tariff resolveUsageTariff(Long accountId, PowerLimitEntity powerLimit) {
+        ElectricityContractEntity energyContract = powerLimit.getEnergyContract();
+        BigDecimal taxPercent = energyContract != null ? energyContract.getTaxPercent() : null;
+        if (taxPercent == null) {
+            taxPercent = controlRepository.findFirstByAccountId(accountId)
+                    .map(ControlEntity::getTaxPercent)
+                    .orElse(DEFAULT_TAX_PERCENT);
+        }
+        return UsageCostCalculator.Tariff.of(taxPercent, energyContract, powerLimit.getTransferContract());
+    }
 
-        Map<LocalDate, DailyUsageCostResponse> dailyMap = new TreeMap<>();
-        for (PowerLimitHistoryEntity usage : usageList) {
-            Instant usageTime = usage.getCreatedAt();
-            BigDecimal kwh = usage.getKilowatts();
-
-            BigDecimal priceMwh = priceList.stream()
-                    .filter(p -> !usageTime.isBefore(p.getDeliveryStart()) && usageTime.isBefore(p.getDeliveryEnd()))
-                    .map(NordpoolEntity::getPriceFi)
-                    .findFirst()
-                    .orElse(BigDecimal.ZERO);
-
-            BigDecimal taxMultiplier = BigDecimal.ONE
-                    .add(BigDecimal.valueOf(25.5)
-                            .divide(BigDecimal.valueOf(100), RoundingMode.HALF_UP));
-
-            BigDecimal pricePerKwh = priceMwh.divide(BigDecimal.valueOf(1000), 10, RoundingMode.HALF_UP);
-            BigDecimal cost = kwh
-                    .multiply(pricePerKwh)
-                    .multiply(taxMultiplier);
-            LocalDate day = usageTime.atZone(zone).toLocalDate();
-
-            dailyMap.compute(day, (d, existing) -> {
-                if (existing == null) {
-                    return new DailyUsageCostResponse(d, kwh, cost);
-                } else {
-                    existing.setTotalUsageKwh(existing.getTotalUsageKwh().add(kwh));
-                    existing.setTotalCostEur(existing.getTotalCostEur().add(cost));
-                    return existing;
+    private void cacheFinishedUsageCosts(
+            UsageCostCacheKey cacheKey,
+            FinishedUsageCosts cached,
+            List<DailyUsageCostResponse> computed,
+            Set<LocalDate> daysWithMissingPrices,
+            LocalDate finishedUntil
+    ) {
+        LocalDate cacheableUntil = finishedUntil;
+        for (LocalDate day : daysWithMissingPrices) {
+            if (day.isBefore(cacheableUntil)) {
+                cacheableUntil = day;
+            }
+        }
+        if (!cacheableUntil.isAfter(cached.finishedUntil())) {
+            return;
+        }
+        List<DailyUsageCostResponse> finishedDays = new ArrayList<>(cached.days());
+        for (DailyUsageCostResponse day : computed) {
+            if (day.getDate().isBefore(cacheableUntil)) {
+                finishedDays.add(day);
+            }
+        }
+        finishedUsageCosts.put(cacheKey, new FinishedUsageCosts(
+                cached.tariff(), cached.marketIndexName(), cached.priceVersion(), cached.zone(),
+                cacheableUntil, List.copyOf(finishedDays)
+        ));
+    }
+
+    /**
+     * Drops cached months that received late history rows. Evicted again after commit so a
+     * concurrent read that cached the previous rows in between does not survive.
+     */
+    private void evictFinishedUsageCosts(Set<UsageCostCacheKey> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        finishedUsageCosts.keySet().removeAll(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    finishedUsageCosts.keySet().removeAll(keys);
                 }
             });
         }
-        return dailyMap.values().stream()
-                .sorted(Comparator.comparing(DailyUsageCostResponse::getDate))
-                .toList();
+    }
+
+    private static <K, V> Map<K, V> lruCache(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private record UsageCostCacheKey(Long powerLimitId, YearMonth month) {
+    }
+
+    /**
+     * Costs of days before {@code finishedUntil} for the tariff and price version. Late history rows
+     * for a finished day evict the month, a price refresh changes the version.
+     */
+    private record FinishedUsageCosts(
+            UsageCostCalculator.Tariff tariff,
+            String marketIndexName,
+            long priceVersion,
+            ZoneId zone,
+            LocalDate finishedUntil,
+            List<DailyUsageCostResponse> days
+    ) {
+        boolean matches(UsageCostCalculator.Tariff tariff, String marketIndexName, long priceVersion, ZoneId zone) {
+            return this.tariff.equals(tariff)
+                    && this.marketIndexName.equals(marketIndexName)
+                    && this.priceVersion == priceVersion
+                    && this.zone.equals(zone);
+        }
     }
 
     @Transactional
@@ -554,6 +710,9 @@ public class PowerLimitService {
                         "Power limit not found for account " + accountId + " and id " + powerLimitId
                 ));
         powerLimitRepository.delete(entity);
+        synchronized (finishedUsageCosts) {
+            finishedUsageCosts.keySet().removeIf(key -> key.powerLimitId().equals(powerLimitId));
+        }
     }
 
 }
@@ -0,0 +1,169 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.repository.PowerLimitRepository;
+import com.nitramite.porssiohjain.services.models.CurrentKwRequest;
+import com.nitramite.porssiohjain.services.models.PowerIngestStatsResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accepts power meter readings into lock striped per power limit accumulators and
+ * acknowledges them right away. Buffered readings are written by {@link #flush()} on a
+ * short cadence, so a crash loses at most one flush interval. With durability SYNC every
+ * reading is written before the request returns.
+ */
+@Slf4j
+@Service
+public class PowerReadingIngestService {
+
+    public enum Durability {
+        BUFFERED,
+        SYNC
+    }
+
+    private static final int STRIPES = 16;
+
+    private final PowerLimitService powerLimitService;
+    private final PowerLimitRepository powerLimitRepository;
+    private final Durability durability;
+    private final int maxPendingReadings;
+    private final Object[] locks = new Object[STRIPES];
+    private final List<Map<UUID, BufferedPowerReadings>> stripes = new ArrayList<>(STRIPES);
+    private final Set<UUID> knownPowerLimits = ConcurrentHashMap.newKeySet();
+    private final Object flushLock = new Object();
+    private final AtomicInteger pendingReadings = new AtomicInteger();
+    private final AtomicLong acceptedReadings = new AtomicLong();
+    private final AtomicLong rejectedReadings = new AtomicLong();
+    private final AtomicLong writtenBatches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    @Autowired
+    public PowerReadingIngestService(
+            PowerLimitService powerLimitService,
+            PowerLimitRepository powerLimitRepository,
+            @Value("${power.ingest.durability:BUFFERED}") Durability durability,
+            @Value("${power.ingest.max-pending-readings:50000}") int maxPendingReadings
+    ) {
+        this.powerLimitService = powerLimitService;
+        this.powerLimitRepository = powerLimitRepository;
+        this.durability = durability;
+        this.maxPendingReadings = maxPendingReadings;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+            stripes.add(new HashMap<>());
+        }
+    }
+
+    public void accept(String uuid, CurrentKwRequest request) {
+        if (request.getCurrentKw() == null || request.getTotalKwh() == null || request.getMeasuredAt() == null) {
+            throw new IllegalArgumentException("currentKw, totalKwh and measuredAt are required");
+        }
+        if (durability == Durability.SYNC) {
+            powerLimitService.updateCurrentKw(uuid, request);
+            acceptedReadings.incrementAndGet();
+            return;
+        }
+        UUID powerLimitUuid = UUID.fromString(uuid);
+        if (!knownPowerLimits.contains(powerLimitUuid)) {
+            if (!powerLimitRepository.existsByUuid(powerLimitUuid)) {
+                throw new IllegalArgumentException("Power limit not found for uuid: " + uuid);
+            }
+            knownPowerLimits.add(powerLimitUuid);
+        }
+        if (pendingReadings.incrementAndGet() > maxPendingReadings) {
+            pendingReadings.decrementAndGet();
+            rejectedReadings.incrementAndGet();
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Power reading buffer is full, retry later");
+        }
+        int stripe = Math.floorMod(powerLimitUuid.hashCode(), STRIPES);
+        synchronized (locks[stripe]) {
+            stripes.get(stripe)
+                    .computeIfAbsent(powerLimitUuid, BufferedPowerReadings::new)
+                    .add(request);
+        }
+        acceptedReadings.incrementAndGet();
+    }
+
+    /**
+     * Writes everything buffered so far. A failing batch is retried one power limit at a
+     * time so that a single bad row does not drop the readings of other meters.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<BufferedPowerReadings> drained = new ArrayList<>();
+            for (int i = 0; i < STRIPES; i++) {
+                synchronized (locks[i]) {
+                    Map<UUID, BufferedPowerReadings> stripe = stripes.get(i);
+                    if (!stripe.isEmpty()) {
+                        drained.addAll(stripe.values());
+                        stripe.clear();
+                    }
+                }
+            }
+            if (drained.isEmpty()) {
+                return;
+            }
+            int readingCount = drained.stream().mapToInt(BufferedPowerReadings::getReadingCount).sum();
+            try {
+                forgetMissing(powerLimitService.applyBufferedReadings(drained));
+                writtenBatches.incrementAndGet();
+            } catch (RuntimeException e) {
+                failedBatches.incrementAndGet();
+                log.warn("Power reading batch of {} meters failed, retrying one by one: {}", drained.size(), e.getMessage());
+                for (BufferedPowerReadings readings : drained) {
+                    try {
+                        forgetMissing(powerLimitService.applyBufferedReadings(List.of(readings)));
+                    } catch (RuntimeException single) {
+                        log.error("Dropping {} power readings of {}", readings.getReadingCount(), readings.getPowerLimitUuid(), single);
+                    }
+                }
+            } finally {
+                pendingReadings.addAndGet(-readingCount);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public PowerIngestStatsResponse getStats() {
+        return PowerIngestStatsResponse.builder()
+                .durability(durability.name())
+                .pendingReadings(pendingReadings.get())
+                .maxPendingReadings(maxPendingReadings)
+                .acceptedReadings(acceptedReadings.get())
+                .rejectedReadings(rejectedReadings.get())
+                .writtenBatches(writtenBatches.get())
+                .failedBatches(failedBatches.get())
+                .build();
+    }
+
+    private void forgetMissing(Set<UUID> missing) {
+        missing.forEach(knownPowerLimits::remove);
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.PowerplantElementEntity;
+import com.nitramite.porssiohjain.entity.PowerplantRuleEntity;
+import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
+import com.nitramite.porssiohjain.entity.repository.PowerplantRuleRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enabled powerplant rule ids keyed by the measurement series their source indicator
+ * follows, so a measurement update only evaluates the rules that read it. Built lazily
+ * and rebuilt after {@link #invalidate()}, which rule and element writes call.
+ */
+@Component
+@RequiredArgsConstructor
+public class PowerplantRuleIndex {
+
+    public record Source(Long deviceId, ZigbeeMeasurementType type, String key) {
+    }
+
+    private record Snapshot(long version, Map<Source, List<Long>> ruleIds) {
+    }
+
+    private final PowerplantRuleRepository powerplantRuleRepository;
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    /**
+     * @return ids of enabled rules reading any of the sources, ascending
+     */
+    public List<Long> ruleIds(Collection<Source> sources) {
+        Map<Source, List<Long>> index = current();
+        TreeSet<Long> ids = new TreeSet<>();
+        for (Source source : sources) {
+            ids.addAll(index.getOrDefault(source, List.of()));
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Drops the index now and once more when the surrounding transaction completes,
+     * so a rebuild that read uncommitted state in between is not kept.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    private Map<Source, List<Long>> current() {
+        long expected = version.get();
+        Snapshot current = snapshot;
+        if (current != null && current.version() == expected) {
+            return current.ruleIds();
+        }
+        Map<Source, List<Long>> ruleIds = new HashMap<>();
+        for (PowerplantRuleEntity rule : powerplantRuleRepository.findEnabledWithSource()) {
+            PowerplantElementEntity source = rule.getSourceElement();
+            if (source.getDevice() == null || source.getMeasurementType() == null || source.getMeasurementKey() == null) {
+                continue;
+            }
+            ruleIds.computeIfAbsent(
+                    new Source(source.getDevice().getId(), source.getMeasurementType(), source.getMeasurementKey()),
+                    ignored -> new ArrayList<>()
+            ).add(rule.getId());
+        }
+        snapshot = new Snapshot(expected, ruleIds);
+        return ruleIds;
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs powerplant rule evaluation when measurements arrive instead of on a fixed
+ * interval. Every evaluation, event driven or a full sweep, runs on one thread, so
+ * the hysteresis, cooldown and matched state of a rule is never updated concurrently.
+ * Sources that change while an evaluation runs are coalesced into the next one.
+ */
+@Slf4j
+@Service
+public class PowerplantRuleTrigger {
+
+    private final PowerplantService powerplantService;
+    private final Set<PowerplantRuleIndex.Source> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "powerplant-rules");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PowerplantRuleTrigger(PowerplantService powerplantService) {
+        this.powerplantService = powerplantService;
+    }
+
+    /**
+     * Queues evaluation of the rules reading the sampled series once the surrounding
+     * transaction commits, so the rules see the new latest values.
+     */
+    public void measurementsChanged(List<ZigbeeMeasurementWriter.Sample> samples) {
+        List<PowerplantRuleIndex.Source> sources = new ArrayList<>(samples.size());
+        for (ZigbeeMeasurementWriter.Sample sample : samples) {
+            if (sample.value() != null) {
+                sources.add(new PowerplantRuleIndex.Source(sample.link().getDevice().getId(), sample.type(), sample.key()));
+            }
+        }
+        if (sources.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(sources);
+                }
+            });
+        } else {
+            enqueue(sources);
+        }
+    }
+
+    /**
+     * Evaluates every enabled rule on the evaluation thread and waits for the result.
+     * Used by the staleness sweep and the manual evaluate button.
+     */
+    public int evaluateAll() {
+        try {
+            return executor.submit(powerplantService::evaluateEnabledRules).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating powerplant rules", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Powerplant rule evaluation failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void enqueue(Collection<PowerplantRuleIndex.Source> sources) {
+        pending.addAll(sources);
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        List<PowerplantRuleIndex.Source> sources = new ArrayList<>(pending);
+        pending.removeAll(sources);
+        if (sources.isEmpty()) {
+            return;
+        }
+        try {
+            int commands = powerplantService.evaluateRulesForSources(sources);
+            if (commands > 0) {
+                log.info("Powerplant rules sent {} command(s) after measurement update", commands);
+            }
+        } catch (RuntimeException e) {
+            log.error("Powerplant rule evaluation failed for {} source(s)", sources.size(), e);
+        }
+    }
+
+}
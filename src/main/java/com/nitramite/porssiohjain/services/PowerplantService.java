@@ -16,7 +16,7 @@ import com.nitramite.porssiohjain.entity.DeviceEntity;
 import com.nitramite.porssiohjain.entity.PowerplantElementEntity;
 import com.nitramite.porssiohjain.entity.PowerplantRuleEntity;
 import com.nitramite.porssiohjain.entity.PowerplantSettingsEntity;
-import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementEntity;
+import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementLatestEntity;
 import com.nitramite.porssiohjain.entity.enums.ControlAction;
 import com.nitramite.porssiohjain.entity.enums.DeviceType;
 import com.nitramite.porssiohjain.entity.enums.PowerplantComparisonType;
@@ -27,12 +27,13 @@ import com.nitramite.porssiohjain.entity.repository.DeviceRepository;
 import com.nitramite.porssiohjain.entity.repository.PowerplantElementRepository;
 import com.nitramite.porssiohjain.entity.repository.PowerplantRuleRepository;
 import com.nitramite.porssiohjain.entity.repository.PowerplantSettingsRepository;
-import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementRepository;
+import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementLatestRepository;
 import com.nitramite.porssiohjain.services.models.DeviceResponse;
 import com.nitramite.porssiohjain.services.models.PowerplantElementResponse;
 import com.nitramite.porssiohjain.services.models.PowerplantMeasurementOptionResponse;
 import com.nitramite.porssiohjain.services.models.PowerplantRuleResponse;
 import com.nitramite.porssiohjain.services.models.PowerplantSettingsResponse;
+import com.nitramite.porssiohjain.services.models.ZigbeeLatestMeasurement;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -41,6 +42,8 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -62,8 +65,10 @@ public class PowerplantService {
     private final DeviceRepository deviceRepository;
     private final PowerplantElementRepository powerplantElementRepository;
     private final PowerplantRuleRepository powerplantRuleRepository;
+    private final PowerplantRuleIndex powerplantRuleIndex;
     private final PowerplantSettingsRepository powerplantSettingsRepository;
-    private final ZigbeeDeviceMeasurementRepository measurementRepository;
+    private final ZigbeeDeviceMeasurementLatestRepository latestMeasurementRepository;
+    private final ZigbeeLatestMeasurementStore latestMeasurementStore;
     private final DemoAccountGuard demoAccountGuard;
     private final ControlService controlService;
 
@@ -111,7 +116,8 @@ public class PowerplantService {
     public List<PowerplantMeasurementOptionResponse> getMeasurementOptions(Long accountId) {
         validateAccount(accountId);
         Instant after = Instant.now().minus(MEASUREMENT_SELECTOR_LOOKBACK);
-        return measurementRepository.findLatestDistinctMeasurements(accountId, after).stream()
+        return latestMeasurementRepository
+                .findByAccountIdAndMeasuredAtGreaterThanEqualOrderByMeasuredAtDescIdDesc(accountId, after).stream()
                 .map(this::mapMeasurementOption)
                 .toList();
     }
@@ -199,6 +205,7 @@ public class PowerplantService {
         PowerplantElementEntity saved = powerplantElementRepository.save(entity);
         if (ruleEndpointChanged) {
             rearmRulesForElement(saved);
+            powerplantRuleIndex.invalidate();
         }
         return mapElement(saved);
     }
@@ -221,6 +228,7 @@ public class PowerplantService {
         powerplantRuleRepository.deleteAll(powerplantRuleRepository.findBySourceElement(entity));
         powerplantRuleRepository.deleteAll(powerplantRuleRepository.findByTargetElement(entity));
         powerplantElementRepository.delete(entity);
+        powerplantRuleIndex.invalidate();
     }
 
     @Transactional
@@ -271,7 +279,9 @@ public class PowerplantService {
         entity.setCooldownSeconds(cooldownSeconds != null ? Math.max(0, cooldownSeconds) : 300);
         rearmRule(entity);
 
-        return mapRule(powerplantRuleRepository.save(entity));
+        PowerplantRuleEntity saved = powerplantRuleRepository.save(entity);
+        powerplantRuleIndex.invalidate();
+        return mapRule(saved);
     }
 
     @Transactional
@@ -289,6 +299,7 @@ public class PowerplantService {
         PowerplantRuleEntity entity = powerplantRuleRepository.findByIdAndAccountId(ruleId, accountId)
                 .orElseThrow(() -> new EntityNotFoundException("Powerplant rule not found: " + ruleId));
         powerplantRuleRepository.delete(entity);
+        powerplantRuleIndex.invalidate();
     }
 
     @Transactional
@@ -313,6 +324,29 @@ public class PowerplantService {
         return sent;
     }
 
+    /**
+     * Evaluates only the enabled rules whose source indicator reads one of the given
+     * measurement series. Called right after new measurements are committed.
+     */
+    @Transactional
+    public int evaluateRulesForSources(Collection<PowerplantRuleIndex.Source> sources) {
+        List<Long> ruleIds = powerplantRuleIndex.ruleIds(sources);
+        if (ruleIds.isEmpty()) {
+            return 0;
+        }
+        Instant now = Instant.now();
+        int sent = 0;
+        for (PowerplantRuleEntity rule : powerplantRuleRepository.findAllById(ruleIds).stream()
+                .filter(PowerplantRuleEntity::isEnabled)
+                .sorted(Comparator.comparing(PowerplantRuleEntity::getId))
+                .toList()) {
+            if (evaluateRule(rule, now)) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
     @Transactional(readOnly = true)
     public void sendDeviceControl(Long accountId, Long elementId, boolean on) {
         demoAccountGuard.assertWritable(accountId);
@@ -378,19 +412,19 @@ public class PowerplantService {
         rule.setLastEvaluatedAt(now);
         try {
             validateRuleEndpoints(rule.getSourceElement(), rule.getTargetElement());
-            Optional<ZigbeeDeviceMeasurementEntity> measurement = latestMeasurement(rule.getSourceElement());
+            Optional<ZigbeeLatestMeasurement> measurement = latestMeasurement(rule.getSourceElement());
             if (measurement.isEmpty()) {
                 markSkipped(rule, "Source measurement is missing");
                 return false;
             }
-            ZigbeeDeviceMeasurementEntity latest = measurement.get();
-            if (latest.getMeasuredAt().isBefore(now.minus(MEASUREMENT_FRESHNESS))) {
+            ZigbeeLatestMeasurement latest = measurement.get();
+            if (latest.measuredAt().isBefore(now.minus(MEASUREMENT_FRESHNESS))) {
                 markSkipped(rule, "Source measurement is stale");
                 return false;
             }
 
             boolean previouslyMatched = Boolean.TRUE.equals(rule.getLastConditionMatched());
-            boolean matched = conditionMatches(rule, latest.getValue(), previouslyMatched);
+            boolean matched = conditionMatches(rule, latest.value(), previouslyMatched);
             if (!matched) {
                 rule.setLastConditionMatched(false);
                 rule.setLastSkipReason("Condition does not match");
@@ -485,7 +519,7 @@ public class PowerplantService {
     }
 
     private PowerplantElementResponse mapElement(PowerplantElementEntity entity) {
-        Optional<ZigbeeDeviceMeasurementEntity> latestMeasurement = latestMeasurement(entity);
+        Optional<ZigbeeLatestMeasurement> latestMeasurement = latestMeasurement(entity);
         Instant now = Instant.now();
         return PowerplantElementResponse.builder()
                 .id(entity.getId())
@@ -498,11 +532,11 @@ public class PowerplantService {
                 .deviceChannel(entity.getDeviceChannel())
                 .measurementType(entity.getMeasurementType())
                 .measurementKey(entity.getMeasurementKey())
-                .latestMeasurementValue(latestMeasurement.map(ZigbeeDeviceMeasurementEntity::getValue).orElse(null))
-                .latestMeasuredAt(latestMeasurement.map(ZigbeeDeviceMeasurementEntity::getMeasuredAt).orElse(null))
-                .latestReceivedAt(latestMeasurement.map(ZigbeeDeviceMeasurementEntity::getReceivedAt).orElse(null))
+                .latestMeasurementValue(latestMeasurement.map(ZigbeeLatestMeasurement::value).orElse(null))
+                .latestMeasuredAt(latestMeasurement.map(ZigbeeLatestMeasurement::measuredAt).orElse(null))
+                .latestReceivedAt(latestMeasurement.map(ZigbeeLatestMeasurement::receivedAt).orElse(null))
                 .latestMeasurementFresh(latestMeasurement
-                        .map(measurement -> !measurement.getMeasuredAt().isBefore(now.minus(MEASUREMENT_FRESHNESS)))
+                        .map(measurement -> !measurement.measuredAt().isBefore(now.minus(MEASUREMENT_FRESHNESS)))
                         .orElse(false))
                 .canvasX(entity.getCanvasX())
                 .canvasY(entity.getCanvasY())
@@ -533,7 +567,7 @@ public class PowerplantService {
                 .build();
     }
 
-    private Optional<ZigbeeDeviceMeasurementEntity> latestMeasurement(PowerplantElementEntity entity) {
+    private Optional<ZigbeeLatestMeasurement> latestMeasurement(PowerplantElementEntity entity) {
         if (entity.getElementType() != PowerplantElementType.INDICATOR
                 || entity.getDevice() == null
                 || entity.getMeasurementType() == null
@@ -541,7 +575,7 @@ public class PowerplantService {
                 || entity.getMeasurementKey().isBlank()) {
             return Optional.empty();
         }
-        return measurementRepository.findFirstByDeviceIdAndMeasurementTypeAndMeasurementKeyOrderByMeasuredAtDescIdDesc(
+        return latestMeasurementStore.find(
                 entity.getDevice().getId(),
                 entity.getMeasurementType(),
                 entity.getMeasurementKey()
@@ -554,20 +588,16 @@ public class PowerplantService {
             ZigbeeMeasurementType measurementType,
             String measurementKey
     ) {
-        boolean exists = measurementRepository
-                .findFirstByDeviceIdAndMeasurementTypeAndMeasurementKeyOrderByMeasuredAtDescIdDesc(
-                        deviceId,
-                        measurementType,
-                        measurementKey
-                )
-                .filter(measurement -> measurement.getAccount().getId().equals(accountId))
+        boolean exists = latestMeasurementStore
+                .find(deviceId, measurementType, measurementKey)
+                .filter(measurement -> measurement.accountId().equals(accountId))
                 .isPresent();
         if (!exists) {
             throw new IllegalArgumentException("Selected measurement has not been reported by this account device");
         }
     }
 
-    private PowerplantMeasurementOptionResponse mapMeasurementOption(ZigbeeDeviceMeasurementEntity measurement) {
+    private PowerplantMeasurementOptionResponse mapMeasurementOption(ZigbeeDeviceMeasurementLatestEntity measurement) {
         return PowerplantMeasurementOptionResponse.builder()
                 .device(mapDevice(measurement.getDevice()))
                 .measurementType(measurement.getMeasurementType())
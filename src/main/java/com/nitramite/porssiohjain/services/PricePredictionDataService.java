@@ -28,10 +28,9 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -44,6 +43,7 @@ public class PricePredictionDataService {
 
     private final PricePredictionRepository predictionRepository;
     private final SystemLogService systemLogService;
+    private final TimeSeriesImportService timeSeriesImportService;
 
     public void fetchData() {
         try {
@@ -68,31 +68,24 @@ public class PricePredictionDataService {
     }
 
     private void saveEntries(Double[][] raw) {
-        Set<Instant> existing = predictionRepository.findAll().stream()
-                .map(PricePredictionEntity::getTimestamp)
-                .collect(Collectors.toSet());
+        Map<Instant, BigDecimal> pricesByTimestamp = new LinkedHashMap<>();
+        for (Double[] arr : raw) {
+            if (arr.length >= 2) {
+                pricesByTimestamp.putIfAbsent(Instant.ofEpochMilli(arr[0].longValue()), BigDecimal.valueOf(arr[1]));
+            }
+        }
 
-        List<PricePredictionEntity> toInsert = Arrays.stream(raw)
-                .filter(arr -> arr.length >= 2)
-                .map(arr -> Instant.ofEpochMilli(arr[0].longValue()))
-                .filter(ts -> !existing.contains(ts))
-                .map(ts -> {
-                    Double price = Arrays.stream(raw)
-                            .filter(a -> a[0].longValue() == ts.toEpochMilli())
-                            .findFirst()
-                            .map(a -> a[1])
-                            .orElse(0.0);
-                    return PricePredictionEntity.builder()
-                            .timestamp(ts)
-                            .priceCents(BigDecimal.valueOf(price))
-                            .build();
-                })
+        List<PricePredictionEntity> predictions = pricesByTimestamp.entrySet().stream()
+                .map(entry -> PricePredictionEntity.builder()
+                        .timestamp(entry.getKey())
+                        .priceCents(entry.getValue())
+                        .build())
                 .toList();
 
-        if (!toInsert.isEmpty()) {
-            log.info("Inserting {} price prediction entries", toInsert.size());
-            predictionRepository.saveAll(toInsert);
-            systemLogService.log("Insert of " + toInsert.size() + " price prediction entries completed.");
+        int inserted = timeSeriesImportService.insertPricePredictions(predictions);
+        if (inserted > 0) {
+            log.info("Inserted {} of {} price prediction entries", inserted, predictions.size());
+            systemLogService.log("Insert of " + inserted + " price prediction entries completed.");
         }
     }
 
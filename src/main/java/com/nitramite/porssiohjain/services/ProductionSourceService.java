@@ -19,16 +19,18 @@ import com.nitramite.porssiohjain.entity.enums.ProductionApiType;
 import com.nitramite.porssiohjain.entity.enums.ResourceType;
 import com.nitramite.porssiohjain.entity.repository.*;
 import com.nitramite.porssiohjain.services.models.*;
-import com.nitramite.porssiohjain.utils.Utils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -38,6 +40,29 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ProductionSourceService {
 
+    public static final int HISTORY_QUARTER_HOUR = 15;
+    public static final int HISTORY_HOUR = 60;
+    public static final int HISTORY_DAY = 1440;
+
+    private static final Set<Integer> HISTORY_RESOLUTIONS = Set.of(HISTORY_QUARTER_HOUR, HISTORY_HOUR, HISTORY_DAY);
+    private static final Duration MAX_HISTORY_RANGE = Duration.ofDays(366);
+    // created_at is a plain timestamp in the session time zone, so bounds are cast to it to keep the index usable
+    private static final String HISTORY_SQL = """
+            SELECT CAST(%s AS BIGINT) AS bucket_epoch,
+                   ROUND(AVG(kilowatts), 2) AS kilowatts
+            FROM production_history
+            WHERE production_source_id = ?
+              AND created_at >= CAST(? AS TIMESTAMP)
+              AND created_at < CAST(? AS TIMESTAMP)
+            GROUP BY bucket_epoch
+            ORDER BY bucket_epoch
+            """;
+    private static final RowMapper<ProductionHistoryResponse> HISTORY_ROW_MAPPER = (rs, rowNum) ->
+            ProductionHistoryResponse.builder()
+                    .createdAt(Instant.ofEpochSecond(rs.getLong("bucket_epoch")))
+                    .kilowatts(rs.getBigDecimal("kilowatts"))
+                    .build();
+
     private final ProductionSourceRepository productionSourceRepository;
     private final AccountRepository accountRepository;
     private final ProductionSourceDeviceRepository productionSourceDeviceRepository;
@@ -48,6 +73,8 @@ public class ProductionSourceService {
     private final ResourceSharingRepository resourceSharingRepository;
     private final AccountLimitService accountLimitService;
     private final DemoAccountGuard demoAccountGuard;
+    private final TimeSeriesDownsampler timeSeriesDownsampler;
+    private final JdbcTemplate jdbcTemplate;
 
     @Transactional
     public void deleteOldProductionHistory() {
@@ -352,29 +379,51 @@ public class ProductionSourceService {
 
     @Transactional(readOnly = true)
     public List<ProductionHistoryResponse> getProductionHistory(Long accountId, Long sourceId, int hours) {
+        Instant to = Instant.now();
+        return getProductionHistory(accountId, sourceId, to.minus(hours, ChronoUnit.HOURS), to, HISTORY_QUARTER_HOUR);
+    }
+
+    /**
+     * Average kilowatts per bucket between from (inclusive) and to (exclusive), bucketed and
+     * averaged in the database. Quarter hour and hourly buckets follow the epoch, which
+     * matches local time for whole and quarter hour offsets; daily buckets follow the
+     * source's local days.
+     */
+    @Transactional(readOnly = true)
+    public List<ProductionHistoryResponse> getProductionHistory(
+            Long accountId, Long sourceId, Instant from, Instant to, int resolutionMinutes
+    ) {
+        if (!HISTORY_RESOLUTIONS.contains(resolutionMinutes)) {
+            throw new IllegalArgumentException("Unsupported resolution: " + resolutionMinutes + " minutes");
+        }
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("History range start must be before its end");
+        }
+        if (Duration.between(from, to).compareTo(MAX_HISTORY_RANGE) > 0) {
+            throw new IllegalArgumentException("History range can be at most " + MAX_HISTORY_RANGE.toDays() + " days");
+        }
         ProductionSourceEntity source = getAccessibleProductionSource(accountId, sourceId);
-        ZoneId zone = ZoneId.of(source.getTimezone());
-        Instant since = Instant.now().minus(hours, ChronoUnit.HOURS);
-        Map<Instant, List<ProductionHistoryEntity>> grouped =
-                productionHistoryRepository.findAllByProductionSource(source)
-                        .stream()
-                        .filter(h -> h.getCreatedAt().isAfter(since))
-                        .collect(Collectors.groupingBy(h -> Utils.toQuarterHour(h.getCreatedAt(), zone)));
-        return grouped.entrySet().stream()
-                .map(entry -> {
-                    Instant bucketStart = entry.getKey();
-                    List<ProductionHistoryEntity> values = entry.getValue();
-                    BigDecimal avg = values.stream()
-                            .map(ProductionHistoryEntity::getKilowatts)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add)
-                            .divide(BigDecimal.valueOf(values.size()), 2, RoundingMode.HALF_UP);
-                    return ProductionHistoryResponse.builder()
-                            .kilowatts(avg)
-                            .createdAt(bucketStart)
-                            .build();
-                })
-                .sorted(Comparator.comparing(ProductionHistoryResponse::getCreatedAt))
-                .toList();
+        List<ProductionHistoryResponse> history;
+        if (resolutionMinutes == HISTORY_DAY) {
+            String zone = ZoneId.of(source.getTimezone()).getId();
+            history = jdbcTemplate.query(
+                    HISTORY_SQL.formatted("extract(epoch FROM date_trunc('day', CAST(created_at AS timestamptz) AT TIME ZONE ?) AT TIME ZONE ?)"),
+                    HISTORY_ROW_MAPPER,
+                    zone, zone, source.getId(), from.atOffset(ZoneOffset.UTC), to.atOffset(ZoneOffset.UTC)
+            );
+        } else {
+            long bucketSeconds = resolutionMinutes * 60L;
+            history = jdbcTemplate.query(
+                    HISTORY_SQL.formatted("floor(extract(epoch FROM CAST(created_at AS timestamptz)) / ?) * ?"),
+                    HISTORY_ROW_MAPPER,
+                    bucketSeconds, bucketSeconds, source.getId(), from.atOffset(ZoneOffset.UTC), to.atOffset(ZoneOffset.UTC)
+            );
+        }
+        return timeSeriesDownsampler.downsample(
+                history,
+                h -> h.getCreatedAt().toEpochMilli(),
+                h -> h.getKilowatts().doubleValue()
+        );
     }
 
     @Transactional
@@ -0,0 +1,174 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.DeviceEntity;
+import com.nitramite.porssiohjain.entity.DeviceRelayStateEntity;
+import com.nitramite.porssiohjain.entity.repository.DeviceRelayStateRepository;
+import com.nitramite.porssiohjain.services.models.RelayPublishStatsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the last relay state published to each MQTT device channel so that
+ * the control loop only publishes transitions. Every channel is still republished
+ * after the resync interval and right after the device reports itself online.
+ */
+@Slf4j
+@Service
+public class RelayStateService {
+
+    private final DeviceRelayStateRepository deviceRelayStateRepository;
+    private final Duration resyncInterval;
+    private final Map<RelayKey, PublishedState> lastPublished = new ConcurrentHashMap<>();
+    private final Map<UUID, Instant> resyncRequestedAt = new ConcurrentHashMap<>();
+    private final AtomicLong sentCommands = new AtomicLong();
+    private final AtomicLong suppressedCommands = new AtomicLong();
+    private volatile boolean snapshotLoaded;
+
+    @Autowired
+    public RelayStateService(
+            DeviceRelayStateRepository deviceRelayStateRepository,
+            @Value("${app.control.relay-resync-interval:15m}") Duration resyncInterval
+    ) {
+        this.deviceRelayStateRepository = deviceRelayStateRepository;
+        this.resyncInterval = resyncInterval == null ? Duration.ZERO : resyncInterval;
+    }
+
+    public boolean shouldPublish(UUID deviceUuid, int channel, boolean on, Instant now) {
+        loadSnapshotIfNeeded();
+        PublishedState previous = lastPublished.get(new RelayKey(deviceUuid, channel));
+        boolean publish = previous == null
+                || previous.on() != on
+                || !previous.publishedAt().plus(resyncInterval).isAfter(now)
+                || isResyncRequested(deviceUuid, previous.publishedAt(), now);
+        if (publish) {
+            sentCommands.incrementAndGet();
+        } else {
+            suppressedCommands.incrementAndGet();
+        }
+        return publish;
+    }
+
+    public void recordPublished(Collection<PublishedRelayState> published, Instant now) {
+        if (published.isEmpty()) {
+            return;
+        }
+        Map<Long, DeviceEntity> devicesById = new HashMap<>();
+        for (PublishedRelayState state : published) {
+            lastPublished.put(new RelayKey(state.device().getUuid(), state.channel()), new PublishedState(state.on(), now));
+            resyncRequestedAt.computeIfPresent(state.device().getUuid(), (uuid, requestedAt) -> requestedAt.isAfter(now) ? requestedAt : null);
+            devicesById.putIfAbsent(state.device().getId(), state.device());
+        }
+
+        Map<RelayKey, DeviceRelayStateEntity> existing = new HashMap<>();
+        for (DeviceRelayStateEntity entity : deviceRelayStateRepository.findByDeviceIdIn(devicesById.keySet())) {
+            existing.put(new RelayKey(devicesById.get(entity.getDevice().getId()).getUuid(), entity.getDeviceChannel()), entity);
+        }
+        List<DeviceRelayStateEntity> toSave = new ArrayList<>();
+        for (PublishedRelayState state : published) {
+            DeviceRelayStateEntity entity = existing.computeIfAbsent(
+                    new RelayKey(state.device().getUuid(), state.channel()),
+                    key -> DeviceRelayStateEntity.builder()
+                            .device(state.device())
+                            .deviceChannel(state.channel())
+                            .build()
+            );
+            entity.setRelayOn(state.on());
+            entity.setPublishedAt(now);
+            toSave.add(entity);
+        }
+        deviceRelayStateRepository.saveAll(toSave);
+    }
+
+    /**
+     * Republishes every channel of the device on the next control round, e.g. after
+     * it reconnected and may have lost its relay state.
+     */
+    public void requestResync(UUID deviceUuid) {
+        requestResync(deviceUuid, Instant.now());
+    }
+
+    /**
+     * Requests older than the resync interval are dropped, every channel published before
+     * them is due by the interval anyway. This also bounds requests of devices that never
+     * get a channel published.
+     */
+    public void requestResync(UUID deviceUuid, Instant now) {
+        resyncRequestedAt.values().removeIf(requestedAt -> isExpired(requestedAt, now));
+        resyncRequestedAt.put(deviceUuid, now);
+    }
+
+    public RelayPublishStatsResponse getStats() {
+        return RelayPublishStatsResponse.builder()
+                .sentCommands(sentCommands.get())
+                .suppressedCommands(suppressedCommands.get())
+                .trackedChannels(lastPublished.size())
+                .pendingResyncDevices(resyncRequestedAt.size())
+                .resyncIntervalSeconds(resyncInterval.toSeconds())
+                .build();
+    }
+
+    private boolean isResyncRequested(UUID deviceUuid, Instant publishedAt, Instant now) {
+        Instant requestedAt = resyncRequestedAt.get(deviceUuid);
+        if (requestedAt == null) {
+            return false;
+        }
+        if (isExpired(requestedAt, now)) {
+            resyncRequestedAt.remove(deviceUuid, requestedAt);
+            return false;
+        }
+        return !publishedAt.isAfter(requestedAt);
+    }
+
+    private boolean isExpired(Instant requestedAt, Instant now) {
+        return !requestedAt.plus(resyncInterval).isAfter(now);
+    }
+
+    private void loadSnapshotIfNeeded() {
+        if (snapshotLoaded) {
+            return;
+        }
+        synchronized (this) {
+            if (snapshotLoaded) {
+                return;
+            }
+            for (DeviceRelayStateEntity entity : deviceRelayStateRepository.findAllByOrderByIdAsc()) {
+                lastPublished.putIfAbsent(
+                        new RelayKey(entity.getDevice().getUuid(), entity.getDeviceChannel()),
+                        new PublishedState(entity.isRelayOn(), entity.getPublishedAt())
+                );
+            }
+            snapshotLoaded = true;
+            log.info("Loaded {} last published relay states", lastPublished.size());
+        }
+    }
+
+    public record PublishedRelayState(DeviceEntity device, int channel, boolean on) {
+    }
+
+    private record RelayKey(UUID deviceUuid, int channel) {
+    }
+
+    private record PublishedState(boolean on, Instant publishedAt) {
+    }
+
+}
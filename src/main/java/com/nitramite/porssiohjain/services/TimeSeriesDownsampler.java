@@ -0,0 +1,105 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reduces chart series to a fixed point budget with Largest-Triangle-Three-Buckets, so
+ * chart payloads stay the same size whatever time range is requested. The first and last
+ * point are always kept and every bucket keeps the point that best preserves the shape,
+ * so peaks survive unlike with plain averaging. Series within the budget are returned as is.
+ */
+@Service
+public class TimeSeriesDownsampler {
+
+    private static final int MIN_POINTS = 3;
+
+    private final int defaultMaxPoints;
+
+    @Autowired
+    public TimeSeriesDownsampler(@Value("${app.charts.max-points:500}") int defaultMaxPoints) {
+        this.defaultMaxPoints = Math.max(MIN_POINTS, defaultMaxPoints);
+    }
+
+    public int getDefaultMaxPoints() {
+        return defaultMaxPoints;
+    }
+
+    public <T> List<T> downsample(List<T> points, ToLongFunction<T> x, ToDoubleFunction<T> y) {
+        return downsample(points, defaultMaxPoints, x, y);
+    }
+
+    /**
+     * @param points series sorted by x ascending
+     * @param x      point time, for example epoch millis
+     * @param y      point value
+     */
+    public <T> List<T> downsample(List<T> points, int maxPoints, ToLongFunction<T> x, ToDoubleFunction<T> y) {
+        int budget = Math.max(MIN_POINTS, maxPoints);
+        int size = points.size();
+        if (size <= budget) {
+            return points;
+        }
+
+        List<T> sampled = new ArrayList<>(budget);
+        sampled.add(points.getFirst());
+        double bucketSize = (double) (size - 2) / (budget - 2);
+        int selected = 0;
+        for (int bucket = 0; bucket < budget - 2; bucket++) {
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+
+            int nextStart = end;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, size);
+            double nextX = 0;
+            double nextY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                nextX += x.applyAsLong(points.get(i));
+                nextY += y.applyAsDouble(points.get(i));
+            }
+            int nextCount = nextEnd - nextStart;
+            if (nextCount > 0) {
+                nextX /= nextCount;
+                nextY /= nextCount;
+            } else {
+                nextX = x.applyAsLong(points.getLast());
+                nextY = y.applyAsDouble(points.getLast());
+            }
+
+            double selectedX = x.applyAsLong(points.get(selected));
+            double selectedY = y.applyAsDouble(points.get(selected));
+            double maxArea = -1;
+            int best = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((selectedX - nextX) * (y.applyAsDouble(points.get(i)) - selectedY)
+                        - (selectedX - x.applyAsLong(points.get(i))) * (nextY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    best = i;
+                }
+            }
+            sampled.add(points.get(best));
+            selected = best;
+        }
+        sampled.add(points.getLast());
+        return sampled;
+    }
+
+}
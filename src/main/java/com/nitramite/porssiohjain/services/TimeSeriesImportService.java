@@ -0,0 +1,119 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.FingridDataEntity;
+import com.nitramite.porssiohjain.entity.NordpoolEntity;
+import com.nitramite.porssiohjain.entity.PricePredictionEntity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bulk insert path for imported price and forecast series. Rows are written with JDBC
+ * batches of {@code INSERT ... ON CONFLICT DO NOTHING} against the tables' natural keys,
+ * so import cost depends on the payload size rather than on how much history is stored.
+ */
+@Service
+@RequiredArgsConstructor
+public class TimeSeriesImportService {
+
+    static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_NORDPOOL = """
+            INSERT INTO nordpool (delivery_start, delivery_end, market_index_name, price_fi)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String INSERT_FINGRID = """
+            INSERT INTO fingrid_data (dataset_id, start_time, end_time, "value")
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String INSERT_PRICE_PREDICTION = """
+            INSERT INTO price_prediction (timestamp, price_cents, created_at)
+            VALUES (?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return number of rows that did not exist yet
+     */
+    @Transactional
+    public int insertNordpoolPrices(List<NordpoolEntity> prices) {
+        return insertIgnoringExisting(INSERT_NORDPOOL, prices, (ps, price) -> {
+            ps.setObject(1, toOffsetDateTime(price.getDeliveryStart()));
+            ps.setObject(2, toOffsetDateTime(price.getDeliveryEnd()));
+            ps.setString(3, price.getMarketIndexName());
+            ps.setBigDecimal(4, price.getPriceFi());
+        });
+    }
+
+    /**
+     * @return number of rows that did not exist yet
+     */
+    @Transactional
+    public int insertFingridData(List<FingridDataEntity> entries) {
+        return insertIgnoringExisting(INSERT_FINGRID, entries, (ps, entry) -> {
+            ps.setInt(1, entry.getDatasetId());
+            ps.setObject(2, toOffsetDateTime(entry.getStartTime()));
+            ps.setObject(3, toOffsetDateTime(entry.getEndTime()));
+            ps.setBigDecimal(4, entry.getValue());
+        });
+    }
+
+    /**
+     * @return number of rows that did not exist yet
+     */
+    @Transactional
+    public int insertPricePredictions(List<PricePredictionEntity> predictions) {
+        OffsetDateTime createdAt = toOffsetDateTime(Instant.now());
+        return insertIgnoringExisting(INSERT_PRICE_PREDICTION, predictions, (ps, prediction) -> {
+            ps.setObject(1, toOffsetDateTime(prediction.getTimestamp()));
+            ps.setBigDecimal(2, prediction.getPriceCents());
+            ps.setObject(3, createdAt);
+        });
+    }
+
+    private <T> int insertIgnoringExisting(String sql, Collection<T> rows, ParameterizedPreparedStatementSetter<T> setter) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        int inserted = 0;
+        for (int[] batch : jdbcTemplate.batchUpdate(sql, rows, BATCH_SIZE, setter)) {
+            for (int count : batch) {
+                if (count > 0) {
+                    inserted += count;
+                }
+            }
+        }
+        return inserted;
+    }
+
+    private static OffsetDateTime toOffsetDateTime(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+
+}
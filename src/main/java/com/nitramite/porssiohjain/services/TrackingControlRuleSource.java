@@ -0,0 +1,105 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Passes lookups to another {@link ControlRuleSource} and remembers what an evaluation
+ * read: whether any live input (power, production, weather, load shedding) took part and
+ * the active control table row per scheduled control id.
+ */
+final class TrackingControlRuleSource implements ControlRuleSource {
+
+    private final ControlRuleSource delegate;
+    private final Map<Long, Optional<ControlTableEntity>> activeControlTables = new LinkedHashMap<>();
+    private boolean readLiveInputs;
+
+    TrackingControlRuleSource(ControlRuleSource delegate) {
+        this.delegate = delegate;
+    }
+
+    boolean readLiveInputs() {
+        return readLiveInputs;
+    }
+
+    Map<Long, Optional<ControlTableEntity>> activeControlTables() {
+        return activeControlTables;
+    }
+
+    @Override
+    public List<PowerLimitDeviceEntity> powerLimitDevices(DeviceEntity device) {
+        return live(delegate.powerLimitDevices(device));
+    }
+
+    @Override
+    public List<PowerLimitDeviceEntity> powerLimitDevices(DeviceEntity device, int deviceChannel) {
+        return live(delegate.powerLimitDevices(device, deviceChannel));
+    }
+
+    @Override
+    public Optional<BigDecimal> currentIntervalSum(PowerLimitEntity powerLimit) {
+        readLiveInputs = true;
+        return delegate.currentIntervalSum(powerLimit);
+    }
+
+    @Override
+    public List<ProductionSourceDeviceEntity> productionSourceDevices(DeviceEntity device) {
+        return live(delegate.productionSourceDevices(device));
+    }
+
+    @Override
+    public List<WeatherControlDeviceEntity> weatherControlDevices(DeviceEntity device) {
+        return live(delegate.weatherControlDevices(device));
+    }
+
+    @Override
+    public List<ControlDeviceEntity> controlDevices(DeviceEntity device) {
+        return delegate.controlDevices(device);
+    }
+
+    @Override
+    public Optional<ControlTableEntity> activeControlTable(ControlEntity control, Instant nowUtc) {
+        Optional<ControlTableEntity> active = delegate.activeControlTable(control, nowUtc);
+        activeControlTables.put(control.getId(), active);
+        return active;
+    }
+
+    @Override
+    public Optional<SiteWeatherEntity> currentWeather(SiteEntity site, Instant now) {
+        readLiveInputs = true;
+        return delegate.currentWeather(site, now);
+    }
+
+    @Override
+    public List<LoadSheddingNodeEntity> loadSheddingNodes(Long accountId) {
+        return live(delegate.loadSheddingNodes(accountId));
+    }
+
+    @Override
+    public List<LoadSheddingLinkEntity> loadSheddingLinks(Long accountId) {
+        return live(delegate.loadSheddingLinks(accountId));
+    }
+
+    private <T> List<T> live(List<T> values) {
+        if (!values.isEmpty()) {
+            readLiveInputs = true;
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.ElectricityContractEntity;
+import com.nitramite.porssiohjain.entity.NordpoolEntity;
+import com.nitramite.porssiohjain.entity.PowerLimitHistoryEntity;
+import com.nitramite.porssiohjain.services.models.DailyUsageCostResponse;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Daily energy cost of power limit history. Usage rows and price slots are both sorted by
+ * time, so they are joined in a single forward pass and each slot price is resolved once.
+ */
+final class UsageCostCalculator {
+
+    private static final BigDecimal KWH_PER_MWH = BigDecimal.valueOf(1000);
+    private static final BigDecimal CENTS_PER_EUR = BigDecimal.valueOf(100);
+
+    private UsageCostCalculator() {
+    }
+
+    /**
+     * @param usage  history rows, sorted by creation time or sorted here when not
+     * @param prices price slots of the market ordered by delivery start
+     */
+    static Result dailyCosts(
+            List<PowerLimitHistoryEntity> usage,
+            List<NordpoolEntity> prices,
+            Tariff tariff,
+            ZoneId zone
+    ) {
+        List<PowerLimitHistoryEntity> sortedUsage = sortedByCreatedAt(usage);
+        BigDecimal[] slotPrices = new BigDecimal[prices.size()];
+        Map<LocalDate, DailyUsageCostResponse> days = new LinkedHashMap<>();
+        Set<LocalDate> daysWithMissingPrices = new HashSet<>();
+
+        int slot = 0;
+        DailyUsageCostResponse day = null;
+        Instant dayEnd = Instant.MIN;
+        for (PowerLimitHistoryEntity row : sortedUsage) {
+            Instant usageTime = row.getCreatedAt();
+            if (!usageTime.isBefore(dayEnd)) {
+                LocalDate date = usageTime.atZone(zone).toLocalDate();
+                dayEnd = date.plusDays(1).atStartOfDay(zone).toInstant();
+                day = new DailyUsageCostResponse(date, BigDecimal.ZERO, BigDecimal.ZERO);
+                days.put(date, day);
+            }
+
+            while (slot < prices.size() && !prices.get(slot).getDeliveryEnd().isAfter(usageTime)) {
+                slot++;
+            }
+            BigDecimal pricePerKwh;
+            if (slot < prices.size() && !usageTime.isBefore(prices.get(slot).getDeliveryStart())) {
+                if (slotPrices[slot] == null) {
+                    NordpoolEntity price = prices.get(slot);
+                    slotPrices[slot] = tariff.pricePerKwhEur(price.getPriceFi(), price.getDeliveryStart().atZone(zone).getHour());
+                }
+                pricePerKwh = slotPrices[slot];
+            } else {
+                pricePerKwh = tariff.pricePerKwhEur(null, usageTime.atZone(zone).getHour());
+                daysWithMissingPrices.add(day.getDate());
+            }
+
+            BigDecimal kwh = row.getKilowatts();
+            day.setTotalUsageKwh(day.getTotalUsageKwh().add(kwh));
+            day.setTotalCostEur(day.getTotalCostEur().add(kwh.multiply(pricePerKwh)));
+        }
+        return new Result(new ArrayList<>(days.values()), daysWithMissingPrices);
+    }
+
+    private static List<PowerLimitHistoryEntity> sortedByCreatedAt(List<PowerLimitHistoryEntity> usage) {
+        for (int i = 1; i < usage.size(); i++) {
+            if (usage.get(i).getCreatedAt().isBefore(usage.get(i - 1).getCreatedAt())) {
+                List<PowerLimitHistoryEntity> sorted = new ArrayList<>(usage);
+                sorted.sort(Comparator.comparing(PowerLimitHistoryEntity::getCreatedAt));
+                return sorted;
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * @param days                  usage and cost per local day, in date order
+     * @param daysWithMissingPrices days with usage outside any known price slot
+     */
+    record Result(List<DailyUsageCostResponse> days, Set<LocalDate> daysWithMissingPrices) {
+    }
+
+    /**
+     * Price components of a power limit. Spot prices get the VAT multiplier unless the
+     * energy contract defines its own price, contract prices are in snt/kWh.
+     */
+    record Tariff(BigDecimal vatMultiplier, ContractPrice energy, ContractPrice transfer) {
+
+        static Tariff of(
+                BigDecimal taxPercent,
+                ElectricityContractEntity energyContract,
+                ElectricityContractEntity transferContract
+        ) {
+            BigDecimal vatMultiplier = BigDecimal.ONE.add(taxPercent.divide(CENTS_PER_EUR, 4, RoundingMode.HALF_UP));
+            return new Tariff(vatMultiplier, ContractPrice.of(energyContract), ContractPrice.of(transferContract));
+        }
+
+        BigDecimal pricePerKwhEur(BigDecimal spotPriceMwh, int hour) {
+            BigDecimal energyPriceSnt = energy.priceSnt(hour);
+            BigDecimal pricePerKwh;
+            if (energyPriceSnt != null) {
+                pricePerKwh = energyPriceSnt.divide(CENTS_PER_EUR, 10, RoundingMode.HALF_UP);
+            } else {
+                BigDecimal spot = spotPriceMwh != null ? spotPriceMwh : BigDecimal.ZERO;
+                pricePerKwh = spot.divide(KWH_PER_MWH, 10, RoundingMode.HALF_UP)
+                        .multiply(vatMultiplier)
+                        .add(energy.taxAmount().divide(CENTS_PER_EUR, 10, RoundingMode.HALF_UP));
+            }
+            BigDecimal transferPriceSnt = transfer.priceSnt(hour);
+            if (transferPriceSnt != null) {
+                pricePerKwh = pricePerKwh.add(transferPriceSnt.divide(CENTS_PER_EUR, 10, RoundingMode.HALF_UP));
+            }
+            return pricePerKwh;
+        }
+    }
+
+    /**
+     * Static or day/night price of a contract, night being 22-07 local time as in
+     * {@link ControlPriceService}.
+     */
+    record ContractPrice(BigDecimal staticPrice, BigDecimal dayPrice, BigDecimal nightPrice, BigDecimal taxAmount) {
+
+        static final ContractPrice NONE = new ContractPrice(null, null, null, BigDecimal.ZERO);
+
+        static ContractPrice of(ElectricityContractEntity contract) {
+            if (contract == null) {
+                return NONE;
+            }
+            return new ContractPrice(
+                    contract.getStaticPrice(),
+                    contract.getDayPrice(),
+                    contract.getNightPrice(),
+                    contract.getTaxAmount() != null ? contract.getTaxAmount() : BigDecimal.ZERO
+            );
+        }
+
+        /**
+         * @return price including the per kWh tax, or null when the contract has no price
+         */
+        BigDecimal priceSnt(int hour) {
+            BigDecimal basePrice;
+            if (dayPrice != null || nightPrice != null) {
+                basePrice = hour >= 22 || hour < 7 ? nightPrice : dayPrice;
+            } else {
+                basePrice = staticPrice;
+            }
+            return basePrice != null ? basePrice.add(taxAmount) : null;
+        }
+    }
+
+}
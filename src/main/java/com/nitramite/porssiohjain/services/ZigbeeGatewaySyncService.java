@@ -36,10 +36,11 @@ public class ZigbeeGatewaySyncService {
     private final AccountRepository accountRepository;
     private final DeviceRepository deviceRepository;
     private final ZigbeeGatewayDeviceRepository zigbeeRepository;
-    private final ZigbeeDeviceMeasurementRepository measurementRepository;
+    private final ZigbeeMeasurementWriter measurementWriter;
     private final ZigbeeGatewayConnectivityService connectivityService;
     private final DeviceOfflineNotificationService deviceOfflineNotificationService;
     private final HeatingPlannerGatewayCommandService heatingPlannerGatewayCommandService;
+    private final DeviceHeartbeatRegistry deviceHeartbeatRegistry;
 
     public ZigbeeGatewaySyncResponse sync(Long accountId, UUID pathGatewayId, ZigbeeGatewaySyncRequest request) {
         if (request == null || request.getGatewayId() == null || !pathGatewayId.equals(request.getGatewayId())) {
@@ -50,15 +51,22 @@ public class ZigbeeGatewaySyncService {
         Instant now = Instant.now();
         connectivityService.recordHeartbeat(account, pathGatewayId, now);
         List<ZigbeeGatewaySyncResponse.DeviceCommand> commands = new ArrayList<>();
+        List<ZigbeeMeasurementWriter.Sample> samples = new ArrayList<>();
+        Map<String, ZigbeeGatewayDeviceEntity> linksByIeee = new HashMap<>();
+        for (ZigbeeGatewayDeviceEntity link : zigbeeRepository.findByGatewayIdWithDevice(pathGatewayId)) {
+            linksByIeee.put(link.getZigbeeIeee(), link);
+        }
         for (ZigbeeGatewaySyncRequest.DeviceReport report : Optional.ofNullable(request.getDevices()).orElse(List.of())) {
             String ieee = normalizeIeee(report.getZigbeeIeee());
             String profile = normalizeProfile(report.getProfile());
             if (!isSupportedProfile(profile, report)) throw badRequest("Unsupported Zigbee profile");
-            ZigbeeGatewayDeviceEntity link = zigbeeRepository.findByGatewayIdAndZigbeeIeee(pathGatewayId, ieee)
-                    .map(existing -> requireOwner(existing, accountId))
-                    .orElseGet(() -> register(account, pathGatewayId, ieee, report));
+            ZigbeeGatewayDeviceEntity existing = linksByIeee.get(ieee);
+            ZigbeeGatewayDeviceEntity link = existing != null
+                    ? requireOwner(existing, accountId)
+                    : register(account, pathGatewayId, ieee, report);
+            linksByIeee.put(ieee, link);
             updateReport(link, report, now);
-            saveMeasurements(link, report, now);
+            collectMeasurements(link, report, now, samples);
             applyHeatingPlannerPriority(link, now);
             if (shouldSendDesiredState(link, now)) {
                 commands.add(ZigbeeGatewaySyncResponse.DeviceCommand.builder()
@@ -67,6 +75,7 @@ public class ZigbeeGatewaySyncService {
                         .expiresAt(link.getDesiredExpiresAt()).build());
             }
         }
+        measurementWriter.write(samples);
         return ZigbeeGatewaySyncResponse.builder().pollAfterSeconds(POLL_SECONDS).devices(commands).build();
     }
 
@@ -133,47 +142,41 @@ public class ZigbeeGatewaySyncService {
         zigbeeRepository.save(link);
 
         DeviceEntity device = link.getDevice();
-        boolean wasApiOnline = device.isApiOnline();
+        deviceHeartbeatRegistry.record(device.getUuid(), now);
+        if (device.isApiOnline()) {
+            return;
+        }
         boolean wasMqttOnline = device.isMqttOnline();
         device.setLastCommunication(now);
         device.setApiOnline(true);
         deviceRepository.save(device);
         deviceOfflineNotificationService.sendIfDeviceCameOnline(
                 device,
-                wasApiOnline,
+                false,
                 wasMqttOnline,
                 "API",
                 now
         );
     }
 
-    private void saveMeasurements(ZigbeeGatewayDeviceEntity link, ZigbeeGatewaySyncRequest.DeviceReport report, Instant now) {
+    private void collectMeasurements(ZigbeeGatewayDeviceEntity link, ZigbeeGatewaySyncRequest.DeviceReport report,
+                                     Instant now, List<ZigbeeMeasurementWriter.Sample> samples) {
         Instant measuredAt = report.getMeasuredAt() == null ? now : report.getMeasuredAt();
-        saveMeasurement(link, ZigbeeMeasurementType.TEMPERATURE, "temperature", report.getTemperature(), measuredAt, now);
-        saveMeasurement(link, ZigbeeMeasurementType.HUMIDITY, "humidity", report.getHumidity(), measuredAt, now);
-        saveMeasurement(link, ZigbeeMeasurementType.BATTERY_PERCENTAGE, "batteryPercentage", report.getBatteryPercentage(), measuredAt, now);
+        collectMeasurement(link, ZigbeeMeasurementType.TEMPERATURE, "temperature", report.getTemperature(), measuredAt, now, samples);
+        collectMeasurement(link, ZigbeeMeasurementType.HUMIDITY, "humidity", report.getHumidity(), measuredAt, now, samples);
+        collectMeasurement(link, ZigbeeMeasurementType.BATTERY_PERCENTAGE, "batteryPercentage", report.getBatteryPercentage(), measuredAt, now, samples);
         if (isThermostatProfile(link.getProfile())) {
-            saveMeasurement(link, ZigbeeMeasurementType.THERMOSTAT_SETPOINT, "setpoint", report.getSetpoint(), measuredAt, now);
+            collectMeasurement(link, ZigbeeMeasurementType.THERMOSTAT_SETPOINT, "setpoint", report.getSetpoint(), measuredAt, now, samples);
         }
     }
 
-    private void saveMeasurement(ZigbeeGatewayDeviceEntity link, ZigbeeMeasurementType type, String key,
-                                 BigDecimal value, Instant measuredAt, Instant receivedAt) {
+    private void collectMeasurement(ZigbeeGatewayDeviceEntity link, ZigbeeMeasurementType type, String key,
+                                    BigDecimal value, Instant measuredAt, Instant receivedAt,
+                                    List<ZigbeeMeasurementWriter.Sample> samples) {
         if (value == null) {
             return;
         }
-        measurementRepository.save(ZigbeeDeviceMeasurementEntity.builder()
-                .account(link.getAccount())
-                .device(link.getDevice())
-                .gatewayId(link.getGatewayId())
-                .zigbeeIeee(link.getZigbeeIeee())
-                .profile(link.getProfile())
-                .measurementType(type)
-                .measurementKey(key)
-                .value(value)
-                .measuredAt(measuredAt)
-                .receivedAt(receivedAt)
-                .build());
+        samples.add(new ZigbeeMeasurementWriter.Sample(link, type, key, value, measuredAt, receivedAt));
     }
 
     private ZigbeeGatewayDeviceEntity requireOwner(ZigbeeGatewayDeviceEntity link, Long accountId) {
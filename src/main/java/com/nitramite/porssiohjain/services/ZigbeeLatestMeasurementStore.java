@@ -0,0 +1,147 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementLatestEntity;
+import com.nitramite.porssiohjain.entity.ZigbeeGatewayDeviceEntity;
+import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
+import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementLatestRepository;
+import com.nitramite.porssiohjain.services.models.ZigbeeLatestMeasurement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Current value per Zigbee device, measurement type and key. Values are upserted into
+ * {@code zigbee_device_measurement_latest} on every gateway sync and kept in a read-through
+ * map, so rule evaluation and dashboards look them up without touching the history table.
+ */
+@Service
+@RequiredArgsConstructor
+public class ZigbeeLatestMeasurementStore {
+
+    private record SeriesKey(Long deviceId, ZigbeeMeasurementType type, String key) {
+    }
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO zigbee_device_measurement_latest
+                (account_id, device_id, gateway_id, zigbee_ieee, profile, measurement_type, measurement_key,
+                 "value", measured_at, received_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (device_id, measurement_type, measurement_key) DO UPDATE
+            SET account_id = EXCLUDED.account_id,
+                gateway_id = EXCLUDED.gateway_id,
+                zigbee_ieee = EXCLUDED.zigbee_ieee,
+                profile = EXCLUDED.profile,
+                "value" = EXCLUDED."value",
+                measured_at = EXCLUDED.measured_at,
+                received_at = EXCLUDED.received_at
+            WHERE zigbee_device_measurement_latest.measured_at < EXCLUDED.measured_at
+            """;
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ZigbeeDeviceMeasurementLatestRepository latestRepository;
+    private final Map<SeriesKey, ZigbeeLatestMeasurement> latest = new ConcurrentHashMap<>();
+
+    public Optional<ZigbeeLatestMeasurement> find(Long deviceId, ZigbeeMeasurementType type, String key) {
+        if (deviceId == null || type == null || key == null) {
+            return Optional.empty();
+        }
+        ZigbeeLatestMeasurement cached = latest.get(new SeriesKey(deviceId, type, key));
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<ZigbeeLatestMeasurement> loaded = latestRepository
+                .findByDeviceIdAndMeasurementTypeAndMeasurementKey(deviceId, type, key)
+                .map(ZigbeeLatestMeasurementStore::toModel);
+        loaded.ifPresent(this::remember);
+        return loaded;
+    }
+
+    /**
+     * Upserts samples that are newer than the stored value. The map follows once the
+     * surrounding transaction commits.
+     */
+    public void upsert(List<ZigbeeMeasurementWriter.Sample> samples) {
+        if (samples.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, samples, BATCH_SIZE, (ps, sample) -> {
+            ZigbeeGatewayDeviceEntity link = sample.link();
+            ps.setLong(1, link.getAccount().getId());
+            ps.setLong(2, link.getDevice().getId());
+            ps.setObject(3, link.getGatewayId());
+            ps.setString(4, link.getZigbeeIeee());
+            ps.setString(5, link.getProfile());
+            ps.setString(6, sample.type().name());
+            ps.setString(7, sample.key());
+            ps.setBigDecimal(8, sample.value());
+            ps.setObject(9, sample.measuredAt().atOffset(ZoneOffset.UTC));
+            ps.setObject(10, sample.receivedAt().atOffset(ZoneOffset.UTC));
+        });
+        List<ZigbeeLatestMeasurement> measurements = samples.stream()
+                .map(ZigbeeLatestMeasurementStore::toModel)
+                .toList();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    measurements.forEach(ZigbeeLatestMeasurementStore.this::remember);
+                }
+            });
+        } else {
+            measurements.forEach(this::remember);
+        }
+    }
+
+    private void remember(ZigbeeLatestMeasurement measurement) {
+        latest.merge(
+                new SeriesKey(measurement.deviceId(), measurement.measurementType(), measurement.measurementKey()),
+                measurement,
+                (current, candidate) -> candidate.measuredAt().isAfter(current.measuredAt()) ? candidate : current
+        );
+    }
+
+    private static ZigbeeLatestMeasurement toModel(ZigbeeDeviceMeasurementLatestEntity entity) {
+        return new ZigbeeLatestMeasurement(
+                entity.getAccount().getId(),
+                entity.getDevice().getId(),
+                entity.getMeasurementType(),
+                entity.getMeasurementKey(),
+                entity.getValue(),
+                entity.getMeasuredAt(),
+                entity.getReceivedAt()
+        );
+    }
+
+    private static ZigbeeLatestMeasurement toModel(ZigbeeMeasurementWriter.Sample sample) {
+        return new ZigbeeLatestMeasurement(
+                sample.link().getAccount().getId(),
+                sample.link().getDevice().getId(),
+                sample.type(),
+                sample.key(),
+                sample.value(),
+                sample.measuredAt(),
+                sample.receivedAt()
+        );
+    }
+
+}
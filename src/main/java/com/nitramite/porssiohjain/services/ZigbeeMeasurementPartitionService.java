@@ -0,0 +1,192 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Maintains the daily {@code measured_at} range partitions of {@code zigbee_device_measurement}.
+ * Partitions are created a few days ahead, rows that landed in the default partition for a
+ * new day are moved into it, and retention detaches and drops whole days instead of
+ * deleting rows one by one.
+ */
+@Slf4j
+@Service
+public class ZigbeeMeasurementPartitionService {
+
+    static final String TABLE = "zigbee_device_measurement";
+    static final String DEFAULT_PARTITION = TABLE + "_default";
+    static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final String LIST_PARTITIONS_SQL = """
+            SELECT child.relname
+            FROM pg_inherits i
+                     JOIN pg_class child ON child.oid = i.inhrelid
+                     JOIN pg_class parent ON parent.oid = i.inhparent
+            WHERE parent.relname = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int daysAhead;
+    private final String lockTimeout;
+
+    @Autowired
+    public ZigbeeMeasurementPartitionService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${zigbee.measurement.partition.days-ahead:7}") int daysAhead,
+            @Value("${zigbee.measurement.partition.lock-timeout:5s}") String lockTimeout
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.daysAhead = Math.max(1, daysAhead);
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Creates the partitions of today and the configured days ahead that do not exist yet.
+     *
+     * @return number of partitions created
+     */
+    public int createUpcomingPartitions(Instant now) {
+        LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        List<LocalDate> existing = partitionDays();
+        int created = 0;
+        for (int offset = 0; offset <= daysAhead; offset++) {
+            LocalDate day = today.plusDays(offset);
+            if (!existing.contains(day)) {
+                try {
+                    createPartition(day);
+                    created++;
+                } catch (DataAccessException e) {
+                    log.warn("Could not create Zigbee measurement partition {}", partitionName(day), e);
+                }
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Detaches and drops every day partition that ends at or before the cutoff, and clears
+     * rows older than the cutoff from the default partition.
+     *
+     * @return number of partitions dropped
+     */
+    public int dropPartitionsOlderThan(Instant cutoff) {
+        int dropped = 0;
+        for (LocalDate day : partitionDays()) {
+            if (!startOf(day.plusDays(1)).isAfter(cutoff)) {
+                try {
+                    dropPartition(day);
+                    dropped++;
+                } catch (DataAccessException e) {
+                    log.warn("Could not drop Zigbee measurement partition {}, retrying on next run", partitionName(day), e);
+                }
+            }
+        }
+        int defaultRows = jdbcTemplate.update(
+                "DELETE FROM " + DEFAULT_PARTITION + " WHERE measured_at < ?",
+                cutoff.atOffset(ZoneOffset.UTC)
+        );
+        if (defaultRows > 0) {
+            log.info("Deleted {} old Zigbee measurement rows from the default partition", defaultRows);
+        }
+        return dropped;
+    }
+
+    List<LocalDate> partitionDays() {
+        return jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class, TABLE).stream()
+                .map(ZigbeeMeasurementPartitionService::partitionDay)
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+    }
+
+    static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + PARTITION_SUFFIX.format(day);
+    }
+
+    static LocalDate partitionDay(String partitionName) {
+        if (partitionName == null || !partitionName.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partitionName.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Builds the day as a plain table, moves any rows of that day out of the default
+     * partition and attaches it, so a populated default partition never blocks creation.
+     */
+    private void createPartition(LocalDate day) {
+        String name = partitionName(day);
+        OffsetDateTime from = startOf(day).atOffset(ZoneOffset.UTC);
+        OffsetDateTime to = startOf(day.plusDays(1)).atOffset(ZoneOffset.UTC);
+        transactionTemplate.executeWithoutResult(status -> {
+            setLockTimeout();
+            jdbcTemplate.execute("CREATE TABLE " + name
+                    + " (LIKE " + TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                    + " WHERE measured_at >= ? AND measured_at < ? RETURNING *) INSERT INTO " + name
+                    + " SELECT * FROM moved", from, to);
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + name
+                    + " FOR VALUES FROM (" + bound(day) + ") TO (" + bound(day.plusDays(1)) + ")");
+            if (moved > 0) {
+                log.info("Moved {} Zigbee measurement rows from the default partition into {}", moved, name);
+            }
+        });
+        log.info("Created Zigbee measurement partition {}", name);
+    }
+
+    private void dropPartition(LocalDate day) {
+        String name = partitionName(day);
+        transactionTemplate.executeWithoutResult(status -> {
+            setLockTimeout();
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+            jdbcTemplate.execute("DROP TABLE " + name);
+        });
+        log.info("Dropped Zigbee measurement partition {}", name);
+    }
+
+    private void setLockTimeout() {
+        jdbcTemplate.queryForObject("SELECT set_config('lock_timeout', ?, true)", String.class, lockTimeout);
+    }
+
+    private static String bound(LocalDate day) {
+        return "'" + day + " 00:00:00+00'";
+    }
+
+    private static Instant startOf(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.ZigbeeGatewayDeviceEntity;
+import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes Zigbee gateway measurements in one JDBC batch per sync. A value is only stored
+ * when it moved at least the deadband of its type from the last stored value, or when
+ * the max silence of the type has passed since then, so sensors that repeat the same
+ * reading every poll do not add a row each time. The current value of every series is
+ * still kept up to date in {@link ZigbeeLatestMeasurementStore}, and powerplant rules
+ * reading the series are evaluated through {@link PowerplantRuleTrigger}.
+ */
+@Service
+public class ZigbeeMeasurementWriter {
+
+    public record Sample(
+            ZigbeeGatewayDeviceEntity link,
+            ZigbeeMeasurementType type,
+            String key,
+            BigDecimal value,
+            Instant measuredAt,
+            Instant receivedAt
+    ) {
+    }
+
+    private record Threshold(BigDecimal deadband, Duration maxSilence) {
+    }
+
+    private record SeriesKey(Long deviceId, ZigbeeMeasurementType type, String key) {
+    }
+
+    private record Stored(BigDecimal value, Instant measuredAt) {
+    }
+
+    private static final String INSERT_SQL = """
+            INSERT INTO zigbee_device_measurement
+                (account_id, device_id, gateway_id, zigbee_ieee, profile, measurement_type, measurement_key,
+                 "value", measured_at, received_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ZigbeeLatestMeasurementStore latestMeasurementStore;
+    private final PowerplantRuleTrigger powerplantRuleTrigger;
+    private final Map<ZigbeeMeasurementType, Threshold> thresholds = new EnumMap<>(ZigbeeMeasurementType.class);
+    private final Map<SeriesKey, Stored> lastStored = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ZigbeeMeasurementWriter(
+            JdbcTemplate jdbcTemplate,
+            ZigbeeLatestMeasurementStore latestMeasurementStore,
+            PowerplantRuleTrigger powerplantRuleTrigger,
+            @Value("${zigbee.measurement.temperature.deadband:0.1}") BigDecimal temperatureDeadband,
+            @Value("${zigbee.measurement.temperature.max-silence:10m}") Duration temperatureMaxSilence,
+            @Value("${zigbee.measurement.humidity.deadband:1.0}") BigDecimal humidityDeadband,
+            @Value("${zigbee.measurement.humidity.max-silence:30m}") Duration humidityMaxSilence,
+            @Value("${zigbee.measurement.battery.deadband:1}") BigDecimal batteryDeadband,
+            @Value("${zigbee.measurement.battery.max-silence:6h}") Duration batteryMaxSilence,
+            @Value("${zigbee.measurement.setpoint.deadband:0}") BigDecimal setpointDeadband,
+            @Value("${zigbee.measurement.setpoint.max-silence:30m}") Duration setpointMaxSilence
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.latestMeasurementStore = latestMeasurementStore;
+        this.powerplantRuleTrigger = powerplantRuleTrigger;
+        thresholds.put(ZigbeeMeasurementType.TEMPERATURE, new Threshold(temperatureDeadband, temperatureMaxSilence));
+        thresholds.put(ZigbeeMeasurementType.HUMIDITY, new Threshold(humidityDeadband, humidityMaxSilence));
+        thresholds.put(ZigbeeMeasurementType.BATTERY_PERCENTAGE, new Threshold(batteryDeadband, batteryMaxSilence));
+        thresholds.put(ZigbeeMeasurementType.THERMOSTAT_SETPOINT, new Threshold(setpointDeadband, setpointMaxSilence));
+    }
+
+    /**
+     * @return number of samples stored, the rest fell inside their deadband
+     */
+    public int write(List<Sample> samples) {
+        List<Sample> present = samples.stream()
+                .filter(sample -> sample.value() != null)
+                .toList();
+        latestMeasurementStore.upsert(present);
+        powerplantRuleTrigger.measurementsChanged(present);
+        List<Sample> accepted = new ArrayList<>();
+        for (Sample sample : present) {
+            if (shouldStore(sample)) {
+                accepted.add(sample);
+                lastStored.put(seriesKey(sample), new Stored(sample.value(), sample.measuredAt()));
+            }
+        }
+        if (accepted.isEmpty()) {
+            return 0;
+        }
+        try {
+            insert(accepted);
+        } catch (RuntimeException e) {
+            accepted.forEach(sample -> lastStored.remove(seriesKey(sample)));
+            throw e;
+        }
+        return accepted.size();
+    }
+
+    private void insert(List<Sample> accepted) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, accepted, BATCH_SIZE, (ps, sample) -> {
+            ZigbeeGatewayDeviceEntity link = sample.link();
+            ps.setLong(1, link.getAccount().getId());
+            ps.setLong(2, link.getDevice().getId());
+            ps.setObject(3, link.getGatewayId());
+            ps.setString(4, link.getZigbeeIeee());
+            ps.setString(5, link.getProfile());
+            ps.setString(6, sample.type().name());
+            ps.setString(7, sample.key());
+            ps.setBigDecimal(8, sample.value());
+            ps.setObject(9, sample.measuredAt().atOffset(ZoneOffset.UTC));
+            ps.setObject(10, sample.receivedAt().atOffset(ZoneOffset.UTC));
+        });
+    }
+
+    private boolean shouldStore(Sample sample) {
+        Stored previous = lastStored.get(seriesKey(sample));
+        if (previous == null) {
+            return true;
+        }
+        if (!sample.measuredAt().isAfter(previous.measuredAt())) {
+            return false;
+        }
+        Threshold threshold = thresholds.get(sample.type());
+        BigDecimal change = sample.value().subtract(previous.value()).abs();
+        if (change.signum() > 0 && change.compareTo(threshold.deadband()) >= 0) {
+            return true;
+        }
+        return !sample.measuredAt().isBefore(previous.measuredAt().plus(threshold.maxSilence()));
+    }
+
+    private static SeriesKey seriesKey(Sample sample) {
+        return new SeriesKey(sample.link().getDevice().getId(), sample.type(), sample.key());
+    }
+
+}
@@ -14,6 +14,7 @@ package com.nitramite.porssiohjain.services.fingrid;
 import com.nitramite.porssiohjain.entity.FingridDataEntity;
 import com.nitramite.porssiohjain.entity.repository.FingridDataRepository;
 import com.nitramite.porssiohjain.services.SystemLogService;
+import com.nitramite.porssiohjain.services.TimeSeriesImportService;
 import com.nitramite.porssiohjain.services.models.WindDataEntry;
 import com.nitramite.porssiohjain.services.models.WindForecastResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -33,8 +34,6 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -56,13 +55,16 @@ public class FingridDataService {
 
     private final SystemLogService systemLogService;
     private final FingridDataRepository fingridDataRepository;
+    private final TimeSeriesImportService timeSeriesImportService;
 
     FingridDataService(
             SystemLogService systemLogService,
-            FingridDataRepository fingridDataRepository
+            FingridDataRepository fingridDataRepository,
+            TimeSeriesImportService timeSeriesImportService
     ) {
         this.systemLogService = systemLogService;
         this.fingridDataRepository = fingridDataRepository;
+        this.timeSeriesImportService = timeSeriesImportService;
     }
 
     public WindForecastResponse fetchData(
@@ -105,12 +107,7 @@ public class FingridDataService {
     }
 
     private void saveEntries(List<WindDataEntry> entries) {
-        List<FingridDataEntity> existing = fingridDataRepository.findAll();
-        Set<String> existingKeys = existing.stream()
-                .map(e -> e.getStartTime() + "|" + e.getEndTime())
-                .collect(Collectors.toSet());
-        List<FingridDataEntity> toInsert = entries.stream()
-                .filter(e -> !existingKeys.contains(e.getStartTime() + "|" + e.getEndTime()))
+        List<FingridDataEntity> rows = entries.stream()
                 .map(e -> {
                     FingridDataEntity entity = new FingridDataEntity();
                     entity.setDatasetId(e.getDatasetId());
@@ -120,10 +117,10 @@ public class FingridDataService {
                     return entity;
                 })
                 .toList();
-        if (!toInsert.isEmpty()) {
-            log.info("Inserting {} Fingrid multiIndex entries", toInsert.size());
-            fingridDataRepository.saveAll(toInsert);
-            systemLogService.log("Insert of " + toInsert.size() + " Fingrid entries completed.");
+        int inserted = timeSeriesImportService.insertFingridData(rows);
+        if (inserted > 0) {
+            log.info("Inserted {} of {} Fingrid multiIndex entries", inserted, rows.size());
+            systemLogService.log("Insert of " + inserted + " Fingrid entries completed.");
         }
     }
 
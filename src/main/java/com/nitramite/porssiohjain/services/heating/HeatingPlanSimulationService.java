@@ -22,12 +22,15 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 @Service
 public class HeatingPlanSimulationService {
 
     private static final BigDecimal ZERO = BigDecimal.ZERO;
     private static final BigDecimal PRICE_THRESHOLD_MINIMUM_GAP = new BigDecimal("0.0001");
+    public static final double FAST_PATH_TOLERANCE = 1e-6;
+    private static final double COMFORT_DEFICIT_TOLERANCE = 1e-9;
 
     /**
      * Uses the lower and upper quartiles of the complete planning horizon. This adapts cheap and expensive
@@ -78,17 +81,17 @@ public class HeatingPlanSimulationService {
     }
 
     public SimulationResult simulate(SimulationRequest request) {
+        return simulateExact(request).result();
+    }
+
+    /**
+     * {@link #simulate} together with its unrounded totals and final temperatures.
+     */
+    ExactSimulation simulateExact(SimulationRequest request) {
         validate(request);
-        List<MarketPoint> market = request.market().stream()
-                .sorted(Comparator.comparing(MarketPoint::time))
-                .toList();
-        boolean plannerActive = market.stream()
-                .map(MarketPoint::outdoorTemperature)
-                .anyMatch(temperature -> temperature.compareTo(
-                        request.settings().plannerActivationOutdoorTemperature()) < 0);
-        Duration step = request.settings().step();
-        BigDecimal stepHours = BigDecimal.valueOf(step.toMinutes())
-                .divide(BigDecimal.valueOf(60), 8, RoundingMode.HALF_UP);
+        List<MarketPoint> market = sortedMarket(request);
+        boolean plannerActive = isPlannerActive(request, market);
+        BigDecimal stepHours = stepHours(request.settings());
         BigDecimal floorTemperature = request.initialFloorTemperature();
         BigDecimal roomTemperature = request.initialRoomTemperature();
         List<SimulationPoint> points = new ArrayList<>();
@@ -131,7 +134,7 @@ public class HeatingPlanSimulationService {
             ));
         }
 
-        return new SimulationResult(
+        SimulationResult result = new SimulationResult(
                 List.copyOf(points),
                 energyKwh.setScale(3, RoundingMode.HALF_UP),
                 energyCost.divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_UP),
@@ -140,6 +143,207 @@ public class HeatingPlanSimulationService {
                 plannerActive ? "Forecast is below the configured planner activation temperature"
                         : "Heating optimization is inactive because the forecast stays above the configured activation temperature"
         );
+        return new ExactSimulation(result, energyKwh, energyCost.movePointLeft(2), floorTemperature, roomTemperature);
+    }
+
+    /**
+     * Runs the same decisions and physics as {@link #simulate} on primitive doubles without recording
+     * points. Heating decisions only differ on exact ties with a comfort bound, the unrounded energy,
+     * cost and final temperatures agree with {@link #simulate} to within {@link #FAST_PATH_TOLERANCE}.
+     * Meant for searching parameters, the plan that is stored still comes from {@link #simulate}.
+     */
+    public SimulationSummary summarize(SimulationRequest request) {
+        validate(request);
+        List<MarketPoint> market = sortedMarket(request);
+        boolean plannerActive = isPlannerActive(request, market);
+        WoodStoveRecommendation woodRecommendation = plannerActive ? planWoodStove(request, market) : null;
+        Set<Instant> preheatTimes = plannerActive ? planPreheatTimes(request, market) : Set.of();
+        return new Kernel(request, market, plannerActive, woodRecommendation).run(request.settings(), preheatTimes);
+    }
+
+    /**
+     * Evaluates every combination of cheap price threshold (which intervals may preheat) and preheat floor
+     * setpoint in parallel on the fast path, and returns the cheapest one that keeps the room within its
+     * comfort bounds. When no combination does, the one with the smallest comfort deficit wins. The chosen
+     * scenario is then simulated in full so it can be persisted like any other plan.
+     */
+    public ScenarioSweepResult sweep(SimulationRequest request, List<BigDecimal> cheapPriceThresholds,
+                                     List<BigDecimal> preheatFloorTemperatures) {
+        validate(request);
+        if (cheapPriceThresholds == null || cheapPriceThresholds.isEmpty()
+                || preheatFloorTemperatures == null || preheatFloorTemperatures.isEmpty()) {
+            throw new IllegalArgumentException("Scenario sweep needs at least one price threshold and preheat setpoint");
+        }
+        Settings settings = request.settings();
+        List<Scenario> scenarios = new ArrayList<>();
+        for (BigDecimal threshold : cheapPriceThresholds) {
+            for (BigDecimal preheat : preheatFloorTemperatures) {
+                if (preheat.compareTo(settings.absoluteMaximumFloorTemperature()) <= 0
+                        && preheat.compareTo(settings.normalFloorTemperature()) >= 0) {
+                    scenarios.add(new Scenario(threshold, preheat));
+                }
+            }
+        }
+        if (scenarios.isEmpty()) {
+            throw new IllegalArgumentException("No scenario has a preheat setpoint between the normal and absolute floor temperature");
+        }
+
+        List<MarketPoint> market = sortedMarket(request);
+        boolean plannerActive = isPlannerActive(request, market);
+        WoodStoveRecommendation woodRecommendation = plannerActive ? planWoodStove(request, market) : null;
+        Kernel kernel = new Kernel(request, market, plannerActive, woodRecommendation);
+        ScenarioOutcome best = IntStream.range(0, scenarios.size())
+                .parallel()
+                .mapToObj(index -> {
+                    SimulationRequest candidate = withScenario(request, scenarios.get(index));
+                    Set<Instant> preheatTimes = plannerActive ? planPreheatTimes(candidate, market) : Set.of();
+                    return new ScenarioOutcome(index, scenarios.get(index),
+                            kernel.run(candidate.settings(), preheatTimes));
+                })
+                .min(Comparator.comparingDouble((ScenarioOutcome outcome) -> outcome.summary().comfortRespected()
+                                ? 0 : outcome.summary().comfortDeficitDegreeHours())
+                        .thenComparingDouble(outcome -> outcome.summary().estimatedCostEur())
+                        .thenComparingDouble(outcome -> outcome.summary().energyKwh())
+                        .thenComparingInt(ScenarioOutcome::index))
+                .orElseThrow();
+        return new ScenarioSweepResult(best.scenario(), best.summary(),
+                simulate(withScenario(request, best.scenario())), scenarios.size());
+    }
+
+    private SimulationRequest withScenario(SimulationRequest request, Scenario scenario) {
+        Settings settings = request.settings();
+        return new SimulationRequest(request.initialFloorTemperature(), request.initialRoomTemperature(),
+                new Settings(settings.step(), scenario.cheapPriceThreshold(), settings.expensivePriceThreshold(),
+                        settings.normalFloorTemperature(), scenario.maximumPreheatFloorTemperature(),
+                        settings.absoluteMaximumFloorTemperature(), settings.dischargeFloorSetpoint(),
+                        settings.minimumRoomTemperature(), settings.maximumRoomTemperature(),
+                        settings.plannerActivationOutdoorTemperature()),
+                request.model(), request.market(), request.woodStove(),
+                request.floorMeasurementFresh(), request.roomMeasurementFresh());
+    }
+
+    private List<MarketPoint> sortedMarket(SimulationRequest request) {
+        return request.market().stream()
+                .sorted(Comparator.comparing(MarketPoint::time))
+                .toList();
+    }
+
+    private boolean isPlannerActive(SimulationRequest request, List<MarketPoint> market) {
+        return market.stream()
+                .map(MarketPoint::outdoorTemperature)
+                .anyMatch(temperature -> temperature.compareTo(
+                        request.settings().plannerActivationOutdoorTemperature()) < 0);
+    }
+
+    private static BigDecimal stepHours(Settings settings) {
+        return BigDecimal.valueOf(settings.step().toMinutes())
+                .divide(BigDecimal.valueOf(60), 8, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Market, weather and wood-stove inputs of one request unpacked into arrays once, so that scenarios
+     * only differ by their setpoints and preheat selection. Immutable and safe to share between threads.
+     */
+    private static final class Kernel {
+
+        private final double stepHours;
+        private final double[] prices;
+        private final double[] outdoorTemperatures;
+        private final double[] windSpeeds;
+        private final double[] woodHeatRates;
+        private final boolean[] expensive;
+        private final List<MarketPoint> market;
+        private final boolean plannerActive;
+        private final boolean roomMeasurementFresh;
+        private final double initialFloorTemperature;
+        private final double initialRoomTemperature;
+        private final double heaterPowerKw;
+        private final double floorHeatingRate;
+        private final double floorToRoomRate;
+        private final double roomOutdoorLossRate;
+        private final double windLossRate;
+
+        private Kernel(SimulationRequest request, List<MarketPoint> market, boolean plannerActive,
+                       WoodStoveRecommendation woodRecommendation) {
+            int size = market.size();
+            this.stepHours = stepHours(request.settings()).doubleValue();
+            this.prices = new double[size];
+            this.outdoorTemperatures = new double[size];
+            this.windSpeeds = new double[size];
+            this.woodHeatRates = new double[size];
+            this.expensive = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                MarketPoint point = market.get(i);
+                prices[i] = point.priceCentsPerKwh().doubleValue();
+                outdoorTemperatures[i] = point.outdoorTemperature().doubleValue();
+                windSpeeds[i] = Math.max(0, point.windSpeedMs().doubleValue());
+                woodHeatRates[i] = woodHeatRateAt(point.time(), woodRecommendation).doubleValue();
+                expensive[i] = isExpensive(point, request.settings());
+            }
+            this.market = market;
+            this.plannerActive = plannerActive;
+            this.roomMeasurementFresh = request.roomMeasurementFresh();
+            this.initialFloorTemperature = request.initialFloorTemperature().doubleValue();
+            this.initialRoomTemperature = request.initialRoomTemperature().doubleValue();
+            ThermalModel model = request.model();
+            this.heaterPowerKw = model.heaterPowerKw().doubleValue();
+            this.floorHeatingRate = model.floorHeatingRate().doubleValue();
+            this.floorToRoomRate = model.floorToRoomRate().doubleValue();
+            this.roomOutdoorLossRate = model.roomOutdoorLossRate().doubleValue();
+            this.windLossRate = model.windLossRate().doubleValue();
+        }
+
+        private SimulationSummary run(Settings settings, Set<Instant> preheatTimes) {
+            double normalFloor = settings.normalFloorTemperature().doubleValue();
+            double preheatFloor = settings.maximumPreheatFloorTemperature().doubleValue();
+            double absoluteMaximumFloor = settings.absoluteMaximumFloorTemperature().doubleValue();
+            double dischargeFloor = settings.dischargeFloorSetpoint().doubleValue();
+            double minimumRoom = settings.minimumRoomTemperature().doubleValue();
+            double maximumRoom = settings.maximumRoomTemperature().doubleValue();
+            boolean optimizing = plannerActive && roomMeasurementFresh;
+
+            double floor = initialFloorTemperature;
+            double room = initialRoomTemperature;
+            double lowestRoom = Double.POSITIVE_INFINITY;
+            double highestRoom = Double.NEGATIVE_INFINITY;
+            double comfortDeficit = 0;
+            int heatingSteps = 0;
+            double costCents = 0;
+            for (int i = 0; i < prices.length; i++) {
+                // Same order as decide(...)
+                double setpoint;
+                if (!optimizing) {
+                    setpoint = normalFloor;
+                } else if (room >= maximumRoom) {
+                    setpoint = dischargeFloor;
+                } else if (room < minimumRoom) {
+                    setpoint = normalFloor;
+                } else if (woodHeatRates[i] > 0 || expensive[i]) {
+                    setpoint = dischargeFloor;
+                } else if (preheatTimes.contains(market.get(i).time())) {
+                    setpoint = preheatFloor;
+                } else {
+                    setpoint = normalFloor;
+                }
+                boolean heating = floor < setpoint;
+                double floorToRoom = floorToRoomRate * (floor - room);
+                double heaterGain = heating ? floorHeatingRate : 0;
+                double outdoorLoss = roomOutdoorLossRate * Math.max(room - outdoorTemperatures[i], 0);
+                double windLoss = windLossRate * windSpeeds[i];
+
+                floor = Math.min(floor + (heaterGain - floorToRoom) * stepHours, absoluteMaximumFloor);
+                room = room + (floorToRoom + woodHeatRates[i] - outdoorLoss - windLoss) * stepHours;
+                if (heating) {
+                    heatingSteps++;
+                    costCents += heaterPowerKw * stepHours * prices[i];
+                }
+                lowestRoom = Math.min(lowestRoom, room);
+                highestRoom = Math.max(highestRoom, room);
+                comfortDeficit += (Math.max(0, minimumRoom - room) + Math.max(0, room - maximumRoom)) * stepHours;
+            }
+            return new SimulationSummary(heaterPowerKw * stepHours * heatingSteps, costCents / 100.0,
+                    floor, room, lowestRoom, highestRoom, comfortDeficit);
+        }
     }
 
     /**
@@ -154,8 +358,7 @@ public class HeatingPlanSimulationService {
         }
         Settings settings = request.settings();
         ThermalModel model = request.model();
-        BigDecimal stepHours = BigDecimal.valueOf(settings.step().toMinutes())
-                .divide(BigDecimal.valueOf(60), 8, RoundingMode.HALF_UP);
+        BigDecimal stepHours = stepHours(settings);
         BigDecimal usableFloorRise = settings.maximumPreheatFloorTemperature()
                 .subtract(request.initialFloorTemperature()).max(ZERO);
         BigDecimal gainPerStep = model.floorHeatingRate().multiply(stepHours);
@@ -197,7 +400,7 @@ public class HeatingPlanSimulationService {
         return Set.copyOf(selected);
     }
 
-    private boolean isExpensive(MarketPoint point, Settings settings) {
+    private static boolean isExpensive(MarketPoint point, Settings settings) {
         return point.priceCentsPerKwh().compareTo(settings.expensivePriceThreshold()) >= 0;
     }
 
@@ -231,7 +434,7 @@ public class HeatingPlanSimulationService {
         );
     }
 
-    private BigDecimal woodHeatRateAt(Instant time, WoodStoveRecommendation recommendation) {
+    private static BigDecimal woodHeatRateAt(Instant time, WoodStoveRecommendation recommendation) {
         if (recommendation == null || time.isBefore(recommendation.releaseStartsAt())
                 || !time.isBefore(recommendation.releaseEndsAt())) {
             return ZERO;
@@ -416,6 +619,47 @@ public class HeatingPlanSimulationService {
     ) {
     }
 
+    /**
+     * Outcome of {@link #summarize}. The comfort deficit is the time integral, in degree hours, of how far
+     * the room is outside its minimum and maximum comfort temperatures.
+     */
+    public record SimulationSummary(
+            double energyKwh,
+            double estimatedCostEur,
+            double finalFloorTemperature,
+            double finalRoomTemperature,
+            double lowestRoomTemperature,
+            double highestRoomTemperature,
+            double comfortDeficitDegreeHours
+    ) {
+        public boolean comfortRespected() {
+            return comfortDeficitDegreeHours <= COMFORT_DEFICIT_TOLERANCE;
+        }
+    }
+
+    record ExactSimulation(
+            SimulationResult result,
+            BigDecimal energyKwh,
+            BigDecimal estimatedCostEur,
+            BigDecimal finalFloorTemperature,
+            BigDecimal finalRoomTemperature
+    ) {
+    }
+
+    public record Scenario(BigDecimal cheapPriceThreshold, BigDecimal maximumPreheatFloorTemperature) {
+    }
+
+    public record ScenarioSweepResult(
+            Scenario scenario,
+            SimulationSummary summary,
+            SimulationResult result,
+            int evaluatedScenarios
+    ) {
+    }
+
+    private record ScenarioOutcome(int index, Scenario scenario, SimulationSummary summary) {
+    }
+
     private record OperatingDecision(BigDecimal floorSetpoint, OperatingMode mode, String reason) {
     }
 
@@ -7,6 +7,7 @@ package com.nitramite.porssiohjain.services.heating;
 import com.nitramite.porssiohjain.entity.*;
 import com.nitramite.porssiohjain.entity.repository.*;
 import com.nitramite.porssiohjain.services.nordpool.NordpoolMarket;
+import com.nitramite.porssiohjain.services.nordpool.NordpoolPriceCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -33,7 +34,7 @@ public class HeatingPlannerAutomationService {
 
     private final HeatingPlannerSettingsRepository settingsRepository;
     private final HeatingPlannerRoomRepository roomRepository;
-    private final NordpoolRepository nordpoolRepository;
+    private final NordpoolPriceCache nordpoolPriceCache;
     private final SiteWeatherRepository weatherRepository;
     private final HeatingPlannerMeasurementService measurementService;
     private final HeatingPlannerThermalModelService thermalModelService;
@@ -58,7 +59,7 @@ public class HeatingPlannerAutomationService {
         ZoneId zone = zone(settings);
         ZonedDateTime horizonStart = now.atZone(zone).toLocalDate().atStartOfDay(zone);
         ZonedDateTime horizonEnd = horizonStart.plusDays(2);
-        List<NordpoolEntity> prices = nordpoolRepository.findPricesBetween(
+        List<NordpoolEntity> prices = nordpoolPriceCache.findPricesBetween(
                 NordpoolMarket.normalize(settings.getAccount().getMarketIndexName()),
                 horizonStart.toInstant(), horizonEnd.toInstant());
         if (prices.size() < 2 || prices.stream().noneMatch(price -> !price.getDeliveryStart().isAfter(now)
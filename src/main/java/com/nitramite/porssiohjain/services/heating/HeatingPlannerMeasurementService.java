@@ -13,9 +13,9 @@ package com.nitramite.porssiohjain.services.heating;
 
 import com.nitramite.porssiohjain.entity.HeatingPlannerRoomEntity;
 import com.nitramite.porssiohjain.entity.HeatingPlannerRoomHeatSourceEntity;
-import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementEntity;
 import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
-import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementRepository;
+import com.nitramite.porssiohjain.services.ZigbeeLatestMeasurementStore;
+import com.nitramite.porssiohjain.services.models.ZigbeeLatestMeasurement;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,7 +32,7 @@ public class HeatingPlannerMeasurementService {
     public static final Duration DEFAULT_FRESHNESS = Duration.ofMinutes(60);
     public static final String DEFAULT_TEMPERATURE_KEY = "temperature";
 
-    private final ZigbeeDeviceMeasurementRepository measurementRepository;
+    private final ZigbeeLatestMeasurementStore latestMeasurementStore;
 
     @Transactional(readOnly = true)
     public LatestMeasurement latestFreshRoomTemperature(HeatingPlannerRoomEntity room, Instant now) {
@@ -62,15 +62,14 @@ public class HeatingPlannerMeasurementService {
             return LatestMeasurement.missing();
         }
         String measurementKey = key == null || key.isBlank() ? DEFAULT_TEMPERATURE_KEY : key;
-        Optional<ZigbeeDeviceMeasurementEntity> measurement =
-                measurementRepository.findFirstByDeviceIdAndMeasurementTypeAndMeasurementKeyOrderByMeasuredAtDescIdDesc(
-                        device.getId(), ZigbeeMeasurementType.TEMPERATURE, measurementKey);
+        Optional<ZigbeeLatestMeasurement> measurement =
+                latestMeasurementStore.find(device.getId(), ZigbeeMeasurementType.TEMPERATURE, measurementKey);
         if (measurement.isEmpty()) {
             return LatestMeasurement.missing();
         }
-        ZigbeeDeviceMeasurementEntity entity = measurement.get();
-        boolean fresh = !entity.getMeasuredAt().isBefore(now.minus(DEFAULT_FRESHNESS));
-        return new LatestMeasurement(entity.getValue(), entity.getMeasuredAt(), fresh ? Freshness.FRESH : Freshness.STALE);
+        ZigbeeLatestMeasurement latest = measurement.get();
+        boolean fresh = !latest.measuredAt().isBefore(now.minus(DEFAULT_FRESHNESS));
+        return new LatestMeasurement(latest.value(), latest.measuredAt(), fresh ? Freshness.FRESH : Freshness.STALE);
     }
 
     public enum Freshness {
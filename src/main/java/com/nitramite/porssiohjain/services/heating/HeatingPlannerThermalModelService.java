@@ -5,9 +5,11 @@
 package com.nitramite.porssiohjain.services.heating;
 
 import com.nitramite.porssiohjain.entity.HeatingPlannerRoomEntity;
+import com.nitramite.porssiohjain.entity.HeatingPlannerRoomModelStateEntity;
 import com.nitramite.porssiohjain.entity.SiteWeatherEntity;
 import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementEntity;
 import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
+import com.nitramite.porssiohjain.entity.repository.HeatingPlannerRoomModelStateRepository;
 import com.nitramite.porssiohjain.entity.repository.HeatingPlannerRoomRepository;
 import com.nitramite.porssiohjain.entity.repository.SiteWeatherRepository;
 import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementRepository;
@@ -19,10 +21,13 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
+/**
+ * Learns room cooling rates with recursive least squares. Each run folds only the
+ * measurements newer than the persisted state cursor, so the cost of a planner run
+ * does not grow with the history length.
+ */
 @Service
 @RequiredArgsConstructor
 public class HeatingPlannerThermalModelService {
@@ -30,9 +35,16 @@ public class HeatingPlannerThermalModelService {
     private static final Duration TRAINING_WINDOW = Duration.ofDays(21);
     private static final Duration MAX_SAMPLE_GAP = Duration.ofHours(2);
     private static final Duration MAX_WEATHER_GAP = Duration.ofMinutes(90);
+    private static final BigDecimal MAX_COOLING_STEP = new BigDecimal("3.0");
     private static final int MIN_SAMPLES = 24;
+    // Effective memory of roughly 330 cooling intervals, about two weeks of hourly samples
+    private static final double FORGETTING_FACTOR = 0.997;
+    private static final double INITIAL_COVARIANCE = 100.0;
+    // Forgetting is paused above this so an unexcited input (calm weather) can not wind up
+    private static final double MAX_COVARIANCE = 1.0e4;
 
     private final HeatingPlannerRoomRepository roomRepository;
+    private final HeatingPlannerRoomModelStateRepository modelStateRepository;
     private final ZigbeeDeviceMeasurementRepository measurementRepository;
     private final SiteWeatherRepository weatherRepository;
 
@@ -47,13 +59,14 @@ public class HeatingPlannerThermalModelService {
         }
         String key = room.getRoomSensorMeasurementKey();
         if (key == null || key.isBlank()) key = HeatingPlannerMeasurementService.DEFAULT_TEMPERATURE_KEY;
-        Instant from = now.minus(TRAINING_WINDOW);
-        List<ZigbeeDeviceMeasurementEntity> temperatures = measurementRepository
-                .findTop1000ByDeviceIdAndMeasurementTypeAndMeasurementKeyAndMeasuredAtBetweenOrderByMeasuredAtAscIdAsc(
-                        room.getRoomSensorDevice().getId(), ZigbeeMeasurementType.TEMPERATURE, key, from, now);
-        List<SiteWeatherEntity> weather = weatherRepository
-                .findBySiteAndForecastTimeBetweenOrderByForecastTimeAsc(room.getSite(), from, now);
-        Estimate estimate = estimate(temperatures, weather);
+        HeatingPlannerRoomModelStateEntity state = catchUp(room, key, now);
+        Instant lastMeasuredAt = state.getLastMeasuredAt();
+        if (lastMeasuredAt == null || lastMeasuredAt.isBefore(now.minus(TRAINING_WINDOW))) {
+            updateMetadata(room, new Estimate(BigDecimal.ZERO, BigDecimal.ZERO, 0, BigDecimal.ZERO), false, now);
+            return ModelResolution.configured(configured,
+                    "Configured model: no room temperature measured in the last " + TRAINING_WINDOW.toDays() + " days");
+        }
+        Estimate estimate = estimate(state);
         if (estimate.sampleCount() < MIN_SAMPLES) {
             updateMetadata(room, estimate, false, now);
             return new ModelResolution(configured, false, estimate.sampleCount(), BigDecimal.ZERO,
@@ -73,47 +86,133 @@ public class HeatingPlannerThermalModelService {
                 "Observed cooling model blended with configured defaults according to confidence");
     }
 
-    Estimate estimate(List<ZigbeeDeviceMeasurementEntity> temperatures, List<SiteWeatherEntity> weather) {
-        List<CoolingSample> samples = new ArrayList<>();
-        for (int i = 1; i < temperatures.size(); i++) {
-            ZigbeeDeviceMeasurementEntity before = temperatures.get(i - 1);
-            ZigbeeDeviceMeasurementEntity after = temperatures.get(i);
-            Duration elapsed = Duration.between(before.getMeasuredAt(), after.getMeasuredAt());
-            if (elapsed.toMinutes() < 5 || elapsed.compareTo(MAX_SAMPLE_GAP) > 0) continue;
-            BigDecimal change = after.getValue().subtract(before.getValue());
-            if (change.signum() >= 0 || change.abs().compareTo(new BigDecimal("3.0")) > 0) continue;
-            SiteWeatherEntity nearest = nearestWeather(weather, midpoint(before.getMeasuredAt(), after.getMeasuredAt()));
-            if (nearest == null || nearest.getTemperature() == null) continue;
-            BigDecimal hours = BigDecimal.valueOf(elapsed.toMinutes()).divide(BigDecimal.valueOf(60), 8, RoundingMode.HALF_UP);
-            BigDecimal coolingPerHour = change.negate().divide(hours, 8, RoundingMode.HALF_UP);
-            BigDecimal averageRoom = before.getValue().add(after.getValue()).divide(BigDecimal.valueOf(2), 8, RoundingMode.HALF_UP);
-            BigDecimal deltaOutdoor = averageRoom.subtract(nearest.getTemperature()).max(BigDecimal.ZERO);
-            BigDecimal wind = nearest.getWindSpeedMs() == null ? BigDecimal.ZERO : nearest.getWindSpeedMs().max(BigDecimal.ZERO);
-            if (deltaOutdoor.signum() > 0) samples.add(new CoolingSample(deltaOutdoor, wind, coolingPerHour));
+    /**
+     * Loads the room's model state, starting over when the sensor changed, and folds in
+     * the temperature rows measured after its cursor. The state row is locked for the rest
+     * of the transaction, so concurrent plans of one room fold each row exactly once.
+     */
+    private HeatingPlannerRoomModelStateEntity catchUp(HeatingPlannerRoomEntity room, String key, Instant now) {
+        Long deviceId = room.getRoomSensorDevice().getId();
+        modelStateRepository.insertIfAbsent(room.getId(), deviceId, key, INITIAL_COVARIANCE, now);
+        HeatingPlannerRoomModelStateEntity state = modelStateRepository.findWithLockByRoomId(room.getId())
+                .orElseThrow(() -> new IllegalStateException("Model state missing for room " + room.getId()));
+        if (!deviceId.equals(state.getSensorDeviceId()) || !key.equals(state.getMeasurementKey())) {
+            reset(state, deviceId, key);
         }
-        if (samples.isEmpty()) return new Estimate(BigDecimal.ZERO, BigDecimal.ZERO, 0, BigDecimal.ZERO);
-
-        double xx = 0, xw = 0, ww = 0, xy = 0, wy = 0;
-        for (CoolingSample sample : samples) {
-            double x = sample.outdoorDelta().doubleValue();
-            double w = sample.wind().doubleValue();
-            double y = sample.coolingPerHour().doubleValue();
-            xx += x * x; xw += x * w; ww += w * w; xy += x * y; wy += w * y;
+        Instant windowStart = now.minus(TRAINING_WINDOW);
+        Instant cursor = state.getLastMeasuredAt();
+        Instant after = cursor == null || cursor.isBefore(windowStart) ? windowStart : cursor;
+        if (after.isBefore(now)) {
+            List<ZigbeeDeviceMeasurementEntity> temperatures = measurementRepository
+                    .findByDeviceIdAndMeasurementTypeAndMeasurementKeyAndMeasuredAtAfterAndMeasuredAtLessThanEqualOrderByMeasuredAtAscIdAsc(
+                            deviceId, ZigbeeMeasurementType.TEMPERATURE, key, after, now);
+            if (!temperatures.isEmpty()) {
+                Instant weatherFrom = cursor == null ? temperatures.getFirst().getMeasuredAt() : cursor;
+                List<SiteWeatherEntity> weather = weatherRepository.findBySiteAndForecastTimeBetweenOrderByForecastTimeAsc(
+                        room.getSite(), weatherFrom.minus(MAX_WEATHER_GAP),
+                        temperatures.getLast().getMeasuredAt().plus(MAX_WEATHER_GAP));
+                fold(state, temperatures, weather);
+            }
         }
-        double determinant = xx * ww - xw * xw;
-        double outdoor = determinant > 1e-9 ? (xy * ww - wy * xw) / determinant : xy / Math.max(xx, 1e-9);
-        double wind = determinant > 1e-9 ? (wy * xx - xy * xw) / determinant : 0;
-        outdoor = clamp(outdoor, 0.001, 0.100);
-        wind = clamp(wind, 0.0, 0.050);
-        double squaredError = 0;
-        for (CoolingSample sample : samples) {
-            double predicted = outdoor * sample.outdoorDelta().doubleValue() + wind * sample.wind().doubleValue();
-            double error = sample.coolingPerHour().doubleValue() - predicted;
-            squaredError += error * error;
+        state.setUpdatedAt(now);
+        return modelStateRepository.save(state);
+    }
+
+    Estimate estimate(List<ZigbeeDeviceMeasurementEntity> temperatures, List<SiteWeatherEntity> weather) {
+        HeatingPlannerRoomModelStateEntity state = new HeatingPlannerRoomModelStateEntity();
+        reset(state, null, null);
+        fold(state, temperatures, weather);
+        return estimate(state);
+    }
+
+    Estimate estimate(HeatingPlannerRoomModelStateEntity state) {
+        if (state.getSampleCount() == 0) return new Estimate(BigDecimal.ZERO, BigDecimal.ZERO, 0, BigDecimal.ZERO);
+        double outdoor = clamp(state.getOutdoorCoefficient(), 0.001, 0.100);
+        double wind = clamp(state.getWindCoefficient(), 0.0, 0.050);
+        double rmse = Math.sqrt(state.getMeanSquaredError());
+        double confidence = Math.min(1.0, state.getSampleCount() / 96.0) * (1.0 / (1.0 + rmse));
+        return new Estimate(decimal(outdoor), decimal(wind), state.getSampleCount(), decimal(confidence));
+    }
+
+    /**
+     * Folds ascending temperature rows into the state. Weather is ascending as well, so the
+     * nearest forecast point is found by walking a single pointer forward.
+     */
+    void fold(HeatingPlannerRoomModelStateEntity state, List<ZigbeeDeviceMeasurementEntity> temperatures,
+              List<SiteWeatherEntity> weather) {
+        Instant previousTime = state.getLastMeasuredAt();
+        BigDecimal previousValue = state.getLastValue();
+        int weatherIndex = 0;
+        for (ZigbeeDeviceMeasurementEntity measurement : temperatures) {
+            if (previousTime != null && previousValue != null) {
+                Instant middle = midpoint(previousTime, measurement.getMeasuredAt());
+                weatherIndex = advance(weather, weatherIndex, middle);
+                CoolingSample sample = sample(previousTime, previousValue, measurement, nearest(weather, weatherIndex, middle));
+                if (sample != null) update(state, sample);
+            }
+            previousTime = measurement.getMeasuredAt();
+            previousValue = measurement.getValue();
         }
-        double rmse = Math.sqrt(squaredError / samples.size());
-        double confidence = Math.min(1.0, samples.size() / 96.0) * (1.0 / (1.0 + rmse));
-        return new Estimate(decimal(outdoor), decimal(wind), samples.size(), decimal(confidence));
+        state.setLastMeasuredAt(previousTime);
+        state.setLastValue(previousValue);
+    }
+
+    private CoolingSample sample(Instant beforeTime, BigDecimal beforeValue,
+                                 ZigbeeDeviceMeasurementEntity after, SiteWeatherEntity weather) {
+        Duration elapsed = Duration.between(beforeTime, after.getMeasuredAt());
+        if (elapsed.toMinutes() < 5 || elapsed.compareTo(MAX_SAMPLE_GAP) > 0) return null;
+        BigDecimal change = after.getValue().subtract(beforeValue);
+        if (change.signum() >= 0 || change.abs().compareTo(MAX_COOLING_STEP) > 0) return null;
+        if (weather == null || weather.getTemperature() == null) return null;
+        double hours = elapsed.toMinutes() / 60.0;
+        double coolingPerHour = -change.doubleValue() / hours;
+        double averageRoom = (beforeValue.doubleValue() + after.getValue().doubleValue()) / 2.0;
+        double deltaOutdoor = averageRoom - weather.getTemperature().doubleValue();
+        double wind = weather.getWindSpeedMs() == null ? 0 : Math.max(0, weather.getWindSpeedMs().doubleValue());
+        return deltaOutdoor > 0 ? new CoolingSample(deltaOutdoor, wind, coolingPerHour) : null;
+    }
+
+    private void update(HeatingPlannerRoomModelStateEntity state, CoolingSample sample) {
+        double x = sample.outdoorDelta();
+        double w = sample.wind();
+        double p11 = state.getCovarianceOutdoor();
+        double p12 = state.getCovarianceCross();
+        double p22 = state.getCovarianceWind();
+        double lambda = Math.max(p11, p22) >= MAX_COVARIANCE ? 1.0 : FORGETTING_FACTOR;
+
+        double px = p11 * x + p12 * w;
+        double pw = p12 * x + p22 * w;
+        double denominator = lambda + x * px + w * pw;
+        double gainOutdoor = px / denominator;
+        double gainWind = pw / denominator;
+        double error = sample.coolingPerHour()
+                - (state.getOutdoorCoefficient() * x + state.getWindCoefficient() * w);
+
+        state.setOutdoorCoefficient(state.getOutdoorCoefficient() + gainOutdoor * error);
+        state.setWindCoefficient(state.getWindCoefficient() + gainWind * error);
+        state.setCovarianceOutdoor((p11 - gainOutdoor * px) / lambda);
+        state.setCovarianceCross((p12 - gainOutdoor * pw) / lambda);
+        state.setCovarianceWind((p22 - gainWind * pw) / lambda);
+
+        double weightSum = lambda * state.getWeightSum() + 1.0;
+        state.setWeightSum(weightSum);
+        state.setMeanSquaredError(state.getMeanSquaredError() + (error * error - state.getMeanSquaredError()) / weightSum);
+        state.setSampleCount(state.getSampleCount() + 1);
+    }
+
+    private void reset(HeatingPlannerRoomModelStateEntity state, Long deviceId, String key) {
+        state.setSensorDeviceId(deviceId);
+        state.setMeasurementKey(key);
+        state.setOutdoorCoefficient(0);
+        state.setWindCoefficient(0);
+        state.setCovarianceOutdoor(INITIAL_COVARIANCE);
+        state.setCovarianceCross(0);
+        state.setCovarianceWind(INITIAL_COVARIANCE);
+        state.setWeightSum(0);
+        state.setMeanSquaredError(0);
+        state.setSampleCount(0);
+        state.setLastMeasuredAt(null);
+        state.setLastValue(null);
     }
 
     private void updateMetadata(HeatingPlannerRoomEntity room, Estimate estimate, boolean learned, Instant now) {
@@ -124,11 +223,22 @@ public class HeatingPlannerThermalModelService {
         roomRepository.save(room);
     }
 
-    private SiteWeatherEntity nearestWeather(List<SiteWeatherEntity> weather, Instant time) {
-        SiteWeatherEntity nearest = weather.stream().min(Comparator.comparing(point ->
-                Duration.between(point.getForecastTime(), time).abs())).orElse(null);
-        return nearest != null && Duration.between(nearest.getForecastTime(), time).abs().compareTo(MAX_WEATHER_GAP) <= 0
-                ? nearest : null;
+    private static int advance(List<SiteWeatherEntity> weather, int index, Instant time) {
+        while (index + 1 < weather.size()
+                && distance(weather.get(index + 1), time).compareTo(distance(weather.get(index), time)) <= 0) {
+            index++;
+        }
+        return index;
+    }
+
+    private static SiteWeatherEntity nearest(List<SiteWeatherEntity> weather, int index, Instant time) {
+        if (weather.isEmpty()) return null;
+        SiteWeatherEntity nearest = weather.get(index);
+        return distance(nearest, time).compareTo(MAX_WEATHER_GAP) <= 0 ? nearest : null;
+    }
+
+    private static Duration distance(SiteWeatherEntity point, Instant time) {
+        return Duration.between(point.getForecastTime(), time).abs();
     }
 
     private Instant midpoint(Instant first, Instant second) {
@@ -156,5 +266,5 @@ public class HeatingPlannerThermalModelService {
     }
 
     record Estimate(BigDecimal outdoorLossRate, BigDecimal windLossRate, int sampleCount, BigDecimal confidence) { }
-    private record CoolingSample(BigDecimal outdoorDelta, BigDecimal wind, BigDecimal coolingPerHour) { }
+    private record CoolingSample(double outdoorDelta, double wind, double coolingPerHour) { }
 }
@@ -31,6 +31,9 @@ public class ControlResponse {
     private ControlMode mode;
     private Boolean manualOn;
     private Boolean alwaysOnBelowMinPrice;
+    private Integer minRunMinutes;
+    private Integer maxOffGapMinutes;
+    private Boolean rollingDailyWindow;
     private Long energyContractId;
     private String energyContractName;
     private Long transferContractId;
@@ -0,0 +1,26 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services.models;
+
+/**
+ * Result of a conditional device poll. The body is null when the caller's ETag still
+ * matches.
+ */
+public record DevicePollResponse<T>(
+        String etag,
+        T body
+) {
+    public boolean notModified() {
+        return body == null;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services.models;
+
+import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public record ZigbeeLatestMeasurement(
+        Long accountId,
+        Long deviceId,
+        ZigbeeMeasurementType measurementType,
+        String measurementKey,
+        BigDecimal value,
+        Instant measuredAt,
+        Instant receivedAt
+) {
+}
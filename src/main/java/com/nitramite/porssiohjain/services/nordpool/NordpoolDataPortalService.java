@@ -16,6 +16,7 @@ import com.nitramite.porssiohjain.entity.repository.AccountRepository;
 import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
 import com.nitramite.porssiohjain.services.Day;
 import com.nitramite.porssiohjain.services.SystemLogService;
+import com.nitramite.porssiohjain.services.TimeSeriesImportService;
 import com.nitramite.porssiohjain.services.models.NordpoolResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -24,6 +25,8 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -50,15 +53,21 @@ public class NordpoolDataPortalService {
     private final NordpoolRepository nordpoolRepository;
     private final AccountRepository accountRepository;
     private final SystemLogService systemLogService;
+    private final NordpoolPriceCache nordpoolPriceCache;
+    private final TimeSeriesImportService timeSeriesImportService;
 
     NordpoolDataPortalService(
             NordpoolRepository nordpoolRepository,
             AccountRepository accountRepository,
-            SystemLogService systemLogService
+            SystemLogService systemLogService,
+            NordpoolPriceCache nordpoolPriceCache,
+            TimeSeriesImportService timeSeriesImportService
     ) {
         this.nordpoolRepository = nordpoolRepository;
         this.accountRepository = accountRepository;
         this.systemLogService = systemLogService;
+        this.nordpoolPriceCache = nordpoolPriceCache;
+        this.timeSeriesImportService = timeSeriesImportService;
     }
 
     public NordpoolResponse fetchData(
@@ -107,15 +116,9 @@ public class NordpoolDataPortalService {
     }
 
     private void saveEntries(List<NordpoolResponse.MultiIndexEntry> entries, List<String> markets) {
-        List<NordpoolEntity> existing = nordpoolRepository.findAll();
-        Set<String> existingKeys = existing.stream()
-                .map(e -> e.getMarketIndexName() + "|" + e.getDeliveryStart() + "|" + e.getDeliveryEnd())
-                .collect(Collectors.toSet());
-
-        List<NordpoolEntity> toInsert = entries.stream()
+        List<NordpoolEntity> prices = entries.stream()
                 .flatMap(e -> markets.stream()
                         .filter(market -> e.getEntryPerArea().containsKey(market))
-                        .filter(market -> !existingKeys.contains(market + "|" + e.getDeliveryStart() + "|" + e.getDeliveryEnd()))
                         .map(market -> {
                             NordpoolEntity entity = new NordpoolEntity();
                             entity.setDeliveryStart(e.getDeliveryStart());
@@ -126,11 +129,29 @@ public class NordpoolDataPortalService {
                         }))
                 .toList();
 
-        if (!toInsert.isEmpty()) {
-            log.info("Inserting {} Nordpool multiIndex entries for markets {}", toInsert.size(), markets);
-            nordpoolRepository.saveAll(toInsert);
-            systemLogService.log("Insert of " + toInsert.size() + " Nordpool entries completed.");
+        int inserted = timeSeriesImportService.insertNordpoolPrices(prices);
+        if (inserted > 0) {
+            log.info("Inserted {} of {} Nordpool multiIndex entries for markets {}", inserted, prices.size(), markets);
+            refreshPriceCacheAfterCommit(markets);
+            systemLogService.log("Insert of " + inserted + " Nordpool entries completed.");
+        }
+    }
+
+    /**
+     * Refreshes the cached timelines once the imported rows are visible to other transactions,
+     * otherwise a refresh from inside a surrounding transaction would cache the previous prices.
+     */
+    private void refreshPriceCacheAfterCommit(List<String> markets) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            nordpoolPriceCache.refresh(markets);
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                nordpoolPriceCache.refresh(markets);
+            }
+        });
     }
 
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
@@ -0,0 +1,117 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services.nordpool;
+
+import com.nitramite.porssiohjain.entity.NordpoolEntity;
+import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per market {@link NordpoolPriceTimeline} of recent and upcoming prices. Timelines are
+ * replaced as a whole when new prices are imported, lookups older than the cached window
+ * fall back to the repository.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NordpoolPriceCache {
+
+    private static final Duration MAX_TIMELINE_AGE = Duration.ofMinutes(10);
+
+    private final NordpoolRepository nordpoolRepository;
+    private final Map<String, NordpoolPriceTimeline> timelines = new ConcurrentHashMap<>();
+    private final Map<String, Long> priceVersions = new ConcurrentHashMap<>();
+
+    @Value("${nordpool.cache-days-back:62}")
+    private int cacheDaysBack = 62;
+
+    public Optional<NordpoolEntity> findPriceAt(String marketIndexName, Instant instant) {
+        NordpoolPriceTimeline timeline = getTimeline(marketIndexName);
+        if (!timeline.covers(instant)) {
+            return nordpoolRepository.findFirstByMarketIndexNameAndDeliveryStartLessThanEqualAndDeliveryEndGreaterThan(
+                    marketIndexName, instant, instant);
+        }
+        int index = timeline.indexAt(instant);
+        return index >= 0 ? Optional.of(timeline.toEntity(index)) : Optional.empty();
+    }
+
+    public List<NordpoolEntity> findPricesBetween(String marketIndexName, Instant start, Instant end) {
+        NordpoolPriceTimeline timeline = getTimeline(marketIndexName);
+        if (!timeline.covers(start)) {
+            return nordpoolRepository.findPricesBetween(marketIndexName, start, end);
+        }
+        return timeline.entitiesBetween(start, end);
+    }
+
+    public NordpoolPriceTimeline getTimeline(String marketIndexName) {
+        Instant now = Instant.now();
+        NordpoolPriceTimeline current = timelines.get(marketIndexName);
+        if (current != null && isFresh(current, now)) {
+            return current;
+        }
+        // Loaded outside of the map so the query does not hold the bin lock of other markets,
+        // a timeline put by a concurrent load or refresh in between wins.
+        NordpoolPriceTimeline loaded = load(marketIndexName, now);
+        boolean stored = current == null
+                ? timelines.putIfAbsent(marketIndexName, loaded) == null
+                : timelines.replace(marketIndexName, current, loaded);
+        if (!stored) {
+            NordpoolPriceTimeline raced = timelines.get(marketIndexName);
+            if (raced != null && isFresh(raced, now)) {
+                return raced;
+            }
+        }
+        return loaded;
+    }
+
+    public void refresh(Collection<String> marketIndexNames) {
+        Instant now = Instant.now();
+        for (String market : marketIndexNames) {
+            timelines.put(market, load(market, now));
+            priceVersions.merge(market, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Counter bumped every time imported prices of the market are refreshed. Callers caching
+     * values derived from prices compare it to notice that prices may have been corrected.
+     */
+    public long priceVersion(String marketIndexName) {
+        return priceVersions.getOrDefault(marketIndexName, 0L);
+    }
+
+    private boolean isFresh(NordpoolPriceTimeline timeline, Instant now) {
+        return timeline.getBuiltAt().plus(MAX_TIMELINE_AGE).isAfter(now);
+    }
+
+    private NordpoolPriceTimeline load(String marketIndexName, Instant now) {
+        Instant coverageStart = now.truncatedTo(ChronoUnit.DAYS).minus(cacheDaysBack, ChronoUnit.DAYS);
+        List<NordpoolEntity> rows = nordpoolRepository
+                .findByMarketIndexNameAndDeliveryStartGreaterThanEqualOrderByDeliveryStartAsc(marketIndexName, coverageStart);
+        log.debug("Loaded {} Nordpool prices for market {} into price timeline", rows.size(), marketIndexName);
+        return NordpoolPriceTimeline.of(marketIndexName, coverageStart, now, rows);
+    }
+
+}
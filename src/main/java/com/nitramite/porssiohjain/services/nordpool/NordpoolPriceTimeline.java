@@ -0,0 +1,195 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services.nordpool;
+
+import com.nitramite.porssiohjain.entity.NordpoolEntity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable, sorted price series of one market. Delivery periods are kept as epoch
+ * seconds and prices as longs scaled by {@link #PRICE_SCALE}, lookups are binary searches.
+ */
+public final class NordpoolPriceTimeline {
+
+    public static final int PRICE_SCALE = 4;
+
+    private final String marketIndexName;
+    private final Instant coverageStart;
+    private final Instant builtAt;
+    private final long[] ids;
+    private final long[] startEpochSeconds;
+    private final long[] endEpochSeconds;
+    private final long[] scaledPrices;
+
+    private NordpoolPriceTimeline(
+            String marketIndexName,
+            Instant coverageStart,
+            Instant builtAt,
+            long[] ids,
+            long[] startEpochSeconds,
+            long[] endEpochSeconds,
+            long[] scaledPrices
+    ) {
+        this.marketIndexName = marketIndexName;
+        this.coverageStart = coverageStart;
+        this.builtAt = builtAt;
+        this.ids = ids;
+        this.startEpochSeconds = startEpochSeconds;
+        this.endEpochSeconds = endEpochSeconds;
+        this.scaledPrices = scaledPrices;
+    }
+
+    /**
+     * @param rows          prices of the market ordered by delivery start
+     * @param coverageStart earliest delivery start the rows are complete from
+     */
+    public static NordpoolPriceTimeline of(
+            String marketIndexName,
+            Instant coverageStart,
+            Instant builtAt,
+            List<NordpoolEntity> rows
+    ) {
+        int size = rows.size();
+        long[] ids = new long[size];
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        long[] prices = new long[size];
+        for (int i = 0; i < size; i++) {
+            NordpoolEntity row = rows.get(i);
+            ids[i] = row.getId() != null ? row.getId() : 0L;
+            starts[i] = row.getDeliveryStart().getEpochSecond();
+            ends[i] = row.getDeliveryEnd().getEpochSecond();
+            prices[i] = row.getPriceFi().setScale(PRICE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            if (i > 0 && starts[i] < starts[i - 1]) {
+                throw new IllegalArgumentException("Nordpool rows must be ordered by delivery start");
+            }
+        }
+        return new NordpoolPriceTimeline(marketIndexName, coverageStart, builtAt, ids, starts, ends, prices);
+    }
+
+    public String getMarketIndexName() {
+        return marketIndexName;
+    }
+
+    public Instant getBuiltAt() {
+        return builtAt;
+    }
+
+    public boolean covers(Instant instant) {
+        return !instant.isBefore(coverageStart);
+    }
+
+    public int size() {
+        return startEpochSeconds.length;
+    }
+
+    /**
+     * @return index of the period with start &lt;= instant &lt; end, or -1
+     */
+    public int indexAt(Instant instant) {
+        long second = instant.getEpochSecond();
+        int index = upperBound(second) - 1;
+        if (index >= 0 && endEpochSeconds[index] > second) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * @return first index whose delivery start is at or after the instant
+     */
+    public int fromIndex(Instant start) {
+        long second = start.getEpochSecond() + (start.getNano() > 0 ? 1 : 0);
+        return lowerBound(second);
+    }
+
+    /**
+     * @return index after the last period whose delivery start is at or before the instant
+     */
+    public int toIndex(Instant end) {
+        return upperBound(end.getEpochSecond());
+    }
+
+    public long startEpochSecond(int index) {
+        return startEpochSeconds[index];
+    }
+
+    public long endEpochSecond(int index) {
+        return endEpochSeconds[index];
+    }
+
+    public long scaledPrice(int index) {
+        return scaledPrices[index];
+    }
+
+    public BigDecimal price(int index) {
+        return BigDecimal.valueOf(scaledPrices[index], PRICE_SCALE);
+    }
+
+    public NordpoolEntity toEntity(int index) {
+        NordpoolEntity entity = new NordpoolEntity();
+        entity.setId(ids[index] != 0L ? ids[index] : null);
+        entity.setMarketIndexName(marketIndexName);
+        entity.setDeliveryStart(Instant.ofEpochSecond(startEpochSeconds[index]));
+        entity.setDeliveryEnd(Instant.ofEpochSecond(endEpochSeconds[index]));
+        entity.setPriceFi(price(index));
+        return entity;
+    }
+
+    /**
+     * Same rows as {@code NordpoolRepository.findPricesBetween}: delivery start within [start, end].
+     */
+    public List<NordpoolEntity> entitiesBetween(Instant start, Instant end) {
+        int from = fromIndex(start);
+        int to = toIndex(end);
+        List<NordpoolEntity> entities = new ArrayList<>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            entities.add(toEntity(i));
+        }
+        return entities;
+    }
+
+    private int lowerBound(long second) {
+        int low = 0;
+        int high = startEpochSeconds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (startEpochSeconds[mid] < second) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int upperBound(long second) {
+        int low = 0;
+        int high = startEpochSeconds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (startEpochSeconds[mid] <= second) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
@@ -13,8 +13,6 @@ package com.nitramite.porssiohjain.services.toshiba;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.microsoft.azure.sdk.iot.device.DeviceClient;
-import com.microsoft.azure.sdk.iot.device.IotHubClientProtocol;
 import com.microsoft.azure.sdk.iot.device.Message;
 import com.nitramite.porssiohjain.entity.DeviceAcDataEntity;
 import com.nitramite.porssiohjain.entity.DeviceEntity;
@@ -29,14 +27,12 @@ import org.springframework.stereotype.Service;
 
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -46,6 +42,7 @@ public class ToshibaAcAmqpSendService {
 
     private static final long SEND_TIMEOUT_SECONDS = 30L;
     private static final String SAS_PREFIX = "SharedAccessSignature ";
+    private static final Duration SAS_REFRESH_MARGIN = Duration.ofMinutes(5);
 
     private final ToshibaRegisterControllerService toshibaRegisterControllerService;
     private final ToshibaLoginService toshibaLoginService;
@@ -53,6 +50,7 @@ public class ToshibaAcAmqpSendService {
     private final DeviceRepository deviceRepository;
     private final DeviceAcCommandLogService deviceAcCommandLogService;
     private final DeviceOfflineNotificationService deviceOfflineNotificationService;
+    private final ToshibaAmqpConnectionManager toshibaAmqpConnectionManager;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public void sendMessage(DeviceAcDataEntity acData, String payload) {
@@ -97,59 +95,38 @@ public class ToshibaAcAmqpSendService {
     ) {
         ensureSasToken(acData);
         SasTokenConnectionInfo connectionInfo = parseConnectionInfo(acData.getSasToken());
+        if (connectionInfo.expiresAt() != null
+                && connectionInfo.expiresAt().minus(SAS_REFRESH_MARGIN).isBefore(Instant.now())) {
+            log.info("Toshiba SAS token expires at {}, refreshing before send. acDataId={}", connectionInfo.expiresAt(), acData.getId());
+            refreshSasToken(acData);
+            connectionInfo = parseConnectionInfo(acData.getSasToken());
+        }
         String connectionString = "HostName=" + connectionInfo.hostName()
                 + ";DeviceId=" + connectionInfo.deviceId()
                 + ";SharedAccessSignature=" + acData.getSasToken();
+        String clientDeviceId = buildClientDeviceId(acData);
         Long deviceId = getDeviceId(acData);
-        log.info(
-                "Opening Toshiba AMQP connection. deviceId={}, acDataId={}, iotHost={}, iotDeviceId={}, sasTokenPresent={}",
-                deviceId,
-                acData.getId(),
-                connectionInfo.hostName(),
-                connectionInfo.deviceId(),
-                acData.getSasToken() != null && !acData.getSasToken().isBlank()
-        );
 
-        DeviceClient deviceClient = null;
         try {
-            deviceClient = new DeviceClient(connectionString, IotHubClientProtocol.AMQPS);
-            deviceClient.open(true);
-
             Message message = new Message(payload);
             message.setProperty("type", "mob");
             message.setContentType("application/json");
             message.setContentEncoding("utf-8");
 
-            CountDownLatch latch = new CountDownLatch(1);
-            AtomicReference<Exception> sendFailure = new AtomicReference<>();
-
-            deviceClient.sendEventAsync(message, (sentMessage, clientException, callbackContext) -> {
-                if (clientException != null) {
-                    sendFailure.set(clientException);
-                    log.error(
-                            "Toshiba AMQP callback reported failure. deviceId={}, acDataId={}",
-                            deviceId,
-                            acData.getId(),
-                            clientException
-                    );
-                } else {
-                    log.info(
-                            "Toshiba AMQP callback reported success. deviceId={}, acDataId={}",
-                            deviceId,
-                            acData.getId()
-                    );
-                }
-                latch.countDown();
-            }, null);
-
-            boolean completed = latch.await(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-            if (!completed) {
-                throw new IllegalStateException("Timed out while sending Toshiba AMQP message");
-            }
-            if (sendFailure.get() != null) {
-                throw new IllegalStateException("Failed to send Toshiba AMQP message", sendFailure.get());
-            }
+            toshibaAmqpConnectionManager.send(
+                    clientDeviceId, connectionString, message, Duration.ofSeconds(SEND_TIMEOUT_SECONDS)
+            );
+            log.info(
+                    "Toshiba AMQP send succeeded. deviceId={}, acDataId={}, iotHost={}, iotDeviceId={}",
+                    deviceId,
+                    acData.getId(),
+                    connectionInfo.hostName(),
+                    connectionInfo.deviceId()
+            );
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             if (retryWithNewSasToken) {
                 log.warn("Toshiba AMQP send failed, attempting SAS token refresh and retry", e);
                 refreshSasToken(acData);
@@ -157,14 +134,6 @@ public class ToshibaAcAmqpSendService {
                 return;
             }
             throw new IllegalStateException("Unable to send Toshiba AMQP message", e);
-        } finally {
-            if (deviceClient != null) {
-                try {
-                    deviceClient.close();
-                } catch (Exception e) {
-                    log.warn("Failed to close Toshiba AMQP device client cleanly", e);
-                }
-            }
         }
     }
 
@@ -240,16 +209,26 @@ public class ToshibaAcAmqpSendService {
             throw new IllegalArgumentException("SAS token did not contain sr field");
         }
 
+        Instant expiresAt = null;
+        String se = tokenParts.get("se");
+        if (se != null) {
+            try {
+                expiresAt = Instant.ofEpochSecond(Long.parseLong(se));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring unparseable Toshiba SAS token expiry '{}'", se);
+            }
+        }
+
         String decodedSr = URLDecoder.decode(sr, StandardCharsets.UTF_8);
         String[] segments = decodedSr.split("/");
         if (segments.length < 3 || !"devices".equalsIgnoreCase(segments[1])) {
             throw new IllegalArgumentException("Unexpected Toshiba SAS token resource URI: " + decodedSr);
         }
 
-        return new SasTokenConnectionInfo(segments[0], segments[2]);
+        return new SasTokenConnectionInfo(segments[0], segments[2], expiresAt);
     }
 
-    private record SasTokenConnectionInfo(String hostName, String deviceId) {
+    private record SasTokenConnectionInfo(String hostName, String deviceId, Instant expiresAt) {
     }
 
     private record ToshibaAmqpCommandPayload(
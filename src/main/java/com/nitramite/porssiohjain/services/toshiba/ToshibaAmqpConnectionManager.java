@@ -0,0 +1,228 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services.toshiba;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClient;
+import com.microsoft.azure.sdk.iot.device.IotHubClientProtocol;
+import com.microsoft.azure.sdk.iot.device.Message;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps one open Toshiba IoT Hub AMQP link per client device id, so consecutive commands
+ * for the same unit skip the TLS, AMQP and SAS handshake. Commands of one unit are sent
+ * one at a time over the shared link. A link is reopened when its SAS token changes,
+ * closed after a failed send and evicted after {@code toshiba.amqp.idle-timeout}.
+ */
+@Slf4j
+@Component
+public class ToshibaAmqpConnectionManager {
+
+    private static final int OPEN_ATTEMPTS = 3;
+    private static final Duration OPEN_BACKOFF = Duration.ofMillis(500);
+
+    interface AmqpLink {
+        void send(Message message, Duration timeout) throws Exception;
+
+        void close() throws Exception;
+    }
+
+    interface AmqpLinkFactory {
+        AmqpLink open(String connectionString) throws Exception;
+    }
+
+    private final AmqpLinkFactory linkFactory;
+    private final Duration idleTimeout;
+    private final Map<String, PooledLink> links = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ToshibaAmqpConnectionManager(@Value("${toshiba.amqp.idle-timeout:10m}") Duration idleTimeout) {
+        this(connectionString -> openDeviceClient(new DeviceClient(connectionString, IotHubClientProtocol.AMQPS)),
+                idleTimeout);
+    }
+
+    ToshibaAmqpConnectionManager(AmqpLinkFactory linkFactory, Duration idleTimeout) {
+        this.linkFactory = linkFactory;
+        this.idleTimeout = idleTimeout;
+    }
+
+    public void send(String clientDeviceId, String connectionString, Message message, Duration timeout) throws Exception {
+        PooledLink pooled = links.computeIfAbsent(clientDeviceId, ignored -> new PooledLink());
+        pooled.lock.lock();
+        while (pooled.evicted) {
+            pooled.lock.unlock();
+            pooled = links.computeIfAbsent(clientDeviceId, ignored -> new PooledLink());
+            pooled.lock.lock();
+        }
+        try {
+            if (pooled.link != null && !connectionString.equals(pooled.connectionString)) {
+                log.info("Toshiba SAS token changed, reopening AMQP link. clientDeviceId={}", clientDeviceId);
+                pooled.closeQuietly();
+            }
+            if (pooled.link == null) {
+                pooled.link = openWithBackoff(clientDeviceId, connectionString);
+                pooled.connectionString = connectionString;
+            }
+            try {
+                pooled.link.send(message, timeout);
+            } catch (Exception e) {
+                pooled.closeQuietly();
+                throw e;
+            }
+            pooled.lastUsed = Instant.now();
+        } finally {
+            pooled.lock.unlock();
+        }
+    }
+
+    public void invalidate(String clientDeviceId) {
+        PooledLink pooled = links.get(clientDeviceId);
+        if (pooled == null) {
+            return;
+        }
+        pooled.lock.lock();
+        try {
+            pooled.closeQuietly();
+        } finally {
+            pooled.lock.unlock();
+        }
+    }
+
+    public int evictIdle(Instant now) {
+        int evicted = 0;
+        Iterator<Map.Entry<String, PooledLink>> iterator = links.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PooledLink> entry = iterator.next();
+            PooledLink pooled = entry.getValue();
+            if (!pooled.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (pooled.link == null || pooled.lastUsed.plus(idleTimeout).isBefore(now)) {
+                    if (pooled.link != null) {
+                        evicted++;
+                    }
+                    pooled.closeQuietly();
+                    pooled.evicted = true;
+                    iterator.remove();
+                }
+            } finally {
+                pooled.lock.unlock();
+            }
+        }
+        if (evicted > 0) {
+            log.info("Closed {} idle Toshiba AMQP links, {} still open", evicted, links.size());
+        }
+        return evicted;
+    }
+
+    public int openLinks() {
+        return (int) links.values().stream().filter(pooled -> pooled.link != null).count();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        links.keySet().forEach(this::invalidate);
+    }
+
+    private AmqpLink openWithBackoff(String clientDeviceId, String connectionString) throws Exception {
+        Exception lastFailure = null;
+        for (int attempt = 1; attempt <= OPEN_ATTEMPTS; attempt++) {
+            try {
+                AmqpLink link = linkFactory.open(connectionString);
+                log.info("Opened Toshiba AMQP link. clientDeviceId={}, attempt={}", clientDeviceId, attempt);
+                return link;
+            } catch (Exception e) {
+                lastFailure = e;
+                log.warn("Opening Toshiba AMQP link failed. clientDeviceId={}, attempt={}/{}", clientDeviceId, attempt, OPEN_ATTEMPTS, e);
+                if (attempt < OPEN_ATTEMPTS) {
+                    Thread.sleep(OPEN_BACKOFF.toMillis() << (attempt - 1));
+                }
+            }
+        }
+        throw lastFailure;
+    }
+
+    /**
+     * Opens the client, closing it again when opening fails so its AMQP resources do not leak.
+     */
+    static AmqpLink openDeviceClient(DeviceClient deviceClient) throws Exception {
+        try {
+            deviceClient.open(true);
+        } catch (Exception e) {
+            try {
+                deviceClient.close();
+            } catch (Exception closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        return new AmqpLink() {
+            @Override
+            public void send(Message message, Duration timeout) throws Exception {
+                CountDownLatch latch = new CountDownLatch(1);
+                AtomicReference<Exception> sendFailure = new AtomicReference<>();
+                deviceClient.sendEventAsync(message, (sentMessage, clientException, callbackContext) -> {
+                    sendFailure.set(clientException);
+                    latch.countDown();
+                }, null);
+                if (!latch.await(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new IllegalStateException("Timed out while sending Toshiba AMQP message");
+                }
+                if (sendFailure.get() != null) {
+                    throw new IllegalStateException("Failed to send Toshiba AMQP message", sendFailure.get());
+                }
+            }
+
+            @Override
+            public void close() throws Exception {
+                deviceClient.close();
+            }
+        };
+    }
+
+    private static final class PooledLink {
+        private final ReentrantLock lock = new ReentrantLock();
+        private AmqpLink link;
+        private String connectionString;
+        private Instant lastUsed = Instant.now();
+        private boolean evicted;
+
+        private void closeQuietly() {
+            if (link == null) {
+                return;
+            }
+            try {
+                link.close();
+            } catch (Exception e) {
+                log.warn("Failed to close Toshiba AMQP link cleanly", e);
+            }
+            link = null;
+            connectionString = null;
+        }
+    }
+
+}
@@ -13,6 +13,7 @@ package com.nitramite.porssiohjain.utils;
 
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -21,31 +22,73 @@ import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Base64;
-
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * AES-GCM encryption of sensitive columns. Values are written as {@code v<version>:}
+ * followed by Base64 of IV and ciphertext so that the key can be rotated; values
+ * without the header predate versioning and are tried against every configured key.
+ * IVs come from one shared non-blocking DRBG, ciphers are kept per thread and recently
+ * decrypted values are cached by their ciphertext.
+ */
 @Converter
 @Component
 public class CryptoConverter implements AttributeConverter<String, String> {
 
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final int keyVersion;
     private final SecretKeySpec keySpec;
+    private final Integer previousKeyVersion;
+    private final SecretKeySpec previousKeySpec;
+    private final SecureRandom ivRandom;
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(CryptoConverter::newCipher);
+    private final Map<String, String> decryptCache;
+
+    public CryptoConverter(String key) {
+        this(key, 1, "", 0, 4096);
+    }
 
+    @Autowired
     public CryptoConverter(
-            @Value("${app.crypto.key}") String key
-    ) throws Exception {
-        byte[] keyBytes = Arrays.copyOf(key.getBytes(StandardCharsets.UTF_8), 32);
-        this.keySpec = new SecretKeySpec(keyBytes, "AES");
+            @Value("${app.crypto.key}") String key,
+            @Value("${app.crypto.key-version:1}") int keyVersion,
+            @Value("${app.crypto.previous-key:}") String previousKey,
+            @Value("${app.crypto.previous-key-version:0}") int previousKeyVersion,
+            @Value("${app.crypto.decrypt-cache-size:4096}") int decryptCacheSize
+    ) {
+        boolean hasPreviousKey = previousKey != null && !previousKey.isEmpty();
+        if (hasPreviousKey && previousKeyVersion == keyVersion) {
+            throw new IllegalArgumentException("app.crypto.previous-key-version must differ from app.crypto.key-version");
+        }
+        this.keyVersion = keyVersion;
+        this.keySpec = keySpec(key);
+        this.previousKeyVersion = hasPreviousKey ? previousKeyVersion : null;
+        this.previousKeySpec = hasPreviousKey ? keySpec(previousKey) : null;
+        try {
+            this.ivRandom = SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("DRBG is unavailable", e);
+        }
+        this.decryptCache = decryptCacheSize > 0 ? lruCache(decryptCacheSize) : null;
     }
 
     @Override
     public String convertToDatabaseColumn(String attribute) {
         if (attribute == null) return null;
         try {
-            byte[] iv = SecureRandom.getInstanceStrong().generateSeed(12);
-            GCMParameterSpec spec = new GCMParameterSpec(128, iv);
-            Cipher encryptCipher = Cipher.getInstance("AES/GCM/NoPadding");
-            encryptCipher.init(Cipher.ENCRYPT_MODE, keySpec, spec);
+            byte[] iv = new byte[IV_LENGTH];
+            ivRandom.nextBytes(iv);
+            Cipher encryptCipher = ciphers.get();
+            encryptCipher.init(Cipher.ENCRYPT_MODE, keySpec, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
 
             byte[] encrypted = encryptCipher.doFinal(attribute.getBytes(StandardCharsets.UTF_8));
 
@@ -53,7 +96,9 @@ public class CryptoConverter implements AttributeConverter<String, String> {
             buffer.put(iv);
             buffer.put(encrypted);
 
-            return Base64.getEncoder().encodeToString(buffer.array());
+            String dbData = header(keyVersion) + Base64.getEncoder().encodeToString(buffer.array());
+            cache(dbData, attribute);
+            return dbData;
 
         } catch (Exception e) {
             throw new IllegalStateException("Encryption failed", e);
@@ -63,25 +108,111 @@ public class CryptoConverter implements AttributeConverter<String, String> {
     @Override
     public String convertToEntityAttribute(String dbData) {
         if (dbData == null) return null;
+        String cached = cached(dbData);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            byte[] decoded = Base64.getDecoder().decode(dbData);
-            ByteBuffer buffer = ByteBuffer.wrap(decoded);
+            String plain = decrypt(dbData);
+            cache(dbData, plain);
+            return plain;
+        } catch (Exception e) {
+            throw new IllegalStateException("Decryption failed", e);
+        }
+    }
 
-            byte[] iv = new byte[12];
-            buffer.get(iv);
+    /**
+     * @return true when {@code dbData} is not yet encrypted with the current key
+     */
+    public boolean needsReEncryption(String dbData) {
+        return dbData != null && !dbData.startsWith(header(keyVersion));
+    }
 
-            byte[] encrypted = new byte[buffer.remaining()];
-            buffer.get(encrypted);
+    /**
+     * Prefix of values written with the current key, for finding rows to rotate.
+     */
+    public String currentHeader() {
+        return header(keyVersion);
+    }
 
-            GCMParameterSpec spec = new GCMParameterSpec(128, iv);
-            Cipher decryptCipher = Cipher.getInstance("AES/GCM/NoPadding");
-            decryptCipher.init(Cipher.DECRYPT_MODE, keySpec, spec);
+    private String decrypt(String dbData) throws GeneralSecurityException {
+        if (dbData.startsWith("v")) {
+            int separator = dbData.indexOf(':');
+            if (separator > 1) {
+                int version = Integer.parseInt(dbData.substring(1, separator));
+                return decrypt(dbData.substring(separator + 1), keyFor(version));
+            }
+        }
+        try {
+            return decrypt(dbData, keySpec);
+        } catch (GeneralSecurityException e) {
+            if (previousKeySpec == null) {
+                throw e;
+            }
+            return decrypt(dbData, previousKeySpec);
+        }
+    }
 
-            return new String(decryptCipher.doFinal(encrypted), StandardCharsets.UTF_8);
+    private String decrypt(String payload, SecretKeySpec key) throws GeneralSecurityException {
+        byte[] decoded = Base64.getDecoder().decode(payload);
+        Cipher decryptCipher = ciphers.get();
+        decryptCipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, decoded, 0, IV_LENGTH));
+        byte[] plain = decryptCipher.doFinal(decoded, IV_LENGTH, decoded.length - IV_LENGTH);
+        return new String(plain, StandardCharsets.UTF_8);
+    }
 
-        } catch (Exception e) {
-            throw new IllegalStateException("Decryption failed", e);
+    private SecretKeySpec keyFor(int version) {
+        if (version == keyVersion) {
+            return keySpec;
+        }
+        if (previousKeyVersion != null && version == previousKeyVersion) {
+            return previousKeySpec;
+        }
+        throw new IllegalStateException("No key configured for version " + version);
+    }
+
+    private String cached(String dbData) {
+        if (decryptCache == null) {
+            return null;
+        }
+        synchronized (decryptCache) {
+            return decryptCache.get(dbData);
         }
     }
 
+    private void cache(String dbData, String plain) {
+        if (decryptCache == null) {
+            return;
+        }
+        synchronized (decryptCache) {
+            decryptCache.put(dbData, plain);
+        }
+    }
+
+    private static String header(int version) {
+        return "v" + version + ":";
+    }
+
+    private static SecretKeySpec keySpec(String key) {
+        byte[] keyBytes = Arrays.copyOf(key.getBytes(StandardCharsets.UTF_8), 32);
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is unavailable", e);
+        }
+    }
+
+    private static Map<String, String> lruCache(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
 }
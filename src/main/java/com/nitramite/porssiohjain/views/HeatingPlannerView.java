@@ -15,20 +15,21 @@ import com.nitramite.porssiohjain.entity.HeatingPlannerRoomHeatSourceEntity;
 import com.nitramite.porssiohjain.entity.NordpoolEntity;
 import com.nitramite.porssiohjain.entity.SiteEntity;
 import com.nitramite.porssiohjain.entity.SiteWeatherEntity;
-import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementEntity;
+import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementLatestEntity;
 import com.nitramite.porssiohjain.entity.enums.ContractType;
 import com.nitramite.porssiohjain.entity.enums.DeviceType;
 import com.nitramite.porssiohjain.entity.enums.HeatingPlannerHeatSourceType;
 import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
 import com.nitramite.porssiohjain.entity.repository.DeviceRepository;
 import com.nitramite.porssiohjain.entity.repository.ElectricityContractRepository;
-import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
 import com.nitramite.porssiohjain.entity.repository.SiteRepository;
 import com.nitramite.porssiohjain.entity.repository.SiteWeatherRepository;
+import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementLatestRepository;
 import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementRepository;
 import com.nitramite.porssiohjain.services.AuthService;
 import com.nitramite.porssiohjain.services.I18nService;
 import com.nitramite.porssiohjain.services.PushNotificationService;
+import com.nitramite.porssiohjain.services.TimeSeriesDownsampler;
 import com.nitramite.porssiohjain.services.heating.HeatingPlannerConfigurationService;
 import com.nitramite.porssiohjain.services.heating.HeatingPlannerActiveControlService;
 import com.nitramite.porssiohjain.services.heating.HeatingPlannerMeasurementService;
@@ -36,6 +37,7 @@ import com.nitramite.porssiohjain.services.heating.HeatingPlannerPlanService;
 import com.nitramite.porssiohjain.services.heating.HeatingPlannerThermalModelService;
 import com.nitramite.porssiohjain.services.heating.HeatingPlanSimulationService;
 import com.nitramite.porssiohjain.services.nordpool.NordpoolMarket;
+import com.nitramite.porssiohjain.services.nordpool.NordpoolPriceCache;
 import com.nitramite.porssiohjain.views.components.HeatingPlanChart;
 import com.nitramite.porssiohjain.views.components.SiteWeatherForecastChart;
 import com.vaadin.flow.component.button.Button;
@@ -92,16 +94,18 @@ public class HeatingPlannerView extends VerticalLayout implements BeforeEnterObs
 
     private static final ZoneId ZONE = ZoneId.of("Europe/Helsinki");
     private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+    private static final Duration MEASUREMENT_HISTORY_LOOKBACK = Duration.ofDays(32);
     private final AuthService authService;
     private final I18nService i18n;
     private final SiteWeatherRepository siteWeatherRepository;
-    private final NordpoolRepository nordpoolRepository;
+    private final NordpoolPriceCache nordpoolPriceCache;
+    private final TimeSeriesDownsampler timeSeriesDownsampler;
 
     public HeatingPlannerView(AuthService authService, I18nService i18n,
                               HeatingPlanSimulationService simulationService,
                               SiteRepository siteRepository, SiteWeatherRepository siteWeatherRepository,
                               DeviceRepository deviceRepository,
-                              NordpoolRepository nordpoolRepository,
+                              NordpoolPriceCache nordpoolPriceCache,
                               ElectricityContractRepository contractRepository,
                               HeatingPlannerConfigurationService configurationService,
                               HeatingPlannerMeasurementService measurementService,
@@ -109,11 +113,14 @@ public class HeatingPlannerView extends VerticalLayout implements BeforeEnterObs
                               HeatingPlannerActiveControlService activeControlService,
                               HeatingPlannerPlanService planService,
                               PushNotificationService pushNotificationService,
-                              ZigbeeDeviceMeasurementRepository measurementRepository) {
+                              ZigbeeDeviceMeasurementRepository measurementRepository,
+                              ZigbeeDeviceMeasurementLatestRepository latestMeasurementRepository,
+                              TimeSeriesDownsampler timeSeriesDownsampler) {
         this.authService = authService;
+        this.timeSeriesDownsampler = timeSeriesDownsampler;
         this.i18n = i18n;
         this.siteWeatherRepository = siteWeatherRepository;
-        this.nordpoolRepository = nordpoolRepository;
+        this.nordpoolPriceCache = nordpoolPriceCache;
         setSizeFull();
         setAlignItems(Alignment.CENTER);
 
@@ -273,7 +280,8 @@ public class HeatingPlannerView extends VerticalLayout implements BeforeEnterObs
         Details roomConfiguration = new Details("Rooms and heat sources", roomConfigurationContent);
         roomConfiguration.setWidthFull();
         roomConfiguration.setOpened(false);
-        Details recentMeasurements = recentMeasurementsDetails(account == null ? null : account.getId(), measurementRepository);
+        Details recentMeasurements = recentMeasurementsDetails(account == null ? null : account.getId(), measurementRepository,
+                latestMeasurementRepository);
 
         VerticalLayout planHost = new VerticalLayout();
         planHost.setPadding(false);
@@ -651,7 +659,8 @@ public class HeatingPlannerView extends VerticalLayout implements BeforeEnterObs
         add(card);
     }
 
-    private Details recentMeasurementsDetails(Long accountId, ZigbeeDeviceMeasurementRepository measurementRepository) {
+    private Details recentMeasurementsDetails(Long accountId, ZigbeeDeviceMeasurementRepository measurementRepository,
+                                              ZigbeeDeviceMeasurementLatestRepository latestMeasurementRepository) {
         VerticalLayout content = new VerticalLayout();
         content.setPadding(false);
         content.setWidthFull();
@@ -698,8 +707,8 @@ public class HeatingPlannerView extends VerticalLayout implements BeforeEnterObs
                 return;
             }
             Instant after = Instant.now().minus(Duration.ofHours(12));
-            List<RecentMeasurementRow> rows = measurementRepository
-                    .findLatestDistinctMeasurements(accountId, after)
+            List<RecentMeasurementRow> rows = latestMeasurementRepository
+                    .findByAccountIdAndMeasuredAtGreaterThanEqualOrderByMeasuredAtDescIdDesc(accountId, after)
                     .stream()
                     .map(this::recentMeasurementRow)
                     .toList();
@@ -727,19 +736,27 @@ public class HeatingPlannerView extends VerticalLayout implements BeforeEnterObs
         return value == null ? fallback : value;
     }
 
-    private RecentMeasurementRow recentMeasurementRow(ZigbeeDeviceMeasurementEntity measurement) {
-        DeviceEntity device = measurement.getDevice();
+    private RecentMeasurementRow recentMeasurementRow(ZigbeeDeviceMeasurementLatestEntity measurement) {
+        return recentMeasurementRow(measurement.getDevice(), measurement.getMeasuredAt(), measurement.getReceivedAt(),
+                measurement.getZigbeeIeee(), measurement.getProfile(), measurement.getMeasurementType(),
+                measurement.getMeasurementKey(), measurement.getValue());
+    }
+
+    private RecentMeasurementRow recentMeasurementRow(DeviceEntity device, Instant measuredAt, Instant receivedAt,
+                                                      String zigbeeIeee, String profile,
+                                                      ZigbeeMeasurementType measurementType, String measurementKey,
+                                                      BigDecimal value) {
         String deviceName = device == null ? "-" : deviceLabel(device);
         return new RecentMeasurementRow(
-                formatInstant(measurement.getMeasuredAt()),
-                formatInstant(measurement.getReceivedAt()),
+                formatInstant(measuredAt),
+                formatInstant(receivedAt),
                 deviceName,
-                measurement.getZigbeeIeee(),
-                measurement.getProfile(),
-                measurement.getMeasurementType() + " · " + measurement.getMeasurementKey(),
-                measurement.getValue().stripTrailingZeros().toPlainString(),
-                measurement.getMeasurementType(),
-                measurement.getMeasurementKey()
+                zigbeeIeee,
+                profile,
+                measurementType + " · " + measurementKey,
+                value.stripTrailingZeros().toPlainString(),
+                measurementType,
+                measurementKey
         );
     }
 
@@ -748,11 +765,23 @@ public class HeatingPlannerView extends VerticalLayout implements BeforeEnterObs
         if (accountId == null || selected == null) {
             return;
         }
-        List<RecentMeasurementRow> history = measurementRepository
-                .findTop500ByAccountIdAndZigbeeIeeeAndMeasurementTypeAndMeasurementKeyOrderByMeasuredAtDescIdDesc(
-                        accountId, selected.zigbeeIeee(), selected.measurementType(), selected.measurementKey())
-                .stream()
-                .map(this::recentMeasurementRow)
+        long bucketSeconds = Math.max(1, MEASUREMENT_HISTORY_LOOKBACK.toSeconds()
+                / Math.max(1, timeSeriesDownsampler.getDefaultMaxPoints() / 2));
+        List<ZigbeeDeviceMeasurementRepository.HistoryPoint> points = measurementRepository.findHistoryExtremes(
+                accountId, selected.zigbeeIeee(), selected.measurementType().name(), selected.measurementKey(),
+                Instant.now().minus(MEASUREMENT_HISTORY_LOOKBACK), bucketSeconds);
+        long totalCount = points.isEmpty() ? 0 : points.getFirst().getTotalCount();
+        List<RecentMeasurementRow> history = points.stream()
+                .map(point -> new RecentMeasurementRow(
+                        formatInstant(Instant.ofEpochMilli(point.getMeasuredAtMillis())),
+                        formatInstant(Instant.ofEpochMilli(point.getReceivedAtMillis())),
+                        selected.device(),
+                        selected.zigbeeIeee(),
+                        selected.profile(),
+                        selected.type(),
+                        point.getValue().stripTrailingZeros().toPlainString(),
+                        selected.measurementType(),
+                        selected.measurementKey()))
                 .toList();
         Grid<RecentMeasurementRow> historyGrid = new Grid<>(RecentMeasurementRow.class, false);
         historyGrid.addColumn(RecentMeasurementRow::measuredAt).setHeader("Measured").setFlexGrow(1);
@@ -765,7 +794,12 @@ public class HeatingPlannerView extends VerticalLayout implements BeforeEnterObs
         Dialog dialog = new Dialog();
         dialog.setHeaderTitle(selected.zigbeeIeee() + " · " + selected.type());
         dialog.setWidth("min(900px, 95vw)");
-        dialog.add(new Paragraph("Newest " + history.size() + " history values (limited to 500)."), historyGrid);
+        dialog.add(new Paragraph(history.size() < totalCount
+                ? history.size() + " of " + totalCount + " history values from the last "
+                + MEASUREMENT_HISTORY_LOOKBACK.toDays() + " days, lowest and highest value per "
+                + Duration.ofSeconds(bucketSeconds).toMinutes() + " minutes."
+                : history.size() + " history values from the last " + MEASUREMENT_HISTORY_LOOKBACK.toDays() + " days."),
+                historyGrid);
         dialog.getFooter().add(new Button("Close", event -> dialog.close()));
         dialog.open();
     }
@@ -1534,7 +1568,7 @@ public class HeatingPlannerView extends VerticalLayout implements BeforeEnterObs
             return fallbackMarketSeries(start, forecast, "fallback prices because account is unavailable");
         }
         String marketIndex = NordpoolMarket.normalize(account.getMarketIndexName());
-        List<NordpoolEntity> prices = nordpoolRepository.findPricesBetween(marketIndex, start.toInstant(), end.toInstant());
+        List<NordpoolEntity> prices = nordpoolPriceCache.findPricesBetween(marketIndex, start.toInstant(), end.toInstant());
         if (prices.isEmpty()) {
             return fallbackMarketSeries(start, forecast, "fallback prices because Nordpool rows are missing for " + marketIndex);
         }
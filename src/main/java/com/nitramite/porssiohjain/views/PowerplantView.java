@@ -20,6 +20,7 @@ import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
 import com.nitramite.porssiohjain.services.AuthService;
 import com.nitramite.porssiohjain.services.DeviceService;
 import com.nitramite.porssiohjain.services.I18nService;
+import com.nitramite.porssiohjain.services.PowerplantRuleTrigger;
 import com.nitramite.porssiohjain.services.PowerplantService;
 import com.nitramite.porssiohjain.services.models.DeviceResponse;
 import com.nitramite.porssiohjain.services.models.PowerplantElementResponse;
@@ -90,6 +91,7 @@ public class PowerplantView extends VerticalLayout implements BeforeEnterObserve
     private final AuthService authService;
     private final DeviceService deviceService;
     private final PowerplantService powerplantService;
+    private final PowerplantRuleTrigger powerplantRuleTrigger;
     protected final I18nService i18n;
 
     private final Div board = new Div();
@@ -112,11 +114,13 @@ public class PowerplantView extends VerticalLayout implements BeforeEnterObserve
             AuthService authService,
             DeviceService deviceService,
             PowerplantService powerplantService,
+            PowerplantRuleTrigger powerplantRuleTrigger,
             I18nService i18n
     ) {
         this.authService = authService;
         this.deviceService = deviceService;
         this.powerplantService = powerplantService;
+        this.powerplantRuleTrigger = powerplantRuleTrigger;
         this.i18n = i18n;
 
         Locale storedLocale = VaadinSession.getCurrent().getAttribute(Locale.class);
@@ -190,7 +194,7 @@ public class PowerplantView extends VerticalLayout implements BeforeEnterObserve
         addRule.addThemeVariants(ButtonVariant.LUMO_CONTRAST);
 
         Button evaluateRules = new Button(t("powerplant.button.evaluateRules"), VaadinIcon.PLAY.create(), event -> {
-            int sent = powerplantService.evaluateEnabledRules();
+            int sent = powerplantRuleTrigger.evaluateAll();
             Notification.show(t("powerplant.notification.rulesEvaluated", sent))
                     .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
             reloadData();
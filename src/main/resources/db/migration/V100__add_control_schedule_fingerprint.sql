@@ -0,0 +1,2 @@
+ALTER TABLE control
+    ADD COLUMN schedule_fingerprint VARCHAR(64);
@@ -0,0 +1,4 @@
+ALTER TABLE control
+    ADD COLUMN min_run_minutes INTEGER,
+    ADD COLUMN max_off_gap_minutes INTEGER,
+    ADD COLUMN rolling_daily_window BOOLEAN NOT NULL DEFAULT FALSE;
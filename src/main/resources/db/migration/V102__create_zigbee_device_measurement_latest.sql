@@ -0,0 +1,35 @@
+CREATE TABLE zigbee_device_measurement_latest
+(
+    id               BIGSERIAL PRIMARY KEY,
+    account_id       BIGINT                   NOT NULL REFERENCES account (id) ON DELETE CASCADE,
+    device_id        BIGINT                   NOT NULL REFERENCES device (id) ON DELETE CASCADE,
+    gateway_id       UUID                     NOT NULL,
+    zigbee_ieee      VARCHAR(16)              NOT NULL,
+    profile          VARCHAR(64)              NOT NULL,
+    measurement_type VARCHAR(32)              NOT NULL,
+    measurement_key  VARCHAR(64)              NOT NULL,
+    value            NUMERIC(10, 3)           NOT NULL,
+    measured_at      TIMESTAMP WITH TIME ZONE NOT NULL,
+    received_at      TIMESTAMP WITH TIME ZONE NOT NULL,
+    CONSTRAINT uq_zigbee_measurement_latest_series UNIQUE (device_id, measurement_type, measurement_key)
+);
+
+CREATE INDEX idx_zigbee_measurement_latest_account_time
+    ON zigbee_device_measurement_latest (account_id, measured_at DESC);
+
+INSERT INTO zigbee_device_measurement_latest
+(account_id, device_id, gateway_id, zigbee_ieee, profile, measurement_type, measurement_key, value, measured_at,
+ received_at)
+SELECT DISTINCT ON (device_id, measurement_type, measurement_key)
+       account_id,
+       device_id,
+       gateway_id,
+       zigbee_ieee,
+       profile,
+       measurement_type,
+       measurement_key,
+       value,
+       measured_at,
+       received_at
+FROM zigbee_device_measurement
+ORDER BY device_id, measurement_type, measurement_key, measured_at DESC, id DESC;
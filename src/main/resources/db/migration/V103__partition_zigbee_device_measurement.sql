@@ -0,0 +1,81 @@
+-- Daily range partitions by measured_at (UTC days). Retention detaches and drops whole
+-- partitions instead of deleting rows, see ZigbeeMeasurementPartitionService.
+ALTER TABLE zigbee_device_measurement RENAME TO zigbee_device_measurement_legacy;
+ALTER INDEX idx_zigbee_measurement_device_type_time RENAME TO idx_zigbee_measurement_legacy_device_type_time;
+ALTER INDEX idx_zigbee_measurement_account_time RENAME TO idx_zigbee_measurement_legacy_account_time;
+ALTER INDEX idx_zigbee_measurement_gateway_ieee_time RENAME TO idx_zigbee_measurement_legacy_gateway_ieee_time;
+
+CREATE TABLE zigbee_device_measurement
+(
+    id               BIGINT                   NOT NULL DEFAULT nextval('zigbee_device_measurement_id_seq'),
+    account_id       BIGINT                   NOT NULL REFERENCES account (id) ON DELETE CASCADE,
+    device_id        BIGINT                   NOT NULL REFERENCES device (id) ON DELETE CASCADE,
+    gateway_id       UUID                     NOT NULL,
+    zigbee_ieee      VARCHAR(16)              NOT NULL,
+    profile          VARCHAR(64)              NOT NULL,
+    measurement_type VARCHAR(32)              NOT NULL,
+    measurement_key  VARCHAR(64)              NOT NULL,
+    value            NUMERIC(10, 3)           NOT NULL,
+    measured_at      TIMESTAMP WITH TIME ZONE NOT NULL,
+    received_at      TIMESTAMP WITH TIME ZONE NOT NULL,
+    CONSTRAINT pk_zigbee_device_measurement PRIMARY KEY (id, measured_at),
+    CONSTRAINT chk_zigbee_measurement_type CHECK (
+        measurement_type IN ('TEMPERATURE', 'HUMIDITY', 'BATTERY_PERCENTAGE', 'THERMOSTAT_SETPOINT')
+        )
+) PARTITION BY RANGE (measured_at);
+
+ALTER SEQUENCE zigbee_device_measurement_id_seq OWNED BY zigbee_device_measurement.id;
+
+CREATE INDEX idx_zigbee_measurement_device_type_time
+    ON zigbee_device_measurement (device_id, measurement_type, measured_at DESC);
+CREATE INDEX idx_zigbee_measurement_account_time
+    ON zigbee_device_measurement (account_id, measured_at DESC);
+CREATE INDEX idx_zigbee_measurement_gateway_ieee_time
+    ON zigbee_device_measurement (gateway_id, zigbee_ieee, measured_at DESC);
+
+-- Catches rows outside the prepared days, e.g. gateways with a skewed clock. The
+-- maintenance job moves them into their day partition when it is created.
+CREATE TABLE zigbee_device_measurement_default PARTITION OF zigbee_device_measurement DEFAULT;
+
+DO
+$$
+DECLARE
+    today     DATE := (now() AT TIME ZONE 'UTC')::date;
+    first_day DATE;
+    day       DATE;
+BEGIN
+    SELECT GREATEST(COALESCE(MIN((measured_at AT TIME ZONE 'UTC')::date), today), today - 62)
+    INTO first_day
+    FROM zigbee_device_measurement_legacy;
+
+    day := first_day;
+    WHILE day <= today + 7
+        LOOP
+            EXECUTE format(
+                    'CREATE TABLE %I PARTITION OF zigbee_device_measurement FOR VALUES FROM (%L) TO (%L)',
+                    'zigbee_device_measurement_p' || to_char(day, 'YYYYMMDD'),
+                    day::timestamp AT TIME ZONE 'UTC',
+                    (day + 1)::timestamp AT TIME ZONE 'UTC'
+                    );
+            day := day + 1;
+        END LOOP;
+END
+$$;
+
+INSERT INTO zigbee_device_measurement
+(id, account_id, device_id, gateway_id, zigbee_ieee, profile, measurement_type, measurement_key, value, measured_at,
+ received_at)
+SELECT id,
+       account_id,
+       device_id,
+       gateway_id,
+       zigbee_ieee,
+       profile,
+       measurement_type,
+       measurement_key,
+       value,
+       measured_at,
+       received_at
+FROM zigbee_device_measurement_legacy;
+
+DROP TABLE zigbee_device_measurement_legacy;
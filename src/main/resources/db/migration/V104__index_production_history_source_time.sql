@@ -0,0 +1,4 @@
+CREATE INDEX IF NOT EXISTS idx_ph_production_source_created_at
+    ON production_history (production_source_id, created_at);
+
+DROP INDEX IF EXISTS idx_ph_production_source;
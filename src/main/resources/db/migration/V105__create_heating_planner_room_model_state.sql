@@ -0,0 +1,20 @@
+CREATE TABLE heating_planner_room_model_state
+(
+    id                   BIGSERIAL PRIMARY KEY,
+    room_id              BIGINT                   NOT NULL REFERENCES heating_planner_room (id) ON DELETE CASCADE,
+    sensor_device_id     BIGINT                   NOT NULL,
+    measurement_key      VARCHAR(128)             NOT NULL,
+    outdoor_coefficient  DOUBLE PRECISION         NOT NULL DEFAULT 0,
+    wind_coefficient     DOUBLE PRECISION         NOT NULL DEFAULT 0,
+    covariance_outdoor   DOUBLE PRECISION         NOT NULL,
+    covariance_cross     DOUBLE PRECISION         NOT NULL DEFAULT 0,
+    covariance_wind      DOUBLE PRECISION         NOT NULL,
+    weight_sum           DOUBLE PRECISION         NOT NULL DEFAULT 0,
+    mean_squared_error   DOUBLE PRECISION         NOT NULL DEFAULT 0,
+    sample_count         INTEGER                  NOT NULL DEFAULT 0,
+    last_measured_at     TIMESTAMP WITH TIME ZONE,
+    last_value           NUMERIC(10, 3),
+    updated_at           TIMESTAMP WITH TIME ZONE NOT NULL,
+    CONSTRAINT uk_heating_planner_room_model_state_room UNIQUE (room_id),
+    CONSTRAINT chk_heating_planner_room_model_state_sample_count CHECK (sample_count >= 0)
+);
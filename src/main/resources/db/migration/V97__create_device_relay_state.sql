@@ -0,0 +1,10 @@
+CREATE TABLE device_relay_state
+(
+    id             BIGSERIAL PRIMARY KEY,
+    device_id      BIGINT    NOT NULL,
+    device_channel INTEGER   NOT NULL,
+    relay_on       BOOLEAN   NOT NULL,
+    published_at   TIMESTAMP NOT NULL,
+    CONSTRAINT fk_device_relay_state_device FOREIGN KEY (device_id) REFERENCES device (id) ON DELETE CASCADE,
+    CONSTRAINT uq_device_relay_state_device_channel UNIQUE (device_id, device_channel)
+);
@@ -0,0 +1,9 @@
+DELETE FROM price_prediction p
+    USING price_prediction d
+WHERE p.timestamp = d.timestamp
+  AND p.id > d.id;
+
+DROP INDEX IF EXISTS idx_price_prediction_timestamp;
+
+ALTER TABLE price_prediction
+    ADD CONSTRAINT uk_price_prediction_timestamp UNIQUE (timestamp);
@@ -0,0 +1,47 @@
+CREATE TABLE power_limit_history_rollup
+(
+    id                 BIGSERIAL PRIMARY KEY,
+    power_limit_id     BIGINT         NOT NULL,
+    resolution_minutes INTEGER        NOT NULL,
+    bucket_start       TIMESTAMPTZ    NOT NULL,
+    kilowatts          NUMERIC(14, 2) NOT NULL,
+    updated_at         TIMESTAMPTZ    NOT NULL,
+    CONSTRAINT fk_plhr_power_limit FOREIGN KEY (power_limit_id) REFERENCES power_limit (id) ON DELETE CASCADE,
+    CONSTRAINT uq_plhr_power_limit_bucket UNIQUE (power_limit_id, resolution_minutes, bucket_start)
+);
+
+CREATE INDEX idx_plhr_bucket_start
+    ON power_limit_history_rollup (bucket_start);
+
+-- Buckets are aligned to the power limit's local time, as Utils.toInterval does.
+INSERT INTO power_limit_history_rollup (power_limit_id, resolution_minutes, bucket_start, kilowatts, updated_at)
+SELECT h.power_limit_id,
+       15,
+       (date_trunc('hour', h.created_at AT TIME ZONE pl.timezone)
+           + floor(extract(MINUTE FROM h.created_at AT TIME ZONE pl.timezone) / 15) * INTERVAL '15 minutes')
+           AT TIME ZONE pl.timezone,
+       SUM(h.kilowatts),
+       now()
+FROM power_limit_history h
+         JOIN power_limit pl ON pl.id = h.power_limit_id
+GROUP BY 1, 3;
+
+INSERT INTO power_limit_history_rollup (power_limit_id, resolution_minutes, bucket_start, kilowatts, updated_at)
+SELECT h.power_limit_id,
+       60,
+       date_trunc('hour', h.created_at AT TIME ZONE pl.timezone) AT TIME ZONE pl.timezone,
+       SUM(h.kilowatts),
+       now()
+FROM power_limit_history h
+         JOIN power_limit pl ON pl.id = h.power_limit_id
+GROUP BY 1, 3;
+
+INSERT INTO power_limit_history_rollup (power_limit_id, resolution_minutes, bucket_start, kilowatts, updated_at)
+SELECT h.power_limit_id,
+       1440,
+       date_trunc('day', h.created_at AT TIME ZONE pl.timezone) AT TIME ZONE pl.timezone,
+       SUM(h.kilowatts),
+       now()
+FROM power_limit_history h
+         JOIN power_limit pl ON pl.id = h.power_limit_id
+GROUP BY 1, 3;
@@ -19,6 +19,8 @@ import com.nitramite.porssiohjain.entity.DeviceEntity;
 import com.nitramite.porssiohjain.entity.AccountEntity;
 import com.nitramite.porssiohjain.entity.LoadSheddingLinkEntity;
 import com.nitramite.porssiohjain.entity.LoadSheddingNodeEntity;
+import com.nitramite.porssiohjain.entity.PowerLimitDeviceEntity;
+import com.nitramite.porssiohjain.entity.PowerLimitEntity;
 import com.nitramite.porssiohjain.entity.SiteEntity;
 import com.nitramite.porssiohjain.entity.SiteWeatherEntity;
 import com.nitramite.porssiohjain.entity.WeatherControlDeviceEntity;
@@ -37,6 +39,7 @@ import com.nitramite.porssiohjain.entity.repository.ControlHeatPumpRepository;
 import com.nitramite.porssiohjain.entity.repository.ControlRepository;
 import com.nitramite.porssiohjain.entity.repository.ControlThermostatRepository;
 import com.nitramite.porssiohjain.entity.repository.ControlTableRepository;
+import com.nitramite.porssiohjain.entity.repository.DeviceRelayStateRepository;
 import com.nitramite.porssiohjain.entity.repository.DeviceRepository;
 import com.nitramite.porssiohjain.entity.repository.ElectricityContractRepository;
 import com.nitramite.porssiohjain.entity.repository.LoadSheddingLinkRepository;
@@ -50,13 +53,17 @@ import com.nitramite.porssiohjain.entity.repository.WeatherControlDeviceReposito
 import com.nitramite.porssiohjain.mqtt.MqttService;
 import com.nitramite.porssiohjain.services.AccountLimitService;
 import com.nitramite.porssiohjain.services.ControlService;
+import com.nitramite.porssiohjain.services.DeviceHeartbeatRegistry;
 import com.nitramite.porssiohjain.services.DeviceOfflineNotificationService;
+import com.nitramite.porssiohjain.services.DevicePollStateCache;
 import com.nitramite.porssiohjain.services.PowerLimitService;
 import com.nitramite.porssiohjain.services.PushNotificationService;
 import com.nitramite.porssiohjain.services.PushNotificationTokenService;
 import com.nitramite.porssiohjain.services.ControlPriceService;
 import com.nitramite.porssiohjain.services.ThermostatCurveService;
 import com.nitramite.porssiohjain.services.DemoAccountGuard;
+import com.nitramite.porssiohjain.services.RelayStateService;
+import com.nitramite.porssiohjain.services.models.DevicePollResponse;
 import com.nitramite.porssiohjain.services.models.DeviceThermostatDebugSnapshotResponse;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
@@ -67,6 +74,7 @@ import org.mockito.InOrder;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
@@ -75,11 +83,13 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -161,10 +171,19 @@ class ControlServiceTest {
     @Mock
     private DemoAccountGuard demoAccountGuard;
 
+    @Mock
+    private DeviceRelayStateRepository deviceRelayStateRepository;
+
+    @Mock
+    private DeviceHeartbeatRegistry deviceHeartbeatRegistry;
+
+    private RelayStateService relayStateService;
+
     private ControlService controlService;
 
     @BeforeEach
     void setUp() {
+        relayStateService = new RelayStateService(deviceRelayStateRepository, Duration.ofMinutes(15));
         controlService = new ControlService(
                 controlRepository,
                 controlDeviceRepository,
@@ -190,7 +209,10 @@ class ControlServiceTest {
                 deviceOfflineNotificationService,
                 thermostatCurveService,
                 controlPriceService,
-                demoAccountGuard
+                demoAccountGuard,
+                relayStateService,
+                deviceHeartbeatRegistry,
+                new DevicePollStateCache(Duration.ofMinutes(15), Duration.ofSeconds(30))
         );
         lenient().when(loadSheddingNodeRepository.findByAccountIdOrderByIdAsc(any())).thenReturn(List.of());
         lenient().when(loadSheddingLinkRepository.findByAccountIdOrderByIdAsc(any())).thenReturn(List.of());
@@ -345,28 +367,242 @@ class ControlServiceTest {
                 .targetAction(ControlAction.TURN_OFF)
                 .build();
 
-        when(deviceRepository.findByMqttOnlineTrue()).thenReturn(List.of(sourceDevice, targetDevice));
-        when(deviceRepository.findByUuid(sourceDeviceUuid)).thenReturn(Optional.of(sourceDevice));
-        when(deviceRepository.findByUuid(targetDeviceUuid)).thenReturn(Optional.of(targetDevice));
-        when(deviceRepository.save(any(DeviceEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(powerLimitDeviceRepository.findByDevice(sourceDevice)).thenReturn(List.of());
-        when(powerLimitDeviceRepository.findByDevice(targetDevice)).thenReturn(List.of());
-        when(productionSourceDeviceRepository.findByDevice(sourceDevice)).thenReturn(List.of());
-        when(productionSourceDeviceRepository.findByDevice(targetDevice)).thenReturn(List.of());
-        when(weatherControlDeviceRepository.findByDevice(sourceDevice)).thenReturn(List.of());
-        when(weatherControlDeviceRepository.findByDevice(targetDevice)).thenReturn(List.of());
-        when(controlDeviceRepository.findByDevice(sourceDevice)).thenReturn(List.of(sourceControlDevice));
-        when(controlDeviceRepository.findByDevice(targetDevice)).thenReturn(List.of(targetControlDevice));
-        when(loadSheddingNodeRepository.findByAccountIdOrderByIdAsc(account.getId())).thenReturn(List.of(sourceNode, targetNode));
-        when(loadSheddingLinkRepository.findByAccountIdOrderByIdAsc(account.getId())).thenReturn(List.of(link));
+        when(deviceRepository.findWithAccountByMqttOnlineTrue()).thenReturn(List.of(sourceDevice, targetDevice));
+        when(controlDeviceRepository.findWithControlByDeviceIdIn(any()))
+                .thenReturn(List.of(sourceControlDevice, targetControlDevice));
+        when(loadSheddingNodeRepository.findWithDeviceByAccountIdInOrderByIdAsc(any())).thenReturn(List.of(sourceNode, targetNode));
+        when(loadSheddingLinkRepository.findByAccountIdInOrderByIdAsc(any())).thenReturn(List.of(link));
 
         controlService.mqttDeviceControls();
 
+        verify(deviceRepository).markApiHeartbeat(eq(List.of(sourceDevice.getId(), targetDevice.getId())), any(Instant.class));
+        verify(deviceRepository, never()).save(any(DeviceEntity.class));
         InOrder inOrder = inOrder(mqttService);
         inOrder.verify(mqttService).switchControl(targetDeviceUuid.toString(), 2, false, DevicePlatform.GENERIC_MQTT);
         inOrder.verify(mqttService).switchControl(sourceDeviceUuid.toString(), 1, true, DevicePlatform.GENERIC_MQTT);
     }
 
+    @Test
+    void mqttControlsPublishOnlyChangedRelayStatesUntilResyncIsRequested() {
+        AccountEntity account = new AccountEntity();
+        account.setId(99L);
+        DeviceEntity device = standardDevice(1L, account);
+
+        ControlEntity control = new ControlEntity();
+        control.setId(200L);
+        control.setMode(ControlMode.MANUAL);
+        control.setManualOn(true);
+        control.setTimezone("Europe/Helsinki");
+
+        when(deviceRepository.findWithAccountByMqttOnlineTrue()).thenReturn(List.of(device));
+        when(controlDeviceRepository.findWithControlByDeviceIdIn(any()))
+                .thenReturn(List.of(controlDevice(300L, device, 1, control)));
+
+        controlService.mqttDeviceControls();
+        controlService.mqttDeviceControls();
+
+        verify(mqttService, times(1)).switchControl(device.getUuid().toString(), 1, true, DevicePlatform.GENERIC_MQTT);
+        assertEquals(1, relayStateService.getStats().getSentCommands());
+        assertEquals(1, relayStateService.getStats().getSuppressedCommands());
+
+        control.setManualOn(false);
+        controlService.mqttDeviceControls();
+        verify(mqttService).switchControl(device.getUuid().toString(), 1, false, DevicePlatform.GENERIC_MQTT);
+
+        relayStateService.requestResync(device.getUuid());
+        controlService.mqttDeviceControls();
+        verify(mqttService, times(2)).switchControl(device.getUuid().toString(), 1, false, DevicePlatform.GENERIC_MQTT);
+        assertEquals(3, relayStateService.getStats().getSentCommands());
+    }
+
+    @Test
+    void batchEvaluationMatchesPerDeviceEvaluation() {
+        AccountEntity account = new AccountEntity();
+        account.setId(99L);
+
+        DeviceEntity firstDevice = standardDevice(1L, account);
+        DeviceEntity secondDevice = standardDevice(2L, account);
+        DeviceEntity disabledDevice = standardDevice(3L, account);
+        disabledDevice.setEnabled(false);
+
+        ControlEntity manualControl = new ControlEntity();
+        manualControl.setId(200L);
+        manualControl.setAccount(account);
+        manualControl.setMode(ControlMode.MANUAL);
+        manualControl.setManualOn(true);
+        manualControl.setTimezone("Europe/Helsinki");
+
+        ControlEntity scheduledControl = new ControlEntity();
+        scheduledControl.setId(201L);
+        scheduledControl.setAccount(account);
+        scheduledControl.setMode(ControlMode.BELOW_MAX_PRICE);
+        scheduledControl.setTimezone("Europe/Helsinki");
+
+        ControlDeviceEntity firstManual = controlDevice(300L, firstDevice, 1, manualControl);
+        ControlDeviceEntity firstScheduled = controlDevice(301L, firstDevice, 2, scheduledControl);
+        ControlDeviceEntity firstLimited = controlDevice(302L, firstDevice, 3, manualControl);
+        ControlDeviceEntity secondManual = controlDevice(303L, secondDevice, 2, manualControl);
+
+        Instant now = Instant.now();
+        ControlTableEntity activeRow = ControlTableEntity.builder()
+                .id(400L)
+                .control(scheduledControl)
+                .startTime(now.minusSeconds(600))
+                .endTime(now.plusSeconds(600))
+                .priceSnt(BigDecimal.ONE)
+                .status(Status.FINAL)
+                .build();
+
+        PowerLimitEntity powerLimit = PowerLimitEntity.builder()
+                .id(500L)
+                .account(account)
+                .limitKw(BigDecimal.valueOf(5))
+                .enabled(true)
+                .timezone("UTC")
+                .build();
+        PowerLimitDeviceEntity powerLimitDevice = PowerLimitDeviceEntity.builder()
+                .id(501L)
+                .powerLimit(powerLimit)
+                .device(firstDevice)
+                .deviceChannel(3)
+                .build();
+
+        SiteEntity site = new SiteEntity();
+        site.setId(10L);
+        WeatherControlEntity weatherControl = new WeatherControlEntity();
+        weatherControl.setSite(site);
+        WeatherControlDeviceEntity weatherRule = WeatherControlDeviceEntity.builder()
+                .id(600L)
+                .weatherControl(weatherControl)
+                .device(secondDevice)
+                .deviceChannel(1)
+                .weatherMetric(WeatherMetricType.TEMPERATURE)
+                .comparisonType(ComparisonType.LESS_THAN)
+                .thresholdValue(BigDecimal.valueOf(5))
+                .controlAction(ControlAction.TURN_OFF)
+                .priorityRule(true)
+                .build();
+        SiteWeatherEntity siteWeather = new SiteWeatherEntity();
+        siteWeather.setSite(site);
+        siteWeather.setTemperature(BigDecimal.ZERO);
+
+        LoadSheddingNodeEntity sourceNode = LoadSheddingNodeEntity.builder()
+                .id(700L)
+                .account(account)
+                .device(firstDevice)
+                .deviceChannel(1)
+                .canvasX(0)
+                .canvasY(0)
+                .build();
+        LoadSheddingNodeEntity targetNode = LoadSheddingNodeEntity.builder()
+                .id(701L)
+                .account(account)
+                .device(secondDevice)
+                .deviceChannel(2)
+                .canvasX(0)
+                .canvasY(0)
+                .build();
+        LoadSheddingLinkEntity link = LoadSheddingLinkEntity.builder()
+                .id(800L)
+                .account(account)
+                .sourceNode(sourceNode)
+                .targetNode(targetNode)
+                .triggerState(LoadSheddingTriggerState.TURNED_ON)
+                .targetAction(ControlAction.TURN_OFF)
+                .build();
+
+        for (DeviceEntity device : List.of(firstDevice, secondDevice, disabledDevice)) {
+            when(deviceRepository.findByUuid(device.getUuid())).thenReturn(Optional.of(device));
+        }
+        when(powerLimitDeviceRepository.findByDevice(firstDevice)).thenReturn(List.of(powerLimitDevice));
+        when(powerLimitDeviceRepository.findByDeviceAndDeviceChannel(firstDevice, 3)).thenReturn(List.of(powerLimitDevice));
+        when(powerLimitService.getCurrentIntervalSum(account.getId(), powerLimit.getId()))
+                .thenReturn(Optional.of(BigDecimal.valueOf(7)));
+        when(weatherControlDeviceRepository.findByDevice(secondDevice)).thenReturn(List.of(weatherRule));
+        when(siteWeatherRepository.findFirstBySiteAndForecastTimeLessThanEqualOrderByForecastTimeDesc(any(SiteEntity.class), any()))
+                .thenReturn(Optional.of(siteWeather));
+        when(controlDeviceRepository.findByDevice(firstDevice)).thenReturn(List.of(firstManual, firstScheduled, firstLimited));
+        when(controlDeviceRepository.findByDevice(secondDevice)).thenReturn(List.of(secondManual));
+        when(controlTableRepository.findByControlIdAndStatusAndStartTimeAfterOrderByStartTimeAsc(
+                eq(scheduledControl.getId()),
+                eq(Status.FINAL),
+                any(Instant.class)
+        )).thenReturn(List.of(activeRow));
+        when(loadSheddingNodeRepository.findByAccountIdOrderByIdAsc(account.getId())).thenReturn(List.of(sourceNode, targetNode));
+        when(loadSheddingLinkRepository.findByAccountIdOrderByIdAsc(account.getId())).thenReturn(List.of(link));
+
+        when(powerLimitDeviceRepository.findWithPowerLimitByDeviceIdIn(any())).thenReturn(List.of(powerLimitDevice));
+        when(powerLimitService.getCurrentIntervalSums(any())).thenReturn(Map.of(powerLimit.getId(), BigDecimal.valueOf(7)));
+        when(weatherControlDeviceRepository.findWithSiteByDeviceIdIn(any())).thenReturn(List.of(weatherRule));
+        when(siteWeatherRepository.findLatestAtOrBeforeForSites(any(), any())).thenReturn(List.of(siteWeather));
+        when(controlDeviceRepository.findWithControlByDeviceIdIn(any()))
+                .thenReturn(List.of(firstManual, firstScheduled, firstLimited, secondManual));
+        when(controlTableRepository.findActiveAtForControls(any(), eq(Status.FINAL), any(), any())).thenReturn(List.of(activeRow));
+        when(loadSheddingNodeRepository.findWithDeviceByAccountIdInOrderByIdAsc(any())).thenReturn(List.of(sourceNode, targetNode));
+        when(loadSheddingLinkRepository.findByAccountIdInOrderByIdAsc(any())).thenReturn(List.of(link));
+
+        Map<UUID, Map<Integer, Integer>> expected = Map.of(
+                firstDevice.getUuid(), Map.of(1, 1, 2, 1, 3, 0),
+                secondDevice.getUuid(), Map.of(1, 0, 2, 0),
+                disabledDevice.getUuid(), Map.of()
+        );
+
+        Map<UUID, Map<Integer, Integer>> batch =
+                controlService.getControlsSnapshotForDevices(List.of(firstDevice, secondDevice, disabledDevice));
+
+        assertEquals(expected, batch);
+        for (DeviceEntity device : List.of(firstDevice, secondDevice, disabledDevice)) {
+            assertEquals(
+                    batch.get(device.getUuid()),
+                    controlService.getControlsSnapshotForDevice(device.getUuid().toString())
+            );
+        }
+    }
+
+    @Test
+    void matchingEtagSkipsEvaluationForUnchangedDevice() {
+        UUID deviceUuid = UUID.randomUUID();
+        AccountEntity account = new AccountEntity();
+        account.setId(99L);
+
+        DeviceEntity device = new DeviceEntity();
+        device.setId(1L);
+        device.setUuid(deviceUuid);
+        device.setEnabled(true);
+        device.setApiOnline(true);
+        device.setDeviceType(DeviceType.STANDARD);
+        device.setAccount(account);
+
+        ControlEntity control = new ControlEntity();
+        control.setId(200L);
+        control.setMode(ControlMode.MANUAL);
+        control.setManualOn(true);
+        control.setTimezone("Europe/Helsinki");
+
+        ControlDeviceEntity controlDevice = new ControlDeviceEntity();
+        controlDevice.setId(300L);
+        controlDevice.setDevice(device);
+        controlDevice.setDeviceChannel(1);
+        controlDevice.setControl(control);
+
+        when(deviceRepository.findByUuid(deviceUuid)).thenReturn(Optional.of(device));
+        when(powerLimitDeviceRepository.findByDevice(device)).thenReturn(List.of());
+        when(productionSourceDeviceRepository.findByDevice(device)).thenReturn(List.of());
+        when(weatherControlDeviceRepository.findByDevice(device)).thenReturn(List.of());
+        when(controlDeviceRepository.findByDevice(device)).thenReturn(List.of(controlDevice));
+
+        DevicePollResponse<Map<Integer, Integer>> first = controlService.getControlsForDevice(deviceUuid.toString(), null);
+        DevicePollResponse<Map<Integer, Integer>> second = controlService.getControlsForDevice(deviceUuid.toString(), first.etag());
+        DevicePollResponse<Map<Integer, Integer>> stale = controlService.getControlsForDevice(deviceUuid.toString(), "\"other\"");
+
+        assertEquals(Map.of(1, 1), first.body());
+        assertTrue(second.notModified());
+        assertEquals(first.etag(), second.etag());
+        assertEquals(Map.of(1, 1), stale.body());
+        verify(controlDeviceRepository, times(2)).findByDevice(device);
+        verify(deviceHeartbeatRegistry, times(3)).record(eq(deviceUuid), any(Instant.class));
+    }
+
     @Test
     void controlActivationPushMarksContiguousRowsAsSent() {
         UUID deviceUuid = UUID.randomUUID();
@@ -612,4 +848,24 @@ class ControlServiceTest {
         verify(pushNotificationService, never()).sendControlActivatedNotification(any(), any(), any(), any());
         verify(accountLimitService, never()).tryConsumeWeeklyPushNotification(eq(account.getId()), any(Instant.class));
     }
+
+    private static DeviceEntity standardDevice(Long id, AccountEntity account) {
+        DeviceEntity device = new DeviceEntity();
+        device.setId(id);
+        device.setUuid(UUID.randomUUID());
+        device.setEnabled(true);
+        device.setMqttOnline(true);
+        device.setDeviceType(DeviceType.STANDARD);
+        device.setAccount(account);
+        return device;
+    }
+
+    private static ControlDeviceEntity controlDevice(Long id, DeviceEntity device, int channel, ControlEntity control) {
+        ControlDeviceEntity controlDevice = new ControlDeviceEntity();
+        controlDevice.setId(id);
+        controlDevice.setDevice(device);
+        controlDevice.setDeviceChannel(channel);
+        controlDevice.setControl(control);
+        return controlDevice;
+    }
 }
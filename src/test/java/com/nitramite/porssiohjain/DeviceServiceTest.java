@@ -35,6 +35,7 @@ import com.nitramite.porssiohjain.entity.repository.WeatherControlHeatPumpReposi
 import com.nitramite.porssiohjain.services.AccountLimitService;
 import com.nitramite.porssiohjain.services.ControlService;
 import com.nitramite.porssiohjain.services.DemoAccountGuard;
+import com.nitramite.porssiohjain.services.DeviceHeartbeatRegistry;
 import com.nitramite.porssiohjain.services.DeviceOfflineNotificationService;
 import com.nitramite.porssiohjain.services.DeviceService;
 import com.nitramite.porssiohjain.services.MqttProfileService;
@@ -44,6 +45,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.time.Instant;
 import java.util.List;
@@ -99,13 +101,17 @@ class DeviceServiceTest {
     private DemoAccountGuard demoAccountGuard;
     @Mock
     private DeviceOfflineNotificationService deviceOfflineNotificationService;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
     private MqttProfileService mqttProfileService;
+    private DeviceHeartbeatRegistry deviceHeartbeatRegistry;
 
     private DeviceService deviceService;
 
     @BeforeEach
     void setUp() {
         mqttProfileService = new MqttProfileService();
+        deviceHeartbeatRegistry = new DeviceHeartbeatRegistry(jdbcTemplate);
         deviceService = new DeviceService(
                 deviceRepository,
                 accountRepository,
@@ -128,6 +134,7 @@ class DeviceServiceTest {
                 mqttProfileService,
                 demoAccountGuard,
                 deviceOfflineNotificationService,
+                deviceHeartbeatRegistry,
                 new SystemLogService()
         );
     }
@@ -235,6 +242,25 @@ class DeviceServiceTest {
         );
     }
 
+    @Test
+    void keepsStandardApiDeviceOnlineWhenRecentHeartbeatIsNotFlushedYet() {
+        DeviceEntity device = new DeviceEntity();
+        device.setId(7L);
+        device.setUuid(java.util.UUID.randomUUID());
+        device.setDeviceType(DeviceType.STANDARD);
+        device.setApiOnline(true);
+        device.setLastCommunication(Instant.now().minusSeconds(11 * 60));
+        deviceHeartbeatRegistry.record(device.getUuid(), Instant.now().minusSeconds(5));
+
+        when(deviceRepository.findWithAccountByApiOnlineTrue()).thenReturn(List.of(device));
+        when(deviceRepository.findWithAccountByMqttOnlineTrueAndLastCommunicationBefore(any()))
+                .thenReturn(List.of());
+
+        deviceService.checkOfflineDevices();
+
+        verify(deviceRepository, never()).save(device);
+    }
+
     @Test
     void keepsThermostatApiOnlineWithinTenMinutes() {
         DeviceEntity device = new DeviceEntity();
@@ -136,10 +136,11 @@ class HeatPumpControlServiceTest {
         when(siteWeatherRepository.findFirstBySiteAndForecastTimeGreaterThanEqualOrderByForecastTimeAsc(any(SiteEntity.class), any()))
                 .thenReturn(Optional.of(siteWeather));
         when(deviceAcDataRepository.findByDevice(device)).thenReturn(Optional.of(acData));
+        when(acCommandDispatchService.dispatchAll(any())).thenReturn(AcCommandDispatchService.DispatchSummary.EMPTY);
 
         heatPumpControlService.runScheduledHeatPumpControls();
 
-        verify(acCommandDispatchService).dispatchHexState(acData, "AAAA");
+        verify(acCommandDispatchService).dispatchAll(List.of(AcCommandDispatchService.AcCommandRequest.of(acData, "AAAA")));
     }
 
     @Test
@@ -175,7 +176,7 @@ class HeatPumpControlServiceTest {
 
         heatPumpControlService.runScheduledHeatPumpControls();
 
-        verify(acCommandDispatchService, never()).dispatchHexState(acData, "AAAA");
+        verify(acCommandDispatchService, never()).dispatchAll(any());
     }
 
     private DeviceEntity enabledHeatPumpDevice(Long id) {
@@ -15,9 +15,10 @@ import com.nitramite.porssiohjain.entity.AccountEntity;
 import com.nitramite.porssiohjain.entity.NordpoolEntity;
 import com.nitramite.porssiohjain.entity.PowerLimitEntity;
 import com.nitramite.porssiohjain.entity.PowerLimitHistoryEntity;
+import com.nitramite.porssiohjain.entity.PowerLimitHistoryRollupEntity;
 import com.nitramite.porssiohjain.entity.repository.AccountRepository;
-import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
 import com.nitramite.porssiohjain.entity.repository.PowerLimitHistoryRepository;
+import com.nitramite.porssiohjain.entity.repository.PowerLimitHistoryRollupRepository;
 import com.nitramite.porssiohjain.entity.repository.PowerLimitRepository;
 import com.nitramite.porssiohjain.mqtt.MqttService;
 import com.nitramite.porssiohjain.services.PowerLimitService;
@@ -25,6 +26,7 @@ import com.nitramite.porssiohjain.services.PushNotificationService;
 import com.nitramite.porssiohjain.services.PushNotificationTokenService;
 import com.nitramite.porssiohjain.services.models.DailyUsageCostResponse;
 import com.nitramite.porssiohjain.services.models.PowerLimitHistoryResponse;
+import com.nitramite.porssiohjain.services.nordpool.NordpoolPriceCache;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -64,7 +66,10 @@ public class PowerLimitServiceTest {
     private PowerLimitHistoryRepository powerLimitHistoryRepository;
 
     @MockitoBean
-    private NordpoolRepository nordpoolRepository;
+    private PowerLimitHistoryRollupRepository powerLimitHistoryRollupRepository;
+
+    @MockitoBean
+    private NordpoolPriceCache nordpoolPriceCache;
 
     @MockitoBean
     private PushNotificationService pushNotificationService;
@@ -110,7 +115,7 @@ public class PowerLimitServiceTest {
 
         List<NordpoolEntity> priceList = new ArrayList<>();
         priceList.add(getNordpoolEntity(start, end));
-        when(nordpoolRepository.findPricesBetween(anyString(), any(Instant.class), any(Instant.class))).thenReturn(priceList);
+        when(nordpoolPriceCache.findPricesBetween(anyString(), any(Instant.class), any(Instant.class))).thenReturn(priceList);
 
         List<DailyUsageCostResponse> result = powerLimitService
                 .getDailyUsageCostForMonth(accountId, powerLimitId, selectedMonth);
@@ -118,7 +123,7 @@ public class PowerLimitServiceTest {
         assertNotNull(result);
         assertEquals(1, result.size());
         assertEquals(BigDecimal.valueOf(1.5), result.getFirst().getTotalUsageKwh());
-        assertEquals(BigDecimal.valueOf(0.0002332005).stripTrailingZeros(), result.getFirst().getTotalCostEur().stripTrailingZeros()
+        assertEquals(new BigDecimal("0.000225128175"), result.getFirst().getTotalCostEur().stripTrailingZeros()
         );
     }
 
@@ -141,16 +146,15 @@ public class PowerLimitServiceTest {
         ZoneId zone = ZoneId.of(powerLimit.getTimezone());
         Instant start = ZonedDateTime.of(2026, 1, 1, 10, 0, 0, 0, zone).toInstant();
         Instant end = start.plusSeconds(3600);
-        List<PowerLimitHistoryEntity> historyEntities = new ArrayList<>();
-        historyEntities.add(getPowerLimitHistoryEntity(
-                1L, powerLimit, account, start.plusSeconds(5 * 60), BigDecimal.valueOf(1.0)
-        ));
-        historyEntities.add(getPowerLimitHistoryEntity(
-                2L, powerLimit, account, start.plusSeconds(20 * 60), BigDecimal.valueOf(0.5)
-        ));
-
-        when(powerLimitHistoryRepository.findByPowerLimitAndCreatedAtBetween(accountId, powerLimitId, start, end))
-                .thenReturn(historyEntities);
+        PowerLimitHistoryRollupEntity hourBucket = PowerLimitHistoryRollupEntity.builder()
+                .powerLimit(powerLimit)
+                .resolutionMinutes(60)
+                .bucketStart(start)
+                .kilowatts(BigDecimal.valueOf(1.5))
+                .build();
+
+        when(powerLimitHistoryRollupRepository.findBuckets(powerLimitId, 60, start, end))
+                .thenReturn(List.of(hourBucket));
 
         List<PowerLimitHistoryResponse> result = powerLimitService
                 .getPowerLimitHistoryForRange(accountId, powerLimitId, start, end, 60);
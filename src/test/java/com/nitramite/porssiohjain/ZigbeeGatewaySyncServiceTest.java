@@ -18,6 +18,8 @@ import com.nitramite.porssiohjain.entity.repository.*;
 import com.nitramite.porssiohjain.services.heating.HeatingPlannerGatewayCommandService;
 import com.nitramite.porssiohjain.services.ZigbeeGatewaySyncService;
 import com.nitramite.porssiohjain.services.ZigbeeGatewayConnectivityService;
+import com.nitramite.porssiohjain.services.ZigbeeMeasurementWriter;
+import com.nitramite.porssiohjain.services.DeviceHeartbeatRegistry;
 import com.nitramite.porssiohjain.services.DeviceOfflineNotificationService;
 import com.nitramite.porssiohjain.services.models.*;
 import org.junit.jupiter.api.*;
@@ -39,18 +41,19 @@ class ZigbeeGatewaySyncServiceTest {
     @Mock AccountRepository accounts;
     @Mock DeviceRepository devices;
     @Mock ZigbeeGatewayDeviceRepository links;
-    @Mock ZigbeeDeviceMeasurementRepository measurements;
+    @Mock ZigbeeMeasurementWriter measurementWriter;
     @Mock ZigbeeGatewayConnectivityService connectivityService;
     @Mock DeviceOfflineNotificationService deviceOfflineNotificationService;
     @Mock HeatingPlannerGatewayCommandService heatingPlannerGatewayCommandService;
+    @Mock DeviceHeartbeatRegistry deviceHeartbeatRegistry;
     ZigbeeGatewaySyncService service;
     AccountEntity account;
     UUID gateway;
 
     @BeforeEach void setUp() {
         service = new ZigbeeGatewaySyncService(
-                accounts, devices, links, measurements, connectivityService, deviceOfflineNotificationService,
-                heatingPlannerGatewayCommandService);
+                accounts, devices, links, measurementWriter, connectivityService, deviceOfflineNotificationService,
+                heatingPlannerGatewayCommandService, deviceHeartbeatRegistry);
         account = new AccountEntity(); account.setId(7L);
         gateway = UUID.randomUUID();
         when(accounts.findById(7L)).thenReturn(Optional.of(account));
@@ -59,7 +62,7 @@ class ZigbeeGatewaySyncServiceTest {
     }
 
     @Test void firstSyncRegistersAccountOwnedThermostat() {
-        when(links.findByGatewayIdAndZigbeeIeee(gateway, "8c6fb9fffe2d5cdb")).thenReturn(Optional.empty());
+        when(links.findByGatewayIdWithDevice(gateway)).thenReturn(List.of());
         when(devices.save(any())).thenAnswer(call -> { DeviceEntity d = call.getArgument(0); d.setId(11L); return d; });
         when(links.save(any())).thenAnswer(call -> call.getArgument(0));
         var response = service.sync(7L, gateway, request(null));
@@ -78,7 +81,7 @@ class ZigbeeGatewaySyncServiceTest {
     }
 
     @Test void sensorSyncRegistersTemperatureSensorAndStoresMeasurements() {
-        when(links.findByGatewayIdAndZigbeeIeee(gateway, "00158d000abc1234")).thenReturn(Optional.empty());
+        when(links.findByGatewayIdWithDevice(gateway)).thenReturn(List.of());
         when(devices.save(any())).thenAnswer(call -> { DeviceEntity d = call.getArgument(0); d.setId(12L); return d; });
         when(links.save(any())).thenAnswer(call -> call.getArgument(0));
         ZigbeeGatewaySyncRequest.DeviceReport report = new ZigbeeGatewaySyncRequest.DeviceReport();
@@ -101,15 +104,17 @@ class ZigbeeGatewaySyncServiceTest {
         DeviceEntity registered = deviceCaptor.getAllValues().getLast();
         assertEquals(DeviceType.TEMPERATURE_SENSOR, registered.getDeviceType());
         assertEquals("Bedroom sensor", registered.getDeviceName());
-        ArgumentCaptor<ZigbeeDeviceMeasurementEntity> measurementCaptor =
-                ArgumentCaptor.forClass(ZigbeeDeviceMeasurementEntity.class);
-        verify(measurements, times(2)).save(measurementCaptor.capture());
-        List<ZigbeeDeviceMeasurementEntity> saved = measurementCaptor.getAllValues();
-        assertEquals(ZigbeeMeasurementType.TEMPERATURE, saved.get(0).getMeasurementType());
-        assertEquals(new BigDecimal("21.75"), saved.get(0).getValue());
-        assertEquals(measuredAt, saved.get(0).getMeasuredAt());
-        assertEquals(ZigbeeMeasurementType.HUMIDITY, saved.get(1).getMeasurementType());
-        assertEquals(new BigDecimal("38.50"), saved.get(1).getValue());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ZigbeeMeasurementWriter.Sample>> measurementCaptor = ArgumentCaptor.forClass(List.class);
+        verify(measurementWriter).write(measurementCaptor.capture());
+        List<ZigbeeMeasurementWriter.Sample> saved = measurementCaptor.getValue();
+        assertEquals(2, saved.size());
+        assertEquals(ZigbeeMeasurementType.TEMPERATURE, saved.get(0).type());
+        assertEquals(new BigDecimal("21.75"), saved.get(0).value());
+        assertEquals(measuredAt, saved.get(0).measuredAt());
+        assertEquals(registered, saved.get(0).link().getDevice());
+        assertEquals(ZigbeeMeasurementType.HUMIDITY, saved.get(1).type());
+        assertEquals(new BigDecimal("38.50"), saved.get(1).value());
     }
 
     @Test void thermostatReportMarksExistingDeviceApiOnline() {
@@ -118,8 +123,8 @@ class ZigbeeGatewaySyncServiceTest {
                 .apiOnline(false).mqttOnline(false).build();
         ZigbeeGatewayDeviceEntity link = link(account, 0);
         link.setDevice(device);
-        when(links.findByGatewayIdAndZigbeeIeee(gateway, "8c6fb9fffe2d5cdb"))
-                .thenReturn(Optional.of(link));
+        when(links.findByGatewayIdWithDevice(gateway))
+                .thenReturn(List.of(link));
 
         service.sync(7L, gateway, request(null));
 
@@ -134,7 +139,7 @@ class ZigbeeGatewaySyncServiceTest {
         ZigbeeGatewayDeviceEntity link = link(account, 3);
         link.setDesiredTemperature(new BigDecimal("20.50")); link.setDesiredMode("HEAT");
         link.setDesiredExpiresAt(Instant.now().plusSeconds(600));
-        when(links.findByGatewayIdAndZigbeeIeee(gateway, "8c6fb9fffe2d5cdb")).thenReturn(Optional.of(link));
+        when(links.findByGatewayIdWithDevice(gateway)).thenReturn(List.of(link));
         assertEquals(3, service.sync(7L, gateway, request(null)).getDevices().getFirst().getVersion());
         service.sync(7L, gateway, request(true));
         assertEquals(3, service.sync(7L, gateway, request(true)).getDevices().getFirst().getVersion());
@@ -146,7 +151,7 @@ class ZigbeeGatewaySyncServiceTest {
         link.setDesiredMode("HEAT");
         link.setDesiredSource("HEATING_PLANNER");
         link.setDesiredExpiresAt(Instant.now().plusSeconds(600));
-        when(links.findByGatewayIdAndZigbeeIeee(gateway, "8c6fb9fffe2d5cdb")).thenReturn(Optional.of(link));
+        when(links.findByGatewayIdWithDevice(gateway)).thenReturn(List.of(link));
 
         var response = service.sync(7L, gateway, request(true));
 
@@ -160,7 +165,7 @@ class ZigbeeGatewaySyncServiceTest {
         link.setDesiredTemperature(new BigDecimal("19.00"));
         link.setDesiredMode("HEAT");
         link.setDesiredExpiresAt(Instant.now().plusSeconds(600));
-        when(links.findByGatewayIdAndZigbeeIeee(gateway, "8c6fb9fffe2d5cdb")).thenReturn(Optional.of(link));
+        when(links.findByGatewayIdWithDevice(gateway)).thenReturn(List.of(link));
         when(heatingPlannerGatewayCommandService.currentCommand(eq(link), any()))
                 .thenReturn(Optional.of(new HeatingPlannerGatewayCommandService.PlannerGatewayCommand(
                         new BigDecimal("23.00"), "HEAT", "Heating Planner active",
@@ -179,7 +184,7 @@ class ZigbeeGatewaySyncServiceTest {
         ZigbeeGatewayDeviceEntity link = link(account, 4);
         link.setDesiredTemperature(new BigDecimal("19.00")); link.setDesiredMode("HEAT");
         link.setDesiredExpiresAt(Instant.now().plusSeconds(600));
-        when(links.findByGatewayIdAndZigbeeIeee(gateway, "8c6fb9fffe2d5cdb")).thenReturn(Optional.of(link));
+        when(links.findByGatewayIdWithDevice(gateway)).thenReturn(List.of(link));
 
         ZigbeeGatewaySyncRequest request = request(true);
         request.getDevices().getFirst().setSetpoint(new BigDecimal("10.00"));
@@ -193,14 +198,14 @@ class ZigbeeGatewaySyncServiceTest {
 
     @Test void rejectsCrossAccountGatewayLink() {
         AccountEntity other = new AccountEntity(); other.setId(8L);
-        when(links.findByGatewayIdAndZigbeeIeee(gateway, "8c6fb9fffe2d5cdb"))
-                .thenReturn(Optional.of(link(other, 0)));
+        when(links.findByGatewayIdWithDevice(gateway))
+                .thenReturn(List.of(link(other, 0)));
         assertThrows(ResponseStatusException.class, () -> service.sync(7L, gateway, request(null)));
     }
 
     @Test void ignoresReportedAppliedVersionAndRejectsMismatchedGateway() {
-        when(links.findByGatewayIdAndZigbeeIeee(gateway, "8c6fb9fffe2d5cdb"))
-                .thenReturn(Optional.of(link(account, 2)));
+        when(links.findByGatewayIdWithDevice(gateway))
+                .thenReturn(List.of(link(account, 2)));
         assertDoesNotThrow(() -> service.sync(7L, gateway, request(true)));
         assertThrows(ResponseStatusException.class, () -> service.sync(7L, UUID.randomUUID(), request(null)));
     }
@@ -0,0 +1,115 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.mqtt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class MqttInboundDispatcherTest {
+
+    @Mock
+    private MqttListener mqttListener;
+
+    private final Deque<Runnable> tasks = new ArrayDeque<>();
+    private MqttInboundDispatcher dispatcher;
+    private UUID deviceUuid;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new MqttInboundDispatcher(mqttListener, tasks::add, 100, 4);
+        deviceUuid = UUID.randomUUID();
+    }
+
+    @Test
+    void handlesMessagesOffTheCallingThread() {
+        Message<String> message = message(deviceUuid + "/online", "true");
+
+        dispatcher.dispatch(message);
+
+        verifyNoInteractions(mqttListener);
+        assertEquals(1, dispatcher.getStats().getQueuedMessages());
+        runTasks();
+        verify(mqttListener).handleMessage(message);
+        assertEquals(0, dispatcher.getStats().getQueuedMessages());
+        assertEquals(1, dispatcher.getStats().getProcessedMessages());
+    }
+
+    @Test
+    void coalescesWaitingAvailabilityMessagesOfSameDevice() {
+        dispatcher.dispatch(message(deviceUuid + "/online", "true"));
+        dispatcher.dispatch(message(deviceUuid + ".connected", "offline"));
+        Message<String> latest = message(deviceUuid + "/online", "false");
+        dispatcher.dispatch(latest);
+
+        assertEquals(1, tasks.size());
+        runTasks();
+
+        verify(mqttListener).handleMessage(latest);
+        verifyNoMoreInteractions(mqttListener);
+        assertEquals(2, dispatcher.getStats().getCoalescedMessages());
+    }
+
+    @Test
+    void keepsOrderOfOtherMessagesPerDevice() {
+        String factoryTopic = "factory/bootstrap/" + deviceUuid;
+        Message<String> state = message(factoryTopic + "/state", "{}");
+        Message<String> telemetry = message(factoryTopic + "/telemetry", "{}");
+        dispatcher.dispatch(state);
+        dispatcher.dispatch(telemetry);
+
+        assertEquals(1, tasks.size());
+        runTasks();
+
+        InOrder order = inOrder(mqttListener);
+        order.verify(mqttListener).handleMessage(state);
+        order.verify(mqttListener).handleMessage(telemetry);
+    }
+
+    @Test
+    void resolvesLaneKeysFromTopics() {
+        assertEquals(deviceUuid.toString(), MqttInboundDispatcher.laneKey(deviceUuid + "/online"));
+        assertEquals(deviceUuid.toString(), MqttInboundDispatcher.laneKey(deviceUuid + ".connected"));
+        assertEquals("factory/bootstrap/abc", MqttInboundDispatcher.laneKey("factory/bootstrap/abc/state"));
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.pollFirst().run();
+        }
+    }
+
+    private static Message<String> message(String topic, String payload) {
+        return MessageBuilder.withPayload(payload)
+                .setHeader(MqttHeaders.RECEIVED_TOPIC, topic)
+                .build();
+    }
+
+}
@@ -13,8 +13,10 @@ package com.nitramite.porssiohjain.mqtt;
 
 import com.nitramite.porssiohjain.entity.DeviceEntity;
 import com.nitramite.porssiohjain.entity.repository.DeviceRepository;
+import com.nitramite.porssiohjain.services.DeviceHeartbeatRegistry;
 import com.nitramite.porssiohjain.services.DeviceOfflineNotificationService;
 import com.nitramite.porssiohjain.services.FactoryProvisioningService;
+import com.nitramite.porssiohjain.services.RelayStateService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -50,12 +52,20 @@ class MqttListenerTest {
     @Mock
     private DeviceOfflineNotificationService deviceOfflineNotificationService;
 
+    @Mock
+    private RelayStateService relayStateService;
+
+    @Mock
+    private DeviceHeartbeatRegistry deviceHeartbeatRegistry;
+
     private MqttListener listener;
     private DeviceEntity device;
 
     @BeforeEach
     void setUp() {
-        listener = new MqttListener(deviceRepository, factoryProvisioningService, deviceOfflineNotificationService);
+        listener = new MqttListener(
+                deviceRepository, factoryProvisioningService, deviceOfflineNotificationService, relayStateService,
+                deviceHeartbeatRegistry);
         device = DeviceEntity.builder()
                 .id(1L)
                 .uuid(UUID.randomUUID())
@@ -78,6 +88,7 @@ class MqttListenerTest {
         assertNotNull(savedDevice.getValue().getLastCommunication());
         verify(deviceOfflineNotificationService, never()).sendIfDeviceWentOffline(any(), anyBoolean(), anyBoolean(), any(), any());
         verify(deviceOfflineNotificationService).sendIfDeviceCameOnline(eq(device), eq(false), eq(false), eq("MQTT"), any());
+        verify(relayStateService).requestResync(device.getUuid());
     }
 
     @Test
@@ -143,6 +154,7 @@ class MqttListenerTest {
                 eq("MQTT"),
                 any()
         );
+        verify(relayStateService, never()).requestResync(any());
     }
 
     @Test
@@ -166,6 +178,21 @@ class MqttListenerTest {
         );
     }
 
+    @Test
+    void repeatedOnlineMessageOnlyRecordsHeartbeat() {
+        device.setMqttOnline(true);
+        when(deviceRepository.findWithAccountByUuid(device.getUuid())).thenReturn(Optional.of(device));
+
+        listener.handleMessage(MessageBuilder.withPayload("true")
+                .setHeader(MqttHeaders.RECEIVED_TOPIC, device.getUuid() + "/online")
+                .build());
+
+        verify(deviceHeartbeatRegistry).record(eq(device.getUuid()), any());
+        verify(deviceRepository, never()).save(any());
+        verify(deviceOfflineNotificationService, never()).sendIfDeviceCameOnline(any(), anyBoolean(), anyBoolean(), any(), any());
+        verify(relayStateService).requestResync(device.getUuid());
+    }
+
     @Test
     void ignoresUnsupportedOnlinePayload() {
         listener.handleMessage(MessageBuilder.withPayload("unknown")
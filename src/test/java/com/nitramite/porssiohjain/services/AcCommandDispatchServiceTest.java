@@ -0,0 +1,167 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.AccountEntity;
+import com.nitramite.porssiohjain.entity.DeviceAcDataEntity;
+import com.nitramite.porssiohjain.entity.DeviceEntity;
+import com.nitramite.porssiohjain.entity.enums.AcType;
+import com.nitramite.porssiohjain.entity.repository.DeviceAcDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AcCommandDispatchServiceTest {
+
+    private final Set<String> dispatched = ConcurrentHashMap.newKeySet();
+    private final Set<Thread> dispatchThreads = ConcurrentHashMap.newKeySet();
+    private final List<DeviceAcDataEntity> received = new CopyOnWriteArrayList<>();
+    private final DeviceAcDataRepository deviceAcDataRepository = mock(DeviceAcDataRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(deviceAcDataRepository.findById(anyLong())).thenAnswer(invocation -> {
+            DeviceAcDataEntity acData = new DeviceAcDataEntity();
+            acData.setId(invocation.getArgument(0));
+            return Optional.of(acData);
+        });
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void isolatesFailuresAndTimeoutsPerCommand() {
+        AcCommandDispatcher toshiba = dispatcher(AcType.TOSHIBA, hexState -> {
+            if (hexState.equals("FAIL")) {
+                throw new IllegalStateException("vendor error");
+            }
+            if (hexState.equals("SLOW")) {
+                Thread.sleep(5_000);
+            }
+        });
+        AcCommandDispatchService service = new AcCommandDispatchService(
+                List.of(toshiba), deviceAcDataRepository, transactionTemplate, 2, Duration.ofMillis(200), 1, Duration.ofSeconds(1), 100);
+
+        AcCommandDispatchService.DispatchSummary summary = service.dispatchAll(List.of(
+                AcCommandDispatchService.AcCommandRequest.of(acData(1L, 1L, AcType.TOSHIBA), "AAAA"),
+                AcCommandDispatchService.AcCommandRequest.of(acData(2L, 1L, AcType.TOSHIBA), "FAIL"),
+                AcCommandDispatchService.AcCommandRequest.of(acData(3L, 1L, AcType.TOSHIBA), "SLOW"),
+                AcCommandDispatchService.AcCommandRequest.of(acData(4L, 1L, AcType.MITSUBISHI), "BBBB")
+        ));
+
+        assertEquals(1, summary.sent());
+        assertEquals(2, summary.failed());
+        assertEquals(1, summary.skipped());
+        assertEquals(Set.of("AAAA"), dispatched);
+        assertEquals(1, service.getStats().getSentCommands());
+    }
+
+    @Test
+    void rateLimitsCommandsPerAccount() {
+        AcCommandDispatchService service = new AcCommandDispatchService(
+                List.of(dispatcher(AcType.TOSHIBA, hexState -> {
+                })), deviceAcDataRepository, transactionTemplate, 4, Duration.ofSeconds(1), 1, Duration.ofSeconds(1), 2);
+
+        AcCommandDispatchService.DispatchSummary summary = service.dispatchAll(List.of(
+                AcCommandDispatchService.AcCommandRequest.of(acData(1L, 1L, AcType.TOSHIBA), "A1"),
+                AcCommandDispatchService.AcCommandRequest.of(acData(2L, 1L, AcType.TOSHIBA), "A2"),
+                AcCommandDispatchService.AcCommandRequest.of(acData(3L, 1L, AcType.TOSHIBA), "A3"),
+                AcCommandDispatchService.AcCommandRequest.of(acData(4L, 2L, AcType.TOSHIBA), "B1")
+        ));
+
+        assertEquals(3, summary.sent());
+        assertEquals(1, summary.deferred());
+        assertEquals(0, summary.skipped());
+        assertEquals(Set.of("A1", "A2", "B1"), dispatched);
+        service.shutdown();
+    }
+
+    @Test
+    void dispatchesOnReloadedEntityOffTheCallingThread() {
+        AcCommandDispatchService service = new AcCommandDispatchService(
+                List.of(dispatcher(AcType.TOSHIBA, hexState -> {
+                })), deviceAcDataRepository, transactionTemplate, 4, Duration.ofSeconds(1), 1, Duration.ofSeconds(1), 4);
+        DeviceAcDataEntity acData = acData(1L, 1L, AcType.TOSHIBA);
+
+        AcCommandDispatchService.DispatchSummary summary = service.dispatchAll(List.of(
+                AcCommandDispatchService.AcCommandRequest.of(acData, "A1")));
+
+        assertEquals(1, summary.sent());
+        assertEquals(Set.of("A1"), dispatched);
+        assertFalse(dispatchThreads.contains(Thread.currentThread()));
+        assertNotSame(acData, received.getFirst());
+        assertEquals(acData.getId(), received.getFirst().getId());
+    }
+
+    private AcCommandDispatcher dispatcher(AcType acType, VendorCall call) {
+        return new AcCommandDispatcher() {
+            @Override
+            public boolean supports(AcType candidate) {
+                return candidate == acType;
+            }
+
+            @Override
+            public void dispatchHexState(DeviceAcDataEntity acData, String hexState) {
+                try {
+                    call.send(hexState);
+                    dispatchThreads.add(Thread.currentThread());
+                    received.add(acData);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                dispatched.add(hexState);
+            }
+        };
+    }
+
+    private static DeviceAcDataEntity acData(Long deviceId, Long accountId, AcType acType) {
+        AccountEntity account = new AccountEntity();
+        account.setId(accountId);
+        DeviceEntity device = new DeviceEntity();
+        device.setId(deviceId);
+        device.setAccount(account);
+        DeviceAcDataEntity acData = new DeviceAcDataEntity();
+        acData.setId(deviceId + 100);
+        acData.setDevice(device);
+        acData.setAcType(acType);
+        return acData;
+    }
+
+    private interface VendorCall {
+        void send(String hexState) throws InterruptedException;
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.AccountChangeListener;
+import com.nitramite.porssiohjain.services.models.AuthenticatedToken;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuthTokenCacheTest {
+
+    private static final long ACCOUNT_ID = 8181L;
+    private static final Instant NOW = Instant.parse("2026-06-09T10:00:00Z");
+
+    private final AuthTokenCache cache = new AuthTokenCache(Duration.ofSeconds(60), 2);
+
+    @Test
+    void entryLivesForTtlButNotPastTokenExpiry() {
+        AuthenticatedToken token = token(ACCOUNT_ID, NOW.plusSeconds(30));
+        cache.put("token-a", token, cache.accountChanges(), NOW);
+
+        assertEquals(Optional.of(token), cache.get("token-a", NOW.plusSeconds(29)));
+        assertFalse(cache.get("token-a", NOW.plusSeconds(30)).isPresent());
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    void accountChangeInvalidatesEntry() {
+        cache.put("token-a", token(ACCOUNT_ID, NOW.plusSeconds(3600)), cache.accountChanges(), NOW);
+
+        AccountChangeListener.changed(ACCOUNT_ID);
+
+        assertFalse(cache.get("token-a", NOW).isPresent());
+    }
+
+    @Test
+    void resultLoadedDuringAccountChangeIsNotCached() {
+        long accountChanges = cache.accountChanges();
+        AccountChangeListener.changed(ACCOUNT_ID + 1);
+
+        cache.put("token-a", token(ACCOUNT_ID, NOW.plusSeconds(3600)), accountChanges, NOW);
+
+        assertEquals(0, cache.getStats().getSize());
+    }
+
+    @Test
+    void invalidateAccountDropsOnlyItsTokens() {
+        cache.put("token-a", token(ACCOUNT_ID, NOW.plusSeconds(3600)), cache.accountChanges(), NOW);
+        cache.put("token-b", token(ACCOUNT_ID + 2, NOW.plusSeconds(3600)), cache.accountChanges(), NOW);
+
+        cache.invalidateAccount(ACCOUNT_ID);
+
+        assertFalse(cache.get("token-a", NOW).isPresent());
+        assertTrue(cache.get("token-b", NOW).isPresent());
+        assertEquals(1, cache.getStats().getInvalidations());
+    }
+
+    @Test
+    void staysWithinMaxEntries() {
+        cache.put("token-a", token(ACCOUNT_ID, NOW.plusSeconds(10)), cache.accountChanges(), NOW);
+        cache.put("token-b", token(ACCOUNT_ID + 3, NOW.plusSeconds(3600)), cache.accountChanges(), NOW);
+        cache.put("token-c", token(ACCOUNT_ID + 4, NOW.plusSeconds(3600)), cache.accountChanges(), NOW.plusSeconds(20));
+
+        assertEquals(2, cache.getStats().getSize());
+        assertEquals(1, cache.getStats().getEvictions());
+        assertFalse(cache.get("token-a", NOW.plusSeconds(20)).isPresent());
+        assertTrue(cache.get("token-c", NOW.plusSeconds(20)).isPresent());
+    }
+
+    private static AuthenticatedToken token(long accountId, Instant expiresAt) {
+        return new AuthenticatedToken(accountId, false, expiresAt);
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+
+package com.nitramite.porssiohjain.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheapestHoursOptimizerTest {
+
+    private static final long START_MINUTE = 29_000_000L;
+
+    @Test
+    void matchesLegacyDailyPlanWithoutConstraints() {
+        Random random = new Random(42);
+        CheapestHoursOptimizer optimizer = new CheapestHoursOptimizer(16);
+        for (int round = 0; round < 500; round++) {
+            int periodMinutes = random.nextBoolean() ? 15 : 60;
+            int periods = 2 * 24 * 60 / periodMinutes;
+            BigDecimal[] prices = new BigDecimal[periods];
+            for (int i = 0; i < periods; i++) {
+                prices[i] = BigDecimal.valueOf(random.nextInt(4000) - 500, random.nextInt(3));
+            }
+            BigDecimal minPrice = BigDecimal.valueOf(random.nextInt(1000) - 200, 2);
+            BigDecimal maxPrice = BigDecimal.valueOf(random.nextInt(4000), 2);
+            boolean alwaysOnBelowMin = random.nextBoolean();
+            int dailyOnMinutes = random.nextInt(24 * 60);
+
+            Set<Long> expected = legacy(prices, periodMinutes, minPrice, maxPrice, alwaysOnBelowMin, dailyOnMinutes);
+            Set<Long> actual = plan(optimizer, prices, periodMinutes, minPrice, maxPrice, alwaysOnBelowMin,
+                    dailyOnMinutes, CheapestHoursOptimizer.Constraints.NONE);
+
+            assertEquals(expected, actual, "round " + round);
+        }
+    }
+
+    @Test
+    void minRunExtendsShortRunsToCheaperNeighbour() {
+        BigDecimal[] prices = prices(9, 9, 5, 1, 7, 9, 9, 9);
+        Set<Long> on = plan(new CheapestHoursOptimizer(8), prices, 15, BigDecimal.ZERO, BigDecimal.TEN, false,
+                15, new CheapestHoursOptimizer.Constraints(45, 0, false));
+
+        assertEquals(Set.of(unit(2), unit(3), unit(4)), on);
+    }
+
+    @Test
+    void maxOffGapTurnsOnCheapestUnitInsideGap() {
+        BigDecimal[] prices = prices(1, 9, 9, 4, 6, 9, 9, 9);
+        Set<Long> on = plan(new CheapestHoursOptimizer(8), prices, 15, BigDecimal.ZERO, BigDecimal.TEN, false,
+                15, new CheapestHoursOptimizer.Constraints(0, 60, false));
+
+        assertTrue(on.containsAll(Set.of(unit(0), unit(3))));
+        assertFalse(on.contains(unit(1)));
+        assertLongestOffGapAtMost(on, 8, 60);
+    }
+
+    @Test
+    void rollingWindowKeepsDailyMinutesAcrossDayBoundary() {
+        int periods = 2 * 96;
+        BigDecimal[] prices = new BigDecimal[periods];
+        for (int i = 0; i < periods; i++) {
+            prices[i] = BigDecimal.valueOf(i < 8 || i >= periods - 8 ? 1 : 10);
+        }
+        CheapestHoursOptimizer optimizer = new CheapestHoursOptimizer(periods);
+        Set<Long> plain = plan(optimizer, prices, 15, BigDecimal.ZERO, BigDecimal.valueOf(20), false,
+                120, CheapestHoursOptimizer.Constraints.NONE);
+        Set<Long> rolling = plan(optimizer, prices, 15, BigDecimal.ZERO, BigDecimal.valueOf(20), false,
+                120, new CheapestHoursOptimizer.Constraints(0, 0, true));
+
+        assertTrue(rolling.containsAll(plain));
+        for (int first = 0; first + 96 <= periods; first++) {
+            int onUnits = 0;
+            for (int i = first; i < first + 96; i++) {
+                if (rolling.contains(unit(i))) {
+                    onUnits++;
+                }
+            }
+            assertTrue(onUnits >= 8, "window starting at unit " + first);
+        }
+    }
+
+    @Test
+    void priceKeysKeepOrderAcrossScales() {
+        long[] keys = ControlSchedulerService.priceKeys(
+                new BigDecimal[]{new BigDecimal("1.5"), new BigDecimal("1.50"), new BigDecimal("-2.125")},
+                BigDecimal.ZERO, new BigDecimal("10"));
+
+        assertEquals(keys[0], keys[1]);
+        assertTrue(keys[2] < keys[3]);
+        assertTrue(keys[0] < keys[4]);
+    }
+
+    private static Set<Long> plan(
+            CheapestHoursOptimizer optimizer, BigDecimal[] prices, int periodMinutes, BigDecimal minPrice,
+            BigDecimal maxPrice, boolean alwaysOnBelowMin, int dailyOnMinutes,
+            CheapestHoursOptimizer.Constraints constraints
+    ) {
+        long[] keys = ControlSchedulerService.priceKeys(prices, minPrice, maxPrice);
+        int unitsPerPeriod = periodMinutes / CheapestHoursOptimizer.UNIT_MINUTES;
+        optimizer.clear();
+        for (int i = 0; i < prices.length; i++) {
+            for (int unit = 0; unit < unitsPerPeriod; unit++) {
+                long start = START_MINUTE + (long) i * periodMinutes + unit * CheapestHoursOptimizer.UNIT_MINUTES;
+                optimizer.add(keys[i], day(i, periodMinutes), start);
+            }
+        }
+        boolean[] on = optimizer.optimize(keys[prices.length], keys[prices.length + 1], alwaysOnBelowMin,
+                dailyOnMinutes, constraints);
+        Set<Long> result = new HashSet<>();
+        for (int i = 0; i < optimizer.size(); i++) {
+            if (on[i]) {
+                result.add(START_MINUTE + (long) i * CheapestHoursOptimizer.UNIT_MINUTES);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The per day BigDecimal planner the optimizer replaced, expanded to on units.
+     */
+    private static Set<Long> legacy(
+            BigDecimal[] prices, int periodMinutes, BigDecimal minPrice, BigDecimal maxPrice,
+            boolean alwaysOnBelowMin, int dailyOnMinutes
+    ) {
+        Map<Integer, List<Integer>> periodsByDay = new HashMap<>();
+        for (int i = 0; i < prices.length; i++) {
+            periodsByDay.computeIfAbsent(day(i, periodMinutes), ignored -> new ArrayList<>()).add(i);
+        }
+        Set<Long> on = new HashSet<>();
+        for (List<Integer> dailyPeriods : periodsByDay.values()) {
+            int accumulated = 0;
+            List<Integer> alwaysOn = List.of();
+            if (alwaysOnBelowMin) {
+                alwaysOn = dailyPeriods.stream()
+                        .filter(i -> prices[i].compareTo(minPrice) <= 0)
+                        .sorted(Comparator.comparing(i -> prices[i]))
+                        .toList();
+                for (int i : alwaysOn) {
+                    int minutes = (periodMinutes / 15) * 15;
+                    addUnits(on, i, periodMinutes, minutes);
+                    accumulated += minutes;
+                }
+            }
+            if (accumulated >= dailyOnMinutes) {
+                continue;
+            }
+            Set<Integer> alwaysOnSet = new HashSet<>(alwaysOn);
+            List<Integer> eligible = dailyPeriods.stream()
+                    .filter(i -> !alwaysOnSet.contains(i))
+                    .filter(i -> prices[i].compareTo(maxPrice) <= 0)
+                    .sorted(Comparator.comparing(i -> prices[i]))
+                    .toList();
+            for (int i : eligible) {
+                if (accumulated >= dailyOnMinutes) {
+                    break;
+                }
+                int minutes = (Math.min(periodMinutes, dailyOnMinutes - accumulated) / 15) * 15;
+                if (minutes <= 0) {
+                    continue;
+                }
+                addUnits(on, i, periodMinutes, minutes);
+                accumulated += minutes;
+            }
+        }
+        return on;
+    }
+
+    private static void addUnits(Set<Long> on, int period, int periodMinutes, int minutes) {
+        for (int offset = 0; offset < minutes; offset += 15) {
+            on.add(START_MINUTE + (long) period * periodMinutes + offset);
+        }
+    }
+
+    private static int day(int period, int periodMinutes) {
+        return period * periodMinutes / (24 * 60);
+    }
+
+    private static long unit(int index) {
+        return START_MINUTE + (long) index * CheapestHoursOptimizer.UNIT_MINUTES;
+    }
+
+    private static BigDecimal[] prices(int... values) {
+        return Arrays.stream(values).mapToObj(BigDecimal::valueOf).toArray(BigDecimal[]::new);
+    }
+
+    private static void assertLongestOffGapAtMost(Set<Long> on, int units, int maxMinutes) {
+        int gap = 0;
+        for (int i = 0; i < units; i++) {
+            gap = on.contains(unit(i)) ? 0 : gap + CheapestHoursOptimizer.UNIT_MINUTES;
+            assertTrue(gap <= maxMinutes, "gap ending at unit " + i);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.services.models.DevicePollResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ControlLongPollServiceTest {
+
+    private static final String DEVICE_UUID = "6d2f4a1b-9c8e-4b7a-a5d3-1e0f9c8b7a6d";
+    private static final String ETAG = "\"a1\"";
+
+    @Mock
+    private ControlService controlService;
+
+    private ControlLongPollService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ControlLongPollService(
+                controlService,
+                new DevicePollStateCache(Duration.ofMinutes(15), Duration.ofSeconds(30)),
+                Duration.ofSeconds(55),
+                Duration.ofSeconds(120),
+                100,
+                4
+        );
+    }
+
+    @Test
+    void answersRightAwayWhenEtagIsStale() {
+        when(controlService.getControlsForDevice(DEVICE_UUID, "\"old\""))
+                .thenReturn(new DevicePollResponse<>(ETAG, Map.of(1, 1)));
+
+        DeferredResult<ResponseEntity<Map<Integer, Integer>>> result = service.await(DEVICE_UUID, "\"old\"", null);
+
+        ResponseEntity<?> response = (ResponseEntity<?>) result.getResult();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Map.of(1, 1), response.getBody());
+        assertEquals(0, service.getStats().getWaitingDevices());
+    }
+
+    @Test
+    void completesParkedRequestWhenControlsChange() throws InterruptedException {
+        when(controlService.getControlsForDevice(DEVICE_UUID, ETAG))
+                .thenReturn(new DevicePollResponse<>(ETAG, null))
+                .thenReturn(new DevicePollResponse<>("\"b2\"", Map.of(1, 0)));
+
+        DeferredResult<ResponseEntity<Map<Integer, Integer>>> result = service.await(DEVICE_UUID, ETAG, 30);
+        assertFalse(result.hasResult());
+        assertEquals(1, service.getStats().getWaitingDevices());
+
+        service.checkWaiters();
+        for (int i = 0; i < 100 && !result.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+
+        ResponseEntity<?> response = (ResponseEntity<?>) result.getResult();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"b2\"", response.getHeaders().getETag());
+        assertEquals(Map.of(1, 0), response.getBody());
+        assertEquals(1, service.getStats().getChangedResponses());
+    }
+
+    @Test
+    void newerWaitReleasesOlderOneWithNotModified() {
+        when(controlService.getControlsForDevice(DEVICE_UUID, ETAG)).thenReturn(new DevicePollResponse<>(ETAG, null));
+
+        DeferredResult<ResponseEntity<Map<Integer, Integer>>> first = service.await(DEVICE_UUID, ETAG, null);
+        DeferredResult<ResponseEntity<Map<Integer, Integer>>> second = service.await(DEVICE_UUID, ETAG, null);
+
+        assertTrue(first.hasResult());
+        assertEquals(HttpStatus.NOT_MODIFIED, ((ResponseEntity<?>) first.getResult()).getStatusCode());
+        assertFalse(second.hasResult());
+    }
+
+}
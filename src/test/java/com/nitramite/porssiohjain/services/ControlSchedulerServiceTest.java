@@ -0,0 +1,210 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.AccountEntity;
+import com.nitramite.porssiohjain.entity.ControlEntity;
+import com.nitramite.porssiohjain.entity.NordpoolEntity;
+import com.nitramite.porssiohjain.entity.enums.ControlMode;
+import com.nitramite.porssiohjain.entity.repository.ControlRepository;
+import com.nitramite.porssiohjain.entity.repository.ControlTableRepository;
+import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ControlSchedulerServiceTest {
+
+    private static final Instant START = Instant.parse("2026-06-09T00:00:00Z");
+    private static final Instant END = Instant.parse("2026-06-11T00:00:00Z");
+    private static final String DELETE_SQL = "DELETE FROM control_table WHERE control_id = ? AND start_time BETWEEN ? AND ?";
+    private static final String FINGERPRINT_SQL = "UPDATE control SET schedule_fingerprint = ? WHERE id = ?";
+
+    @Mock
+    private NordpoolRepository nordpoolRepository;
+
+    @Mock
+    private ControlRepository controlRepository;
+
+    @Mock
+    private ControlTableRepository controlTableRepository;
+
+    @Mock
+    private SystemLogService systemLogService;
+
+    @Mock
+    private ControlPriceService controlPriceService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ControlSchedulerService service;
+    private ControlEntity storedControl;
+    private final List<String> storedFingerprints = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        service = new ControlSchedulerService(nordpoolRepository, controlRepository, controlTableRepository,
+                systemLogService, controlPriceService, jdbcTemplate, transactionManager);
+        storedControl = control();
+        storedControl.setId(7L);
+        storedControl.setAccount(new AccountEntity());
+    }
+
+    @Test
+    void unchangedControlIsWrittenOnceAndSkippedOnTheNextRun() throws Exception {
+        Instant startOfDay = Instant.now().truncatedTo(ChronoUnit.DAYS);
+        stubScheduling(dayPrices(startOfDay, "12.50", "3.00", "8.00", "1.00"));
+
+        service.generatePlannedForTomorrow();
+        service.generatePlannedForTomorrow();
+
+        verify(transactionManager).getTransaction(any());
+        verify(transactionManager).commit(any());
+        verify(jdbcTemplate).update(eq(DELETE_SQL), eq(7L), any(), any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Object>> slots = ArgumentCaptor.forClass(Collection.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<ParameterizedPreparedStatementSetter<Object>> setter =
+                ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), slots.capture(), eq(500), setter.capture());
+        assertEquals(2, slots.getValue().size());
+        assertEquals(1, storedFingerprints.size());
+        assertEquals(storedFingerprints.getFirst(), storedControl.getScheduleFingerprint());
+
+        PreparedStatement statement = mock(PreparedStatement.class);
+        setter.getValue().setValues(statement, slots.getValue().iterator().next());
+        verify(statement).setLong(1, 7L);
+        verify(statement).setBigDecimal(4, new BigDecimal("3.00"));
+    }
+
+    @Test
+    void changedPricesRewriteTheSchedule() {
+        Instant startOfDay = Instant.now().truncatedTo(ChronoUnit.DAYS);
+        stubScheduling(dayPrices(startOfDay, "12.50", "3.00", "8.00", "1.00"),
+                dayPrices(startOfDay, "12.50", "3.00", "0.50", "1.00"));
+
+        service.generatePlannedForTomorrow();
+        service.generatePlannedForTomorrow();
+
+        verify(transactionManager, times(2)).commit(any());
+        verify(jdbcTemplate, times(2)).update(eq(DELETE_SQL), eq(7L), any(), any());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), any(Collection.class), eq(500), any());
+        assertEquals(2, storedFingerprints.size());
+        assertNotEquals(storedFingerprints.get(0), storedFingerprints.get(1));
+        assertEquals(storedFingerprints.get(1), storedControl.getScheduleFingerprint());
+    }
+
+    @Test
+    void fingerprintIgnoresScaleButTracksPricesAndSettings() {
+        ControlEntity control = control();
+        List<NordpoolEntity> prices = List.of(price("2026-06-10T00:00:00Z", "12.50"));
+
+        String fingerprint = ControlSchedulerService.fingerprint(control, prices, START, END);
+
+        assertEquals(fingerprint, ControlSchedulerService.fingerprint(
+                control, List.of(price("2026-06-10T00:00:00Z", "12.5000")), START, END));
+        assertNotEquals(fingerprint, ControlSchedulerService.fingerprint(
+                control, List.of(price("2026-06-10T00:00:00Z", "12.51")), START, END));
+        assertNotEquals(fingerprint, ControlSchedulerService.fingerprint(
+                control, prices, START.plusSeconds(86_400), END.plusSeconds(86_400)));
+        control.setDailyOnMinutes(180);
+        assertNotEquals(fingerprint, ControlSchedulerService.fingerprint(control, prices, START, END));
+    }
+
+    /**
+     * Stubs one scheduling run per price list. The fingerprint UPDATE is applied to the stored
+     * control like the database would, so the next run reads it back. It is lenient because the
+     * DELETE goes through the same {@code update} overload.
+     */
+    @SafeVarargs
+    private void stubScheduling(List<NordpoolEntity> prices, List<NordpoolEntity>... laterPrices) {
+        when(controlRepository.findAllForScheduling()).thenReturn(List.of(storedControl));
+        when(nordpoolRepository.findByMarketIndexNameAndDeliveryStartBetween(anyString(), any(), any()))
+                .thenReturn(prices, laterPrices);
+        when(controlPriceService.getCombinedPrice(any(), any()))
+                .thenAnswer(invocation -> invocation.<NordpoolEntity>getArgument(1).getPriceFi());
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().doAnswer(invocation -> {
+            String fingerprint = invocation.getArgument(1);
+            storedFingerprints.add(fingerprint);
+            storedControl.setScheduleFingerprint(fingerprint);
+            return 1;
+        }).when(jdbcTemplate).update(eq(FINGERPRINT_SQL), anyString(), eq(7L));
+    }
+
+    private static List<NordpoolEntity> dayPrices(Instant startOfDay, String... pricesFi) {
+        List<NordpoolEntity> prices = new ArrayList<>();
+        Instant start = startOfDay.plus(Duration.ofHours(10));
+        for (String priceFi : pricesFi) {
+            prices.add(price(start.toString(), priceFi, Duration.ofHours(1)));
+            start = start.plus(Duration.ofHours(1));
+        }
+        return prices;
+    }
+
+    private static ControlEntity control() {
+        ControlEntity control = new ControlEntity();
+        control.setMode(ControlMode.CHEAPEST_HOURS);
+        control.setMaxPriceSnt(BigDecimal.valueOf(20));
+        control.setMinPriceSnt(BigDecimal.ZERO);
+        control.setDailyOnMinutes(120);
+        control.setTaxPercent(BigDecimal.valueOf(25.5));
+        control.setTimezone("Europe/Helsinki");
+        return control;
+    }
+
+    private static NordpoolEntity price(String deliveryStart, String priceFi) {
+        return price(deliveryStart, priceFi, Duration.ofMinutes(15));
+    }
+
+    private static NordpoolEntity price(String deliveryStart, String priceFi, Duration length) {
+        NordpoolEntity price = new NordpoolEntity();
+        price.setDeliveryStart(Instant.parse(deliveryStart));
+        price.setDeliveryEnd(Instant.parse(deliveryStart).plus(length));
+        price.setPriceFi(new BigDecimal(priceFi));
+        return price;
+    }
+
+}
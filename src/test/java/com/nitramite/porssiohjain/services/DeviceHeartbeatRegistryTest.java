@@ -0,0 +1,97 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.DeviceEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeviceHeartbeatRegistryTest {
+
+    private static final UUID FIRST = UUID.fromString("0f4c2a6e-8d1b-4c3f-9a57-1e2d3c4b5a61");
+    private static final UUID SECOND = UUID.fromString("7b9e1d2c-3a4f-4e5d-8c6b-2a1f0e9d8c72");
+    private static final Instant NOW = Instant.parse("2026-06-09T10:00:00Z");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void coalescesHeartbeatsIntoOneUpdatePerDevice() {
+        DeviceHeartbeatRegistry registry = new DeviceHeartbeatRegistry(jdbcTemplate);
+
+        registry.record(FIRST, NOW);
+        registry.record(FIRST, NOW.plusSeconds(30));
+        registry.record(FIRST, NOW.plusSeconds(10));
+        registry.record(SECOND, NOW);
+
+        assertEquals(2, registry.flush());
+        assertEquals(0, registry.flush());
+
+        verify(jdbcTemplate, times(1)).batchUpdate(
+                anyString(),
+                argThat((Collection<Map.Entry<UUID, Long>> batch) -> batch.size() == 2
+                        && batch.contains(Map.entry(FIRST, NOW.plusSeconds(30).toEpochMilli()))
+                        && batch.contains(Map.entry(SECOND, NOW.toEpochMilli()))),
+                eq(2),
+                any()
+        );
+    }
+
+    @Test
+    void keepsHeartbeatsPendingWhenWriteFails() {
+        DeviceHeartbeatRegistry registry = new DeviceHeartbeatRegistry(jdbcTemplate);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        registry.record(FIRST, NOW);
+
+        assertEquals(0, registry.flush());
+        assertEquals(1, registry.pendingCount());
+    }
+
+    @Test
+    void lastCommunicationPrefersNewerRecordedHeartbeat() {
+        DeviceHeartbeatRegistry registry = new DeviceHeartbeatRegistry(jdbcTemplate);
+        DeviceEntity device = new DeviceEntity();
+        device.setUuid(FIRST);
+        device.setLastCommunication(NOW);
+
+        assertEquals(NOW, registry.lastCommunication(device));
+        registry.record(FIRST, NOW.plusSeconds(60));
+        assertEquals(NOW.plusSeconds(60), registry.lastCommunication(device));
+        registry.record(FIRST, NOW.minusSeconds(60));
+        assertEquals(NOW.plusSeconds(60), registry.lastCommunication(device));
+    }
+
+}
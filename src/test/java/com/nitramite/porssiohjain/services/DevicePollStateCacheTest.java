@@ -0,0 +1,82 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.ControlInputChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DevicePollStateCacheTest {
+
+    private static final UUID DEVICE_UUID = UUID.fromString("3e6b8f1a-2c4d-4f5e-9a7b-8c9d0e1f2a3b");
+    private static final long DEVICE_ID = 4242L;
+    private static final Instant NOW = Instant.parse("2026-06-09T10:00:00Z");
+
+    private final DevicePollStateCache cache = new DevicePollStateCache(Duration.ofMinutes(15), Duration.ofSeconds(30));
+
+    @Test
+    void etagStaysValidUntilNextScheduleChange() {
+        String etag = store(false, NOW.plusSeconds(120));
+
+        assertEquals(Optional.of(etag), cache.matching(DevicePollStateCache.Kind.CONTROLS, DEVICE_UUID, etag, NOW.plusSeconds(119)));
+        assertEquals(Optional.empty(), cache.matching(DevicePollStateCache.Kind.CONTROLS, DEVICE_UUID, etag, NOW.plusSeconds(120)));
+        assertEquals(Optional.empty(), cache.matching(DevicePollStateCache.Kind.TIMETABLE, DEVICE_UUID, etag, NOW));
+    }
+
+    @Test
+    void liveInputsUseDynamicTtl() {
+        String etag = store(true, null);
+
+        assertTrue(cache.matching(DevicePollStateCache.Kind.CONTROLS, DEVICE_UUID, etag, NOW.plusSeconds(29)).isPresent());
+        assertFalse(cache.matching(DevicePollStateCache.Kind.CONTROLS, DEVICE_UUID, etag, NOW.plusSeconds(30)).isPresent());
+    }
+
+    @Test
+    void deviceChangeInvalidatesEtag() {
+        String etag = store(false, null);
+
+        ControlInputChangeListener.changed(DEVICE_ID);
+
+        assertFalse(cache.matching(DevicePollStateCache.Kind.CONTROLS, DEVICE_UUID, etag, NOW).isPresent());
+    }
+
+    @Test
+    void matchesWeakAndListedEtags() {
+        assertTrue(DevicePollStateCache.matches("W/\"abc\"", "\"abc\""));
+        assertTrue(DevicePollStateCache.matches("\"x\", \"abc\"", "\"abc\""));
+        assertTrue(DevicePollStateCache.matches("*", "\"abc\""));
+        assertFalse(DevicePollStateCache.matches("\"abd\"", "\"abc\""));
+    }
+
+    private String store(boolean dynamic, Instant nextChange) {
+        return cache.store(
+                DevicePollStateCache.Kind.CONTROLS,
+                DEVICE_UUID,
+                DEVICE_ID,
+                cache.inputVersion(DEVICE_ID),
+                "{1=1}",
+                NOW,
+                dynamic,
+                nextChange
+        );
+    }
+
+}
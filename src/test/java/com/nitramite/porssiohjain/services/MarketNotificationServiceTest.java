@@ -18,7 +18,7 @@ import com.nitramite.porssiohjain.entity.enums.ComparisonType;
 import com.nitramite.porssiohjain.entity.enums.MarketNotificationMetric;
 import com.nitramite.porssiohjain.entity.repository.AccountRepository;
 import com.nitramite.porssiohjain.entity.repository.MarketNotificationRepository;
-import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
+import com.nitramite.porssiohjain.services.nordpool.NordpoolPriceCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -47,7 +47,7 @@ class MarketNotificationServiceTest {
     private AccountRepository accountRepository;
 
     @Mock
-    private NordpoolRepository nordpoolRepository;
+    private NordpoolPriceCache nordpoolPriceCache;
 
     @Mock
     private EmailService emailService;
@@ -71,7 +71,7 @@ class MarketNotificationServiceTest {
         marketNotificationService = new MarketNotificationService(
                 marketNotificationRepository,
                 accountRepository,
-                nordpoolRepository,
+                nordpoolPriceCache,
                 emailService,
                 pushNotificationService,
                 pushNotificationTokenService,
@@ -85,7 +85,7 @@ class MarketNotificationServiceTest {
         Instant now = Instant.parse("2026-01-02T10:00:15Z");
         MarketNotificationEntity notification = notification(now.minusSeconds(24 * 60 * 60));
         when(marketNotificationRepository.findByEnabledTrueOrderByIdAsc()).thenReturn(List.of(notification));
-        when(nordpoolRepository.findFirstByMarketIndexNameAndDeliveryStartLessThanEqualAndDeliveryEndGreaterThan("FI", now, now)).thenReturn(Optional.of(price(now)));
+        when(nordpoolPriceCache.findPriceAt("FI", now)).thenReturn(Optional.of(price(now)));
         when(accountLimitService.tryConsumeWeeklyEmailNotification(1L, now)).thenReturn(true);
 
         marketNotificationService.sendDueNotifications(now);
@@ -0,0 +1,199 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.PowerLimitEntity;
+import com.nitramite.porssiohjain.entity.PowerLimitHistoryEntity;
+import com.nitramite.porssiohjain.entity.PowerLimitHistoryRollupEntity;
+import com.nitramite.porssiohjain.entity.repository.PowerLimitHistoryRepository;
+import com.nitramite.porssiohjain.entity.repository.PowerLimitHistoryRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PowerLimitHistoryRollupServiceTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Helsinki");
+
+    @Mock
+    private PowerLimitHistoryRollupRepository rollupRepository;
+
+    @Mock
+    private PowerLimitHistoryRepository powerLimitHistoryRepository;
+
+    private PowerLimitHistoryRollupService rollupService;
+    private PowerLimitEntity powerLimit;
+
+    @BeforeEach
+    void setUp() {
+        rollupService = new PowerLimitHistoryRollupService(rollupRepository, powerLimitHistoryRepository);
+        powerLimit = PowerLimitEntity.builder()
+                .id(5L)
+                .timezone(ZONE.getId())
+                .limitIntervalMinutes(15)
+                .build();
+    }
+
+    @Test
+    void upsertsLocalBucketsForNewMinute() {
+        Instant minute = ZonedDateTime.of(2026, 1, 10, 0, 37, 0, 0, ZONE).toInstant();
+
+        rollupService.recordMinute(powerLimit, minute, null, new BigDecimal("0.125"));
+
+        Instant midnight = ZonedDateTime.of(2026, 1, 10, 0, 0, 0, 0, ZONE).toInstant();
+        BigDecimal kilowatts = new BigDecimal("0.13");
+        verify(rollupRepository).upsertKilowatts(eq(5L), eq(15), eq(midnight.plusSeconds(1800)), eq(kilowatts), any());
+        verify(rollupRepository).upsertKilowatts(eq(5L), eq(60), eq(midnight), eq(kilowatts), any());
+        verify(rollupRepository).upsertKilowatts(eq(5L), eq(1440), eq(midnight), eq(kilowatts), any());
+        verify(rollupRepository, never()).save(any());
+    }
+
+    @Test
+    void appliesOnlyDifferenceWhenMinuteIsRewritten() {
+        Instant minute = ZonedDateTime.of(2026, 1, 10, 12, 5, 0, 0, ZONE).toInstant();
+
+        rollupService.recordMinute(powerLimit, minute, new BigDecimal("0.10"), new BigDecimal("0.25"));
+        rollupService.recordMinute(powerLimit, minute, new BigDecimal("0.25"), new BigDecimal("0.25"));
+
+        verify(rollupRepository, times(3)).upsertKilowatts(eq(5L), anyInt(), any(), eq(new BigDecimal("0.15")), any());
+    }
+
+    @Test
+    void readsCurrentIntervalFromMatchingRollup() {
+        Instant now = ZonedDateTime.of(2026, 1, 10, 12, 20, 0, 0, ZONE).toInstant();
+        Instant quarterStart = ZonedDateTime.of(2026, 1, 10, 12, 15, 0, 0, ZONE).toInstant();
+        PowerLimitEntity hourly = PowerLimitEntity.builder().id(6L).timezone(ZONE.getId()).limitIntervalMinutes(60).build();
+        Instant hourStart = ZonedDateTime.of(2026, 1, 10, 12, 0, 0, 0, ZONE).toInstant();
+        when(rollupRepository.sumByPowerLimitIdsAndBucketStartBetween(List.of(5L), 15, quarterStart, quarterStart.plusSeconds(900)))
+                .thenReturn(List.of(intervalSum(5L, new BigDecimal("1.20"))));
+        when(rollupRepository.sumByPowerLimitIdsAndBucketStartBetween(List.of(6L), 60, hourStart, hourStart.plusSeconds(3600)))
+                .thenReturn(List.of());
+
+        Map<Long, BigDecimal> sums = rollupService.getCurrentIntervalSums(List.of(powerLimit, hourly), now);
+
+        assertEquals(Map.of(5L, new BigDecimal("1.20")), sums);
+        assertEquals(Optional.empty(), rollupService.getCurrentIntervalSum(hourly, now));
+    }
+
+    @Test
+    void fallsBackToMinuteRowsForIntervalsWithoutRollup() {
+        Instant now = ZonedDateTime.of(2026, 1, 10, 12, 12, 0, 0, ZONE).toInstant();
+        Instant intervalStart = ZonedDateTime.of(2026, 1, 10, 12, 10, 0, 0, ZONE).toInstant();
+        powerLimit.setLimitIntervalMinutes(10);
+        when(powerLimitHistoryRepository.sumByPowerLimitIdsAndCreatedAtBetween(List.of(5L), intervalStart, intervalStart.plusSeconds(600)))
+                .thenReturn(List.of(intervalSum(5L, new BigDecimal("0.40"))));
+
+        assertEquals(Optional.of(new BigDecimal("0.40")), rollupService.getCurrentIntervalSum(powerLimit, now));
+        assertTrue(rollupService.getIntervalSums(5L, ZONE, 10, now, now.plusSeconds(3600)).isEmpty());
+    }
+
+    @Test
+    void mergesQuarterBucketsIntoHalfHourIntervals() {
+        Instant start = ZonedDateTime.of(2026, 1, 10, 12, 0, 0, 0, ZONE).toInstant();
+        Instant end = start.plusSeconds(3600);
+        when(rollupRepository.findBuckets(5L, 15, start, end)).thenReturn(List.of(
+                bucket(start, "1.00"),
+                bucket(start.plusSeconds(900), "0.50"),
+                bucket(start.plusSeconds(1800), "0.25")
+        ));
+
+        SortedMap<Instant, BigDecimal> sums = rollupService.getIntervalSums(5L, ZONE, 30, start, end).orElseThrow();
+
+        assertEquals(List.of(start, start.plusSeconds(1800)), List.copyOf(sums.keySet()));
+        assertEquals(new BigDecimal("1.50"), sums.get(start));
+        assertEquals(new BigDecimal("0.25"), sums.get(start.plusSeconds(1800)));
+    }
+
+    @Test
+    void readsPartialEdgesOfUnalignedRangeFromMinuteRows() {
+        Instant start = ZonedDateTime.of(2026, 1, 10, 12, 7, 0, 0, ZONE).toInstant();
+        Instant end = ZonedDateTime.of(2026, 1, 10, 14, 20, 0, 0, ZONE).toInstant();
+        Instant noon = ZonedDateTime.of(2026, 1, 10, 12, 0, 0, 0, ZONE).toInstant();
+        Instant one = noon.plusSeconds(3600);
+        Instant two = noon.plusSeconds(7200);
+        when(rollupRepository.findBuckets(5L, 60, one, two)).thenReturn(List.of(bucket(one, "2.00")));
+        when(powerLimitHistoryRepository.findForMinutes(List.of(5L), start, one)).thenReturn(List.of(
+                minute(start, "0.10"), minute(start.plusSeconds(600), "0.20")));
+        when(powerLimitHistoryRepository.findForMinutes(List.of(5L), two, end)).thenReturn(List.of(
+                minute(two.plusSeconds(300), "0.05")));
+
+        SortedMap<Instant, BigDecimal> sums = rollupService.getIntervalSums(5L, ZONE, 60, start, end).orElseThrow();
+
+        assertEquals(List.of(noon, one, two), List.copyOf(sums.keySet()));
+        assertEquals(new BigDecimal("0.30"), sums.get(noon));
+        assertEquals(new BigDecimal("2.00"), sums.get(one));
+        assertEquals(new BigDecimal("0.05"), sums.get(two));
+    }
+
+    @Test
+    void leavesRangesShorterThanABucketToMinuteRows() {
+        Instant start = ZonedDateTime.of(2026, 1, 10, 12, 7, 0, 0, ZONE).toInstant();
+
+        assertTrue(rollupService.getIntervalSums(5L, ZONE, 1440, start, start.plusSeconds(3600)).isEmpty());
+        verify(rollupRepository, never()).findBuckets(any(), anyInt(), any(), any());
+    }
+
+    private PowerLimitHistoryEntity minute(Instant createdAt, String kilowatts) {
+        return PowerLimitHistoryEntity.builder()
+                .powerLimit(powerLimit)
+                .createdAt(createdAt)
+                .kilowatts(new BigDecimal(kilowatts))
+                .build();
+    }
+
+    private PowerLimitHistoryRollupEntity bucket(Instant bucketStart, String kilowatts) {
+        return PowerLimitHistoryRollupEntity.builder()
+                .powerLimit(powerLimit)
+                .resolutionMinutes(15)
+                .bucketStart(bucketStart)
+                .kilowatts(new BigDecimal(kilowatts))
+                .build();
+    }
+
+    private PowerLimitHistoryRepository.PowerLimitIntervalSum intervalSum(Long powerLimitId, BigDecimal kilowatts) {
+        return new PowerLimitHistoryRepository.PowerLimitIntervalSum() {
+            @Override
+            public Long getPowerLimitId() {
+                return powerLimitId;
+            }
+
+            @Override
+            public BigDecimal getKilowatts() {
+                return kilowatts;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.repository.PowerLimitRepository;
+import com.nitramite.porssiohjain.services.models.CurrentKwRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PowerReadingIngestServiceTest {
+
+    private static final UUID POWER_LIMIT_UUID = UUID.fromString("5a1f1d0e-4b7a-4c55-9d0b-6f0f2d0c1a11");
+    private static final long MINUTE = Instant.parse("2026-06-09T10:00:00Z").toEpochMilli();
+
+    @Mock
+    private PowerLimitService powerLimitService;
+
+    @Mock
+    private PowerLimitRepository powerLimitRepository;
+
+    @Test
+    void foldsReadingsAndWritesThemInOneBatch() {
+        PowerReadingIngestService service = new PowerReadingIngestService(
+                powerLimitService, powerLimitRepository, PowerReadingIngestService.Durability.BUFFERED, 100);
+        when(powerLimitRepository.existsByUuid(POWER_LIMIT_UUID)).thenReturn(true);
+        when(powerLimitService.applyBufferedReadings(anyCollection())).thenReturn(Set.of());
+
+        service.accept(POWER_LIMIT_UUID.toString(), new CurrentKwRequest(2.0, 100.0, MINUTE + 10_000));
+        service.accept(POWER_LIMIT_UUID.toString(), new CurrentKwRequest(5.0, 100.5, MINUTE + 40_000));
+        service.accept(POWER_LIMIT_UUID.toString(), new CurrentKwRequest(3.0, 101.0, MINUTE + 70_000));
+        assertEquals(3, service.getStats().getPendingReadings());
+
+        service.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<BufferedPowerReadings>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(powerLimitService).applyBufferedReadings(captor.capture());
+        verify(powerLimitRepository, times(1)).existsByUuid(POWER_LIMIT_UUID);
+        BufferedPowerReadings readings = captor.getValue().iterator().next();
+        assertEquals(3, readings.getReadingCount());
+        assertEquals(BigDecimal.valueOf(3.0), readings.getCurrentKw());
+        assertEquals(BigDecimal.valueOf(5.0), readings.getPeakKw());
+        assertEquals(BigDecimal.valueOf(101.0), readings.getLastTotalKwh());
+        assertEquals(0, service.getStats().getPendingReadings());
+        assertEquals(1, service.getStats().getWrittenBatches());
+    }
+
+    @Test
+    void minuteRowsKeepLastDeltaOfEachMinute() {
+        BufferedPowerReadings readings = BufferedPowerReadings.of(POWER_LIMIT_UUID, new CurrentKwRequest(1.0, 100.0, MINUTE + 10_000));
+        readings.add(new CurrentKwRequest(1.0, 100.5, MINUTE + 40_000));
+        readings.add(new CurrentKwRequest(1.0, 10.0, MINUTE + 70_000));
+        readings.add(new CurrentKwRequest(1.0, 10.25, MINUTE + 80_000));
+
+        Map<Instant, BigDecimal> minutes = readings.minuteKwh(BigDecimal.valueOf(99.0));
+
+        assertEquals(Map.of(
+                Instant.ofEpochMilli(MINUTE), BigDecimal.valueOf(0.5),
+                Instant.ofEpochMilli(MINUTE + 60_000), BigDecimal.valueOf(0.25)
+        ), minutes);
+        assertEquals(Map.of(Instant.ofEpochMilli(MINUTE), BigDecimal.ZERO),
+                BufferedPowerReadings.of(POWER_LIMIT_UUID, new CurrentKwRequest(1.0, 5.0, MINUTE)).minuteKwh(null));
+    }
+
+    @Test
+    void rejectsReadingsWhenBufferIsFull() {
+        PowerReadingIngestService service = new PowerReadingIngestService(
+                powerLimitService, powerLimitRepository, PowerReadingIngestService.Durability.BUFFERED, 1);
+        when(powerLimitRepository.existsByUuid(POWER_LIMIT_UUID)).thenReturn(true);
+
+        service.accept(POWER_LIMIT_UUID.toString(), new CurrentKwRequest(1.0, 1.0, MINUTE));
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> service.accept(POWER_LIMIT_UUID.toString(), new CurrentKwRequest(1.0, 2.0, MINUTE)));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+        assertEquals(1, service.getStats().getRejectedReadings());
+    }
+
+    @Test
+    void syncDurabilityWritesBeforeReturning() {
+        PowerReadingIngestService service = new PowerReadingIngestService(
+                powerLimitService, powerLimitRepository, PowerReadingIngestService.Durability.SYNC, 100);
+        CurrentKwRequest request = new CurrentKwRequest(1.0, 1.0, MINUTE);
+
+        service.accept(POWER_LIMIT_UUID.toString(), request);
+        service.flush();
+
+        verify(powerLimitService).updateCurrentKw(POWER_LIMIT_UUID.toString(), request);
+        verify(powerLimitService, never()).applyBufferedReadings(anyCollection());
+    }
+
+    @Test
+    void retriesFailedBatchPerPowerLimit() {
+        UUID other = UUID.fromString("0b9e2f3c-1d4a-4e5f-8a6b-7c8d9e0f1a22");
+        PowerReadingIngestService service = new PowerReadingIngestService(
+                powerLimitService, powerLimitRepository, PowerReadingIngestService.Durability.BUFFERED, 100);
+        when(powerLimitRepository.existsByUuid(POWER_LIMIT_UUID)).thenReturn(true);
+        when(powerLimitRepository.existsByUuid(other)).thenReturn(true);
+        when(powerLimitService.applyBufferedReadings(anyCollection()))
+                .thenThrow(new IllegalStateException("batch failed"))
+                .thenReturn(Set.of());
+
+        service.accept(POWER_LIMIT_UUID.toString(), new CurrentKwRequest(1.0, 1.0, MINUTE));
+        service.accept(other.toString(), new CurrentKwRequest(1.0, 1.0, MINUTE));
+        service.flush();
+
+        verify(powerLimitService, times(3)).applyBufferedReadings(anyCollection());
+        assertEquals(1, service.getStats().getFailedBatches());
+        assertEquals(0, service.getStats().getPendingReadings());
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.DeviceEntity;
+import com.nitramite.porssiohjain.entity.ZigbeeGatewayDeviceEntity;
+import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PowerplantRuleTriggerTest {
+
+    private static final Instant MEASURED_AT = Instant.parse("2026-06-09T10:00:00Z");
+
+    @Mock
+    private PowerplantService powerplantService;
+
+    private PowerplantRuleTrigger trigger;
+
+    @BeforeEach
+    void setUp() {
+        trigger = new PowerplantRuleTrigger(powerplantService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        trigger.shutdown();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void coalescesSourcesChangedWhileEvaluationRuns() throws Exception {
+        CountDownLatch evaluating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(powerplantService.evaluateRulesForSources(any())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                evaluating.countDown();
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            }
+            return 0;
+        });
+
+        trigger.measurementsChanged(List.of(sample(1L, ZigbeeMeasurementType.TEMPERATURE)));
+        assertTrue(evaluating.await(5, TimeUnit.SECONDS));
+        trigger.measurementsChanged(List.of(sample(2L, ZigbeeMeasurementType.TEMPERATURE)));
+        trigger.measurementsChanged(List.of(sample(3L, ZigbeeMeasurementType.HUMIDITY)));
+        trigger.measurementsChanged(List.of(sample(2L, ZigbeeMeasurementType.TEMPERATURE)));
+        release.countDown();
+        trigger.evaluateAll();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<PowerplantRuleIndex.Source>> sources = ArgumentCaptor.forClass(Collection.class);
+        verify(powerplantService, times(2)).evaluateRulesForSources(sources.capture());
+        assertEquals(Set.of(source(1L, ZigbeeMeasurementType.TEMPERATURE)), Set.copyOf(sources.getAllValues().get(0)));
+        assertEquals(List.of(source(2L, ZigbeeMeasurementType.TEMPERATURE), source(3L, ZigbeeMeasurementType.HUMIDITY)),
+                sources.getAllValues().get(1).stream()
+                        .sorted(Comparator.comparing(PowerplantRuleIndex.Source::deviceId))
+                        .toList());
+    }
+
+    @Test
+    void enqueuesOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        trigger.measurementsChanged(List.of(sample(1L, ZigbeeMeasurementType.TEMPERATURE)));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        trigger.evaluateAll();
+        verify(powerplantService, never()).evaluateRulesForSources(any());
+
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        trigger.evaluateAll();
+
+        verify(powerplantService).evaluateRulesForSources(List.of(source(1L, ZigbeeMeasurementType.TEMPERATURE)));
+    }
+
+    @Test
+    void rolledBackMeasurementsAreNotEvaluated() {
+        TransactionSynchronizationManager.initSynchronization();
+        trigger.measurementsChanged(List.of(sample(1L, ZigbeeMeasurementType.TEMPERATURE)));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        synchronizations.forEach(synchronization ->
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        trigger.evaluateAll();
+
+        verify(powerplantService, never()).evaluateRulesForSources(any());
+    }
+
+    private static ZigbeeMeasurementWriter.Sample sample(Long deviceId, ZigbeeMeasurementType type) {
+        ZigbeeGatewayDeviceEntity link = ZigbeeGatewayDeviceEntity.builder()
+                .device(DeviceEntity.builder().id(deviceId).build())
+                .gatewayId(UUID.randomUUID())
+                .zigbeeIeee("00158d000abc1234")
+                .profile("ts0201")
+                .build();
+        return new ZigbeeMeasurementWriter.Sample(link, type, key(type), new BigDecimal("21.5"), MEASURED_AT, MEASURED_AT);
+    }
+
+    private static PowerplantRuleIndex.Source source(Long deviceId, ZigbeeMeasurementType type) {
+        return new PowerplantRuleIndex.Source(deviceId, type, key(type));
+    }
+
+    private static String key(ZigbeeMeasurementType type) {
+        return type == ZigbeeMeasurementType.TEMPERATURE ? "temperature" : "humidity";
+    }
+
+}
@@ -15,7 +15,6 @@ import com.nitramite.porssiohjain.entity.AccountEntity;
 import com.nitramite.porssiohjain.entity.DeviceEntity;
 import com.nitramite.porssiohjain.entity.PowerplantElementEntity;
 import com.nitramite.porssiohjain.entity.PowerplantRuleEntity;
-import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementEntity;
 import com.nitramite.porssiohjain.entity.enums.ControlAction;
 import com.nitramite.porssiohjain.entity.enums.DeviceType;
 import com.nitramite.porssiohjain.entity.enums.PowerplantComparisonType;
@@ -26,7 +25,8 @@ import com.nitramite.porssiohjain.entity.repository.DeviceRepository;
 import com.nitramite.porssiohjain.entity.repository.PowerplantElementRepository;
 import com.nitramite.porssiohjain.entity.repository.PowerplantRuleRepository;
 import com.nitramite.porssiohjain.entity.repository.PowerplantSettingsRepository;
-import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementRepository;
+import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementLatestRepository;
+import com.nitramite.porssiohjain.services.models.ZigbeeLatestMeasurement;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -51,7 +51,8 @@ class PowerplantServiceTest {
     private DeviceRepository deviceRepository;
     private PowerplantElementRepository elementRepository;
     private PowerplantRuleRepository ruleRepository;
-    private ZigbeeDeviceMeasurementRepository measurementRepository;
+    private PowerplantRuleIndex ruleIndex;
+    private ZigbeeLatestMeasurementStore latestMeasurementStore;
     private DemoAccountGuard demoAccountGuard;
     private ControlService controlService;
     private PowerplantService service;
@@ -62,7 +63,8 @@ class PowerplantServiceTest {
         deviceRepository = mock(DeviceRepository.class);
         elementRepository = mock(PowerplantElementRepository.class);
         ruleRepository = mock(PowerplantRuleRepository.class);
-        measurementRepository = mock(ZigbeeDeviceMeasurementRepository.class);
+        ruleIndex = new PowerplantRuleIndex(ruleRepository);
+        latestMeasurementStore = mock(ZigbeeLatestMeasurementStore.class);
         demoAccountGuard = mock(DemoAccountGuard.class);
         controlService = mock(ControlService.class);
         service = new PowerplantService(
@@ -70,8 +72,10 @@ class PowerplantServiceTest {
                 deviceRepository,
                 elementRepository,
                 ruleRepository,
+                ruleIndex,
                 mock(PowerplantSettingsRepository.class),
-                measurementRepository,
+                mock(ZigbeeDeviceMeasurementLatestRepository.class),
+                latestMeasurementStore,
                 demoAccountGuard,
                 controlService
         );
@@ -80,14 +84,12 @@ class PowerplantServiceTest {
     @Test
     void failedCommandDoesNotConsumeMatchedTransition() {
         PowerplantRuleEntity rule = humidityRule();
-        ZigbeeDeviceMeasurementEntity measurement = ZigbeeDeviceMeasurementEntity.builder()
-                .value(new BigDecimal("70"))
-                .measuredAt(Instant.now())
-                .build();
+        Instant measuredAt = Instant.now();
+        ZigbeeLatestMeasurement measurement = new ZigbeeLatestMeasurement(
+                1L, 10L, ZigbeeMeasurementType.HUMIDITY, "humidity", new BigDecimal("70"), measuredAt, measuredAt);
         when(ruleRepository.findByEnabledTrueOrderByIdAsc()).thenReturn(List.of(rule));
-        when(measurementRepository.findFirstByDeviceIdAndMeasurementTypeAndMeasurementKeyOrderByMeasuredAtDescIdDesc(
-                10L, ZigbeeMeasurementType.HUMIDITY, "humidity"
-        )).thenReturn(Optional.of(measurement));
+        when(latestMeasurementStore.find(10L, ZigbeeMeasurementType.HUMIDITY, "humidity"))
+                .thenReturn(Optional.of(measurement));
         doThrow(new IllegalArgumentException("Device is not connected with MQTT"))
                 .doNothing()
                 .when(controlService).sendDebugMqttRelayCommand(1L, 20L, 1, true);
@@ -103,6 +105,31 @@ class PowerplantServiceTest {
                 .sendDebugMqttRelayCommand(1L, 20L, 1, true);
     }
 
+    @Test
+    void measurementUpdateEvaluatesOnlyRulesReadingThatSeries() {
+        PowerplantRuleEntity rule = humidityRule();
+        Instant measuredAt = Instant.now();
+        ZigbeeLatestMeasurement measurement = new ZigbeeLatestMeasurement(
+                1L, 10L, ZigbeeMeasurementType.HUMIDITY, "humidity", new BigDecimal("70"), measuredAt, measuredAt);
+        when(ruleRepository.findEnabledWithSource()).thenReturn(List.of(rule));
+        when(ruleRepository.findAllById(List.of(300L))).thenReturn(List.of(rule));
+        when(latestMeasurementStore.find(10L, ZigbeeMeasurementType.HUMIDITY, "humidity"))
+                .thenReturn(Optional.of(measurement));
+
+        assertEquals(0, service.evaluateRulesForSources(List.of(
+                new PowerplantRuleIndex.Source(10L, ZigbeeMeasurementType.TEMPERATURE, "temperature"))));
+        assertEquals(1, service.evaluateRulesForSources(List.of(
+                new PowerplantRuleIndex.Source(10L, ZigbeeMeasurementType.HUMIDITY, "humidity"))));
+        assertEquals(0, service.evaluateRulesForSources(List.of(
+                new PowerplantRuleIndex.Source(10L, ZigbeeMeasurementType.HUMIDITY, "humidity"))));
+
+        assertTrue(rule.getLastConditionMatched());
+        assertEquals("Condition already matched", rule.getLastSkipReason());
+        verify(ruleRepository, org.mockito.Mockito.times(1)).findEnabledWithSource();
+        verify(controlService, org.mockito.Mockito.times(1))
+                .sendDebugMqttRelayCommand(1L, 20L, 1, true);
+    }
+
     @Test
     void changingTargetChannelRearmsAttachedRule() {
         PowerplantRuleEntity rule = humidityRule();
@@ -0,0 +1,92 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.ProductionSourceEntity;
+import com.nitramite.porssiohjain.entity.repository.*;
+import com.nitramite.porssiohjain.services.models.ProductionHistoryResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ProductionSourceServiceTest {
+
+    private static final Instant FROM = Instant.parse("2026-06-01T00:00:00Z");
+    private static final Instant TO = Instant.parse("2026-06-02T00:00:00Z");
+
+    private ProductionSourceRepository productionSourceRepository;
+    private JdbcTemplate jdbcTemplate;
+    private ProductionSourceService service;
+
+    @BeforeEach
+    void setUp() {
+        productionSourceRepository = mock(ProductionSourceRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        service = new ProductionSourceService(
+                productionSourceRepository,
+                mock(AccountRepository.class),
+                mock(ProductionSourceDeviceRepository.class),
+                mock(ProductionSourceHeatPumpRepository.class),
+                mock(ProductionHistoryRepository.class),
+                mock(DeviceRepository.class),
+                mock(SiteRepository.class),
+                mock(ResourceSharingRepository.class),
+                mock(AccountLimitService.class),
+                mock(DemoAccountGuard.class),
+                new TimeSeriesDownsampler(500),
+                jdbcTemplate
+        );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aggregatesQuarterHoursInTheDatabaseWithinTheRange() {
+        ProductionSourceEntity source = new ProductionSourceEntity();
+        source.setId(5L);
+        source.setTimezone("Europe/Helsinki");
+        when(productionSourceRepository.findByIdAndAccountId(5L, 1L)).thenReturn(Optional.of(source));
+        ProductionHistoryResponse bucket = ProductionHistoryResponse.builder()
+                .createdAt(FROM)
+                .kilowatts(new BigDecimal("2.50"))
+                .build();
+        when(jdbcTemplate.query(contains("floor(extract(epoch"), any(RowMapper.class),
+                eq(900L), eq(900L), eq(5L), eq(FROM.atOffset(ZoneOffset.UTC)), eq(TO.atOffset(ZoneOffset.UTC))))
+                .thenReturn(List.of(bucket));
+
+        assertEquals(List.of(bucket), service.getProductionHistory(1L, 5L, FROM, TO, ProductionSourceService.HISTORY_QUARTER_HOUR));
+    }
+
+    @Test
+    void rejectsUnsupportedResolutionAndInvertedRange() {
+        assertThrows(IllegalArgumentException.class, () -> service.getProductionHistory(1L, 5L, FROM, TO, 7));
+        assertThrows(IllegalArgumentException.class, () -> service.getProductionHistory(
+                1L, 5L, TO, FROM, ProductionSourceService.HISTORY_HOUR));
+        verifyNoInteractions(productionSourceRepository, jdbcTemplate);
+    }
+
+}
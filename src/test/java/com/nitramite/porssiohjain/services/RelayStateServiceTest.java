@@ -0,0 +1,125 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.DeviceEntity;
+import com.nitramite.porssiohjain.entity.DeviceRelayStateEntity;
+import com.nitramite.porssiohjain.entity.repository.DeviceRelayStateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RelayStateServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-06-09T10:00:00Z");
+
+    @Mock
+    private DeviceRelayStateRepository deviceRelayStateRepository;
+
+    private RelayStateService relayStateService;
+    private DeviceEntity device;
+
+    @BeforeEach
+    void setUp() {
+        relayStateService = new RelayStateService(deviceRelayStateRepository, Duration.ofMinutes(15));
+        device = DeviceEntity.builder()
+                .id(1L)
+                .uuid(UUID.randomUUID())
+                .build();
+    }
+
+    @Test
+    void suppressesUnchangedStateUntilResyncIntervalElapses() {
+        assertTrue(relayStateService.shouldPublish(device.getUuid(), 1, true, NOW));
+        relayStateService.recordPublished(List.of(new RelayStateService.PublishedRelayState(device, 1, true)), NOW);
+
+        assertFalse(relayStateService.shouldPublish(device.getUuid(), 1, true, NOW.plusSeconds(60)));
+        assertTrue(relayStateService.shouldPublish(device.getUuid(), 1, false, NOW.plusSeconds(60)));
+        assertTrue(relayStateService.shouldPublish(device.getUuid(), 1, true, NOW.plus(Duration.ofMinutes(15))));
+        assertEquals(3, relayStateService.getStats().getSentCommands());
+        assertEquals(1, relayStateService.getStats().getSuppressedCommands());
+    }
+
+    @Test
+    void resyncRequestRepublishesUntilItExpires() {
+        DeviceEntity silent = DeviceEntity.builder()
+                .id(2L)
+                .uuid(UUID.randomUUID())
+                .build();
+        relayStateService.recordPublished(List.of(new RelayStateService.PublishedRelayState(device, 1, true)), NOW);
+
+        relayStateService.requestResync(device.getUuid(), NOW.plusSeconds(60));
+        relayStateService.requestResync(silent.getUuid(), NOW.plusSeconds(60));
+        assertTrue(relayStateService.shouldPublish(device.getUuid(), 1, true, NOW.plusSeconds(120)));
+        assertEquals(2, relayStateService.getStats().getPendingResyncDevices());
+
+        relayStateService.requestResync(UUID.randomUUID(), NOW.plus(Duration.ofMinutes(16)));
+        assertEquals(1, relayStateService.getStats().getPendingResyncDevices());
+    }
+
+    @Test
+    void restoresLastPublishedStatesFromSnapshot() {
+        DeviceRelayStateEntity stored = DeviceRelayStateEntity.builder()
+                .id(10L)
+                .device(device)
+                .deviceChannel(2)
+                .relayOn(false)
+                .publishedAt(NOW)
+                .build();
+        when(deviceRelayStateRepository.findAllByOrderByIdAsc()).thenReturn(List.of(stored));
+
+        assertFalse(relayStateService.shouldPublish(device.getUuid(), 2, false, NOW.plusSeconds(60)));
+        assertTrue(relayStateService.shouldPublish(device.getUuid(), 2, true, NOW.plusSeconds(60)));
+    }
+
+    @Test
+    void persistsPublishedStatesOverExistingRows() {
+        DeviceRelayStateEntity stored = DeviceRelayStateEntity.builder()
+                .id(10L)
+                .device(device)
+                .deviceChannel(1)
+                .relayOn(false)
+                .publishedAt(NOW.minusSeconds(60))
+                .build();
+        when(deviceRelayStateRepository.findByDeviceIdIn(any())).thenReturn(List.of(stored));
+
+        relayStateService.recordPublished(List.of(
+                new RelayStateService.PublishedRelayState(device, 1, true),
+                new RelayStateService.PublishedRelayState(device, 2, false)
+        ), NOW);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DeviceRelayStateEntity>> saved = ArgumentCaptor.forClass(List.class);
+        verify(deviceRelayStateRepository).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+        assertEquals(10L, saved.getValue().getFirst().getId());
+        assertTrue(saved.getValue().getFirst().isRelayOn());
+        assertEquals(NOW, saved.getValue().get(1).getPublishedAt());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSeriesDownsamplerTest {
+
+    private record Point(long time, double value) {
+    }
+
+    private final TimeSeriesDownsampler downsampler = new TimeSeriesDownsampler(100);
+
+    @Test
+    void returnsSeriesWithinBudgetUnchanged() {
+        List<Point> points = series(100);
+
+        assertSame(points, downsampler.downsample(points, Point::time, Point::value));
+    }
+
+    @Test
+    void reducesLongSeriesToBudgetKeepingEndsAndPeaks() {
+        List<Point> points = new ArrayList<>(series(10_000));
+        points.set(4_321, new Point(4_321, 1_000));
+
+        List<Point> sampled = downsampler.downsample(points, Point::time, Point::value);
+
+        assertEquals(100, sampled.size());
+        assertEquals(points.getFirst(), sampled.getFirst());
+        assertEquals(points.getLast(), sampled.getLast());
+        assertTrue(sampled.contains(new Point(4_321, 1_000)));
+        for (int i = 1; i < sampled.size(); i++) {
+            assertTrue(sampled.get(i - 1).time() < sampled.get(i).time());
+        }
+    }
+
+    private static List<Point> series(int size) {
+        List<Point> points = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            points.add(new Point(i, Math.sin(i / 50.0) * 10));
+        }
+        return points;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.FingridDataEntity;
+import com.nitramite.porssiohjain.entity.NordpoolEntity;
+import com.nitramite.porssiohjain.entity.repository.FingridDataRepository;
+import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
+import com.nitramite.porssiohjain.mqtt.MqttService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TimeSeriesImportServiceTest {
+
+    @Autowired
+    private TimeSeriesImportService timeSeriesImportService;
+
+    @Autowired
+    private NordpoolRepository nordpoolRepository;
+
+    @Autowired
+    private FingridDataRepository fingridDataRepository;
+
+    @MockitoBean
+    private MqttService mqttService;
+
+    @AfterEach
+    void tearDown() {
+        nordpoolRepository.deleteAll();
+        fingridDataRepository.deleteAll();
+    }
+
+    @Test
+    void insertsOnlyMissingNordpoolPricesAcrossBatches() {
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        List<NordpoolEntity> firstImport = nordpoolPrices(start, TimeSeriesImportService.BATCH_SIZE + 10);
+        List<NordpoolEntity> secondImport = nordpoolPrices(start, TimeSeriesImportService.BATCH_SIZE + 20);
+
+        assertEquals(TimeSeriesImportService.BATCH_SIZE + 10, timeSeriesImportService.insertNordpoolPrices(firstImport));
+        assertEquals(10, timeSeriesImportService.insertNordpoolPrices(secondImport));
+        assertEquals(TimeSeriesImportService.BATCH_SIZE + 20, nordpoolRepository.count());
+    }
+
+    @Test
+    void keepsMarketsSeparateForSameDeliveryPeriod() {
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        NordpoolEntity fi = nordpoolPrice("FI", start, BigDecimal.ONE);
+        NordpoolEntity se3 = nordpoolPrice("SE3", start, BigDecimal.TEN);
+
+        assertEquals(2, timeSeriesImportService.insertNordpoolPrices(List.of(fi, se3)));
+        assertEquals(0, timeSeriesImportService.insertNordpoolPrices(List.of(fi, se3)));
+    }
+
+    @Test
+    void insertsOnlyMissingFingridEntries() {
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        FingridDataEntity first = fingridEntry(start);
+        FingridDataEntity second = fingridEntry(start.plus(15, ChronoUnit.MINUTES));
+
+        assertEquals(1, timeSeriesImportService.insertFingridData(List.of(first)));
+        assertEquals(1, timeSeriesImportService.insertFingridData(List.of(first, second)));
+        assertEquals(2, fingridDataRepository.count());
+        assertEquals(0, timeSeriesImportService.insertFingridData(List.of()));
+    }
+
+    private List<NordpoolEntity> nordpoolPrices(Instant start, int count) {
+        List<NordpoolEntity> prices = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            prices.add(nordpoolPrice("FI", start.plus(15L * i, ChronoUnit.MINUTES), BigDecimal.valueOf(i)));
+        }
+        return prices;
+    }
+
+    private NordpoolEntity nordpoolPrice(String market, Instant start, BigDecimal price) {
+        NordpoolEntity entity = new NordpoolEntity();
+        entity.setMarketIndexName(market);
+        entity.setDeliveryStart(start);
+        entity.setDeliveryEnd(start.plus(15, ChronoUnit.MINUTES));
+        entity.setPriceFi(price);
+        return entity;
+    }
+
+    private FingridDataEntity fingridEntry(Instant start) {
+        FingridDataEntity entity = new FingridDataEntity();
+        entity.setDatasetId(245);
+        entity.setStartTime(start);
+        entity.setEndTime(start.plus(15, ChronoUnit.MINUTES));
+        entity.setValue(new BigDecimal("1234.5000"));
+        return entity;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.ElectricityContractEntity;
+import com.nitramite.porssiohjain.entity.NordpoolEntity;
+import com.nitramite.porssiohjain.entity.PowerLimitHistoryEntity;
+import com.nitramite.porssiohjain.services.models.DailyUsageCostResponse;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UsageCostCalculatorTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Helsinki");
+    private static final UsageCostCalculator.Tariff VAT_ONLY = UsageCostCalculator.Tariff.of(
+            new BigDecimal("25.5"), null, null);
+
+    @Test
+    void monthOfMinuteUsageMatchesPerRowPriceScan() {
+        Instant start = LocalDate.of(2026, 3, 1).atStartOfDay(ZONE).toInstant();
+        Instant end = LocalDate.of(2026, 4, 1).atStartOfDay(ZONE).toInstant();
+        Random random = new Random(42);
+        List<NordpoolEntity> prices = new ArrayList<>();
+        for (Instant slot = start; slot.isBefore(end); slot = slot.plus(15, ChronoUnit.MINUTES)) {
+            prices.add(price(slot, slot.plus(15, ChronoUnit.MINUTES),
+                    BigDecimal.valueOf(random.nextInt(4_000_000) - 500_000, 4)));
+        }
+        List<PowerLimitHistoryEntity> usage = new ArrayList<>();
+        for (Instant minute = start; minute.isBefore(end); minute = minute.plus(1, ChronoUnit.MINUTES)) {
+            usage.add(usage(minute, BigDecimal.valueOf(random.nextInt(5000), 3)));
+        }
+
+        UsageCostCalculator.Result result = UsageCostCalculator.dailyCosts(usage, prices, VAT_ONLY, ZONE);
+
+        Map<LocalDate, BigDecimal[]> expected = perRowScan(usage, prices);
+        assertEquals(31, result.days().size());
+        assertTrue(result.daysWithMissingPrices().isEmpty());
+        for (DailyUsageCostResponse day : result.days()) {
+            BigDecimal[] totals = expected.get(day.getDate());
+            assertEquals(0, totals[0].compareTo(day.getTotalUsageKwh()));
+            assertEquals(0, totals[1].compareTo(day.getTotalCostEur()));
+        }
+    }
+
+    @Test
+    void sortsUnorderedUsageAndReportsDaysWithoutPrices() {
+        Instant dayStart = LocalDate.of(2026, 3, 2).atStartOfDay(ZONE).toInstant();
+        List<NordpoolEntity> prices = List.of(
+                price(dayStart, dayStart.plus(1, ChronoUnit.HOURS), new BigDecimal("100.0000")));
+        List<PowerLimitHistoryEntity> usage = List.of(
+                usage(dayStart.plus(1, ChronoUnit.DAYS), BigDecimal.ONE),
+                usage(dayStart.plus(30, ChronoUnit.MINUTES), BigDecimal.ONE),
+                usage(dayStart, BigDecimal.ONE)
+        );
+
+        UsageCostCalculator.Result result = UsageCostCalculator.dailyCosts(usage, prices, VAT_ONLY, ZONE);
+
+        assertEquals(2, result.days().size());
+        assertEquals(LocalDate.of(2026, 3, 2), result.days().getFirst().getDate());
+        assertEquals(new BigDecimal("0.251"), result.days().getFirst().getTotalCostEur().stripTrailingZeros());
+        assertEquals(BigDecimal.ZERO, result.days().get(1).getTotalCostEur().stripTrailingZeros());
+        assertEquals(Set.of(LocalDate.of(2026, 3, 3)), result.daysWithMissingPrices());
+    }
+
+    @Test
+    void appliesContractPricesByLocalHour() {
+        ElectricityContractEntity energy = new ElectricityContractEntity();
+        energy.setTaxPercent(new BigDecimal("24.00"));
+        energy.setTaxAmount(new BigDecimal("0.5"));
+        ElectricityContractEntity transfer = new ElectricityContractEntity();
+        transfer.setDayPrice(new BigDecimal("4"));
+        transfer.setNightPrice(new BigDecimal("2"));
+        transfer.setTaxAmount(new BigDecimal("2.8"));
+        UsageCostCalculator.Tariff tariff = UsageCostCalculator.Tariff.of(energy.getTaxPercent(), energy, transfer);
+
+        Instant night = LocalDate.of(2026, 3, 2).atTime(23, 0).atZone(ZONE).toInstant();
+        Instant day = LocalDate.of(2026, 3, 2).atTime(12, 0).atZone(ZONE).toInstant();
+        List<NordpoolEntity> prices = List.of(
+                price(day, day.plus(15, ChronoUnit.MINUTES), new BigDecimal("100.0000")),
+                price(night, night.plus(15, ChronoUnit.MINUTES), new BigDecimal("100.0000"))
+        );
+        List<PowerLimitHistoryEntity> usage = List.of(usage(day, BigDecimal.ONE), usage(night, BigDecimal.ONE));
+
+        UsageCostCalculator.Result result = UsageCostCalculator.dailyCosts(usage, prices, tariff, ZONE);
+
+        // spot 0.124 + energy tax 0.005 per kWh, transfer 0.068 by day and 0.048 by night
+        assertEquals(new BigDecimal("0.374"), result.days().getFirst().getTotalCostEur().stripTrailingZeros());
+
+        ElectricityContractEntity fixedEnergy = new ElectricityContractEntity();
+        fixedEnergy.setStaticPrice(new BigDecimal("8"));
+        UsageCostCalculator.Tariff fixedTariff = UsageCostCalculator.Tariff.of(new BigDecimal("25.5"), fixedEnergy, null);
+        UsageCostCalculator.Result fixed = UsageCostCalculator.dailyCosts(usage, prices, fixedTariff, ZONE);
+
+        assertEquals(new BigDecimal("0.16"), fixed.days().getFirst().getTotalCostEur().stripTrailingZeros());
+    }
+
+    private Map<LocalDate, BigDecimal[]> perRowScan(List<PowerLimitHistoryEntity> usage, List<NordpoolEntity> prices) {
+        BigDecimal taxMultiplier = new BigDecimal("1.2550");
+        Map<LocalDate, BigDecimal[]> totals = new HashMap<>();
+        for (PowerLimitHistoryEntity row : usage) {
+            Instant usageTime = row.getCreatedAt();
+            BigDecimal priceMwh = prices.stream()
+                    .filter(p -> !usageTime.isBefore(p.getDeliveryStart()) && usageTime.isBefore(p.getDeliveryEnd()))
+                    .map(NordpoolEntity::getPriceFi)
+                    .findFirst()
+                    .orElse(BigDecimal.ZERO);
+            BigDecimal cost = row.getKilowatts()
+                    .multiply(priceMwh.divide(BigDecimal.valueOf(1000), 10, RoundingMode.HALF_UP))
+                    .multiply(taxMultiplier);
+            BigDecimal[] day = totals.computeIfAbsent(usageTime.atZone(ZONE).toLocalDate(),
+                    ignored -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            day[0] = day[0].add(row.getKilowatts());
+            day[1] = day[1].add(cost);
+        }
+        return totals;
+    }
+
+    private NordpoolEntity price(Instant start, Instant end, BigDecimal priceFi) {
+        NordpoolEntity entity = new NordpoolEntity();
+        entity.setMarketIndexName("FI");
+        entity.setDeliveryStart(start);
+        entity.setDeliveryEnd(end);
+        entity.setPriceFi(priceFi);
+        return entity;
+    }
+
+    private PowerLimitHistoryEntity usage(Instant createdAt, BigDecimal kilowatts) {
+        PowerLimitHistoryEntity entity = new PowerLimitHistoryEntity();
+        entity.setCreatedAt(createdAt);
+        entity.setKilowatts(kilowatts);
+        return entity;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.AccountEntity;
+import com.nitramite.porssiohjain.entity.DeviceEntity;
+import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementLatestEntity;
+import com.nitramite.porssiohjain.entity.ZigbeeGatewayDeviceEntity;
+import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
+import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementLatestRepository;
+import com.nitramite.porssiohjain.services.models.ZigbeeLatestMeasurement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ZigbeeLatestMeasurementStoreTest {
+
+    private static final Instant NOW = Instant.parse("2026-06-09T10:00:00Z");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ZigbeeDeviceMeasurementLatestRepository latestRepository;
+
+    private ZigbeeLatestMeasurementStore store;
+    private AccountEntity account;
+    private DeviceEntity device;
+
+    @BeforeEach
+    void setUp() {
+        store = new ZigbeeLatestMeasurementStore(jdbcTemplate, latestRepository);
+        account = new AccountEntity();
+        account.setId(7L);
+        device = DeviceEntity.builder().id(11L).account(account).build();
+    }
+
+    @Test
+    void loadsCurrentValueOnceAndServesItFromMemory() {
+        when(latestRepository.findByDeviceIdAndMeasurementTypeAndMeasurementKey(11L, ZigbeeMeasurementType.HUMIDITY, "humidity"))
+                .thenReturn(Optional.of(ZigbeeDeviceMeasurementLatestEntity.builder()
+                        .account(account)
+                        .device(device)
+                        .measurementType(ZigbeeMeasurementType.HUMIDITY)
+                        .measurementKey("humidity")
+                        .value(new BigDecimal("55.0"))
+                        .measuredAt(NOW)
+                        .receivedAt(NOW)
+                        .build()));
+
+        store.find(11L, ZigbeeMeasurementType.HUMIDITY, "humidity");
+        Optional<ZigbeeLatestMeasurement> latest = store.find(11L, ZigbeeMeasurementType.HUMIDITY, "humidity");
+
+        assertEquals(new BigDecimal("55.0"), latest.orElseThrow().value());
+        verify(latestRepository, times(1))
+                .findByDeviceIdAndMeasurementTypeAndMeasurementKey(11L, ZigbeeMeasurementType.HUMIDITY, "humidity");
+    }
+
+    @Test
+    void upsertKeepsNewestValueInMemory() {
+        ZigbeeGatewayDeviceEntity link = ZigbeeGatewayDeviceEntity.builder()
+                .account(account).device(device).gatewayId(UUID.randomUUID())
+                .zigbeeIeee("00158d000abc1234").profile("ts0201").build();
+
+        store.upsert(List.of(
+                new ZigbeeMeasurementWriter.Sample(link, ZigbeeMeasurementType.TEMPERATURE, "temperature",
+                        new BigDecimal("21.5"), NOW, NOW),
+                new ZigbeeMeasurementWriter.Sample(link, ZigbeeMeasurementType.TEMPERATURE, "temperature",
+                        new BigDecimal("20.0"), NOW.minusSeconds(60), NOW)
+        ));
+
+        assertEquals(new BigDecimal("21.5"),
+                store.find(11L, ZigbeeMeasurementType.TEMPERATURE, "temperature").orElseThrow().value());
+        verifyNoInteractions(latestRepository);
+    }
+
+}
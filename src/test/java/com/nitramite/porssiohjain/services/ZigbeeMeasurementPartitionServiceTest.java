@@ -0,0 +1,106 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ZigbeeMeasurementPartitionServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private ZigbeeMeasurementPartitionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ZigbeeMeasurementPartitionService(jdbcTemplate, transactionTemplate, 2, "5s");
+    }
+
+    @Test
+    void parsesOnlyDayPartitionNames() {
+        assertEquals(LocalDate.of(2026, 6, 9), ZigbeeMeasurementPartitionService.partitionDay("zigbee_device_measurement_p20260609"));
+        assertEquals("zigbee_device_measurement_p20260609", ZigbeeMeasurementPartitionService.partitionName(LocalDate.of(2026, 6, 9)));
+        assertNull(ZigbeeMeasurementPartitionService.partitionDay("zigbee_device_measurement_default"));
+        assertNull(ZigbeeMeasurementPartitionService.partitionDay("zigbee_device_measurement_pbroken"));
+    }
+
+    @Test
+    void createsOnlyMissingDaysAhead() {
+        runTransactionsInline();
+        listPartitions("zigbee_device_measurement_default", "zigbee_device_measurement_p20260609");
+
+        assertEquals(2, service.createUpcomingPartitions(Instant.parse("2026-06-09T22:30:00Z")));
+
+        verify(jdbcTemplate).execute(
+                "CREATE TABLE zigbee_device_measurement_p20260610 (LIKE zigbee_device_measurement INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        verify(jdbcTemplate).execute("ALTER TABLE zigbee_device_measurement ATTACH PARTITION zigbee_device_measurement_p20260611"
+                + " FOR VALUES FROM ('2026-06-11 00:00:00+00') TO ('2026-06-12 00:00:00+00')");
+        verify(jdbcTemplate, never()).execute(
+                "CREATE TABLE zigbee_device_measurement_p20260609 (LIKE zigbee_device_measurement INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+    }
+
+    @Test
+    void dropsOnlyPartitionsEndingBeforeCutoff() {
+        runTransactionsInline();
+        listPartitions(
+                "zigbee_device_measurement_default",
+                "zigbee_device_measurement_p20260508",
+                "zigbee_device_measurement_p20260509",
+                "zigbee_device_measurement_p20260510"
+        );
+
+        assertEquals(2, service.dropPartitionsOlderThan(Instant.parse("2026-05-10T00:00:00Z")));
+
+        verify(jdbcTemplate).execute("ALTER TABLE zigbee_device_measurement DETACH PARTITION zigbee_device_measurement_p20260508");
+        verify(jdbcTemplate).execute("DROP TABLE zigbee_device_measurement_p20260509");
+        verify(jdbcTemplate, never()).execute("DROP TABLE zigbee_device_measurement_p20260510");
+        verify(jdbcTemplate).update(eq("DELETE FROM zigbee_device_measurement_default WHERE measured_at < ?"), any(Object.class));
+    }
+
+    private void listPartitions(String... names) {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("zigbee_device_measurement")))
+                .thenReturn(List.of(names));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTransactionsInline() {
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+package com.nitramite.porssiohjain.services;
+
+import com.nitramite.porssiohjain.entity.AccountEntity;
+import com.nitramite.porssiohjain.entity.DeviceEntity;
+import com.nitramite.porssiohjain.entity.ZigbeeGatewayDeviceEntity;
+import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ZigbeeMeasurementWriterTest {
+
+    private static final Instant START = Instant.parse("2026-06-09T10:00:00Z");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ZigbeeLatestMeasurementStore latestMeasurementStore;
+
+    @Mock
+    private PowerplantRuleTrigger powerplantRuleTrigger;
+
+    private ZigbeeMeasurementWriter writer;
+    private ZigbeeGatewayDeviceEntity link;
+
+    @BeforeEach
+    void setUp() {
+        writer = new ZigbeeMeasurementWriter(
+                jdbcTemplate,
+                latestMeasurementStore,
+                powerplantRuleTrigger,
+                new BigDecimal("0.1"), Duration.ofMinutes(10),
+                new BigDecimal("1.0"), Duration.ofMinutes(30),
+                BigDecimal.ONE, Duration.ofHours(6),
+                BigDecimal.ZERO, Duration.ofMinutes(30)
+        );
+        AccountEntity account = new AccountEntity();
+        account.setId(7L);
+        link = ZigbeeGatewayDeviceEntity.builder()
+                .account(account)
+                .device(DeviceEntity.builder().id(11L).account(account).build())
+                .gatewayId(UUID.randomUUID())
+                .zigbeeIeee("00158d000abc1234")
+                .profile("ts0201")
+                .build();
+    }
+
+    @Test
+    void storesTemperatureOnlyWhenDeadbandIsCrossedOrSilenceExpires() {
+        assertEquals(1, writer.write(List.of(temperature("21.00", 0))));
+        assertEquals(0, writer.write(List.of(temperature("21.05", 5))));
+        assertEquals(0, writer.write(List.of(temperature("20.95", 300))));
+        assertEquals(1, writer.write(List.of(temperature("21.10", 400))));
+        assertEquals(0, writer.write(List.of(temperature("21.10", 600))));
+        assertEquals(1, writer.write(List.of(temperature("21.10", 1000))));
+
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        verify(latestMeasurementStore, times(6)).upsert(anyList());
+    }
+
+    @Test
+    void skipsRepeatedMeasurementTimestamp() {
+        writer.write(List.of(temperature("21.00", 0)));
+
+        assertEquals(0, writer.write(List.of(temperature("25.00", 0))));
+    }
+
+    @Test
+    void storesAnySetpointChangeAndTracksTypesSeparately() {
+        ZigbeeMeasurementWriter.Sample setpoint = sample(ZigbeeMeasurementType.THERMOSTAT_SETPOINT, "setpoint", "20.00", 0);
+        ZigbeeMeasurementWriter.Sample humidity = sample(ZigbeeMeasurementType.HUMIDITY, "humidity", "40.0", 0);
+        assertEquals(2, writer.write(List.of(setpoint, humidity)));
+
+        assertEquals(1, writer.write(List.of(
+                sample(ZigbeeMeasurementType.THERMOSTAT_SETPOINT, "setpoint", "20.50", 60),
+                sample(ZigbeeMeasurementType.HUMIDITY, "humidity", "40.5", 60)
+        )));
+    }
+
+    private ZigbeeMeasurementWriter.Sample temperature(String value, long secondsAfterStart) {
+        return sample(ZigbeeMeasurementType.TEMPERATURE, "temperature", value, secondsAfterStart);
+    }
+
+    private ZigbeeMeasurementWriter.Sample sample(ZigbeeMeasurementType type, String key, String value, long secondsAfterStart) {
+        Instant measuredAt = START.plusSeconds(secondsAfterStart);
+        return new ZigbeeMeasurementWriter.Sample(link, type, key, new BigDecimal(value), measuredAt, measuredAt);
+    }
+
+}
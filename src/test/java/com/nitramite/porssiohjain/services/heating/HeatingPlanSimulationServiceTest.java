@@ -16,10 +16,12 @@ import org.junit.jupiter.api.Test;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
 
 class HeatingPlanSimulationServiceTest {
 
@@ -119,6 +121,55 @@ class HeatingPlanSimulationServiceTest {
                 .hasMessageContaining("absolute floor maximum");
     }
 
+    @Test
+    void fastPathMatchesFullSimulation() {
+        Instant start = Instant.parse("2026-01-15T00:00:00Z");
+        List<HeatingPlanSimulationService.MarketPoint> market = new ArrayList<>();
+        for (int i = 0; i < 96; i++) {
+            String price = switch ((i / 8) % 4) {
+                case 0 -> "2.5";
+                case 1 -> "6.0";
+                case 2 -> "24.0";
+                default -> "12.0";
+            };
+            market.add(point(start.plus(Duration.ofMinutes(15L * i)), price));
+        }
+        var request = request(market);
+
+        var exact = service.simulateExact(request);
+        var summary = service.summarize(request);
+        var tolerance = within(HeatingPlanSimulationService.FAST_PATH_TOLERANCE);
+
+        assertThat(exact.energyKwh()).isPositive();
+        assertThat(summary.energyKwh()).isCloseTo(exact.energyKwh().doubleValue(), tolerance);
+        assertThat(summary.estimatedCostEur()).isCloseTo(exact.estimatedCostEur().doubleValue(), tolerance);
+        assertThat(summary.finalFloorTemperature()).isCloseTo(exact.finalFloorTemperature().doubleValue(), tolerance);
+        assertThat(summary.finalRoomTemperature()).isCloseTo(exact.finalRoomTemperature().doubleValue(), tolerance);
+    }
+
+    @Test
+    void sweepReturnsCheapestScenarioThatKeepsRoomWithinComfortBounds() {
+        Instant start = Instant.parse("2026-01-15T00:00:00Z");
+        List<HeatingPlanSimulationService.MarketPoint> market = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            String price = i < 8 ? "2.5" : i < 16 ? "6.0" : "24.0";
+            market.add(new HeatingPlanSimulationService.MarketPoint(start.plus(Duration.ofMinutes(15L * i)),
+                    new BigDecimal(price), new BigDecimal("-2.0"), new BigDecimal("2.0")));
+        }
+        var request = request(market);
+
+        var sweep = service.sweep(request,
+                List.of(new BigDecimal("2.5"), new BigDecimal("6.0"), new BigDecimal("12.0")),
+                List.of(new BigDecimal("23.0"), new BigDecimal("25.0"), new BigDecimal("27.0"), new BigDecimal("30.0")));
+
+        assertThat(service.summarize(request).comfortRespected()).isFalse();
+        assertThat(sweep.evaluatedScenarios()).isEqualTo(9);
+        assertThat(sweep.scenario().cheapPriceThreshold()).isEqualByComparingTo("6.0");
+        assertThat(sweep.scenario().maximumPreheatFloorTemperature()).isEqualByComparingTo("25.0");
+        assertThat(sweep.summary().comfortRespected()).isTrue();
+        assertThat(sweep.result().estimatedCostEur()).isEqualByComparingTo("0.22");
+    }
+
     private HeatingPlanSimulationService.SimulationRequest request(
             List<HeatingPlanSimulationService.MarketPoint> market) {
         return new HeatingPlanSimulationService.SimulationRequest(
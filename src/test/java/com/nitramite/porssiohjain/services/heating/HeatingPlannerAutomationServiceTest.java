@@ -6,6 +6,7 @@ package com.nitramite.porssiohjain.services.heating;
 
 import com.nitramite.porssiohjain.entity.*;
 import com.nitramite.porssiohjain.entity.repository.*;
+import com.nitramite.porssiohjain.services.nordpool.NordpoolPriceCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -24,7 +25,7 @@ import static org.mockito.Mockito.*;
 class HeatingPlannerAutomationServiceTest {
     @Mock HeatingPlannerSettingsRepository settingsRepository;
     @Mock HeatingPlannerRoomRepository roomRepository;
-    @Mock NordpoolRepository nordpoolRepository;
+    @Mock NordpoolPriceCache nordpoolPriceCache;
     @Mock SiteWeatherRepository weatherRepository;
     @Mock HeatingPlannerMeasurementService measurementService;
     @Mock HeatingPlannerThermalModelService thermalModelService;
@@ -39,7 +40,7 @@ class HeatingPlannerAutomationServiceTest {
 
     @BeforeEach
     void setUp() {
-        service = new HeatingPlannerAutomationService(settingsRepository, roomRepository, nordpoolRepository,
+        service = new HeatingPlannerAutomationService(settingsRepository, roomRepository, nordpoolPriceCache,
                 weatherRepository, measurementService, thermalModelService, simulationService, planService,
                 activeControlService);
         now = Instant.parse("2026-01-15T12:00:00Z");
@@ -63,7 +64,7 @@ class HeatingPlannerAutomationServiceTest {
                 new BigDecimal("0.06"), new BigDecimal("0.012"), new BigDecimal("0.001"));
         var simulation = new HeatingPlanSimulationService.SimulationResult(List.of(), BigDecimal.ZERO,
                 BigDecimal.ZERO, null, true, "active");
-        when(nordpoolRepository.findPricesBetween(anyString(), any(), any())).thenReturn(List.of(current, next));
+        when(nordpoolPriceCache.findPricesBetween(anyString(), any(), any())).thenReturn(List.of(current, next));
         when(weatherRepository.findBySiteAndForecastTimeBetweenOrderByForecastTimeAsc(eq(settings.getSite()), any(), any()))
                 .thenReturn(List.of(forecast));
         when(roomRepository.findBySettingsIdOrderBySortOrderAscIdAsc(1L)).thenReturn(List.of(room));
@@ -15,9 +15,9 @@ import com.nitramite.porssiohjain.entity.DeviceEntity;
 import com.nitramite.porssiohjain.entity.HeatingPlannerRoomEntity;
 import com.nitramite.porssiohjain.entity.HeatingPlannerRoomHeatSourceEntity;
 import com.nitramite.porssiohjain.entity.enums.DeviceType;
-import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementEntity;
 import com.nitramite.porssiohjain.entity.enums.ZigbeeMeasurementType;
-import com.nitramite.porssiohjain.entity.repository.ZigbeeDeviceMeasurementRepository;
+import com.nitramite.porssiohjain.services.ZigbeeLatestMeasurementStore;
+import com.nitramite.porssiohjain.services.models.ZigbeeLatestMeasurement;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -33,18 +33,14 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class HeatingPlannerMeasurementServiceTest {
 
-    @Mock ZigbeeDeviceMeasurementRepository measurements;
+    @Mock ZigbeeLatestMeasurementStore measurements;
 
     @Test void returnsFreshLatestRoomTemperature() {
         HeatingPlannerMeasurementService service = new HeatingPlannerMeasurementService(measurements);
         HeatingPlannerRoomEntity room = room(14L);
         Instant now = Instant.parse("2026-01-01T12:00:00Z");
-        when(measurements.findFirstByDeviceIdAndMeasurementTypeAndMeasurementKeyOrderByMeasuredAtDescIdDesc(
-                14L, ZigbeeMeasurementType.TEMPERATURE, "temperature"))
-                .thenReturn(Optional.of(ZigbeeDeviceMeasurementEntity.builder()
-                        .value(new BigDecimal("21.50"))
-                        .measuredAt(now.minusSeconds(120))
-                        .build()));
+        when(measurements.find(14L, ZigbeeMeasurementType.TEMPERATURE, "temperature"))
+                .thenReturn(Optional.of(temperature(14L, new BigDecimal("21.50"), now.minusSeconds(120))));
 
         HeatingPlannerMeasurementService.LatestMeasurement latest =
                 service.latestFreshRoomTemperature(room, now);
@@ -58,12 +54,8 @@ class HeatingPlannerMeasurementServiceTest {
         HeatingPlannerMeasurementService service = new HeatingPlannerMeasurementService(measurements);
         HeatingPlannerRoomEntity room = room(14L);
         Instant now = Instant.parse("2026-01-01T12:00:00Z");
-        when(measurements.findFirstByDeviceIdAndMeasurementTypeAndMeasurementKeyOrderByMeasuredAtDescIdDesc(
-                14L, ZigbeeMeasurementType.TEMPERATURE, "temperature"))
-                .thenReturn(Optional.of(ZigbeeDeviceMeasurementEntity.builder()
-                        .value(new BigDecimal("20.00"))
-                        .measuredAt(now.minusSeconds(7200))
-                        .build()));
+        when(measurements.find(14L, ZigbeeMeasurementType.TEMPERATURE, "temperature"))
+                .thenReturn(Optional.of(temperature(14L, new BigDecimal("20.00"), now.minusSeconds(7200))));
 
         HeatingPlannerMeasurementService.LatestMeasurement latest =
                 service.latestFreshRoomTemperature(room, now);
@@ -93,12 +85,8 @@ class HeatingPlannerMeasurementServiceTest {
                 .controllingDevice(thermostat)
                 .build());
         Instant now = Instant.parse("2026-01-01T12:00:00Z");
-        when(measurements.findFirstByDeviceIdAndMeasurementTypeAndMeasurementKeyOrderByMeasuredAtDescIdDesc(
-                22L, ZigbeeMeasurementType.TEMPERATURE, "temperature"))
-                .thenReturn(Optional.of(ZigbeeDeviceMeasurementEntity.builder()
-                        .value(new BigDecimal("20.75"))
-                        .measuredAt(now.minusSeconds(60))
-                        .build()));
+        when(measurements.find(22L, ZigbeeMeasurementType.TEMPERATURE, "temperature"))
+                .thenReturn(Optional.of(temperature(22L, new BigDecimal("20.75"), now.minusSeconds(60))));
 
         HeatingPlannerMeasurementService.LatestMeasurement latest =
                 service.latestFreshRoomTemperature(room, now);
@@ -107,6 +95,11 @@ class HeatingPlannerMeasurementServiceTest {
         assertEquals(HeatingPlannerMeasurementService.Freshness.FRESH, latest.freshness());
     }
 
+    private ZigbeeLatestMeasurement temperature(Long deviceId, BigDecimal value, Instant measuredAt) {
+        return new ZigbeeLatestMeasurement(1L, deviceId, ZigbeeMeasurementType.TEMPERATURE, "temperature",
+                value, measuredAt, measuredAt);
+    }
+
     private HeatingPlannerRoomEntity room(Long deviceId) {
         DeviceEntity device = new DeviceEntity();
         device.setId(deviceId);
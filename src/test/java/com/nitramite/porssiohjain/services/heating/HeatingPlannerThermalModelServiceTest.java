@@ -4,8 +4,13 @@
  */
 package com.nitramite.porssiohjain.services.heating;
 
+import com.nitramite.porssiohjain.entity.DeviceEntity;
+import com.nitramite.porssiohjain.entity.HeatingPlannerRoomEntity;
+import com.nitramite.porssiohjain.entity.HeatingPlannerRoomModelStateEntity;
 import com.nitramite.porssiohjain.entity.SiteWeatherEntity;
 import com.nitramite.porssiohjain.entity.ZigbeeDeviceMeasurementEntity;
+import com.nitramite.porssiohjain.entity.repository.HeatingPlannerRoomModelStateRepository;
+import com.nitramite.porssiohjain.entity.repository.HeatingPlannerRoomRepository;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
@@ -13,15 +18,17 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 class HeatingPlannerThermalModelServiceTest {
 
     @Test
     void estimatesFasterCoolingForLargerIndoorOutdoorDifference() {
-        HeatingPlannerThermalModelService service = new HeatingPlannerThermalModelService(mock(), mock(), mock());
+        HeatingPlannerThermalModelService service = new HeatingPlannerThermalModelService(mock(), mock(), mock(), mock());
         Instant start = Instant.parse("2026-01-15T00:00:00Z");
         List<ZigbeeDeviceMeasurementEntity> temperatures = new ArrayList<>();
         List<SiteWeatherEntity> weather = new ArrayList<>();
@@ -43,12 +50,89 @@ class HeatingPlannerThermalModelServiceTest {
         assertThat(estimate.confidence()).isPositive();
     }
 
+    @Test
+    void fallsBackToConfiguredModelWhenSensorStoppedReporting() {
+        HeatingPlannerRoomRepository roomRepository = mock();
+        HeatingPlannerRoomModelStateRepository modelStateRepository = mock();
+        HeatingPlannerThermalModelService service = new HeatingPlannerThermalModelService(
+                roomRepository, modelStateRepository, mock(), mock());
+        Instant now = Instant.parse("2026-02-20T00:00:00Z");
+        HeatingPlannerRoomEntity room = HeatingPlannerRoomEntity.builder()
+                .id(3L)
+                .name("Living room")
+                .roomSensorDevice(DeviceEntity.builder().id(11L).build())
+                .roomSensorMeasurementKey("temperature")
+                .build();
+        HeatingPlannerRoomModelStateEntity state = HeatingPlannerRoomModelStateEntity.builder()
+                .room(room)
+                .sensorDeviceId(11L)
+                .measurementKey("temperature")
+                .outdoorCoefficient(0.02)
+                .windCoefficient(0.01)
+                .covarianceOutdoor(0.01)
+                .covarianceWind(0.01)
+                .weightSum(150)
+                .sampleCount(400)
+                .lastMeasuredAt(now.minus(Duration.ofDays(30)))
+                .lastValue(new BigDecimal("21.000"))
+                .build();
+        when(roomRepository.findByAccountIdAndSiteIdAndNameIgnoreCase(1L, 2L, "Living room"))
+                .thenReturn(Optional.of(room));
+        when(modelStateRepository.findWithLockByRoomId(3L)).thenReturn(Optional.of(state));
+        when(modelStateRepository.save(state)).thenReturn(state);
+        HeatingPlanSimulationService.ThermalModel configured = new HeatingPlanSimulationService.ThermalModel(
+                new BigDecimal("2.0"), new BigDecimal("1.0"), new BigDecimal("0.08"),
+                new BigDecimal("0.015"), new BigDecimal("0.002"));
+
+        HeatingPlannerThermalModelService.ModelResolution resolution =
+                service.learnAndResolve(1L, 2L, "Living room", configured, now);
+
+        assertThat(resolution.learned()).isFalse();
+        assertThat(resolution.model()).isEqualTo(configured);
+        assertThat(resolution.confidence()).isZero();
+        assertThat(room.isModelParametersLearned()).isFalse();
+    }
+
+    @Test
+    void foldingMeasurementsInChunksMatchesSingleFold() {
+        HeatingPlannerThermalModelService service = new HeatingPlannerThermalModelService(mock(), mock(), mock(), mock());
+        Instant start = Instant.parse("2026-01-15T00:00:00Z");
+        List<ZigbeeDeviceMeasurementEntity> temperatures = new ArrayList<>();
+        List<SiteWeatherEntity> weather = new ArrayList<>();
+        BigDecimal room = new BigDecimal("22.00");
+        temperatures.add(temperature(start, room));
+        for (int i = 1; i <= 60; i++) {
+            Instant time = start.plus(Duration.ofMinutes(30L * i));
+            BigDecimal outside = BigDecimal.valueOf(-12 + (i % 7));
+            BigDecimal wind = BigDecimal.valueOf(i % 5);
+            BigDecimal cooling = room.subtract(outside).multiply(new BigDecimal("0.006"))
+                    .add(wind.multiply(new BigDecimal("0.01")));
+            room = room.subtract(cooling);
+            temperatures.add(temperature(time, room));
+            weather.add(weather(time.minus(Duration.ofMinutes(15)), outside, wind));
+        }
+
+        HeatingPlannerThermalModelService.Estimate whole = service.estimate(temperatures, weather);
+        HeatingPlannerRoomModelStateEntity state = HeatingPlannerRoomModelStateEntity.builder()
+                .covarianceOutdoor(100).covarianceWind(100).build();
+        service.fold(state, temperatures.subList(0, 25), weather);
+        service.fold(state, temperatures.subList(25, temperatures.size()), weather);
+
+        assertThat(state.getLastMeasuredAt()).isEqualTo(temperatures.getLast().getMeasuredAt());
+        assertThat(service.estimate(state)).isEqualTo(whole);
+        assertThat(whole.sampleCount()).isEqualTo(60);
+    }
+
     private ZigbeeDeviceMeasurementEntity temperature(Instant time, BigDecimal value) {
         return ZigbeeDeviceMeasurementEntity.builder().measuredAt(time).value(value).build();
     }
 
     private SiteWeatherEntity weather(Instant time, BigDecimal temperature) {
+        return weather(time, temperature, BigDecimal.ZERO);
+    }
+
+    private SiteWeatherEntity weather(Instant time, BigDecimal temperature, BigDecimal wind) {
         return SiteWeatherEntity.builder().forecastTime(time).temperature(temperature)
-                .windSpeedMs(BigDecimal.ZERO).build();
+                .windSpeedMs(wind).build();
     }
 }
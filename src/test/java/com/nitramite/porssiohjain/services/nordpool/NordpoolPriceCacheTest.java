@@ -0,0 +1,137 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services.nordpool;
+
+import com.nitramite.porssiohjain.entity.NordpoolEntity;
+import com.nitramite.porssiohjain.entity.repository.NordpoolRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NordpoolPriceCacheTest {
+
+    @Mock
+    private NordpoolRepository nordpoolRepository;
+
+    private NordpoolPriceCache nordpoolPriceCache;
+    private Instant dayStart;
+    private List<NordpoolEntity> rows;
+
+    @BeforeEach
+    void setUp() {
+        nordpoolPriceCache = new NordpoolPriceCache(nordpoolRepository);
+        dayStart = Instant.now().truncatedTo(ChronoUnit.DAYS);
+        rows = new ArrayList<>();
+        for (int i = 0; i < 96; i++) {
+            Instant start = dayStart.plus(15L * i, ChronoUnit.MINUTES);
+            rows.add(price((long) i + 1, start, start.plus(15, ChronoUnit.MINUTES), new BigDecimal(i + ".1250")));
+        }
+    }
+
+    @Test
+    void findsPriceAtInstantLikeRepositoryQuery() {
+        when(nordpoolRepository.findByMarketIndexNameAndDeliveryStartGreaterThanEqualOrderByDeliveryStartAsc(eq("FI"), any()))
+                .thenReturn(rows);
+
+        Optional<NordpoolEntity> price = nordpoolPriceCache.findPriceAt("FI", dayStart.plus(31, ChronoUnit.MINUTES));
+        Optional<NordpoolEntity> slotStart = nordpoolPriceCache.findPriceAt("FI", dayStart.plus(30, ChronoUnit.MINUTES));
+        Optional<NordpoolEntity> afterLast = nordpoolPriceCache.findPriceAt("FI", dayStart.plus(1, ChronoUnit.DAYS));
+
+        assertEquals(new BigDecimal("2.1250"), price.orElseThrow().getPriceFi());
+        assertEquals(3L, slotStart.orElseThrow().getId());
+        assertTrue(afterLast.isEmpty());
+    }
+
+    @Test
+    void slicesRangeWithInclusiveBoundsAndReusesTimeline() {
+        when(nordpoolRepository.findByMarketIndexNameAndDeliveryStartGreaterThanEqualOrderByDeliveryStartAsc(eq("FI"), any()))
+                .thenReturn(rows);
+
+        List<NordpoolEntity> slice = nordpoolPriceCache.findPricesBetween(
+                "FI", dayStart.plus(15, ChronoUnit.MINUTES), dayStart.plus(60, ChronoUnit.MINUTES));
+        List<NordpoolEntity> partialSeconds = nordpoolPriceCache.findPricesBetween(
+                "FI", dayStart.plusNanos(1), dayStart.plus(30, ChronoUnit.MINUTES).minusNanos(1));
+
+        assertEquals(List.of(2L, 3L, 4L, 5L), slice.stream().map(NordpoolEntity::getId).toList());
+        assertEquals(List.of(2L), partialSeconds.stream().map(NordpoolEntity::getId).toList());
+        verify(nordpoolRepository, times(1))
+                .findByMarketIndexNameAndDeliveryStartGreaterThanEqualOrderByDeliveryStartAsc(eq("FI"), any());
+    }
+
+    @Test
+    void fallsBackToRepositoryBeforeCachedWindow() {
+        when(nordpoolRepository.findByMarketIndexNameAndDeliveryStartGreaterThanEqualOrderByDeliveryStartAsc(eq("FI"), any()))
+                .thenReturn(rows);
+        Instant start = dayStart.minus(365, ChronoUnit.DAYS);
+        Instant end = start.plus(1, ChronoUnit.DAYS);
+        List<NordpoolEntity> old = List.of(price(1000L, start, start.plus(1, ChronoUnit.HOURS), BigDecimal.ONE));
+        when(nordpoolRepository.findPricesBetween("FI", start, end)).thenReturn(old);
+
+        assertEquals(old, nordpoolPriceCache.findPricesBetween("FI", start, end));
+    }
+
+    @Test
+    void refreshReplacesTimeline() {
+        when(nordpoolRepository.findByMarketIndexNameAndDeliveryStartGreaterThanEqualOrderByDeliveryStartAsc(eq("FI"), any()))
+                .thenReturn(List.of())
+                .thenReturn(rows);
+
+        assertTrue(nordpoolPriceCache.findPriceAt("FI", dayStart).isEmpty());
+        nordpoolPriceCache.refresh(List.of("FI"));
+
+        assertEquals(1L, nordpoolPriceCache.findPriceAt("FI", dayStart).orElseThrow().getId());
+    }
+
+    @Test
+    void timelineRefreshedDuringLoadWinsOverStaleLoad() {
+        when(nordpoolRepository.findByMarketIndexNameAndDeliveryStartGreaterThanEqualOrderByDeliveryStartAsc(eq("FI"), any()))
+                .thenAnswer(invocation -> {
+                    nordpoolPriceCache.refresh(List.of("FI"));
+                    return List.of();
+                })
+                .thenReturn(rows);
+
+        assertEquals(1L, nordpoolPriceCache.findPriceAt("FI", dayStart).orElseThrow().getId());
+        assertEquals(1L, nordpoolPriceCache.findPriceAt("FI", dayStart).orElseThrow().getId());
+        verify(nordpoolRepository, times(2))
+                .findByMarketIndexNameAndDeliveryStartGreaterThanEqualOrderByDeliveryStartAsc(eq("FI"), any());
+    }
+
+    private NordpoolEntity price(Long id, Instant start, Instant end, BigDecimal value) {
+        NordpoolEntity entity = new NordpoolEntity();
+        entity.setId(id);
+        entity.setMarketIndexName("FI");
+        entity.setDeliveryStart(start);
+        entity.setDeliveryEnd(end);
+        entity.setPriceFi(value);
+        return entity;
+    }
+}
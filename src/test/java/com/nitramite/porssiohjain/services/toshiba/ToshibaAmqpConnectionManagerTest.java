@@ -0,0 +1,137 @@
+/*
+ * Pörssiohjain - Energy usage optimization platform
+ * Copyright (C) 2026  Martin Kankaanranta / Nitramite Tmi
+ *
+ * This source code is licensed under the Pörssiohjain Personal Use License v1.0.
+ * Private self-hosting for personal household use is permitted.
+ * Commercial use, resale, managed hosting, or offering the software as a
+ * service to third parties requires separate written permission.
+ * See LICENSE for details.
+ */
+
+
+package com.nitramite.porssiohjain.services.toshiba;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClient;
+import com.microsoft.azure.sdk.iot.device.Message;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ToshibaAmqpConnectionManagerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(1);
+
+    private final List<FakeLink> opened = new ArrayList<>();
+
+    @Test
+    void reusesOpenLinkForSameUnit() throws Exception {
+        ToshibaAmqpConnectionManager manager = new ToshibaAmqpConnectionManager(this::open, Duration.ofMinutes(10));
+
+        manager.send("user_1", "conn-a", new Message("1"), TIMEOUT);
+        manager.send("user_1", "conn-a", new Message("2"), TIMEOUT);
+        manager.send("user_2", "conn-b", new Message("3"), TIMEOUT);
+
+        assertEquals(2, opened.size());
+        assertEquals(2, opened.get(0).sent);
+        assertEquals(2, manager.openLinks());
+    }
+
+    @Test
+    void closesDeviceClientWhenOpenFails() throws Exception {
+        DeviceClient deviceClient = mock(DeviceClient.class);
+        IllegalStateException failure = new IllegalStateException("handshake failed");
+        doThrow(failure).when(deviceClient).open(true);
+
+        assertEquals(failure, assertThrows(IllegalStateException.class,
+                () -> ToshibaAmqpConnectionManager.openDeviceClient(deviceClient)));
+        verify(deviceClient).close();
+    }
+
+    @Test
+    void reopensLinkWhenSasTokenChanges() throws Exception {
+        ToshibaAmqpConnectionManager manager = new ToshibaAmqpConnectionManager(this::open, Duration.ofMinutes(10));
+
+        manager.send("user_1", "conn-a", new Message("1"), TIMEOUT);
+        manager.send("user_1", "conn-refreshed", new Message("2"), TIMEOUT);
+
+        assertEquals(2, opened.size());
+        assertTrue(opened.get(0).closed);
+        assertEquals("conn-refreshed", opened.get(1).connectionString);
+    }
+
+    @Test
+    void closesLinkAfterFailedSend() throws Exception {
+        ToshibaAmqpConnectionManager manager = new ToshibaAmqpConnectionManager(this::open, Duration.ofMinutes(10));
+        manager.send("user_1", "conn-a", new Message("1"), TIMEOUT);
+        opened.get(0).failNext = true;
+
+        assertThrows(IllegalStateException.class, () -> manager.send("user_1", "conn-a", new Message("2"), TIMEOUT));
+        manager.send("user_1", "conn-a", new Message("3"), TIMEOUT);
+
+        assertTrue(opened.get(0).closed);
+        assertEquals(2, opened.size());
+    }
+
+    @Test
+    void retriesOpenAndEvictsIdleLinks() throws Exception {
+        List<Integer> attempts = new ArrayList<>();
+        ToshibaAmqpConnectionManager manager = new ToshibaAmqpConnectionManager(connectionString -> {
+            attempts.add(attempts.size());
+            if (attempts.size() == 1) {
+                throw new IllegalStateException("hub unavailable");
+            }
+            return open(connectionString);
+        }, Duration.ofMinutes(10));
+
+        manager.send("user_1", "conn-a", new Message("1"), TIMEOUT);
+        assertEquals(2, attempts.size());
+
+        assertEquals(0, manager.evictIdle(Instant.now()));
+        assertEquals(1, manager.evictIdle(Instant.now().plus(Duration.ofMinutes(11))));
+        assertTrue(opened.get(0).closed);
+        assertEquals(0, manager.openLinks());
+    }
+
+    private ToshibaAmqpConnectionManager.AmqpLink open(String connectionString) {
+        FakeLink link = new FakeLink(connectionString);
+        opened.add(link);
+        return link;
+    }
+
+    private static final class FakeLink implements ToshibaAmqpConnectionManager.AmqpLink {
+        private final String connectionString;
+        private int sent;
+        private boolean failNext;
+        private boolean closed;
+
+        private FakeLink(String connectionString) {
+            this.connectionString = connectionString;
+        }
+
+        @Override
+        public void send(Message message, Duration timeout) {
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("link detached");
+            }
+            sent++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+}
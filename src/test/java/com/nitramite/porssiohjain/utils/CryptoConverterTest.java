@@ -13,7 +13,13 @@ package com.nitramite.porssiohjain.utils;
 
 import org.junit.jupiter.api.Test;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -22,6 +28,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CryptoConverterTest {
 
@@ -68,4 +75,45 @@ class CryptoConverterTest {
 
         assertThat(failures).isEmpty();
     }
+
+    @Test
+    void writesVersionHeaderAndReadsBothKeysDuringRotation() {
+        CryptoConverter oldConverter = new CryptoConverter("old-crypto-key", 1, "", 0, 0);
+        String oldValue = oldConverter.convertToDatabaseColumn("ac-secret");
+        CryptoConverter rotated = new CryptoConverter("new-crypto-key", 2, "old-crypto-key", 1, 0);
+
+        String newValue = rotated.convertToDatabaseColumn("ac-secret");
+
+        assertThat(oldValue).startsWith("v1:");
+        assertThat(newValue).startsWith("v2:");
+        assertThat(rotated.convertToEntityAttribute(oldValue)).isEqualTo("ac-secret");
+        assertThat(rotated.convertToEntityAttribute(newValue)).isEqualTo("ac-secret");
+        assertThat(rotated.needsReEncryption(oldValue)).isTrue();
+        assertThat(rotated.needsReEncryption(newValue)).isFalse();
+        assertThatThrownBy(() -> oldConverter.convertToEntityAttribute(newValue))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void readsValuesWrittenBeforeVersioning() throws Exception {
+        String legacyValue = legacyEncrypt("old-crypto-key", "mqtt-secret");
+        CryptoConverter rotated = new CryptoConverter("new-crypto-key", 2, "old-crypto-key", 1, 0);
+
+        assertThat(new CryptoConverter("old-crypto-key").convertToEntityAttribute(legacyValue)).isEqualTo("mqtt-secret");
+        assertThat(rotated.convertToEntityAttribute(legacyValue)).isEqualTo("mqtt-secret");
+        assertThat(rotated.needsReEncryption(legacyValue)).isTrue();
+    }
+
+    private static String legacyEncrypt(String key, String value) throws Exception {
+        byte[] iv = new byte[12];
+        Arrays.fill(iv, (byte) 7);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE,
+                new SecretKeySpec(Arrays.copyOf(key.getBytes(StandardCharsets.UTF_8), 32), "AES"),
+                new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        byte[] combined = Arrays.copyOf(iv, iv.length + encrypted.length);
+        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
 }